@@ -39,6 +39,7 @@ import com.mucommander.bookmark.file.BookmarkProtocolProvider;
 import com.mucommander.command.Command;
 import com.mucommander.command.CommandManager;
 import com.mucommander.command.CommandType;
+import com.mucommander.commons.file.ArchiveEntryCache;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.icon.impl.SwingFileIconProvider;
 import com.mucommander.commons.file.impl.ftp.FTPProtocolProvider;
@@ -87,6 +88,8 @@ public class TrolCommander {
 	public static boolean isLaunching = true;
 	/** Launch lock. */
 	private static final Object LAUNCH_LOCK = new Object();
+	/** Name of the folder, within the preferences folder, where archive entries are cached. */
+	private static final String ARCHIVE_ENTRY_CACHE_FOLDER = "archive_entries";
 
 	// - Initialisation
 	// ---------------------------------------------------------
@@ -537,6 +540,15 @@ public class TrolCommander {
 			FTPProtocolProvider.setForceHiddenFilesListing(MuConfigurations.getPreferences()
 					.getVariable(MuPreference.LIST_HIDDEN_FILES, MuPreferences.DEFAULT_LIST_HIDDEN_FILES));
 
+			// Cache the entries of archives in the preferences folder, so that unchanged archives can be browsed
+			// again without being read
+			long archiveEntryCacheSize = MuConfigurations.getPreferences().getVariable(
+					MuPreference.ARCHIVE_ENTRY_CACHE_SIZE, MuPreferences.DEFAULT_ARCHIVE_ENTRY_CACHE_SIZE);
+			if (archiveEntryCacheSize > 0) {
+				ArchiveEntryCache.setMaxSize(archiveEntryCacheSize);
+				ArchiveEntryCache.setCacheFolder(PlatformManager.getPreferencesFolder().getChild(ARCHIVE_ENTRY_CACHE_FOLDER));
+			}
+
 			// Use CredentialsManager for file URL authentication
 			FileFactory.setDefaultAuthenticator(CredentialsManager.getAuthenticator());
 
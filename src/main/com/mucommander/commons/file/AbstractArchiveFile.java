@@ -26,8 +26,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.tree.DefaultMutableTreeNode;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Vector;
 import java.util.WeakHashMap;
@@ -115,16 +120,38 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         archiveEntryFiles = new WeakHashMap<>();
 
         long start = System.currentTimeMillis();
+        boolean cacheable = isEntriesTreeCacheable() && ArchiveEntryCache.isEnabled();
+        if(cacheable) {
+            List<ArchiveEntry> cachedEntries = ArchiveEntryCache.getEntries(this);
+            if(cachedEntries!=null) {
+                for(ArchiveEntry entry : cachedEntries)
+                    treeRoot.addArchiveEntry(entry);
+
+                LOGGER.info("entries tree restored from cache in "+(System.currentTimeMillis()-start)+" ms");
+
+                this.entryTreeRoot = treeRoot;
+                declareEntriesTreeUpToDate();
+                return;
+            }
+        }
+
+        List<ArchiveEntry> listedEntries = cacheable?new ArrayList<>():null;
         ArchiveEntryIterator entries = getEntryIterator();
         try {
             ArchiveEntry entry;
-            while((entry=entries.nextEntry())!=null)
+            while((entry=entries.nextEntry())!=null) {
                 treeRoot.addArchiveEntry(entry);
+                if(listedEntries!=null)
+                    listedEntries.add(entry);
+            }
 
             LOGGER.info("entries tree created in "+(System.currentTimeMillis()-start)+" ms");
 
             this.entryTreeRoot = treeRoot;
             declareEntriesTreeUpToDate();
+
+            if(listedEntries!=null)
+                ArchiveEntryCache.putEntries(this, listedEntries);
         }
         finally {
             try { entries.close(); }
@@ -134,6 +161,63 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         }
     }
 
+    /**
+     * Returns <code>true</code> if the entries of this archive can be persisted by {@link ArchiveEntryCache}, so that
+     * the entries tree can be recreated without reading the archive when it hasn't changed. This method returns
+     * <code>false</code> by default and should be overridden by read-only formats whose entries are expensive to list.
+     * Implementations that need format-specific information to read an entry's contents should also override
+     * {@link #getCachedEntryLocator(ArchiveEntry)} and {@link #restoreCachedEntry(ArchiveEntry, long)}.
+     *
+     * @return true if the entries of this archive can be cached
+     */
+    protected boolean isEntriesTreeCacheable() {
+        return false;
+    }
+
+    /**
+     * Returns a value that allows {@link #restoreCachedEntry(ArchiveEntry, long)} to restore the format-specific
+     * information of the given entry, typically the offset of the entry within the archive. This method is called
+     * when the entries of this archive are cached, and returns <code>-1</code> by default.
+     *
+     * @param entry an entry of this archive
+     * @return a value that locates the entry in the archive, -1 if there is none
+     */
+    protected long getCachedEntryLocator(ArchiveEntry entry) {
+        return -1;
+    }
+
+    /**
+     * Restores the format-specific information of an entry that has been read from {@link ArchiveEntryCache}, so that
+     * {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)} can read its contents. This method does nothing
+     * by default.
+     *
+     * @param entry an entry whose attributes have been read from the cache
+     * @param locator the value returned by {@link #getCachedEntryLocator(ArchiveEntry)} when the entry was cached
+     */
+    protected void restoreCachedEntry(ArchiveEntry entry, long locator) {
+    }
+
+    /**
+     * Writes archive-wide information that should be cached along with the entries of this archive, for instance
+     * information that allows entries to be read faster. This method is called by {@link ArchiveEntryCache} after the
+     * archive has been listed, and writes nothing by default.
+     *
+     * @param out the stream to write the information to
+     * @throws IOException if an I/O error occurred
+     */
+    protected void writeCachedArchiveData(DataOutputStream out) throws IOException {
+    }
+
+    /**
+     * Reads the information written by {@link #writeCachedArchiveData(DataOutputStream)}, when the entries of this
+     * archive are read from {@link ArchiveEntryCache}. This method does nothing by default.
+     *
+     * @param in the stream to read the information from
+     * @throws IOException if an I/O error occurred
+     */
+    protected void readCachedArchiveData(DataInputStream in) throws IOException {
+    }
+
     /**
      * Checks if the entries tree exists and if this file hasn't been modified since the tree was last created.
      * If any of those 2 conditions isn't met, the entries tree is (re)created.
@@ -366,6 +450,50 @@ public abstract class AbstractArchiveFile extends ProxyFile {
         return getArchiveEntryFile(entryNode);
     }
 
+    /**
+     * Returns the given entries and, for those that are directories, all the entries they contain, looked up in the
+     * entries tree which is created if needed. Entries that are not in the archive are ignored. The entries are
+     * returned in no particular order.
+     *
+     * <p>This method allows to plan the extraction of many entries without reading the archive, other than to create
+     * the entries tree if it doesn't exist yet.</p>
+     *
+     * @param entries the entries to look up, <code>null</code> for all the entries of this archive
+     * @return the given entries and those they contain
+     * @throws IOException if an error occurred while creating the entries tree
+     * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
+     * underlying file protocol.
+     */
+    public List<ArchiveEntry> getEntries(Collection<ArchiveEntry> entries) throws IOException, UnsupportedFileOperationException {
+        checkEntriesTree();
+
+        List<ArchiveEntry> foundEntries = new ArrayList<>();
+        if(entries==null) {
+            addEntries(entryTreeRoot, foundEntries);
+        }
+        else {
+            for(ArchiveEntry entry : entries) {
+                DefaultMutableTreeNode entryNode = entryTreeRoot.findEntryNode(entry.getPath());
+                if(entryNode!=null)
+                    addEntries(entryNode, foundEntries);
+            }
+        }
+
+        return foundEntries;
+    }
+
+    /**
+     * Adds the entry of the given node and those of all its descendants to the given list.
+     */
+    private static void addEntries(DefaultMutableTreeNode node, List<ArchiveEntry> entries) {
+        Enumeration<?> nodes = node.preorderEnumeration();
+        while(nodes.hasMoreElements()) {
+            Object entry = ((DefaultMutableTreeNode)nodes.nextElement()).getUserObject();
+            if(entry instanceof ArchiveEntry)
+                entries.add((ArchiveEntry)entry);
+        }
+    }
+
     /**
      * Creates and returns an {@link AbstractFile} instance corresponding to the given entry node.
      * This method recurses to resolve the entry's parent file.
@@ -405,6 +533,29 @@ public abstract class AbstractArchiveFile extends ProxyFile {
      */
     public abstract ArchiveEntryIterator getEntryIterator() throws IOException, UnsupportedFileOperationException;
 
+    /**
+     * Returns an iterator of {@link ArchiveEntry} that iterates through all the entries of this archive, like
+     * {@link #getEntryIterator()} does, in order to read the contents of the given entries: each of them can be read
+     * with {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)} when it is returned by the iterator.
+     * Reading all of them must then cost about a single pass over the archive, even for formats whose entries are
+     * compressed together, whereas reading each entry on its own may require decompressing everything that precedes it.
+     *
+     * <p>This implementation returns {@link #getEntryIterator()}, which is enough for formats whose
+     * <code>getEntryInputStream</code> implementation reads the current entry of the iterator. Formats that can
+     * extract a set of entries faster than one entry at a time should override it, see
+     * {@link SinglePassEntryIterator}.</p>
+     *
+     * @param entriesToRead the entries the caller is going to read, the others are only iterated
+     * @return an iterator of {@link ArchiveEntry} that iterates through all the entries of this archive
+     * @throws IOException if an error occurred while reading the archive, either because the archive is corrupt or
+     * because of an I/O error
+     * @throws UnsupportedFileOperationException if {@link FileOperation#READ_FILE} operations are not supported by the
+     * underlying file protocol.
+     */
+    public ArchiveEntryIterator getEntryIterator(Collection<ArchiveEntry> entriesToRead) throws IOException, UnsupportedFileOperationException {
+        return getEntryIterator();
+    }
+
     /**
      * Returns an <code>InputStream</code> to read from the given archive entry. The specified {@link ArchiveEntry}
      * instance must be one of the entries that were returned by the {@link ArchiveEntryIterator} returned by
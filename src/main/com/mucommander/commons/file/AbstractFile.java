@@ -545,6 +545,31 @@ public abstract class AbstractFile implements FileAttributes, PermissionTypes, P
     }
 
 
+    /**
+     * Lists the children files that this file contains incrementally: files that match the specified FileFilter are
+     * reported to the given {@link FileListingHandler} in chunks as they are being listed, instead of being returned
+     * at once when the listing is complete. The handler can cancel the listing at any time.
+     * For this operation to be successful, this file must be 'browsable', i.e. {@link #isBrowsable()} must return
+     * <code>true</code>.
+     *
+     * <p>This default implementation reports the files returned by {@link #ls(FileFilter)} in a single chunk. This
+     * method should be overridden by filesystems that are able to list large folders piece by piece.</p>
+     *
+     * @param filter the FileFilter to be used to filter files out from the list, may be <code>null</code>
+     * @param handler the handler the files are reported to
+     * @throws IOException if this operation is not possible (file is not browsable) or if an error occurred.
+     * @throws UnsupportedFileOperationException if this method relies on a file operation that is not supported
+     * or not implemented by the underlying filesystem.
+     * @see FileListingBuffer
+     */
+    public void ls(FileFilter filter, FileListingHandler handler) throws IOException {
+        AbstractFile[] files = ls(filter);
+        if (files.length > 0) {
+            handler.filesListed(files);
+        }
+    }
+
+
     /**
      * Returns the children files that this file contains, filtering out files that do not match the specified FilenameFilter.
      * For this operation to be successful, this file must be 'browsable', i.e. {@link #isBrowsable()} must return
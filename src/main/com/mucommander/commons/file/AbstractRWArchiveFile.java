@@ -121,4 +121,41 @@ public abstract class AbstractRWArchiveFile extends AbstractArchiveFile {
      * the underlying file protocol.
      */
     public abstract void optimizeArchive() throws IOException, UnsupportedFileOperationException;
+
+
+    //////////////////////
+    // Batch operations //
+    //////////////////////
+
+    /**
+     * Starts a batch of modifications: the entries added, deleted or updated until {@link #commitBatch()} is called
+     * may be applied all at once when the batch is committed, instead of one at a time. This allows archive formats
+     * that maintain an index of their entries to write it only once, which matters when many entries are modified.
+     *
+     * <p>{@link #commitBatch()} must always be called once the modifications are done, even if some of them failed:
+     * the archive may not be valid until then.</p>
+     *
+     * <p>This implementation does nothing, modifications being applied immediately.
+     * {@link com.mucommander.commons.file.impl.zip.ZipArchiveFile} overrides it to defer the writing of the Zip
+     * central directory.</p>
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws UnsupportedFileOperationException if {@link FileOperation#WRITE_FILE} operations are not supported by
+     * the underlying file protocol.
+     */
+    public void beginBatch() throws IOException, UnsupportedFileOperationException {
+    }
+
+    /**
+     * Applies the modifications of the batch started with {@link #beginBatch()}, if any. This method has no effect if
+     * no batch is in progress.
+     *
+     * <p>This implementation does nothing.</p>
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws UnsupportedFileOperationException if {@link FileOperation#WRITE_FILE} operations are not supported by
+     * the underlying file protocol.
+     */
+    public void commitBatch() throws IOException, UnsupportedFileOperationException {
+    }
 }
@@ -0,0 +1,361 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import com.mucommander.commons.io.ByteUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <code>ArchiveEntryCache</code> persists the entries of archives on disk, so that the entries tree of an archive
+ * that has not changed since it was last listed can be recreated without reading the archive again. This saves a lot
+ * of time with archives that need to be read in their entirety to be listed, such as compressed TAR archives.
+ *
+ * <p>The entries of an archive are stored in a file of the cache folder named after a hash of the archive's URL.
+ * The archive's size and date are stored along with the entries: cached entries are used only if the archive still
+ * has the same size and date, and are otherwise replaced the next time the archive is listed. The total size of the
+ * cache files is bounded by {@link #getMaxSize()}: the least recently used ones are deleted when it is exceeded.</p>
+ *
+ * <p>Only the entries' attributes are cached, the contents of entries are always read from the archive. Archive
+ * implementations opt in by overriding {@link AbstractArchiveFile#isEntriesTreeCacheable()} and, if they need
+ * format-specific information to read an entry, {@link AbstractArchiveFile#getCachedEntryLocator(ArchiveEntry)} and
+ * {@link AbstractArchiveFile#restoreCachedEntry(ArchiveEntry, long)}. Archive-wide information can be cached along
+ * with the entries by overriding {@link AbstractArchiveFile#writeCachedArchiveData(DataOutputStream)} and
+ * {@link AbstractArchiveFile#readCachedArchiveData(DataInputStream)}.</p>
+ *
+ * <p>The cache is disabled until a cache folder is set using {@link #setCacheFolder(AbstractFile)}.</p>
+ *
+ * @see AbstractArchiveFile#createEntriesTree()
+ */
+public class ArchiveEntryCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveEntryCache.class);
+
+    /** Default maximum total size of the cache files, in bytes */
+    public final static long DEFAULT_MAX_SIZE = 32*1024*1024;
+
+    /** Extension of the cache files */
+    private final static String CACHE_FILE_EXTENSION = ".entries";
+
+    /** Identifies cache files */
+    private final static int MAGIC = 0x6D75656E;
+
+    /** Version of the cache file format, to be incremented whenever the format changes */
+    private final static int FORMAT_VERSION = 2;
+
+    /** Minimum size of an entry in a cache file, in bytes, see {@link #writeEntry(DataOutputStream, ArchiveEntry, AbstractArchiveFile)} */
+    private final static int MIN_ENTRY_SIZE = 38;
+
+    /** Folder where cache files are stored, null if the cache is disabled */
+    private static AbstractFile cacheFolder;
+
+    /** Maximum total size of the cache files, in bytes */
+    private static long maxSize = DEFAULT_MAX_SIZE;
+
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private ArchiveEntryCache() {
+    }
+
+    /**
+     * Sets the folder where cache files are stored, <code>null</code> to disable the cache. The folder is created
+     * when entries are first cached, if it doesn't exist.
+     *
+     * @param folder the folder where cache files are stored, null to disable the cache
+     */
+    public static synchronized void setCacheFolder(AbstractFile folder) {
+        cacheFolder = folder;
+    }
+
+    /**
+     * Returns the folder where cache files are stored, <code>null</code> if the cache is disabled.
+     *
+     * @return the folder where cache files are stored, null if the cache is disabled
+     */
+    public static synchronized AbstractFile getCacheFolder() {
+        return cacheFolder;
+    }
+
+    /**
+     * Returns <code>true</code> if a cache folder has been set.
+     *
+     * @return true if a cache folder has been set
+     */
+    public static boolean isEnabled() {
+        return getCacheFolder()!=null;
+    }
+
+    /**
+     * Sets the maximum total size of the cache files, in bytes. The least recently used cache files are deleted
+     * the next time entries are cached, if the cache exceeds the new size.
+     *
+     * @param size the maximum total size of the cache files, in bytes
+     */
+    public static synchronized void setMaxSize(long size) {
+        maxSize = size;
+    }
+
+    /**
+     * Returns the maximum total size of the cache files, in bytes. {@link #DEFAULT_MAX_SIZE} is used unless it has
+     * been changed with {@link #setMaxSize(long)}.
+     *
+     * @return the maximum total size of the cache files, in bytes
+     */
+    public static synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Deletes all the cache files.
+     *
+     * @throws IOException if a cache file could not be deleted
+     */
+    public static synchronized void clear() throws IOException {
+        for(AbstractFile cacheFile : getCacheFiles())
+            cacheFile.delete();
+    }
+
+    /**
+     * Returns the cached entries of the given archive, <code>null</code> if the cache has no entries for this archive,
+     * or if the archive has changed since they were cached. A cache file that is corrupt is treated as if there were no
+     * entries for the archive. The cache file is marked as recently used.
+     *
+     * @param archive the archive whose entries to return
+     * @return the cached entries of the archive, null if there are none
+     */
+    static synchronized List<ArchiveEntry> getEntries(AbstractArchiveFile archive) {
+        AbstractFile cacheFile = getCacheFile(archive);
+        if(cacheFile==null || !cacheFile.exists())
+            return null;
+
+        try {
+            List<ArchiveEntry> entries;
+            DataInputStream din = new DataInputStream(new BufferedInputStream(cacheFile.getInputStream()));
+            try {
+                if(din.readInt()!=MAGIC
+                || din.readInt()!=FORMAT_VERSION
+                || !din.readUTF().equals(getKey(archive))
+                || din.readLong()!=archive.getSize()
+                || din.readLong()!=archive.getDate())
+                    return null;
+
+                // Don't trust lengths that the cache file is too small to hold
+                long cacheFileSize = cacheFile.getSize();
+                int nbEntries = din.readInt();
+                if(nbEntries<0 || (long)nbEntries*MIN_ENTRY_SIZE>cacheFileSize)
+                    return null;
+
+                entries = new ArrayList<>(nbEntries);
+                for(int i=0; i<nbEntries; i++)
+                    entries.add(readEntry(din, archive));
+
+                int archiveDataLength = din.readInt();
+                if(archiveDataLength<0 || archiveDataLength>cacheFileSize)
+                    return null;
+
+                byte[] archiveData = new byte[archiveDataLength];
+                din.readFully(archiveData);
+                if(archiveData.length>0)
+                    archive.readCachedArchiveData(new DataInputStream(new ByteArrayInputStream(archiveData)));
+            }
+            finally {
+                din.close();
+            }
+
+            // Mark the cache file as recently used
+            cacheFile.changeDate(System.currentTimeMillis());
+
+            return entries;
+        }
+        catch(IOException e) {
+            LOGGER.info("Could not read cached entries of "+archive.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the given entries of the archive, replacing any that were previously cached for it. The least recently
+     * used cache files are deleted if the cache exceeds its maximum size. Errors are logged and otherwise ignored.
+     *
+     * @param archive the archive the entries belong to
+     * @param entries all the entries of the archive
+     */
+    static synchronized void putEntries(AbstractArchiveFile archive, List<ArchiveEntry> entries) {
+        AbstractFile cacheFile = getCacheFile(archive);
+        if(cacheFile==null)
+            return;
+
+        try {
+            if(!cacheFolder.exists())
+                cacheFolder.mkdirs();
+
+            // Write to a temporary file first, so that the cache file is never seen half-written
+            AbstractFile tempFile = cacheFolder.getDirectChild(cacheFile.getName()+".tmp");
+            DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(tempFile.getOutputStream()));
+            try {
+                dout.writeInt(MAGIC);
+                dout.writeInt(FORMAT_VERSION);
+                dout.writeUTF(getKey(archive));
+                dout.writeLong(archive.getSize());
+                dout.writeLong(archive.getDate());
+
+                dout.writeInt(entries.size());
+                for(ArchiveEntry entry : entries)
+                    writeEntry(dout, entry, archive);
+
+                ByteArrayOutputStream archiveData = new ByteArrayOutputStream();
+                DataOutputStream archiveDataOut = new DataOutputStream(archiveData);
+                archive.writeCachedArchiveData(archiveDataOut);
+                archiveDataOut.flush();
+                dout.writeInt(archiveData.size());
+                archiveData.writeTo(dout);
+            }
+            catch(IOException e) {
+                dout.close();
+                tempFile.delete();
+                throw e;
+            }
+            dout.close();
+
+            tempFile.renameTo(cacheFile);
+
+            evictCacheFiles();
+        }
+        catch(IOException e) {
+            LOGGER.info("Could not cache entries of "+archive.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Deletes the least recently used cache files until the total size of the cache no longer exceeds its maximum.
+     */
+    private static void evictCacheFiles() throws IOException {
+        AbstractFile[] cacheFiles = getCacheFiles();
+
+        long totalSize = 0;
+        for(AbstractFile cacheFile : cacheFiles)
+            totalSize += cacheFile.getSize();
+
+        if(totalSize<=maxSize)
+            return;
+
+        Arrays.sort(cacheFiles, Comparator.comparingLong(AbstractFile::getDate));
+        for(int i=0; i<cacheFiles.length && totalSize>maxSize; i++) {
+            LOGGER.trace("evicting {}", cacheFiles[i].getName());
+            totalSize -= cacheFiles[i].getSize();
+            cacheFiles[i].delete();
+        }
+    }
+
+    /**
+     * Returns the cache files currently in the cache folder.
+     */
+    private static AbstractFile[] getCacheFiles() throws IOException {
+        if(cacheFolder==null || !cacheFolder.exists())
+            return new AbstractFile[0];
+
+        List<AbstractFile> cacheFiles = new ArrayList<>();
+        for(AbstractFile file : cacheFolder.ls()) {
+            if(file.getName().endsWith(CACHE_FILE_EXTENSION))
+                cacheFiles.add(file);
+        }
+
+        return cacheFiles.toArray(new AbstractFile[cacheFiles.size()]);
+    }
+
+    /**
+     * Returns the file in which the entries of the given archive are cached, <code>null</code> if the cache is
+     * disabled.
+     */
+    private static AbstractFile getCacheFile(AbstractArchiveFile archive) {
+        AbstractFile folder = getCacheFolder();
+        if(folder==null)
+            return null;
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(getKey(archive).getBytes(StandardCharsets.UTF_8));
+            return folder.getDirectChild(ByteUtils.toHexString(digest)+CACHE_FILE_EXTENSION);
+        }
+        catch(NoSuchAlgorithmException | IOException e) {
+            LOGGER.info("Could not resolve cache file of "+archive.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the string that identifies the given archive in the cache.
+     */
+    private static String getKey(AbstractArchiveFile archive) {
+        return archive.getURL().toString(false);
+    }
+
+    private static void writeEntry(DataOutputStream dout, ArchiveEntry entry, AbstractArchiveFile archive) throws IOException {
+        dout.writeUTF(entry.getPath());
+        dout.writeBoolean(entry.isDirectory());
+        dout.writeLong(entry.getDate());
+        dout.writeLong(entry.getSize());
+        dout.writeBoolean(entry.exists());
+
+        FilePermissions permissions = entry.getPermissions();
+        dout.writeInt(permissions.getIntValue());
+        dout.writeInt(permissions.getMask().getIntValue());
+
+        writeNullableString(dout, entry.getOwner());
+        writeNullableString(dout, entry.getGroup());
+
+        dout.writeLong(archive.getCachedEntryLocator(entry));
+    }
+
+    private static ArchiveEntry readEntry(DataInputStream din, AbstractArchiveFile archive) throws IOException {
+        ArchiveEntry entry = new ArchiveEntry(din.readUTF(), din.readBoolean(), din.readLong(), din.readLong(), din.readBoolean());
+        entry.setPermissions(new SimpleFilePermissions(din.readInt(), din.readInt()));
+        entry.setOwner(readNullableString(din));
+        entry.setGroup(readNullableString(din));
+
+        archive.restoreCachedEntry(entry, din.readLong());
+
+        return entry;
+    }
+
+    private static void writeNullableString(DataOutputStream dout, String s) throws IOException {
+        dout.writeBoolean(s!=null);
+        if(s!=null)
+            dout.writeUTF(s);
+    }
+
+    private static String readNullableString(DataInputStream din) throws IOException {
+        return din.readBoolean()?din.readUTF():null;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A node of an {@link ArchiveEntryTree}, whose user object is an {@link ArchiveEntry}. In addition to the list of
+ * children maintained by <code>DefaultMutableTreeNode</code>, each node keeps an index of its children by name, so that
+ * a child can be looked up in constant time regardless of the number of entries in the directory.
+ *
+ * <p>The index is kept up-to-date when children are inserted or removed through the regular
+ * <code>DefaultMutableTreeNode</code> methods, in constant time. If several children have the same name, the first one
+ * is indexed.</p>
+ */
+public class ArchiveEntryNode extends DefaultMutableTreeNode {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Name of this node in its parent's index, i.e. the entry's filename without trailing separator */
+    private final String name;
+
+    /** Children indexed by name, created when the first child is added */
+    private Map<String, ArchiveEntryNode> childIndex;
+
+    /** Number of children that are not indexed because another child has the same name, by name. Created when the
+     * first such child is added. */
+    private Map<String, Integer> duplicateCounts;
+
+    /**
+     * Creates a new node for the given entry.
+     *
+     * @param entry the entry this node corresponds to, <code>null</code> for the root node
+     * @param name name of the node in its parent's index
+     */
+    protected ArchiveEntryNode(ArchiveEntry entry, String name) {
+        super(entry, true);
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of this node in its parent's index.
+     *
+     * @return the name of this node in its parent's index
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the child node with the given name, <code>null</code> if there is none.
+     *
+     * @param name name of the child, without trailing separator
+     * @return the child node with the given name, <code>null</code> if there is none
+     */
+    public ArchiveEntryNode getChild(String name) {
+        return childIndex==null?null:childIndex.get(name);
+    }
+
+
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    @Override
+    public void insert(MutableTreeNode newChild, int childIndex) {
+        super.insert(newChild, childIndex);
+
+        if(newChild instanceof ArchiveEntryNode) {
+            if(this.childIndex==null)
+                this.childIndex = new HashMap<>();
+
+            ArchiveEntryNode node = (ArchiveEntryNode)newChild;
+            if(this.childIndex.putIfAbsent(node.name, node)!=null) {
+                if(duplicateCounts==null)
+                    duplicateCounts = new HashMap<>();
+
+                duplicateCounts.merge(node.name, 1, Integer::sum);
+            }
+        }
+    }
+
+    @Override
+    public void remove(int childIndex) {
+        MutableTreeNode child = (MutableTreeNode)getChildAt(childIndex);
+        super.remove(childIndex);
+
+        if(child instanceof ArchiveEntryNode && this.childIndex!=null) {
+            String childName = ((ArchiveEntryNode)child).name;
+            Integer duplicateCount = duplicateCounts==null?null:duplicateCounts.get(childName);
+            if(duplicateCount==null) {
+                // No other child has this name
+                this.childIndex.remove(childName, child);
+                return;
+            }
+
+            if(duplicateCount==1)
+                duplicateCounts.remove(childName);
+            else
+                duplicateCounts.put(childName, duplicateCount-1);
+
+            if(this.childIndex.get(childName)==child) {
+                // Index the next child with the same name, only children with duplicate names require a scan
+                int nbChildren = getChildCount();
+                for(int c=0; c<nbChildren; c++) {
+                    Object node = getChildAt(c);
+                    if(node instanceof ArchiveEntryNode && childName.equals(((ArchiveEntryNode)node).name)) {
+                        this.childIndex.put(childName, (ArchiveEntryNode)node);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeAllChildren() {
+        // Drop the index at once rather than updating it for each child
+        childIndex = null;
+        duplicateCounts = null;
+
+        super.removeAllChildren();
+    }
+}
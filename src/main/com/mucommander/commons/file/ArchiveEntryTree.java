@@ -19,26 +19,36 @@
 
 package com.mucommander.commons.file;
 
-import com.mucommander.commons.file.util.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.tree.DefaultMutableTreeNode;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Stores archive entries and organizes them in a tree structure that maps entries in the way they are organized
  * inside the archive. An instance of <code>ArchiveEntryTree</code> also acts as the root node: all entry nodes
  * are children of it (direct or indirect).
  *
+ * <p>Nodes are {@link ArchiveEntryNode} instances which index their children by name: adding an entry or looking one
+ * up takes a time proportional to the entry's depth, not to the number of entries in the directories it goes through.
+ * Names are interned at the tree level, so that directories that share the same name (e.g. <code>META-INF</code>,
+ * <code>src</code>) share the same name instance.</p>
+ *
  * @author Maxence Bernard
  */
-public class ArchiveEntryTree extends DefaultMutableTreeNode {
+public class ArchiveEntryTree extends ArchiveEntryNode {
     private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveEntryTree.class);
 
+    /** Names of the nodes of this tree, each name mapped onto itself */
+    private final Map<String, String> names = new HashMap<>();
+
     /**
      * Creates a new empty tree.
      */
     public ArchiveEntryTree() {
+        super(null, "");
     }
 
     /**
@@ -50,31 +60,21 @@ public class ArchiveEntryTree extends DefaultMutableTreeNode {
         String entryPath = entry.getPath();
         int entryDepth = entry.getDepth();
         int slashPos = 0;
-        DefaultMutableTreeNode node = this;
+        ArchiveEntryNode node = this;
         for(int d=1; d<=entryDepth; d++) {
+            String name = getName(entryPath, slashPos, d==entryDepth);
+
             if(d==entryDepth && !entry.isDirectory()) {
                 // create a leaf node for the entry
                 entry.setExists(true);      // the entry has to exist
-                node.add(new DefaultMutableTreeNode(entry, true));
+                node.add(new ArchiveEntryNode(entry, intern(name)));
                 break;
             }
 
-            String subPath = d==entryDepth?entryPath:entryPath.substring(0, (slashPos=entryPath.indexOf('/', slashPos)+1));
-
-            int nbChildren = node.getChildCount();
-            DefaultMutableTreeNode childNode = null;
-            boolean matchFound = false;
-            for(int c=0; c<nbChildren; c++) {
-                childNode = (DefaultMutableTreeNode)node.getChildAt(c);
-                // Path comparison is 'trailing slash insensitive'
-                if(PathUtils.pathEquals(((ArchiveEntry)childNode.getUserObject()).getPath(), subPath, "/")) {
-                    // Found a match
-                    matchFound = true;
-                    break;
-                }
-            }
+            // Name lookups are 'trailing slash insensitive'
+            ArchiveEntryNode childNode = node.getChild(name);
 
-            if(matchFound) {
+            if(childNode!=null) {
                 if(d==entryDepth) {
                     LOGGER.trace("Replacing entry for node "+childNode);
                     // Replace existing entry
@@ -88,15 +88,18 @@ public class ArchiveEntryTree extends DefaultMutableTreeNode {
                 if(d==entryDepth) {
                     // create a leaf node for the entry
                     entry.setExists(true);      // the entry has to exist
-                    node.add(new DefaultMutableTreeNode(entry, true));
+                    node.add(new ArchiveEntryNode(entry, intern(name)));
                 }
                 else {
+                    String subPath = entryPath.substring(0, entryPath.indexOf('/', slashPos)+1);
                     LOGGER.trace("Creating node for "+subPath);
-                    childNode = new DefaultMutableTreeNode(new ArchiveEntry(subPath, true, entry.getDate(), 0, true), true);
+                    childNode = new ArchiveEntryNode(new ArchiveEntry(subPath, true, entry.getDate(), 0, true), intern(name));
                     node.add(childNode);
                     node = childNode;
                 }
             }
+
+            slashPos = entryPath.indexOf('/', slashPos)+1;
         }
     }
 
@@ -115,29 +118,49 @@ public class ArchiveEntryTree extends DefaultMutableTreeNode {
     public DefaultMutableTreeNode findEntryNode(String entryPath) {
         int entryDepth = ArchiveEntry.getDepth(entryPath);
         int slashPos = 0;
-        DefaultMutableTreeNode currentNode = this;
+        ArchiveEntryNode currentNode = this;
         for(int d=1; d<=entryDepth; d++) {
-            String subPath = d==entryDepth?entryPath:entryPath.substring(0, (slashPos=entryPath.indexOf('/', slashPos)+1));
-
-            int nbChildren = currentNode.getChildCount();
-            DefaultMutableTreeNode matchNode = null;
-            for(int c=0; c<nbChildren; c++) {
-                DefaultMutableTreeNode childNode = (DefaultMutableTreeNode)currentNode.getChildAt(c);
-
-                // Path comparison is 'trailing slash insensitive'
-                if(PathUtils.pathEquals(((ArchiveEntry)childNode.getUserObject()).getPath(), subPath, "/")) {
-                    // Found the node, let's return it
-                    matchNode = childNode;
-                    break;
-                }
-            }
+            currentNode = currentNode.getChild(getName(entryPath, slashPos, d==entryDepth));
 
-            if(matchNode==null)
+            if(currentNode==null)
                 return null;    // No node maching the provided path, return null
 
-            currentNode = matchNode;
+            slashPos = entryPath.indexOf('/', slashPos)+1;
         }
 
         return currentNode;
     }
+
+    /**
+     * Returns the name of the path element that starts at the given position, without trailing separator.
+     *
+     * @param entryPath the entry path
+     * @param start position of the first character of the path element
+     * @param last <code>true</code> if the path element is the last one of the path
+     * @return the name of the path element that starts at the given position
+     */
+    private static String getName(String entryPath, int start, boolean last) {
+        int end;
+        if(last) {
+            end = entryPath.length();
+            if(end>start && entryPath.charAt(end-1)=='/')
+                end--;
+        }
+        else {
+            end = entryPath.indexOf('/', start);
+        }
+
+        return entryPath.substring(start, end);
+    }
+
+    /**
+     * Returns the instance of the given name that is shared by all the nodes of this tree.
+     *
+     * @param name a node name
+     * @return the shared instance of the given name
+     */
+    private String intern(String name) {
+        String internedName = names.putIfAbsent(name, name);
+        return internedName==null?name:internedName;
+    }
 }
@@ -21,6 +21,8 @@ package com.mucommander.commons.file;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,19 +86,19 @@ public class FileFactory {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileFactory.class);
 
     /** All registered protocol providers. */
-    private static Map<String, ProtocolProvider> protocolProviders = new Hashtable<>();
+    private static final Map<String, ProtocolProvider> protocolProviders = new ConcurrentHashMap<>();
 
     /** Local file provider to avoid hashtable lookups (faster). */
-    private static ProtocolProvider localFileProvider;
+    private static volatile ProtocolProvider localFileProvider;
 
-    /** Vector of registered ArchiveFormatMapping instances */
-    private static List<ArchiveFormatProvider> archiveFormatProvidersV = new Vector<>();
+    /** List of registered ArchiveFormatMapping instances */
+    private static final List<ArchiveFormatProvider> archiveFormatProvidersV = new CopyOnWriteArrayList<>();
 
     /** Array of registered FileProtocolMapping instances, for quicker access */
-    private static ArchiveFormatProvider[] archiveFormatProviders;
+    private static volatile ArchiveFormatProvider[] archiveFormatProviders;
 
     /** Contains a FilePool instance for each registered scheme */
-    private static final HashMap<String, FilePool> FILE_POOL_MAP = new HashMap<>();
+    private static final Map<String, FilePool> FILE_POOL_MAP = new ConcurrentHashMap<>();
 
     /** System temp directory */
     private static final AbstractFile TEMP_DIRECTORY;
@@ -243,12 +245,23 @@ public class FileFactory {
         return protocolProviders.keySet().iterator();
     }
 
+    /**
+     * Returns the pool of file instances of the specified protocol, <code>null</code> if the protocol is not
+     * registered. The pool's counters give an insight into the efficiency of the pool for the protocol.
+     *
+     * @param protocol identifier of the protocol whose file pool should be returned
+     * @return the pool of file instances of the specified protocol, <code>null</code> if the protocol is not registered
+     */
+    public static FilePool getFilePool(String protocol) {
+        return FILE_POOL_MAP.get(protocol.toLowerCase());
+    }
+
     /**
      * Registers a new <code>ArchiveFormatProvider</code>.
      *
      * @param provider the <code>ArchiveFormatProvider</code> to register.
      */
-    public static void registerArchiveFormat(ArchiveFormatProvider provider) {
+    public static synchronized void registerArchiveFormat(ArchiveFormatProvider provider) {
         archiveFormatProvidersV.add(provider);
         updateArchiveFormatProviderArray();
     }
@@ -265,7 +278,7 @@ public class FileFactory {
      * @param provider the <code>ArchiveFormatProvider</code> to unregister.
      * @see #getArchiveFormatProvider(String)
      */
-    public static void unregisterArchiveFormat(ArchiveFormatProvider provider) {
+    public static synchronized void unregisterArchiveFormat(ArchiveFormatProvider provider) {
         int index = archiveFormatProvidersV.indexOf(provider);
 
         if(index!=-1) {
@@ -275,11 +288,11 @@ public class FileFactory {
     }
 
     /**
-     * Updates the <code>ArchiveFormatProvider</code> array to reflect the contents of the Vector.
+     * Updates the <code>ArchiveFormatProvider</code> array to reflect the contents of the list. The array is replaced
+     * rather than modified, so that it can be iterated without locking.
      */
     private static void updateArchiveFormatProviderArray() {
-        archiveFormatProviders = new ArchiveFormatProvider[archiveFormatProvidersV.size()];
-        archiveFormatProvidersV.toArray(archiveFormatProviders);
+        archiveFormatProviders = archiveFormatProvidersV.toArray(new ArchiveFormatProvider[0]);
     }
 
     /**
@@ -434,14 +447,14 @@ public class FileFactory {
      */
     public static AbstractFile getFile(FileURL fileURL, AbstractFile parent, Authenticator authenticator, Object... instantiationParams) throws IOException {
         String protocol = fileURL.getScheme();
-        if (!isRegisteredProtocol(protocol)) {
+        FilePool filePool = FILE_POOL_MAP.get(protocol.toLowerCase());
+        if (filePool == null) {
             throw new IOException("Unsupported file protocol: " + protocol);
         }
 
         // Lookup the pool for an existing AbstractFile instance, only if there are no instantiationParams.
         // If there are instantiationParams (the file was created by the AbstractFile implementation directly, that is
         // by ls()), any existing file in the pool must be replaced with a new, more up-to-date one.
-        FilePool filePool = FILE_POOL_MAP.get(fileURL.getScheme().toLowerCase());
         if (instantiationParams.length == 0) {
             // Note: FileURL#equals(Object) and #hashCode() take into account credentials and properties and are
             // trailing slash insensitive (e.g. '/root' and '/root/' URLS are one and the same)
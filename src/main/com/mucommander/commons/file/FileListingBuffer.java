@@ -0,0 +1,144 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file;
+
+import com.mucommander.commons.file.filter.FileFilter;
+
+import java.util.Arrays;
+
+/**
+ * FileListingBuffer is used by <code>AbstractFile</code> implementations to report children to a
+ * {@link FileListingHandler} in chunks: files are {@link #add(AbstractFile) added} one at a time as they are listed,
+ * filtered, and passed on to the handler whenever {@link #getChunkSize()} of them have been buffered.
+ * {@link #flush()} must be called when the listing is complete to report the files that remain in the buffer.
+ *
+ * <p>Once the handler has cancelled the listing, files added to the buffer are discarded; implementations should
+ * check the value returned by {@link #add(AbstractFile)} to stop listing as soon as possible.</p>
+ *
+ * @see FileListingHandler
+ */
+public class FileListingBuffer {
+
+    /** Default number of files reported to the handler at once */
+    public final static int DEFAULT_CHUNK_SIZE = 1000;
+
+    /** Filters out files before they are buffered, may be null */
+    private final FileFilter filter;
+
+    /** The handler files are reported to */
+    private final FileListingHandler handler;
+
+    /** Files that haven't been reported yet */
+    private final AbstractFile[] buffer;
+
+    /** Number of files in the buffer */
+    private int nbFiles;
+
+    /** True if the handler has cancelled the listing */
+    private boolean cancelled;
+
+
+    /**
+     * Creates a new <code>FileListingBuffer</code> that reports files to the given handler in chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} files.
+     *
+     * @param filter files that do not match this filter are discarded, may be <code>null</code>
+     * @param handler the handler files are reported to
+     */
+    public FileListingBuffer(FileFilter filter, FileListingHandler handler) {
+        this(filter, handler, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new <code>FileListingBuffer</code> that reports files to the given handler in chunks of the specified
+     * size.
+     *
+     * @param filter files that do not match this filter are discarded, may be <code>null</code>
+     * @param handler the handler files are reported to
+     * @param chunkSize maximum number of files reported to the handler at once
+     */
+    public FileListingBuffer(FileFilter filter, FileListingHandler handler, int chunkSize) {
+        this.filter = filter;
+        this.handler = handler;
+        this.buffer = new AbstractFile[chunkSize];
+    }
+
+    /**
+     * Adds the given file to the buffer if it matches the filter, and reports the buffered files to the handler if the
+     * buffer is full.
+     *
+     * @param file the file to add
+     * @return <code>false</code> if the listing has been cancelled by the handler and should be stopped
+     */
+    public boolean add(AbstractFile file) {
+        if (cancelled) {
+            return false;
+        }
+
+        if (filter == null || filter.match(file)) {
+            buffer[nbFiles++] = file;
+            if (nbFiles == buffer.length) {
+                return flush();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reports the files that are currently buffered to the handler, if there are any.
+     *
+     * @return <code>false</code> if the listing has been cancelled by the handler and should be stopped
+     */
+    public boolean flush() {
+        if (cancelled) {
+            return false;
+        }
+
+        if (nbFiles > 0) {
+            AbstractFile[] files = new AbstractFile[nbFiles];
+            System.arraycopy(buffer, 0, files, 0, nbFiles);
+            Arrays.fill(buffer, 0, nbFiles, null);
+            nbFiles = 0;
+
+            cancelled = !handler.filesListed(files);
+        }
+
+        return !cancelled;
+    }
+
+    /**
+     * Returns <code>true</code> if the handler has cancelled the listing.
+     *
+     * @return <code>true</code> if the handler has cancelled the listing
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the maximum number of files reported to the handler at once.
+     *
+     * @return the maximum number of files reported to the handler at once
+     */
+    public int getChunkSize() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file;
+
+/**
+ * FileListingHandler receives the children of a folder as they are being listed by
+ * {@link AbstractFile#ls(com.mucommander.commons.file.filter.FileFilter, FileListingHandler)}, one chunk at a time,
+ * instead of all at once when the listing is complete.
+ *
+ * @see AbstractFile#ls(com.mucommander.commons.file.filter.FileFilter, FileListingHandler)
+ * @see FileListingBuffer
+ */
+public interface FileListingHandler {
+
+    /**
+     * Called in the listing thread with the next chunk of children. Chunks are never empty, and a file is never
+     * reported twice. Returning <code>false</code> cancels the listing: this method is not called again, and the
+     * listing method returns normally as soon as possible.
+     *
+     * @param files the next chunk of children
+     * @return <code>true</code> to continue listing, <code>false</code> to cancel it
+     */
+    boolean filesListed(AbstractFile[] files);
+}
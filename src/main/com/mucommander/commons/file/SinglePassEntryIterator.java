@@ -0,0 +1,426 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import com.mucommander.commons.io.SinkOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>SinglePassEntryIterator</code> is an {@link ArchiveEntryIterator} that extracts a set of entries in a single
+ * pass over the archive, for formats whose entries are expensive to extract one at a time, such as solid archives in
+ * which extracting an entry requires decompressing all the entries that precede it.
+ *
+ * <p>The entries to read are extracted in the order they are iterated, by {@link #extractEntries(List)} which runs on
+ * a separate thread and writes each entry to the stream returned by {@link #getEntryOutputStream(ArchiveEntry)}.
+ * The extracted data is handed to the thread that iterates through the entries in small chunks, and is read with the
+ * stream returned by {@link #getEntryInputStream(ArchiveEntry)}: extraction is thus suspended whenever the reader
+ * falls behind, and only a bounded amount of data is held in memory. Entries that are not read, or not read entirely,
+ * are simply skipped.</p>
+ *
+ * <p>Archive implementations return an instance of this class from
+ * {@link AbstractArchiveFile#getEntryIterator(Collection)}, and have
+ * {@link AbstractArchiveFile#getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)} use
+ * {@link #getEntryInputStream(ArchiveEntry)} when given such an iterator.</p>
+ */
+public abstract class SinglePassEntryIterator extends WrapperArchiveEntryIterator {
+
+    /** Threads that extract the entries, shared by all instances */
+    private final static ExecutorService EXTRACTORS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "SinglePassEntryIterator extractor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Maximum number of chunks held in memory at once */
+    private final static int MAX_PENDING_CHUNKS = 16;
+
+    /** Ordinal of the chunk that signals the end of the extraction */
+    private final static int EXTRACTION_END = Integer.MAX_VALUE;
+
+    /** The entries to extract, in the order they are iterated */
+    private final List<ArchiveEntry> entriesToRead;
+
+    /** Position of each entry to extract in {@link #entriesToRead} */
+    private final Map<ArchiveEntry, Integer> ordinals = new IdentityHashMap<>();
+
+    /** Chunks of extracted data, in the order they were extracted */
+    private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+
+    /** Chunk that was taken from the queue but belongs to an entry after the one being read */
+    private Chunk pendingChunk;
+
+    /** Ordinal of the first entry that can still be read */
+    private int nextOrdinal;
+
+    /** True once the extraction has been started */
+    private boolean started;
+
+    /** True once this iterator has been closed */
+    private volatile boolean closed;
+
+
+    /**
+     * Creates a new <code>SinglePassEntryIterator</code> that iterates through the given entries and extracts those
+     * that are equal to one of the entries to read, directories excepted.
+     *
+     * @param entries all the entries of the archive, in the order they are stored
+     * @param entriesToRead the entries the caller is going to read
+     */
+    public SinglePassEntryIterator(List<ArchiveEntry> entries, Collection<ArchiveEntry> entriesToRead) {
+        super(entries.iterator());
+
+        Set<ArchiveEntry> wantedEntries = entriesToRead instanceof Set ? (Set<ArchiveEntry>)entriesToRead : new HashSet<>(entriesToRead);
+        List<ArchiveEntry> toRead = new ArrayList<>();
+        for(ArchiveEntry entry : entries) {
+            if(!entry.isDirectory() && wantedEntries.contains(entry)) {
+                ordinals.put(entry, toRead.size());
+                toRead.add(entry);
+            }
+        }
+        this.entriesToRead = Collections.unmodifiableList(toRead);
+    }
+
+    /**
+     * Extracts the given entries, in the given order, writing each of them to the stream returned by
+     * {@link #getEntryOutputStream(ArchiveEntry)} and closing it once the entry has been entirely written.
+     * This method is called once, on a separate thread, the first time an entry is read.
+     *
+     * @param entriesToRead the entries to extract, in the order they are stored in the archive
+     * @throws IOException if an error occurred while extracting the entries
+     */
+    protected abstract void extractEntries(List<ArchiveEntry> entriesToRead) throws IOException;
+
+    /**
+     * Returns the stream the given entry's data is to be written to by {@link #extractEntries(List)}. The stream must
+     * be closed once the entry has been entirely written, otherwise the entry will be reported as truncated.
+     * Writing blocks while the data that was previously extracted has not been read, and fails once this iterator has
+     * been closed.
+     *
+     * @param entry one of the entries to extract
+     * @return the stream the given entry's data is to be written to, one that discards data if the entry is not to be
+     * read
+     */
+    protected OutputStream getEntryOutputStream(ArchiveEntry entry) {
+        Integer ordinal = ordinals.get(entry);
+        if(ordinal==null)
+            return new SinkOutputStream();
+
+        return new EntryOutputStream(ordinal);
+    }
+
+    /**
+     * Returns a stream that reads the given entry's extracted data. The entry must have been returned by this iterator,
+     * and the entries must be read in the order they are iterated.
+     *
+     * @param entry an entry returned by this iterator
+     * @return a stream reading the given entry's data, <code>null</code> if the entry is not one of the entries to read,
+     * or if an entry that follows it has already been read
+     * @throws IOException if this iterator has been closed
+     */
+    public synchronized InputStream getEntryInputStream(ArchiveEntry entry) throws IOException {
+        if(closed)
+            throw new IOException("Iterator closed");
+
+        Integer ordinal = ordinals.get(entry);
+        if(ordinal==null || ordinal<nextOrdinal)
+            return null;
+
+        if(!started) {
+            started = true;
+            EXTRACTORS.execute(this::runExtraction);
+        }
+
+        nextOrdinal = ordinal+1;
+        return new EntryInputStream(ordinal);
+    }
+
+    /**
+     * Runs {@link #extractEntries(List)} and signals the end of the extraction, or the error that interrupted it.
+     */
+    private void runExtraction() {
+        Chunk lastChunk;
+        try {
+            extractEntries(entriesToRead);
+            lastChunk = new Chunk(EXTRACTION_END, null, 0);
+        }
+        catch(IOException e) {
+            lastChunk = new Chunk(EXTRACTION_END, e);
+        }
+        catch(RuntimeException e) {
+            lastChunk = new Chunk(EXTRACTION_END, new IOException(e));
+        }
+
+        try {
+            putChunk(lastChunk);
+        }
+        catch(IOException e) {
+            // The iterator has been closed, there is no one to tell
+        }
+    }
+
+    /**
+     * Adds the given chunk to the queue, waiting for room if needed.
+     *
+     * @throws IOException if this iterator has been closed
+     */
+    private void putChunk(Chunk chunk) throws IOException {
+        try {
+            while(!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if(closed)
+                    throw new IOException("Iterator closed");
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Returns the next chunk of extracted data, waiting for it if needed.
+     */
+    private synchronized Chunk takeChunk() throws IOException {
+        if(closed)
+            throw new IOException("Iterator closed");
+
+        if(pendingChunk!=null) {
+            Chunk chunk = pendingChunk;
+            pendingChunk = null;
+            return chunk;
+        }
+
+        try {
+            return chunks.take();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Puts back a chunk that belongs to an entry after the one being read.
+     */
+    private synchronized void putBackChunk(Chunk chunk) {
+        pendingChunk = chunk;
+    }
+
+
+    ////////////////////////////////////////////////
+    // WrapperArchiveEntryIterator implementation //
+    ////////////////////////////////////////////////
+
+    /**
+     * Stops the extraction and discards the data that has not been read.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        chunks.clear();
+        // Wakes up a reader that is waiting for data
+        chunks.offer(new Chunk(EXTRACTION_END, new IOException("Iterator closed")));
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * A piece of an entry's data, the end of an entry when it has no data, or an error.
+     */
+    private static class Chunk {
+        private final int ordinal;
+        private final byte[] data;
+        private final int length;
+        private final IOException error;
+
+        private Chunk(int ordinal, byte[] data, int length) {
+            this.ordinal = ordinal;
+            this.data = data;
+            this.length = length;
+            this.error = null;
+        }
+
+        private Chunk(int ordinal, IOException error) {
+            this.ordinal = ordinal;
+            this.data = null;
+            this.length = 0;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Cuts the data written by the extraction into chunks tagged with the entry's ordinal.
+     */
+    private class EntryOutputStream extends OutputStream {
+
+        /** Size of the chunks the data is handed over in */
+        private final static int CHUNK_SIZE = 64*1024;
+
+        private final int ordinal;
+        private byte[] buffer;
+        private int bufferLength;
+        private boolean entryClosed;
+
+        private EntryOutputStream(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if(closed)
+                throw new IOException("Iterator closed");
+
+            while(len>0) {
+                if(buffer==null)
+                    buffer = new byte[CHUNK_SIZE];
+
+                int n = Math.min(len, CHUNK_SIZE-bufferLength);
+                System.arraycopy(b, off, buffer, bufferLength, n);
+                bufferLength += n;
+                off += n;
+                len -= n;
+
+                if(bufferLength==CHUNK_SIZE)
+                    flushChunk();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if(bufferLength==0)
+                return;
+
+            putChunk(new Chunk(ordinal, buffer, bufferLength));
+            buffer = null;
+            bufferLength = 0;
+        }
+
+        /**
+         * Hands the remaining data over and signals the end of the entry.
+         */
+        @Override
+        public void close() throws IOException {
+            if(entryClosed)
+                return;
+            entryClosed = true;
+
+            flushChunk();
+            putChunk(new Chunk(ordinal, null, 0));
+        }
+    }
+
+    /**
+     * Reads an entry's chunks, skipping those of the entries that precede it.
+     */
+    private class EntryInputStream extends InputStream {
+
+        private final int ordinal;
+        private Chunk chunk;
+        private int chunkOffset;
+        private boolean eof;
+
+        private EntryInputStream(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * Makes sure a chunk with unread data is available, returns false if the end of the entry has been reached.
+         */
+        private boolean fillChunk() throws IOException {
+            if(eof)
+                return false;
+
+            while(chunk==null || chunkOffset==chunk.length) {
+                Chunk next = takeChunk();
+                if(next.ordinal<ordinal)
+                    continue;       // Data of a previous entry that was not read entirely
+
+                if(next.ordinal>ordinal) {
+                    // The end of the extraction or the data of the next entry: this entry is incomplete or missing
+                    putBackChunk(next);
+                    if(next.error!=null)
+                        throw next.error;
+                    throw new IOException("Entry "+entriesToRead.get(ordinal).getPath()+" could not be extracted entirely");
+                }
+
+                if(next.data==null) {
+                    eof = true;
+                    chunk = null;
+                    return false;
+                }
+
+                chunk = next;
+                chunkOffset = 0;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(!fillChunk())
+                return -1;
+
+            return chunk.data[chunkOffset++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(len==0)
+                return 0;
+
+            if(!fillChunk())
+                return -1;
+
+            int n = Math.min(len, chunk.length-chunkOffset);
+            System.arraycopy(chunk.data, chunkOffset, b, off, n);
+            chunkOffset += n;
+
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return chunk==null ? 0 : chunk.length-chunkOffset;
+        }
+    }
+}
@@ -24,12 +24,14 @@ import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.io.BufferedRandomOutputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
+import com.mucommander.commons.io.compress.ParallelBzip2OutputStream;
+import com.mucommander.commons.io.compress.ParallelCompressorOutputStream;
+import com.mucommander.commons.io.compress.ParallelGzipOutputStream;
 import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
 
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.zip.GZIPOutputStream;
 //import org.apache.tools.bzip2.CBZip2OutputStream;
 
 
@@ -218,6 +220,22 @@ public abstract class Archiver {
         // No-op
     }
 
+    /**
+     * Sets the number of threads that compress the entries of the archive, for formats whose compression can be
+     * split across several threads. This method must be called before the first entry is created, it has no effect
+     * for the other formats.
+     *
+     * <p>This implementation sets the number of threads of the underlying stream if it is a
+     * {@link ParallelCompressorOutputStream}, as is the case of the Gzip and Bzip2 based formats.
+     * Archiver implementations that compress on several threads by other means must override this method.
+     *
+     * @param nbThreads the number of threads that compress the entries, 1 to compress them on the calling thread
+     */
+    public void setCompressionThreads(int nbThreads) {
+        if(out instanceof ParallelCompressorOutputStream)
+            ((ParallelCompressorOutputStream)out).setThreads(nbThreads);
+    }
+
 
     /**
      * Normalizes the entry path, that is :
@@ -304,19 +322,19 @@ public abstract class Archiver {
                 archiver = new ZipArchiver(out);
                 break;
             case GZ_FORMAT:
-                archiver = new SingleFileArchiver(new GZIPOutputStream(out));
+                archiver = new SingleFileArchiver(new ParallelGzipOutputStream(out));
                 break;
             case BZ2_FORMAT:
-                archiver = new SingleFileArchiver(createBzip2OutputStream(out));
+                archiver = new SingleFileArchiver(new ParallelBzip2OutputStream(out));
                 break;
             case TAR_FORMAT:
                 archiver = new TarArchiver(out);
                 break;
             case TAR_GZ_FORMAT:
-                archiver = new TarArchiver(new GZIPOutputStream(out));
+                archiver = new TarArchiver(new ParallelGzipOutputStream(out));
                 break;
             case TAR_BZ2_FORMAT:
-                archiver = new TarArchiver(createBzip2OutputStream(out));
+                archiver = new TarArchiver(new ParallelBzip2OutputStream(out));
                 break;
             case ISO_FORMAT:
                 throw new IllegalStateException("ISO archiving not supported by stream");
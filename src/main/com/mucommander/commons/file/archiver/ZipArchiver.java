@@ -55,6 +55,14 @@ class ZipArchiver extends Archiver {
     public void setComment(String comment) {
         zos.setComment(comment);
     } 
+
+    /**
+     * Overrides Archiver's setCompressionThreads method as Zip entries can be compressed in parallel chunks.
+     */
+    @Override
+    public void setCompressionThreads(int nbThreads) {
+        zos.setCompressionThreads(nbThreads);
+    }
 	
 
     /////////////////////////////
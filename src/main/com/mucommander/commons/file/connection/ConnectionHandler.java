@@ -45,6 +45,9 @@ public abstract class ConnectionHandler {
     /** True if this ConnectionHandler is currently locked */
     protected boolean isLocked;
 
+    /** Number of threads currently sharing this ConnectionHandler, see {@link ConnectionPool#getSharedConnectionHandler} */
+    protected int nbSharedUses;
+
     /** Time at which the connection managed by this ConnectionHandler was last used */
     protected long lastActivityTimestamp;
 
@@ -146,7 +149,7 @@ public abstract class ConnectionHandler {
             isLocked = false;
         }
 
-        ConnectionPool.notifyConnectionHandlerLockReleased();
+        ConnectionPool.notifyConnectionHandlerLockReleased(this);
 
         return true;
     }
@@ -160,6 +163,67 @@ public abstract class ConnectionHandler {
         return isLocked;
     }
 
+    /**
+     * Registers a new thread sharing this ConnectionHandler. Called by {@link ConnectionPool#getSharedConnectionHandler}.
+     */
+    synchronized void addSharedUse() {
+        nbSharedUses++;
+    }
+
+    /**
+     * Notifies this ConnectionHandler that a thread which obtained it from
+     * {@link ConnectionPool#getSharedConnectionHandler} no longer uses it. Returns false if it is not shared.
+     *
+     * @return true if the shared use could be released, false if this ConnectionHandler is not shared
+     */
+    public boolean releaseSharedUse() {
+        synchronized(this) {
+            if(nbSharedUses==0) {
+                LOGGER.info("!!!!! releaseSharedUse() returning false, should not happen !!!!!", new Throwable());
+                return false;
+            }
+
+            if(--nbSharedUses>0)
+                return true;
+        }
+
+        ConnectionPool.notifyConnectionHandlerLockReleased(this);
+
+        return true;
+    }
+
+    /**
+     * Returns the number of threads currently sharing this ConnectionHandler.
+     *
+     * @return the number of threads currently sharing this ConnectionHandler
+     */
+    public synchronized int getSharedUseCount() {
+        return nbSharedUses;
+    }
+
+    /**
+     * Returns <code>true</code> if this ConnectionHandler is currently locked or shared by at least one thread.
+     * {@link ConnectionPool} neither closes nor keeps alive the connection of a ConnectionHandler that is in use.
+     *
+     * @return <code>true</code> if this ConnectionHandler is currently locked or shared
+     */
+    public synchronized boolean isInUse() {
+        return isLocked || nbSharedUses>0;
+    }
+
+    /**
+     * Returns <code>true</code> if the connection can serve the requests of several threads at the same time, in
+     * which case this ConnectionHandler can be shared using {@link ConnectionPool#getSharedConnectionHandler} rather
+     * than locked by each thread.
+     *
+     * <p>This default implementation returns <code>false</code>.</p>
+     *
+     * @return <code>true</code> if the connection can serve the requests of several threads at the same time
+     */
+    public boolean isMultiplexed() {
+        return false;
+    }
+
 
     /**
      * Updates the time at which the connection managed by this ConnectionHandler was last used to now (current time).
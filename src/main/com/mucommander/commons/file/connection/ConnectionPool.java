@@ -22,6 +22,8 @@ import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,95 +42,270 @@ public class ConnectionPool implements Runnable {
     /** Singleton instance */
     private static ConnectionPool instance = new ConnectionPool();
 
-    /** List of registered ConnectionHandler */
-    private final static List<ConnectionHandler> connectionHandlers = new ArrayList<>();
+    /** Registered ConnectionHandler, grouped by server so that each group can be searched and locked independently */
+    private final static Map<String, List<ConnectionHandler>> connectionHandlers = new ConcurrentHashMap<>();
 
     /** The thread that monitors connections, null if there currently is no registered ConnectionHandler */
-    private static Thread monitorThread;
+    private static volatile Thread monitorThread;
 
     /** Controls how of often the thread monitor checks connections */
     private final static int MONITOR_SLEEP_PERIOD = 1000;
 
+    /** Default maximum number of simultaneous connections per realm/credentials combo */
+    public final static int DEFAULT_MAX_CONNECTIONS_PER_REALM = 4;
+
     /** Maximum number of simultaneous connections per realm/credentials combo */
-    private final static int MAX_CONNECTIONS_PER_REALM = 4;
+    private static volatile int maxConnectionsPerRealm = DEFAULT_MAX_CONNECTIONS_PER_REALM;
+
+
+    /**
+     * Sets the maximum number of simultaneous connections per realm/credentials combo. When it is reached, threads
+     * that need to lock a connection wait for one to be released. Connections that are already open are not closed
+     * if the new maximum is lower than the number of open connections.
+     *
+     * <p>By default, this value is {@link #DEFAULT_MAX_CONNECTIONS_PER_REALM}.</p>
+     *
+     * @param max the maximum number of simultaneous connections per realm/credentials combo, must be at least 1
+     */
+    public static void setMaxConnectionsPerRealm(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max=" + max);
+        }
+        maxConnectionsPerRealm = max;
+    }
+
+    /**
+     * Returns the maximum number of simultaneous connections per realm/credentials combo.
+     *
+     * @return the maximum number of simultaneous connections per realm/credentials combo
+     */
+    public static int getMaxConnectionsPerRealm() {
+        return maxConnectionsPerRealm;
+    }
+
+    /**
+     * Returns the key of the group of ConnectionHandler the given realm belongs to. Realms that are equal have the
+     * same key, realms with the same key are not necessarily equal.
+     */
+    private static String getRealmKey(FileURL realm) {
+        String host = realm.getHost();
+        return (realm.getScheme() + "://" + (host == null ? "" : host)).toLowerCase();
+    }
+
+    /**
+     * Returns the ConnectionHandler registered for the server of the given realm, creating the list if necessary.
+     * The list must be synchronized on while it is accessed, and checked with {@link #isRegistered(String, List)}
+     * once it is: the monitor thread removes the lists that become empty.
+     */
+    private static List<ConnectionHandler> getRealmConnectionHandlers(String realmKey) {
+        return connectionHandlers.computeIfAbsent(realmKey, key -> new ArrayList<>());
+    }
+
+    /**
+     * Returns <code>true</code> if the given list is still the one registered for the given key. Must be called while
+     * the list is locked.
+     */
+    private static boolean isRegistered(String realmKey, List<ConnectionHandler> realmConnHandlers) {
+        return connectionHandlers.get(realmKey) == realmConnHandlers;
+    }
 
 
     public static ConnectionHandler getConnectionHandler(ConnectionHandlerFactory connectionHandlerFactory, FileURL url, boolean acquireLock) throws InterruptedIOException {
         FileURL realm = url.getRealm();
+        String realmKey = getRealmKey(realm);
+        Credentials urlCredentials = url.getCredentials();
+        ConnectionHandler connHandler;
+
+        while (true) {
+            List<ConnectionHandler> realmConnHandlers = getRealmConnectionHandlers(realmKey);
+            synchronized(realmConnHandlers) {      // Ensures that monitor thread is not currently changing the list while we access it
+                // The list may have been removed by the monitor thread once empty, a new one has to be retrieved
+                if (!isRegistered(realmKey, realmConnHandlers)) {
+                    continue;
+                }
 
-        while(true) {
-            synchronized(connectionHandlers) {      // Ensures that monitor thread is not currently changing the list while we access it
-                Credentials urlCredentials = url.getCredentials();
                 int matchingConnHandlers = 0;
 
                 // Try and find an appropriate existing ConnectionHandler
-                for (ConnectionHandler connHandler : connectionHandlers) {
-                	// ConnectionHandler must match the realm and credentials and must not be locked
-                	if (connHandler.equals(realm, urlCredentials)) {
-                		matchingConnHandlers++;
-                		synchronized(connHandler) {     // Ensures that lock remains unchanged while we access/update it
-                			if (!connHandler.isLocked()) {
-                				// Try to acquire lock if a lock was requested
-                				if(!acquireLock || connHandler.acquireLock()) {
-                					LOGGER.info("returning ConnectionHandler {}, realm = {}", connHandler, realm);
-
-                					// Update last activity timestamp to now
-                					connHandler.updateLastActivityTimestamp();
-
-                					return connHandler;
-                				}
-                			}
-                		}
-                	}
-                    
-                    if (matchingConnHandlers == MAX_CONNECTIONS_PER_REALM) {
-                        LOGGER.info("Maximum number of connection per realm reached, waiting for one to be removed or released...");
-                        try {
-                            // Wait for a ConnectionHandler to be released or removed from the pool
-                            final int timeout = 5000;
-                            long t0 = System.currentTimeMillis();
-                            connectionHandlers.wait(timeout);      // relinquishes the lock on connectionHandlers
-                            if (System.currentTimeMillis() - t0 > timeout) {
-                                throw new InterruptedIOException();
-                            }
-                            break;
-                        } catch(InterruptedException e) {
-                            LOGGER.info("Interrupted while waiting on a connection for {}", url, e);
-                            throw new InterruptedIOException();
+                for (ConnectionHandler realmConnHandler : realmConnHandlers) {
+                    // ConnectionHandler must match the realm and credentials and must not be locked
+                    if (!realmConnHandler.equals(realm, urlCredentials)) {
+                        continue;
+                    }
+                    matchingConnHandlers++;
+                    synchronized(realmConnHandler) {     // Ensures that lock remains unchanged while we access/update it
+                        // A shared ConnectionHandler can't be locked until all the threads sharing it have released it
+                        if (!realmConnHandler.isLocked() && (!acquireLock || (realmConnHandler.getSharedUseCount() == 0 && realmConnHandler.acquireLock()))) {
+                            LOGGER.info("returning ConnectionHandler {}, realm = {}", realmConnHandler, realm);
+
+                            // Update last activity timestamp to now
+                            realmConnHandler.updateLastActivityTimestamp();
+
+                            return realmConnHandler;
                         }
                     }
                 }
 
-                if (matchingConnHandlers == MAX_CONNECTIONS_PER_REALM) {
+                if (matchingConnHandlers >= maxConnectionsPerRealm) {
+                    waitForConnectionHandler(realmConnHandlers, url);
                     continue;
                 }
 
                 // No suitable ConnectionHandler found, create a new one
-                ConnectionHandler connHandler = connectionHandlerFactory.createConnectionHandler(url);
+                connHandler = connectionHandlerFactory.createConnectionHandler(url);
 
                 // Acquire lock if a lock was requested
                 if (acquireLock) {
                     connHandler.acquireLock();
                 }
 
-                LOGGER.info("adding new ConnectionHandler {}, realm = {}", connHandler, connHandler.getRealm());
+                addConnectionHandler(realmConnHandlers, connHandler);
+                break;
+            }
+        }
+
+        startMonitorThread();
+
+        return connHandler;
+    }
+
+    /**
+     * Returns a ConnectionHandler for the given URL that the calling thread shares with other threads. Only
+     * {@link ConnectionHandler#isMultiplexed() multiplexed} ConnectionHandler are shared, and the one with the fewest
+     * users is returned. A new ConnectionHandler is created if there is none, or if all of them are in use, as long as
+     * the maximum number of connections per realm hasn't been reached, so that independent transfers get their own
+     * connection. Once it has been reached, a ConnectionHandler that is in use is shared, or if all of them are
+     * locked, this method waits for one to be released or removed like
+     * {@link #getConnectionHandler(ConnectionHandlerFactory, FileURL, boolean)} does.
+     *
+     * <p>The factory should create multiplexed ConnectionHandler. The returned ConnectionHandler must be released
+     * by calling {@link ConnectionHandler#releaseSharedUse()} once it is no longer used.</p>
+     *
+     * @param connectionHandlerFactory creates the ConnectionHandler if a new one is needed
+     * @param url the location to connect to
+     * @return a shared ConnectionHandler for the given URL
+     * @throws InterruptedIOException if the calling thread was interrupted or timed out while waiting for a
+     * ConnectionHandler to be released
+     */
+    public static ConnectionHandler getSharedConnectionHandler(ConnectionHandlerFactory connectionHandlerFactory, FileURL url) throws InterruptedIOException {
+        FileURL realm = url.getRealm();
+        String realmKey = getRealmKey(realm);
+        Credentials urlCredentials = url.getCredentials();
+        ConnectionHandler connHandler;
+        boolean created;
+
+        while (true) {
+            List<ConnectionHandler> realmConnHandlers = getRealmConnectionHandlers(realmKey);
+            synchronized(realmConnHandlers) {
+                // The list may have been removed by the monitor thread once empty, a new one has to be retrieved
+                if (!isRegistered(realmKey, realmConnHandlers)) {
+                    continue;
+                }
 
-                // Insert new ConnectionHandler at first position as if it has more chances to be accessed again soon
-                connectionHandlers.add(0, connHandler);// insertElementAt(connHandler, 0);
+                connHandler = null;
+                int matchingConnHandlers = 0;
+                for (ConnectionHandler realmConnHandler : realmConnHandlers) {
+                    if (!realmConnHandler.equals(realm, urlCredentials)) {
+                        continue;
+                    }
+                    matchingConnHandlers++;
+                    if (realmConnHandler.isMultiplexed() && !realmConnHandler.isLocked()
+                            && (connHandler == null || realmConnHandler.getSharedUseCount() < connHandler.getSharedUseCount())) {
+                        connHandler = realmConnHandler;
+                    }
+                }
 
-                // Start monitor thread if it is not currently running (if there previously was no registered ConnectionHandler)
-                if (monitorThread == null) {
-                    LOGGER.info("starting monitor thread");
-                    monitorThread = new Thread(instance);
-                    monitorThread.start();
+                if (connHandler != null && (!connHandler.isInUse() || matchingConnHandlers >= maxConnectionsPerRealm)) {
+                    LOGGER.info("sharing ConnectionHandler {}, realm = {}", connHandler, realm);
+                    created = false;
+                } else if (matchingConnHandlers < maxConnectionsPerRealm) {
+                    connHandler = connectionHandlerFactory.createConnectionHandler(url);
+                    addConnectionHandler(realmConnHandlers, connHandler);
+                    created = true;
+                } else {
+                    // All the connections of the realm are locked
+                    waitForConnectionHandler(realmConnHandlers, url);
+                    continue;
                 }
 
-                // Update last activity timestamp to now
+                // Registered while the list is locked, so that the monitor thread doesn't close the connection
+                connHandler.addSharedUse();
                 connHandler.updateLastActivityTimestamp();
+                break;
+            }
+        }
+
+        if (created) {
+            startMonitorThread();
+        }
+
+        return connHandler;
+    }
+
+    /**
+     * Waits for a ConnectionHandler of the given list to be released or removed from the pool, when the maximum number
+     * of connections per realm has been reached. Must be called while the list is locked, which is relinquished while
+     * waiting.
+     *
+     * @throws InterruptedIOException if the calling thread was interrupted, or if no ConnectionHandler was released
+     * or removed within 5 seconds
+     */
+    private static void waitForConnectionHandler(List<ConnectionHandler> realmConnHandlers, FileURL url) throws InterruptedIOException {
+        LOGGER.info("Maximum number of connection per realm reached, waiting for one to be removed or released...");
+        try {
+            final int timeout = 5000;
+            long t0 = System.currentTimeMillis();
+            realmConnHandlers.wait(timeout);      // relinquishes the lock on realmConnHandlers
+            if (System.currentTimeMillis() - t0 > timeout) {
+                throw new InterruptedIOException();
+            }
+        } catch(InterruptedException e) {
+            LOGGER.info("Interrupted while waiting on a connection for {}", url, e);
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Registers a new ConnectionHandler. Must be called while the list of ConnectionHandler of its realm is locked.
+     */
+    private static void addConnectionHandler(List<ConnectionHandler> realmConnHandlers, ConnectionHandler connHandler) {
+        LOGGER.info("adding new ConnectionHandler {}, realm = {}", connHandler, connHandler.getRealm());
+
+        // Insert new ConnectionHandler at first position as if it has more chances to be accessed again soon
+        realmConnHandlers.add(0, connHandler);
+
+        // Update last activity timestamp to now
+        connHandler.updateLastActivityTimestamp();
+    }
+
+    /**
+     * Starts the monitor thread if it is not currently running (if there previously was no registered
+     * ConnectionHandler). Must be called after a ConnectionHandler has been added, without any list locked.
+     */
+    private static synchronized void startMonitorThread() {
+        if (monitorThread == null) {
+            LOGGER.info("starting monitor thread");
+            monitorThread = new Thread(instance);
+            monitorThread.start();
+        }
+    }
 
-                return connHandler;
+    /**
+     * Stops the monitor thread if there are no more registered ConnectionHandler.
+     *
+     * @return true if the monitor thread was stopped
+     */
+    private static synchronized boolean stopMonitorThreadIfIdle() {
+        for (List<ConnectionHandler> realmConnHandlers : connectionHandlers.values()) {
+            synchronized(realmConnHandlers) {
+                if (!realmConnHandlers.isEmpty()) {
+                    return false;
+                }
             }
         }
+        LOGGER.info("No more ConnectionHandler, stopping monitor thread");
+        monitorThread = null;
+        return true;
     }
 
 
@@ -140,24 +317,35 @@ public class ConnectionPool implements Runnable {
      * @return a list of registered ConnectionHandler instances
      */
     public static List<ConnectionHandler> getConnectionHandlersSnapshot() {
-        return new ArrayList<>(connectionHandlers);
+        List<ConnectionHandler> snapshot = new ArrayList<>();
+        for (List<ConnectionHandler> realmConnHandlers : connectionHandlers.values()) {
+            synchronized(realmConnHandlers) {
+                snapshot.addAll(realmConnHandlers);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns <code>true</code> if the server of the given realm has a list of ConnectionHandler, which is removed by
+     * the monitor thread once it is empty.
+     */
+    static boolean isRealmRegistered(FileURL realm) {
+        return connectionHandlers.containsKey(getRealmKey(realm));
     }
-    
-//    /**
-//     * Returns the ConnectionHandler instance located at the given position in the list.
-//     */
-//    private static ConnectionHandler getConnectionHandlerAt(int i) {
-//        return connectionHandlers.get(i);
-//    }
 
     /**
-     * Called by {@link ConnectionHandler#releaseLock()} to notify the <code>ConnectionHandler</code> that a
-     * <code>ConnectionHandler</code> has been released.
+     * Called by {@link ConnectionHandler#releaseLock()} and {@link ConnectionHandler#releaseSharedUse()} to notify the
+     * <code>ConnectionPool</code> that a <code>ConnectionHandler</code> has been released.
      */
-    static void notifyConnectionHandlerLockReleased() {
-        synchronized (connectionHandlers) {
-            // Notify any thread waiting for a ConnectionHandler to be released
-            connectionHandlers.notify();
+    static void notifyConnectionHandlerLockReleased(ConnectionHandler connHandler) {
+        List<ConnectionHandler> realmConnHandlers = connectionHandlers.get(getRealmKey(connHandler.getRealm()));
+        if (realmConnHandlers == null) {
+            return;
+        }
+        synchronized (realmConnHandlers) {
+            // Notify any thread waiting for a ConnectionHandler of this realm to be released
+            realmConnHandlers.notifyAll();
         }
     }
 
@@ -173,69 +361,74 @@ public class ConnectionPool implements Runnable {
         while (monitorThread != null) {        // Thread will be interrupted by CloseConnectionThread if there are no more ConnectionHandler
             long now = System.currentTimeMillis();
 
-            synchronized(connectionHandlers) {      // Ensures that getConnectionHandler is not currently changing the list while we access it
-                for (Iterator<ConnectionHandler> it = connectionHandlers.iterator(); it.hasNext();) {
-                    final ConnectionHandler connHandler = it.next();
-                //for (ConnectionHandler connHandler : connectionHandlers) {
+            for (Map.Entry<String, List<ConnectionHandler>> entry : connectionHandlers.entrySet()) {
+                List<ConnectionHandler> realmConnHandlers = entry.getValue();
+                synchronized(realmConnHandlers) {      // Ensures that getConnectionHandler is not currently changing the list while we access it
+                    for (Iterator<ConnectionHandler> it = realmConnHandlers.iterator(); it.hasNext();) {
+                        final ConnectionHandler connHandler = it.next();
 
-                    synchronized(connHandler) {     // Ensures that no one is trying to acquire a lock on the connection while we access it
-                        // Do not touch ConnectionHandler if it is currently locked
-                        if (connHandler.isLocked()) {
-                            continue;
-                        }
+                        synchronized(connHandler) {     // Ensures that no one is trying to acquire a lock on the connection while we access it
+                            // Do not touch ConnectionHandler if it is currently locked or shared
+                            if (connHandler.isInUse()) {
+                                continue;
+                            }
 
-                        // Remove ConnectionHandler instance from the list of registered ConnectionHandler
-                        // if it is not connected
-                        if (!connHandler.isConnected()) {
-                            LOGGER.info("Removing unconnected ConnectionHandler {}", connHandler);
+                            // Remove ConnectionHandler instance from the list of registered ConnectionHandler
+                            // if it is not connected
+                            if (!connHandler.isConnected()) {
+                                LOGGER.info("Removing unconnected ConnectionHandler {}", connHandler);
 
-                            //connectionHandlers.remove(connHandler);
-                            it.remove();
-                            // Notify any thread waiting for a ConnectionHandler to be released
-                            connectionHandlers.notify();
+                                it.remove();
+                                // Notify any thread waiting for a ConnectionHandler to be released
+                                realmConnHandlers.notifyAll();
 
-                            continue;       // Skips close on inactivity and keep alive checks
-                        }
+                                continue;       // Skips close on inactivity and keep alive checks
+                            }
 
-                        long lastUsed = connHandler.getLastActivityTimestamp();
+                            long lastUsed = connHandler.getLastActivityTimestamp();
 
-                        // If time-to-live has been reached without any connection activity, remove ConnectionHandler
-                        // from the list of registered ConnectionHandler and close the connection in a separate thread
-                        long closePeriod = connHandler.getCloseOnInactivityPeriod();
-                        if (closePeriod != -1 && now - lastUsed > closePeriod*1000) {
-                            LOGGER.info("Removing timed-out ConnectionHandler {}",connHandler);
+                            // If time-to-live has been reached without any connection activity, remove ConnectionHandler
+                            // from the list of registered ConnectionHandler and close the connection in a separate thread
+                            long closePeriod = connHandler.getCloseOnInactivityPeriod();
+                            if (closePeriod != -1 && now - lastUsed > closePeriod*1000) {
+                                LOGGER.info("Removing timed-out ConnectionHandler {}",connHandler);
 
-                            //connectionHandlers.remove(connHandler);
-                            it.remove();
-                            // Notify any thread waiting for a ConnectionHandler to be released
-                            connectionHandlers.notify();
+                                it.remove();
+                                // Notify any thread waiting for a ConnectionHandler to be released
+                                realmConnHandlers.notifyAll();
 
-                            // Close connection in a separate thread as it could lock this thread
-                            new CloseConnectionThread(connHandler).start();
+                                // Close connection in a separate thread as it could lock this thread
+                                new CloseConnectionThread(connHandler).start();
 
-                            continue;       // Skips keep alive check
-                        }
+                                continue;       // Skips keep alive check
+                            }
 
-                        // If keep-alive period has been reached without any connection activity or a keep alive,
-                        // keep connection alive in a separate thread
-                        long keepAlivePeriod = connHandler.getKeepAlivePeriod();
-                        if (keepAlivePeriod!=-1 && now-Math.max(lastUsed, connHandler.getLastKeepAliveTimestamp())>keepAlivePeriod*1000) {
-                            // Update last keep alive timestamp to now
-                            connHandler.updateLastKeepAliveTimestamp();
+                            // If keep-alive period has been reached without any connection activity or a keep alive,
+                            // keep connection alive in a separate thread
+                            long keepAlivePeriod = connHandler.getKeepAlivePeriod();
+                            if (keepAlivePeriod!=-1 && now-Math.max(lastUsed, connHandler.getLastKeepAliveTimestamp())>keepAlivePeriod*1000) {
+                                // Update last keep alive timestamp to now
+                                connHandler.updateLastKeepAliveTimestamp();
 
-                            // Keep connection alive in a separate thread as it could lock this thread
-                            new KeepAliveConnectionThread(connHandler).start();
+                                // Keep connection alive in a separate thread as it could lock this thread
+                                new KeepAliveConnectionThread(connHandler).start();
+                            }
                         }
                     }
-                }
 
-                // Stop monitor thread if there are no more ConnectionHandler
-                if (connectionHandlers.size() == 0) {
-                    LOGGER.info("No more ConnectionHandler, stopping monitor thread");
-                    monitorThread = null;
+                    // Forget the servers that have no more ConnectionHandler. Threads that have retrieved the list
+                    // in the meantime notice it once they have locked it, and register a new one.
+                    if (realmConnHandlers.isEmpty()) {
+                        connectionHandlers.remove(entry.getKey(), realmConnHandlers);
+                    }
                 }
             }
 
+            // Stop monitor thread if there are no more ConnectionHandler
+            if (stopMonitorThreadIfIdle()) {
+                break;
+            }
+
             // Sleep for MONITOR_SLEEP_PERIOD milliseconds, minus the processing time of this loop
             try {
                 Thread.sleep(Math.max(0, MONITOR_SLEEP_PERIOD-(System.currentTimeMillis()-now)));
@@ -287,7 +480,7 @@ public class ConnectionPool implements Runnable {
 
             synchronized(connHandler) {
                 // Ensures that lock was not grabbed in the meantime
-                if(connHandler.isLocked())
+                if(connHandler.isInUse())
                     return;
 
                 // Keep alive connection, only if it is connected
@@ -20,6 +20,7 @@
 package com.mucommander.commons.file.impl;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileListingHandler;
 import com.mucommander.commons.file.FilePermissions;
 import com.mucommander.commons.file.FileProtocols;
 import com.mucommander.commons.file.filter.FileFilter;
@@ -565,4 +566,18 @@ public class CachedFile extends ProxyFile {
         return files;
     }
 
+    @Override
+    public void ls(FileFilter filter, final FileListingHandler handler) throws IOException {
+        // Don't cache ls() result but create a CachedFile instance around each of the files if recursion is enabled
+        if ((bitmask & RECURSE_INSTANCES_MASK) != 0) {
+            file.ls(filter, new FileListingHandler() {
+                public boolean filesListed(AbstractFile[] files) {
+                    return handler.filesListed(createCachedFiles(files));
+                }
+            });
+        } else {
+            file.ls(filter, handler);
+        }
+    }
+
 }
@@ -355,6 +355,11 @@ public abstract class ProxyFile extends AbstractFile {
         return file.ls(filter);
     }
 
+    @Override
+    public void ls(FileFilter filter, FileListingHandler handler) throws IOException {
+        file.ls(filter, handler);
+    }
+
     @Override
     public void mkfile() throws IOException {
         file.mkfile();
@@ -20,7 +20,7 @@
 package com.mucommander.commons.file.impl.bzip2;
 
 import com.mucommander.commons.file.*;
-import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
+import com.mucommander.commons.io.compress.IndexedBzip2InputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,21 +75,11 @@ public class Bzip2ArchiveFile extends AbstractROArchiveFile {
     @Override
     public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException {
         try {
-            InputStream in = getInputStream();
-
-            // Skips the 2 magic bytes 'BZ', as required by CBZip2InputStream. Quoted from CBZip2InputStream's Javadoc:
-            // "Although BZip2 headers are marked with the magic 'Bz'. this constructor expects the next byte in the
-            // stream to be the first one after the magic.  Thus callers have to skip the first two bytes. Otherwise
-            // this constructor will throw an exception."
-            // Note: the return value of read() is unchecked. In the unlikely event that EOF is reached in the first
-            // 2 bytes, CBZip2InputStream will throw an IOException.
-            in.read();
-            in.read();
-
-            // Quoted from CBZip2InputStream's Javadoc:
-            // "CBZip2InputStream reads bytes from the compressed source stream via the single byte {@link java.io.InputStream#read()
-            // read()} method exclusively. Thus you should consider to use a buffered source stream."
-            return new CBZip2InputStream(new BufferedInputStream(in));
+            // IndexedBzip2InputStream decompresses the concatenated BZip2 streams written by parallel compressors,
+            // which CBZip2InputStream in its continuous mode fails to do. It reads the 'BZ' magic bytes itself.
+            // CBZip2InputStream, which does the actual decompression, reads the compressed data one byte at a time,
+            // hence the buffered stream.
+            return new IndexedBzip2InputStream(new BufferedInputStream(getInputStream()));
         } catch(Exception e) {
             // CBZip2InputStream is known to throw NullPointerException if file is not properly Bzip2-encoded
             // so we need to catch those and throw them as IOException
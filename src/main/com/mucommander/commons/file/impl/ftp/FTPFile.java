@@ -24,6 +24,7 @@ import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.connection.ConnectionHandler;
 import com.mucommander.commons.file.connection.ConnectionHandlerFactory;
 import com.mucommander.commons.file.connection.ConnectionPool;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.io.ByteUtils;
 import com.mucommander.commons.io.FilteredOutputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
@@ -32,6 +33,7 @@ import com.mucommander.commons.util.StringUtils;
 import com.mucommander.core.FolderChangeMonitor;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPListParseEngine;
 import org.apache.commons.net.ftp.FTPReply;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -601,6 +603,73 @@ public class FTPFile extends ProtocolFile implements ConnectionHandlerFactory {
         return children;
     }
 
+    /**
+     * Overridden to create the children files piece by piece as the lines of the <code>LIST</code> reply are parsed,
+     * instead of parsing them all before creating the first file.
+     */
+    @Override
+    public void ls(FileFilter filter, FileListingHandler handler) throws IOException {
+        FileListingBuffer buffer = new FileListingBuffer(filter, handler);
+
+        // Retrieve a ConnectionHandler and lock it
+        FTPConnectionHandler connHandler = (FTPConnectionHandler)ConnectionPool.getConnectionHandler(this, fileURL, true);
+        FTPListParseEngine engine;
+        try {
+            // Makes sure the connection is started, if not starts it
+            connHandler.checkConnection();
+
+            // See #listFiles(FTPConnectionHandler, String) for why CWD is issued before LIST
+            connHandler.ftpClient.changeWorkingDirectory(absPath);
+            engine = connHandler.ftpClient.initiateListParsing();
+
+            // Throw an IOException if server replied with an error
+            connHandler.checkServerReply();
+        }
+        // This exception is not an IOException and needs to be caught and thrown back as an IOException
+        catch(org.apache.commons.net.ftp.parser.ParserInitializationException e) {
+            LOGGER.info("ParserInitializationException caught", e);
+            throw new IOException();
+        } catch(IOException e) {
+            // Checks if the IOException corresponds to a socket error and in that case, closes the connection
+            connHandler.checkSocketException(e);
+
+            // Throw back the IOException
+            throw e;
+        } finally {
+            // Release the lock on the ConnectionHandler
+            connHandler.releaseLock();
+        }
+
+        String parentPath = fileURL.getPath();
+        if (!parentPath.endsWith(SEPARATOR)) {
+            parentPath += SEPARATOR;
+        }
+
+        while (engine.hasNext()) {
+            for (org.apache.commons.net.ftp.FTPFile file1 : engine.getNext(buffer.getChunkSize())) {
+                if (file1 == null) {
+                    continue;
+                }
+
+                // Discard '.' and '..' files
+                String childName = file1.getName();
+                if (childName.equals(".") || childName.equals("..")) {
+                    continue;
+                }
+
+                // Note: properties and credentials are cloned for every children's url
+                FileURL childURL = (FileURL) fileURL.clone();
+                childURL.setPath(parentPath + childName);
+
+                if (!buffer.add(FileFactory.getFile(childURL, this, file1))) {
+                    return;
+                }
+            }
+        }
+
+        buffer.flush();
+    }
+
 
     @Override
     public void mkdir() throws IOException {
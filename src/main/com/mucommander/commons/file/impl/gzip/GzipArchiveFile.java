@@ -20,15 +20,16 @@
 package com.mucommander.commons.file.impl.gzip;
 
 import com.mucommander.commons.file.*;
+import com.mucommander.commons.io.compress.MultiMemberGzipInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.GZIPInputStream;
 
 /**
  * GzipArchiveFile provides read-only access to archives in the Gzip format.
  *
- * <p>The actual decompression work is performed by the {@link java.util.zip.GZIPInputStream} class.</p>
+ * <p>The actual decompression work is performed by the {@link java.util.zip.GZIPInputStream} class, through
+ * {@link MultiMemberGzipInputStream} so that archives made of several GZIP members are decompressed entirely.</p>
  *
  * @see com.mucommander.commons.file.impl.gzip.GzipFormatProvider
  * @author Maxence Bernard
@@ -70,6 +71,6 @@ public class GzipArchiveFile extends AbstractROArchiveFile {
 
     @Override
     public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException, UnsupportedFileOperationException {
-        return new GZIPInputStream(getInputStream());
+        return new MultiMemberGzipInputStream(getInputStream());
     }
 }
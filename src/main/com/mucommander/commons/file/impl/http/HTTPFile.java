@@ -20,9 +20,10 @@
 package com.mucommander.commons.file.impl.http;
 
 import com.mucommander.commons.file.*;
-import com.mucommander.commons.io.BlockRandomInputStream;
+import com.mucommander.commons.io.ParallelRangeInputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
+import com.mucommander.commons.io.StreamUtils;
 import com.mucommander.commons.io.base64.Base64Encoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +91,9 @@ public class HTTPFile extends ProtocolFile {
     /** True if file has been resolved on the remote HTTP server, either successfully or unsuccessfully */
     private boolean fileResolved;
 
+    /** True if the HTTP server advertised support for byte ranges when the file was resolved */
+    private boolean acceptsRanges;
+
     private boolean parentValSet;
     protected AbstractFile parent;
 	
@@ -201,7 +205,10 @@ public class HTTPFile extends ProtocolFile {
             attributes.setDate(date);
 
             // Resolve size with content-length header (-1 if not available)
-            attributes.setSize(conn.getContentLength());
+            attributes.setSize(conn.getContentLengthLong());
+
+            // Ranges allow the file to be read in parallel blocks
+            acceptsRanges = "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"));
 
             // Test if content is HTML
             String contentType = conn.getContentType();
@@ -414,8 +421,23 @@ public class HTTPFile extends ProtocolFile {
         return false;
     }
 
+    /**
+     * Returns <code>true</code> if the file has already been resolved and is known to be large enough and served by
+     * a server that accepts byte ranges for it to be read with a {@link HTTPRangeInputStream}. The file is not resolved
+     * by this method, so as not to add a HEAD request before the GET.
+     *
+     * @return <code>true</code> if the file can be read with parallel range requests
+     */
+    private boolean isParallelReadable() {
+        return fileResolved && acceptsRanges && attributes.getSize() > HTTPRangeInputStream.BLOCK_SIZE;
+    }
+
     @Override
     public InputStream getInputStream() throws IOException {
+        if (isParallelReadable()) {
+            return new HTTPRangeInputStream(attributes.getSize());
+        }
+
         HttpURLConnection conn = getHttpURLConnection(this.url);
 
         // Establish connection
@@ -451,7 +473,15 @@ public class HTTPFile extends ProtocolFile {
 
     @Override
     public RandomAccessInputStream getRandomAccessInputStream() throws IOException {
-        return new HTTPRandomAccessInputStream();
+        // HEAD the HTTP resource to get its length
+        if (!fileResolved)
+            resolveFile();
+
+        long length = getSize();
+        if (length == -1)        // Knowing the content length is required
+            throw new IOException();
+
+        return new HTTPRangeInputStream(length);
     }
 
     /**
@@ -708,6 +738,12 @@ public class HTTPFile extends ProtocolFile {
      */
     @Override
     public InputStream getInputStream(long offset) throws IOException {
+        if (isParallelReadable()) {
+            HTTPRangeInputStream in = new HTTPRangeInputStream(attributes.getSize());
+            in.seek(offset);
+            return in;
+        }
+
         HttpURLConnection conn = getHttpURLConnection(this.url);
 
         // Set header that allows to resume transfer
@@ -729,68 +765,46 @@ public class HTTPFile extends ProtocolFile {
 
 
     /**
-     * HTTPRandomAccessInputStream extends BlockRandomInputStream to provide random read access to an HTTPFile.
-     * It uses the 'Range' request header to read the HTTP resource partially, chunk by chunk and reposition the offset
-     * when {@link #seek(long)} is called.
+     * HTTPRangeInputStream extends ParallelRangeInputStream to provide random read access to an HTTPFile.
+     * It uses the 'Range' request header to read the HTTP resource partially, several blocks at once over separate
+     * connections, and to reposition the offset when {@link #seek(long)} is called.
      */
-    private class HTTPRandomAccessInputStream extends BlockRandomInputStream {
-
-        /** Amount of data returned  */
-        private final static int CHUNK_SIZE = 1024;
+    private class HTTPRangeInputStream extends ParallelRangeInputStream {
 
-        /** Length of the HTTP resource */
-        private long length;
+        /** Amount of data requested by each 'Range' request */
+        private final static int BLOCK_SIZE = ParallelRangeInputStream.DEFAULT_BLOCK_SIZE;
 
+        /** Maximum number of 'Range' requests in progress at once */
+        private final static int MAX_PENDING_BLOCKS = ParallelRangeInputStream.DEFAULT_MAX_PENDING_BLOCKS;
 
-        private HTTPRandomAccessInputStream() throws IOException {
-            super(CHUNK_SIZE);
 
-            // HEAD the HTTP resource to get its length
-            if(!fileResolved)
-                resolveFile();
-
-            length = getSize();
-            if(length == -1)        // Knowing the content length is required
-                throw new IOException();
+        private HTTPRangeInputStream(long length) {
+            super(length, BLOCK_SIZE, MAX_PENDING_BLOCKS);
         }
 
-        ///////////////////////////////////////////
-        // BlockRandomInputStream implementation //
-        ///////////////////////////////////////////
+        /////////////////////////////////////////////
+        // ParallelRangeInputStream implementation //
+        /////////////////////////////////////////////
 
         @Override
         protected int readBlock(long fileOffset, byte block[], int blockLen) throws IOException {
             HttpURLConnection conn = getHttpURLConnection(url);
-
-            // Note: 'Range' may not be supported by the HTTP server, in that case an IOException will be thrown
-            conn.setRequestProperty("Range", "bytes="+fileOffset +"-"+ Math.min(fileOffset+blockLen, length-1));
+            conn.setRequestProperty("Range", "bytes="+fileOffset +"-"+ (fileOffset+blockLen-1));
 
             conn.connect();
             checkHTTPResponse(conn);
 
+            // A server that does not support ranges returns the whole resource, which is only usable for the
+            // first block
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_PARTIAL && fileOffset != 0) {
+                conn.disconnect();
+                throw new IOException("Range requests not supported by "+url.getHost());
+            }
+
             // Read up to blockLen bytes
             try (InputStream in = conn.getInputStream()) {
-                int totalRead = 0;
-                int read;
-                while (totalRead < blockLen) {
-                    read = in.read(block, totalRead, blockLen - totalRead);
-                    if (read == -1)
-                        break;
-
-                    totalRead += read;
-                }
-
-                return totalRead;
+                return StreamUtils.readUpTo(in, block, 0, blockLen);
             }
         }
-
-        public long getLength() throws IOException {
-            return length;
-        }
-
-        @Override
-        public void close() throws IOException {
-            // No-op, the underlying stream is already closed
-        }
     }
 }
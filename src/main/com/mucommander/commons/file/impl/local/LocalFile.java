@@ -31,6 +31,9 @@ import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -53,6 +56,8 @@ import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileListingBuffer;
+import com.mucommander.commons.file.FileListingHandler;
 import com.mucommander.commons.file.FileOperation;
 import com.mucommander.commons.file.FilePermissions;
 import com.mucommander.commons.file.FileProtocols;
@@ -64,14 +69,18 @@ import com.mucommander.commons.file.PermissionBits;
 import com.mucommander.commons.file.ProtocolFile;
 import com.mucommander.commons.file.UnsupportedFileOperation;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.filter.FilenameFilter;
 import com.mucommander.commons.file.util.Kernel32;
 import com.mucommander.commons.file.util.Kernel32API;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.io.BufferPool;
+import com.mucommander.commons.io.ChannelTransferable;
+import com.mucommander.commons.io.FileTransferException;
 import com.mucommander.commons.io.FilteredOutputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.RandomAccessOutputStream;
+import com.mucommander.commons.io.StreamUtils;
 import com.mucommander.commons.runtime.JavaVersion;
 import com.mucommander.commons.runtime.OsFamily;
 import com.mucommander.commons.runtime.OsVersion;
@@ -134,6 +143,11 @@ public class LocalFile extends ProtocolFile {
      * of having single a root folder '/' */
     public final static boolean USES_ROOT_DRIVES = IS_WINDOWS || OsFamily.OS_2.isCurrent();
 
+    /** Maximum number of bytes transferred at once by {@link #copyStream(InputStream, boolean, long)} when the bytes
+     * are copied from channel to channel: small enough for progress to be reported and throughput limits to be enforced
+     * smoothly, large enough for the transfer overhead to be negligible. */
+    private final static long CHANNEL_TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
     /** Pattern matching Windows-like drives' root, e.g. C:\ */
     final static Pattern DRIVE_ROOT_PATTERN = Pattern.compile("^[a-zA-Z]{1}[:]{1}[\\\\]{1}");
 
@@ -906,6 +920,46 @@ public class LocalFile extends ProtocolFile {
         return new LocalRandomAccessOutputStream(new RandomAccessFile(file, "rw").getChannel());
     }
 
+    /**
+     * Overridden to copy the bytes from channel to channel, without copying them through a user-space buffer, when the
+     * given stream supports it (see {@link ChannelTransferable}). This is the case of streams returned by local files,
+     * including when they are wrapped by {@link com.mucommander.commons.io.CounterInputStream} or
+     * {@link com.mucommander.commons.io.ThroughputLimitInputStream}: the operating system can then copy the file
+     * (e.g. using <code>sendfile</code> or <code>copy_file_range</code>), while byte counts and throughput limits are
+     * still honoured. Other streams are copied by the regular {@link AbstractFile#copyStream(InputStream, boolean, long)}
+     * implementation.
+     *
+     * <p>Like the regular implementation, the bytes are copied until the end of the stream is reached: the
+     * <code>length</code> parameter is only a hint for protocols that need to know the length in advance, which is not
+     * the case of local files. It is not used to stop the transfer, as the source file may have grown since its size
+     * was retrieved by the caller.</p>
+     */
+    @Override
+    public void copyStream(InputStream in, boolean append, long length) throws FileTransferException {
+        if (!(in instanceof ChannelTransferable && ((ChannelTransferable)in).isChannelTransferSupported())) {
+            super.copyStream(in, append, length);
+            return;
+        }
+
+        FileChannel out;
+        try {
+            out = new FileOutputStream(absPath, append).getChannel();
+        } catch(IOException e) {
+            throw new FileTransferException(FileTransferException.OPENING_DESTINATION);
+        }
+
+        try {
+            StreamUtils.copyChannel((ChannelTransferable)in, out, CHANNEL_TRANSFER_CHUNK_SIZE);
+        } finally {
+            // Close channel even if copyChannel() threw an IOException
+            try {
+                out.close();
+            } catch(IOException e) {
+                throw new FileTransferException(FileTransferException.CLOSING_DESTINATION);
+            }
+        }
+    }
+
     @Override
     public void delete() throws IOException {
         boolean ret = file.delete();
@@ -1128,6 +1182,34 @@ public class LocalFile extends ProtocolFile {
         return children;
     }
 
+    /**
+     * Overridden to read the directory entries one at a time with a <code>java.nio.file.DirectoryStream</code>, rather
+     * than with <code>java.io.File#listFiles()</code> which returns them all at once.
+     */
+    @Override
+    public void ls(FileFilter filter, FileListingHandler handler) throws IOException {
+        FileListingBuffer buffer = new FileListingBuffer(filter, handler);
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.toPath())) {
+            for (Path path : stream) {
+                File child = path.toFile();
+
+                // Clone the FileURL of this file and set the child's path, see #ls(FilenameFilter)
+                FileURL childURL = (FileURL)fileURL.clone();
+                childURL.setPath(absPath+SEPARATOR+child.getName());
+
+                if (!buffer.add(FileFactory.getFile(childURL, this, child))) {
+                    return;
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            // Thrown by the iterator when an I/O error occurs while reading the directory
+            throw e.getCause();
+        }
+
+        buffer.flush();
+    }
+
     @Override
     public boolean isHidden() {
         return file.isHidden();
@@ -1224,9 +1306,10 @@ public class LocalFile extends ProtocolFile {
      * LocalRandomAccessInputStream extends RandomAccessInputStream to provide random read access to a LocalFile.
      * This implementation uses a NIO <code>FileChannel</code> under the hood to benefit from
      * <code>InterruptibleChannel</code> and allow a thread waiting for an I/O to be gracefully interrupted using
-     * <code>Thread#interrupt()</code>.
+     * <code>Thread#interrupt()</code>. The channel also allows bytes to be transferred directly to another channel,
+     * see {@link ChannelTransferable}.
      */
-    public static class LocalRandomAccessInputStream extends RandomAccessInputStream {
+    public static class LocalRandomAccessInputStream extends RandomAccessInputStream implements ChannelTransferable {
 
         private final FileChannel channel;
         private final ByteBuffer bb;
@@ -1286,6 +1369,24 @@ public class LocalFile extends ProtocolFile {
         public void seek(long offset) throws IOException {
             channel.position(offset);
         }
+
+        public boolean isChannelTransferSupported() {
+            return channel.isOpen();
+        }
+
+        public long transferTo(WritableByteChannel target, long maxCount) throws IOException {
+            long position = channel.position();
+            long remaining = channel.size() - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            // FileChannel#transferTo does not modify the channel's position
+            long nbTransferred = channel.transferTo(position, Math.min(maxCount, remaining), target);
+            channel.position(position + nbTransferred);
+
+            return nbTransferred;
+        }
     }
 
     /**
@@ -1299,11 +1400,19 @@ public class LocalFile extends ProtocolFile {
      * being used.</p>
      *
      */
-    public static class LocalInputStream extends FilterInputStream {
+    public static class LocalInputStream extends FilterInputStream implements ChannelTransferable {
 
         public LocalInputStream(FileChannel channel) {
             super(new LocalRandomAccessInputStream(channel));
         }
+
+        public boolean isChannelTransferSupported() {
+            return ((LocalRandomAccessInputStream)in).isChannelTransferSupported();
+        }
+
+        public long transferTo(WritableByteChannel target, long maxCount) throws IOException {
+            return ((LocalRandomAccessInputStream)in).transferTo(target, maxCount);
+        }
     }
 
     /**
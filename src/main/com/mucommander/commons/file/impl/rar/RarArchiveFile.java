@@ -19,19 +19,25 @@
 
 package com.mucommander.commons.file.impl.rar;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import com.github.junrar.Archive;
 import com.github.junrar.exception.RarException;
 import com.github.junrar.rarfile.FileHeader;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AbstractROArchiveFile;
 import com.mucommander.commons.file.ArchiveEntry;
 import com.mucommander.commons.file.ArchiveEntryIterator;
+import com.mucommander.commons.file.SinglePassEntryIterator;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
 import com.mucommander.commons.file.WrapperArchiveEntryIterator;
+import com.mucommander.commons.io.SinkOutputStream;
 
 
 /**
@@ -119,8 +125,38 @@ public class RarArchiveFile extends AbstractROArchiveFile {
         return new WrapperArchiveEntryIterator(entries.iterator());
     }
 
+    /**
+     * Returns an iterator that extracts the given entries in a single pass over the archive: junrar reopens the
+     * archive for every entry read with {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)} and, in a
+     * solid archive, decompresses all the entries that precede it again.
+     */
+    @Override
+    public synchronized ArchiveEntryIterator getEntryIterator(Collection<ArchiveEntry> entriesToRead) throws IOException, UnsupportedFileOperationException {
+        try {
+			checkRarFile();
+		} catch (RarException e) {
+			throw new IOException();
+		}
+
+        List<ArchiveEntry> entries = new ArrayList<>();
+        for (FileHeader header : rarFile.getEntries()) {
+            ArchiveEntry entry = createArchiveEntry(header);
+            // The position of the header, to find it in the archive that extracts the entries
+            entry.setEntryObject(entries.size());
+            entries.add(entry);
+        }
+
+        return new RarEntryIterator(entries, entriesToRead);
+    }
+
     @Override
     public synchronized InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException, UnsupportedFileOperationException {
+        if (entryIterator instanceof SinglePassEntryIterator) {
+            InputStream in = ((SinglePassEntryIterator)entryIterator).getEntryInputStream(entry);
+            if (in != null)
+                return in;
+        }
+
 		try {
 			checkRarFile();
 		} catch (RarException e) {
@@ -133,4 +169,46 @@ public class RarArchiveFile extends AbstractROArchiveFile {
 			throw new IOException();
 		}
 	}
+
+    /**
+     * Extracts the entries to read with an archive instance of its own, going through the file headers in order.
+     * In a solid archive, the entries that are not to be read but precede one that is are decompressed and discarded,
+     * as junrar can only decompress them in order.
+     */
+    private class RarEntryIterator extends SinglePassEntryIterator {
+
+        RarEntryIterator(List<ArchiveEntry> entries, Collection<ArchiveEntry> entriesToRead) {
+            super(entries, entriesToRead);
+        }
+
+        @Override
+        protected void extractEntries(List<ArchiveEntry> entriesToRead) throws IOException {
+            if (entriesToRead.isEmpty())
+                return;
+
+            try (Archive archive = new Archive(new File(file.getPath()))) {
+                List<FileHeader> headers = archive.getFileHeaders();
+                boolean solid = archive.getMainHeader().isSolid();
+                int lastIndex = (Integer)entriesToRead.get(entriesToRead.size()-1).getEntryObject();
+                int nextToRead = 0;
+
+                for (int i = 0; i <= lastIndex && i < headers.size(); i++) {
+                    FileHeader header = headers.get(i);
+                    ArchiveEntry entry = entriesToRead.get(nextToRead);
+                    if ((Integer)entry.getEntryObject() == i) {
+                        // Not closed if the extraction fails, the entry would appear complete
+                        OutputStream out = getEntryOutputStream(entry);
+                        archive.extractFile(header, out);
+                        out.close();
+                        nextToRead++;
+                    }
+                    else if (solid && !header.isDirectory()) {
+                        archive.extractFile(header, new SinkOutputStream());
+                    }
+                }
+            } catch (RarException e) {
+                throw new IOException(e);
+            }
+        }
+    }
 }
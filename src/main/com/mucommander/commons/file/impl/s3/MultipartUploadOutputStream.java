@@ -0,0 +1,346 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.s3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <code>MultipartUploadOutputStream</code> uploads the bytes written to it to an S3 object of unknown length, as the
+ * parts of an {@link S3MultipartUpload}. Parts are uploaded by a shared pool of threads while the next ones are being
+ * written, at most a given number at once: the bytes are buffered in memory, in at most that many part buffers plus
+ * the one being filled, and {@link #write(byte[], int, int)} blocks when all of them are full.
+ *
+ * <p>A part that fails to upload is retried a few times before the whole upload fails. Once the upload has failed,
+ * the next call to a <code>write</code> method or to {@link #close()} throws the error. {@link #close()} completes the
+ * upload, or aborts it if it failed or if the thread was interrupted. {@link #abort()} aborts the upload when the
+ * bytes that were written are not to be kept, for instance because the source of the bytes could not be read
+ * entirely.</p>
+ *
+ * <p>An object that fits in a single part is uploaded with a single PUT request when the stream is closed, without
+ * starting a multipart upload.</p>
+ */
+class MultipartUploadOutputStream extends OutputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultipartUploadOutputStream.class);
+
+    /** Default size of a part. S3 requires all parts but the last one to be at least 5 MB */
+    final static int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+
+    /** Default maximum number of parts being uploaded at once */
+    final static int DEFAULT_MAX_PENDING_PARTS = 4;
+
+    /** Default number of times a part is sent before the upload fails */
+    final static int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /** Default delay before a part is sent again, multiplied by the number of failed attempts */
+    final static long DEFAULT_RETRY_DELAY = 1000;
+
+    /** Threads that upload the parts, shared by all instances */
+    private final static ExecutorService UPLOADERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "MultipartUploadOutputStream uploader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final S3MultipartUpload upload;
+
+    private final int partSize;
+    private final int maxPendingParts;
+    private final int maxAttempts;
+    private final long retryDelay;
+
+    /** Part buffers that are not being uploaded */
+    private final BlockingQueue<byte[]> freeBuffers = new LinkedBlockingQueue<>();
+
+    /** Number of part buffers that have been allocated */
+    private int nbBuffers;
+
+    /** ETags of the parts, in the order of their numbers */
+    private final List<Future<String>> parts = new ArrayList<>();
+
+    /** Part being filled, <code>null</code> if none */
+    private byte buffer[];
+
+    /** Number of bytes in the part being filled */
+    private int bufferLength;
+
+    /** Error that made the upload fail, if any */
+    private volatile IOException failure;
+
+    /** True once the upload has been aborted */
+    private volatile boolean aborted;
+
+    /** True once this stream has been closed or aborted */
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>MultipartUploadOutputStream</code> using the default part size, number of parts uploaded
+     * at once and retries.
+     *
+     * @param upload the upload to send the parts with, not initiated yet
+     */
+    MultipartUploadOutputStream(S3MultipartUpload upload) {
+        this(upload, DEFAULT_PART_SIZE, DEFAULT_MAX_PENDING_PARTS, DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_DELAY);
+    }
+
+    /**
+     * Creates a new <code>MultipartUploadOutputStream</code>.
+     *
+     * @param upload the upload to send the parts with, not initiated yet
+     * @param partSize size of a part, in bytes
+     * @param maxPendingParts maximum number of parts being uploaded at once
+     * @param maxAttempts number of times a part is sent before the upload fails
+     * @param retryDelay delay before a part is sent again in milliseconds, multiplied by the number of failed attempts
+     */
+    MultipartUploadOutputStream(S3MultipartUpload upload, int partSize, int maxPendingParts, int maxAttempts, long retryDelay) {
+        this.upload = upload;
+        this.partSize = partSize;
+        this.maxPendingParts = maxPendingParts;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+    }
+
+    private void checkState() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (failure != null) {
+            abortQuietly();
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns a buffer for the next part, waiting for a part to be uploaded if all the buffers are in use.
+     */
+    private byte[] getBuffer() throws IOException {
+        byte free[] = freeBuffers.poll();
+        if (free != null) {
+            return free;
+        }
+        if (nbBuffers <= maxPendingParts) {
+            nbBuffers++;
+            return new byte[partSize];
+        }
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            abortQuietly();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Hands the current part to the uploader threads, initiating the upload if it is the first part.
+     */
+    private void sendPart() throws IOException {
+        if (!upload.isInitiated()) {
+            upload.initiate();
+        }
+
+        final byte part[] = buffer;
+        final int length = bufferLength;
+        final int partNumber = parts.size() + 1;
+        buffer = null;
+        bufferLength = 0;
+
+        parts.add(UPLOADERS.submit(() -> {
+            try {
+                return uploadPart(partNumber, part, length);
+            } finally {
+                freeBuffers.add(part);
+            }
+        }));
+    }
+
+    /**
+     * Uploads a part, retrying if it fails. Records the error if the part could not be uploaded.
+     */
+    private String uploadPart(int partNumber, byte part[], int length) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            if (aborted) {
+                throw new IOException("Upload aborted");
+            }
+            try {
+                return upload.uploadPart(partNumber, part, length);
+            } catch (IOException e) {
+                if (aborted) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    failure = e;
+                    throw e;
+                }
+                LOGGER.info("Failed to upload part " + partNumber + ", attempt " + attempt, e);
+                try {
+                    Thread.sleep(retryDelay * attempt);
+                } catch (InterruptedException ie) {
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the parts being uploaded and returns their ETags.
+     */
+    private List<String> waitForParts() throws IOException {
+        List<String> etags = new ArrayList<>(parts.size());
+        try {
+            for (Future<String> part : parts) {
+                etags.add(part.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        return etags;
+    }
+
+    /**
+     * Aborts the upload, logging the error if it could not be aborted.
+     */
+    private void abortQuietly() {
+        try {
+            abort();
+        } catch (IOException e) {
+            LOGGER.info("Failed to abort upload", e);
+        }
+    }
+
+    /**
+     * Aborts the upload: the parts being uploaded are not retried and the parts that have been uploaded are deleted.
+     * This stream is closed, calling this method again or calling {@link #close()} has no effect.
+     *
+     * @throws IOException if the upload could not be aborted
+     */
+    void abort() throws IOException {
+        if (aborted) {
+            return;
+        }
+        aborted = true;
+        closed = true;
+        buffer = null;
+
+        // Parts that are still being uploaded would be kept by S3 if they were sent after the abort request
+        boolean interrupted = Thread.interrupted();
+        for (Future<String> part : parts) {
+            while (true) {
+                try {
+                    part.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+        }
+        try {
+            upload.abort();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /////////////////////////////////
+    // OutputStream implementation //
+    /////////////////////////////////
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte b[], int off, int len) throws IOException {
+        checkState();
+        while (len > 0) {
+            if (buffer == null) {
+                buffer = getBuffer();
+            }
+            int n = Math.min(len, partSize - bufferLength);
+            System.arraycopy(b, off, buffer, bufferLength, n);
+            bufferLength += n;
+            off += n;
+            len -= n;
+
+            if (bufferLength == partSize) {
+                try {
+                    sendPart();
+                } catch (IOException e) {
+                    abortQuietly();
+                    throw e;
+                }
+                checkState();
+            }
+        }
+    }
+
+    /**
+     * Completes the upload once all the parts have been uploaded, or aborts it if it failed.
+     *
+     * @throws IOException if the upload failed or the thread was interrupted, in which case the upload has been aborted
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        checkState();
+
+        try {
+            if (!upload.isInitiated()) {
+                // Small object: a single request is enough
+                upload.putObject(buffer == null ? new byte[0] : buffer, bufferLength);
+            } else {
+                if (bufferLength > 0) {
+                    sendPart();
+                }
+                upload.complete(waitForParts());
+            }
+            closed = true;
+        } catch (IOException e) {
+            abortQuietly();
+            throw e;
+        } finally {
+            buffer = null;
+        }
+    }
+}
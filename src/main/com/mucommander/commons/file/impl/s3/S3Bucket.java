@@ -20,6 +20,7 @@
 package com.mucommander.commons.file.impl.s3;
 
 import com.mucommander.commons.file.*;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import org.jets3t.service.S3Service;
 import org.jets3t.service.S3ServiceException;
@@ -90,6 +91,11 @@ public class S3Bucket extends S3File {
         return listObjects(bucketName, "", this);
     }
 
+    @Override
+    public void ls(FileFilter filter, FileListingHandler handler) throws IOException {
+        listObjects(bucketName, "", this, filter, handler);
+    }
+
     @Override
     public void delete() throws IOException {
         try {
@@ -20,6 +20,7 @@
 package com.mucommander.commons.file.impl.s3;
 
 import com.mucommander.commons.file.*;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.io.RandomAccessOutputStream;
 import com.mucommander.commons.runtime.JavaVersion;
 import org.jets3t.service.Constants;
@@ -84,33 +85,19 @@ public abstract class S3File extends ProtocolFile {
             }
 
             AbstractFile[] children = new AbstractFile[objects.length+commonPrefixes.length];
-            FileURL childURL;
             int i=0;
-            String objectKey;
 
             for(org.jets3t.service.model.S3Object object : objects) {
                 // Discard the object corresponding to the prefix itself
-                objectKey = object.getKey();
-                if(objectKey.equals(prefix))
+                if(object.getKey().equals(prefix))
                     continue;
 
-                childURL = (FileURL)fileURL.clone();
-                childURL.setPath(bucketName + "/" + objectKey);
-
-                children[i] = FileFactory.getFile(childURL, parent, service, object);
+                children[i] = createObjectFile(bucketName, object, parent);
                 i++;
             }
 
-            org.jets3t.service.model.S3Object directoryObject;
             for(String commonPrefix : commonPrefixes) {
-                childURL = (FileURL)fileURL.clone();
-                childURL.setPath(bucketName + "/" + commonPrefix);
-
-                directoryObject = new org.jets3t.service.model.S3Object(commonPrefix);
-                // Common prefixes are not objects per se, and therefore do not have a date, content-length nor owner.
-                directoryObject.setLastModifiedDate(new Date(System.currentTimeMillis()));
-                directoryObject.setContentLength(0);
-                children[i] = FileFactory.getFile(childURL, parent, service, directoryObject);
+                children[i] = createCommonPrefixFile(bucketName, commonPrefix, parent);
                 i++;
             }
 
@@ -132,6 +119,80 @@ public abstract class S3File extends ProtocolFile {
     }
 
 
+    /**
+     * Lists the objects and common prefixes located under the given prefix one chunk of keys at a time, each chunk
+     * being retrieved with a separate request, and reports them to the given handler as they are received.
+     *
+     * @param bucketName name of the bucket to list
+     * @param prefix key prefix of the objects to list, <code>""</code> for the root of the bucket
+     * @param parent parent file of the listed files
+     * @param filter files that do not match this filter are not reported, may be <code>null</code>
+     * @param handler the handler the files are reported to
+     * @throws IOException if the prefix does not exist or if an error occurred
+     */
+    protected void listObjects(String bucketName, String prefix, S3File parent, FileFilter filter, FileListingHandler handler) throws IOException {
+        FileListingBuffer buffer = new FileListingBuffer(filter, handler);
+
+        try {
+            String priorLastKey = null;
+            boolean firstChunk = true;
+            do {
+                S3ObjectsChunk chunk = service.listObjectsChunked(bucketName, prefix, "/", Constants.DEFAULT_OBJECT_LIST_CHUNK_SIZE, priorLastKey, false);
+                org.jets3t.service.model.S3Object objects[] = chunk.getObjects();
+
+                if(firstChunk && objects.length==0 && !prefix.equals("")) {
+                    // This happens only when the directory does not exist
+                    throw new IOException();
+                }
+                firstChunk = false;
+
+                for(org.jets3t.service.model.S3Object object : objects) {
+                    // Discard the object corresponding to the prefix itself
+                    if(object.getKey().equals(prefix))
+                        continue;
+
+                    if(!buffer.add(createObjectFile(bucketName, object, parent)))
+                        return;
+                }
+
+                for(String commonPrefix : chunk.getCommonPrefixes()) {
+                    if(!buffer.add(createCommonPrefixFile(bucketName, commonPrefix, parent)))
+                        return;
+                }
+
+                // Report the files of each chunk without waiting for the next one
+                if(!buffer.flush())
+                    return;
+
+                priorLastKey = chunk.getPriorLastKey();
+            }
+            while(priorLastKey!=null);
+        }
+        catch(S3ServiceException e) {
+            throw getIOException(e);
+        }
+    }
+
+    private AbstractFile createObjectFile(String bucketName, org.jets3t.service.model.S3Object object, S3File parent) throws IOException {
+        FileURL childURL = (FileURL)fileURL.clone();
+        childURL.setPath(bucketName + "/" + object.getKey());
+
+        return FileFactory.getFile(childURL, parent, service, object);
+    }
+
+    private AbstractFile createCommonPrefixFile(String bucketName, String commonPrefix, S3File parent) throws IOException {
+        FileURL childURL = (FileURL)fileURL.clone();
+        childURL.setPath(bucketName + "/" + commonPrefix);
+
+        org.jets3t.service.model.S3Object directoryObject = new org.jets3t.service.model.S3Object(commonPrefix);
+        // Common prefixes are not objects per se, and therefore do not have a date, content-length nor owner.
+        directoryObject.setLastModifiedDate(new Date(System.currentTimeMillis()));
+        directoryObject.setContentLength(0);
+
+        return FileFactory.getFile(childURL, parent, service, directoryObject);
+    }
+
+
     //////////////////////
     // Abstract methods //
     //////////////////////
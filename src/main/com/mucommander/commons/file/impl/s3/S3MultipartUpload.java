@@ -0,0 +1,269 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.s3;
+
+import org.jets3t.service.Constants;
+import org.jets3t.service.S3Service;
+import org.jets3t.service.S3ServiceException;
+import org.jets3t.service.security.AWSCredentials;
+import org.jets3t.service.utils.ServiceUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <code>S3MultipartUpload</code> sends the REST requests of an S3 multipart upload: initiate, upload part, complete
+ * and abort, as well as plain PUT requests for objects that fit in a single part. The version of jets3t that
+ * muCommander uses predates multipart uploads, so the requests are made with <code>java.net</code> and signed the same
+ * way jets3t signs its own requests.
+ *
+ * <p>The methods of this class can be called concurrently, once {@link #initiate()} has returned.</p>
+ *
+ * @see MultipartUploadOutputStream
+ */
+class S3MultipartUpload {
+
+    /** Matches the upload id in the response to an initiate request */
+    private final static Pattern UPLOAD_ID_PATTERN = Pattern.compile("<UploadId>(.*?)</UploadId>");
+
+    /** Matches the error code in the body of an error response */
+    private final static Pattern ERROR_CODE_PATTERN = Pattern.compile("<Code>(.*?)</Code>");
+
+    /** Base URL of the S3 service, e.g. <code>https://s3.amazonaws.com</code> */
+    private final String endpoint;
+
+    private final AWSCredentials credentials;
+
+    /** Path of the object, URL-encoded: <code>/bucket/key</code> */
+    private final String resource;
+
+    /** Id of the upload, <code>null</code> until initiated */
+    private volatile String uploadId;
+
+
+    /**
+     * Creates a new <code>S3MultipartUpload</code> for the given object, using the endpoint and credentials of the
+     * given service.
+     *
+     * @param service the service that hosts the object
+     * @param bucketName name of the object's bucket
+     * @param key key of the object
+     * @return a new <code>S3MultipartUpload</code>, not initiated yet
+     * @throws IOException if the key could not be encoded
+     */
+    static S3MultipartUpload create(S3Service service, String bucketName, String key) throws IOException {
+        String host = service.getJetS3tProperties().getStringProperty("s3service.s3-endpoint", Constants.S3_HOSTNAME);
+        String endpoint = (service.isHttpsOnly() ? "https://" : "http://") + host;
+
+        return new S3MultipartUpload(endpoint, service.getAWSCredentials(), bucketName, key);
+    }
+
+    S3MultipartUpload(String endpoint, AWSCredentials credentials, String bucketName, String key) throws IOException {
+        this.endpoint = endpoint;
+        this.credentials = credentials;
+        this.resource = "/" + bucketName + "/" + encodePath(key);
+    }
+
+    /**
+     * URL-encodes each segment of the given path, encoding spaces as <code>%20</code> as S3 expects.
+     */
+    private static String encodePath(String path) throws IOException {
+        StringBuilder encoded = new StringBuilder();
+        String segments[] = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (i > 0) {
+                encoded.append('/');
+            }
+            encoded.append(URLEncoder.encode(segment, "UTF-8").replace("+", "%20").replace("*", "%2A").replace("%7E", "~"));
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Uploads the given bytes as the whole object, with a single PUT request.
+     *
+     * @param data bytes of the object
+     * @param length number of bytes of <code>data</code> that make up the object
+     * @throws IOException if the request failed
+     */
+    void putObject(byte data[], int length) throws IOException {
+        HttpURLConnection conn = openConnection("PUT", "");
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(length);
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(data, 0, length);
+        }
+        readResponse(conn);
+    }
+
+    /**
+     * Starts the multipart upload. This method must be called before any part is uploaded.
+     *
+     * @throws IOException if the request failed
+     */
+    void initiate() throws IOException {
+        HttpURLConnection conn = openConnection("POST", "?uploads");
+        String response = readResponse(conn);
+
+        Matcher matcher = UPLOAD_ID_PATTERN.matcher(response);
+        if (!matcher.find()) {
+            throw new IOException("No upload id in response: " + response);
+        }
+        uploadId = matcher.group(1);
+    }
+
+    /**
+     * Uploads a part of the object.
+     *
+     * @param partNumber number of the part, starting at 1
+     * @param data bytes of the part
+     * @param length number of bytes of <code>data</code> that make up the part
+     * @return the ETag of the part, to be passed to {@link #complete(List)}
+     * @throws IOException if the request failed
+     */
+    String uploadPart(int partNumber, byte data[], int length) throws IOException {
+        HttpURLConnection conn = openConnection("PUT", "?partNumber=" + partNumber + "&uploadId=" + uploadId);
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(length);
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(data, 0, length);
+        }
+        readResponse(conn);
+
+        String etag = conn.getHeaderField("ETag");
+        if (etag == null) {
+            throw new IOException("No ETag for part " + partNumber);
+        }
+        return etag;
+    }
+
+    /**
+     * Assembles the uploaded parts into the object.
+     *
+     * @param etags ETags of the parts, in the order of their numbers
+     * @throws IOException if the request failed
+     */
+    void complete(List<String> etags) throws IOException {
+        StringBuilder body = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            body.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                .append(etags.get(i)).append("</ETag></Part>");
+        }
+        body.append("</CompleteMultipartUpload>");
+        byte bytes[] = body.toString().getBytes("UTF-8");
+
+        HttpURLConnection conn = openConnection("POST", "?uploadId=" + uploadId);
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(bytes.length);
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(bytes);
+        }
+
+        // S3 may report an error in the body of a 200 response, once the parts have been assembled
+        String response = readResponse(conn);
+        Matcher matcher = ERROR_CODE_PATTERN.matcher(response);
+        if (response.contains("<Error>") && matcher.find()) {
+            throw new IOException("Failed to complete upload: " + matcher.group(1));
+        }
+    }
+
+    /**
+     * Aborts the upload, freeing the parts that have been uploaded. Does nothing if the upload has not been initiated.
+     *
+     * @throws IOException if the request failed
+     */
+    void abort() throws IOException {
+        if (uploadId == null) {
+            return;
+        }
+        readResponse(openConnection("DELETE", "?uploadId=" + uploadId));
+    }
+
+    /**
+     * Returns <code>true</code> once {@link #initiate()} has succeeded.
+     */
+    boolean isInitiated() {
+        return uploadId != null;
+    }
+
+    /**
+     * Opens a connection to the object with the given sub-resource and signs the request.
+     */
+    private HttpURLConnection openConnection(String method, String subResource) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(endpoint + resource + subResource).openConnection();
+        conn.setRequestMethod(method);
+
+        String date = ServiceUtils.formatRfc822Date(new Date());
+        String contentType = method.equals("PUT") || method.equals("POST") ? "application/octet-stream" : "";
+        if (!contentType.isEmpty()) {
+            conn.setRequestProperty("Content-Type", contentType);
+        }
+        conn.setRequestProperty("Date", date);
+
+        String canonicalString = method + "\n\n" + contentType + "\n" + date + "\n" + resource + subResource;
+        try {
+            conn.setRequestProperty("Authorization",
+                    "AWS " + credentials.getAccessKey() + ":" + ServiceUtils.signWithHmacSha1(credentials.getSecretKey(), canonicalString));
+        }
+        catch(S3ServiceException e) {
+            throw new IOException(e);
+        }
+
+        return conn;
+    }
+
+    /**
+     * Reads the body of the response, throwing an <code>IOException</code> if the response code is not 2xx.
+     */
+    private static String readResponse(HttpURLConnection conn) throws IOException {
+        int responseCode = conn.getResponseCode();
+        InputStream in = responseCode < 400 ? conn.getInputStream() : conn.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try {
+                byte buffer[] = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, n);
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+
+        String response = body.toString("UTF-8");
+        if (responseCode < 200 || responseCode >= 300) {
+            Matcher matcher = ERROR_CODE_PATTERN.matcher(response);
+            throw new IOException("S3 request failed: " + responseCode + " " + (matcher.find() ? matcher.group(1) : conn.getResponseMessage()));
+        }
+
+        return response;
+    }
+}
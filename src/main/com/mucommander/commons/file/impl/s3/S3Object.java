@@ -20,8 +20,10 @@
 package com.mucommander.commons.file.impl.s3;
 
 import com.mucommander.commons.file.*;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.io.BufferPool;
 import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.commons.io.ParallelRangeInputStream;
 import com.mucommander.commons.io.RandomAccessInputStream;
 import com.mucommander.commons.io.StreamUtils;
 import org.jets3t.service.S3Service;
@@ -142,6 +144,11 @@ public class S3Object extends S3File {
         return listObjects(bucketName, getObjectKey(true), this);
     }
 
+    @Override
+    public void ls(FileFilter filter, FileListingHandler handler) throws IOException {
+        listObjects(bucketName, getObjectKey(true), this, filter, handler);
+    }
+
     @Override
     public void mkdir() throws IOException {
         if(exists())
@@ -228,6 +235,14 @@ public class S3Object extends S3File {
 
     @Override
     public InputStream getInputStream(long offset) throws IOException {
+        // Large objects are read with several GET Range requests at once, the blocks are large enough for the cost of
+        // the extra requests to be negligible
+        if (getSize() - offset > S3ObjectRangeInputStream.BLOCK_SIZE) {
+            S3ObjectRangeInputStream in = new S3ObjectRangeInputStream();
+            in.seek(offset);
+            return in;
+        }
+
         try {
             // Note: do *not* use S3ObjectRandomAccessInputStream if the object is to be read sequentially, as it would
             // add unnecessary billing overhead since it reads the object chunk by chunk, each in a separate GET request.
@@ -342,48 +357,37 @@ public class S3Object extends S3File {
             putObject(in, length);
         }
         else {
-            // Copy the stream to a temporary file so that we can know the object's length, which has to be declared
-            // in the PUT request's headers (that is before the transfer is started).
-            final AbstractFile tempFile;
-            final OutputStream tempOut;
+            // The object's length, which has to be declared in the PUT request's headers, is not known: upload the
+            // stream in parts instead of copying it to a temporary file first
+            MultipartUploadOutputStream out;
             try {
-                tempFile = FileFactory.getTemporaryFile(false);
-                tempOut = tempFile.getOutputStream();
+                out = new MultipartUploadOutputStream(S3MultipartUpload.create(service, bucketName, getObjectKey(false)));
             } catch (IOException e) {
                 throw new FileTransferException(FileTransferException.OPENING_DESTINATION);
             }
 
             try {
-                // Copy the stream to the temporary file
-                try {
-                    StreamUtils.copyStream(in, tempOut, IO_BUFFER_SIZE);
-                }
-                finally {
-                    // Close the stream even if copyStream() threw an IOException
-                    try {
-                        tempOut.close();
-                    } catch(IOException e) {
-                        // Do not re-throw the exception to prevent swallowing the exception thrown in the try block
-                    }
-                }
-
-                InputStream tempIn;
-                try {
-                    tempIn = tempFile.getInputStream();
-                } catch(IOException e) {
-                    throw new FileTransferException(FileTransferException.OPENING_SOURCE);
-                }
-
-                putObject(tempIn, tempFile.getSize());
+                StreamUtils.copyStream(in, out, IO_BUFFER_SIZE);
             }
-            finally {
-                // Delete the temporary file, no matter what.
+            catch(FileTransferException e) {
+                // Do not create the object if the stream could not be copied entirely
                 try {
-                    tempFile.delete();
-                } catch(IOException e) {
-                    // Do not re-throw the exception to prevent exceptions caught in the catch block from being replaced
+                    out.abort();
+                } catch(IOException e2) {
+                    // Do not re-throw the exception to prevent swallowing the exception thrown in the try block
                 }
+                throw e;
             }
+
+            try {
+                out.close();
+            } catch(IOException e) {
+                throw new FileTransferException(FileTransferException.CLOSING_DESTINATION);
+            }
+
+            // Update local file attributes
+            atts.updateAttributes();
+            atts.updateExpirationDate();
         }
     }
 
@@ -528,6 +532,46 @@ public class S3Object extends S3File {
         }
     }
 
+    /**
+     * Reads a large S3 object sequentially with several GET Range requests in progress at once, each of them reading
+     * a {@link #BLOCK_SIZE} block of the object.
+     *
+     * <p>Note: A GET request on Amazon S3 costs the equivalent of 6KB of data transferred, the blocks are large enough
+     * for this to be negligible. They are too large to make this class a good fit for random access though, see
+     * {@link S3ObjectRandomAccessInputStream}.</p>
+     */
+    private class S3ObjectRangeInputStream extends ParallelRangeInputStream {
+
+        /** Amount of data returned by each 'GET Object' request */
+        private final static int BLOCK_SIZE = 8 * 1024 * 1024;
+
+        /** Maximum number of 'GET Object' requests in progress at once */
+        private final static int MAX_PENDING_BLOCKS = 4;
+
+        protected S3ObjectRangeInputStream() {
+            super(getSize(), BLOCK_SIZE, MAX_PENDING_BLOCKS);
+        }
+
+
+        /////////////////////////////////////////////
+        // ParallelRangeInputStream implementation //
+        /////////////////////////////////////////////
+
+        @Override
+        protected int readBlock(long fileOffset, byte[] block, int blockLen) throws IOException {
+            try {
+                // Note: the end of the range is inclusive
+                try (InputStream in = service.getObject(bucketName, getObjectKey(false), null, null, null, null, fileOffset, fileOffset+blockLen-1)
+                        .getDataInputStream()) {
+                    return StreamUtils.readUpTo(in, block, 0, blockLen);
+                }
+            }
+            catch(S3ServiceException e) {
+                throw getIOException(e);
+            }
+        }
+    }
+
 //    /**
 //     * Reads an S3 object block by block. Each block is read by issuing a GET request with a specified Range.
 //     *
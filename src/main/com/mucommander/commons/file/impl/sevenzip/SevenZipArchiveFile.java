@@ -83,8 +83,30 @@ public class SevenZipArchiveFile extends AbstractROArchiveFile {
 
     }
 
+    /**
+     * Returns an iterator that extracts the given entries with a single extraction: in a solid archive, extracting the
+     * entries one at a time would decompress the data that precedes each of them again.
+     */
+    @Override
+    public ArchiveEntryIterator getEntryIterator(Collection<ArchiveEntry> entriesToRead) throws IOException, UnsupportedFileOperationException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        ArchiveEntryIterator iterator = getEntryIterator();
+        ArchiveEntry entry;
+        while ((entry = iterator.nextEntry()) != null) {
+            entries.add(entry);
+        }
+        return new SevenZipEntryIterator(entries, entriesToRead);
+    }
+
     @Override
     public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException, UnsupportedFileOperationException {
+        if (entryIterator instanceof SinglePassEntryIterator) {
+            InputStream in = ((SinglePassEntryIterator)entryIterator).getEntryInputStream(entry);
+            if (in != null) {
+                return in;
+            }
+        }
+
         final int[] in = new int[1];
         in[0] = (Integer)entry.getEntryObject();
         final CircularByteBuffer cbb = new CircularByteBuffer(CircularByteBuffer.INFINITE_SIZE);
@@ -137,6 +159,87 @@ public class SevenZipArchiveFile extends AbstractROArchiveFile {
         return result;
     }
 
+    /**
+     * Extracts the entries to read in one call to {@link ISevenZipInArchive#extract(int[], boolean, IArchiveExtractCallback)},
+     * using an archive instance of its own.
+     */
+    private class SevenZipEntryIterator extends SinglePassEntryIterator {
+
+        SevenZipEntryIterator(List<ArchiveEntry> entries, Collection<ArchiveEntry> entriesToRead) {
+            super(entries, entriesToRead);
+        }
+
+        @Override
+        protected void extractEntries(List<ArchiveEntry> entriesToRead) throws IOException {
+            // Entries are iterated in index order, so are the indices
+            final Map<Integer, ArchiveEntry> entriesByIndex = new HashMap<>();
+            int[] indices = new int[entriesToRead.size()];
+            for (int i = 0; i < indices.length; i++) {
+                ArchiveEntry entry = entriesToRead.get(i);
+                indices[i] = (Integer)entry.getEntryObject();
+                entriesByIndex.put(indices[i], entry);
+            }
+
+            ISevenZipInArchive archive = null;
+            try {
+                archive = SevenZip.openInArchive(ArchiveFormat.SEVEN_ZIP, new SevenZipRandomAccessFile(file));
+                archive.extract(indices, false, new IArchiveExtractCallback() {
+                    private OutputStream out;
+
+                    public ISequentialOutStream getStream(int index, ExtractAskMode extractAskMode) throws SevenZipException {
+                        ArchiveEntry entry = entriesByIndex.get(index);
+                        if (entry == null || extractAskMode != ExtractAskMode.EXTRACT) {
+                            return null;
+                        }
+                        out = getEntryOutputStream(entry);
+                        return data -> {
+                            try {
+                                out.write(data);
+                            } catch (IOException e) {
+                                throw new SevenZipException(e);
+                            }
+                            return data.length;
+                        };
+                    }
+
+                    public void prepareOperation(ExtractAskMode extractAskMode) {
+                    }
+
+                    public void setOperationResult(ExtractOperationResult extractOperationResult) throws SevenZipException {
+                        if (out == null) {
+                            return;
+                        }
+                        if (extractOperationResult != ExtractOperationResult.OK) {
+                            throw new SevenZipException("Extraction error: " + extractOperationResult);
+                        }
+                        try {
+                            out.close();
+                        } catch (IOException e) {
+                            throw new SevenZipException(e);
+                        }
+                        out = null;
+                    }
+
+                    public void setCompleted(long completeValue) {
+                    }
+
+                    public void setTotal(long total) {
+                    }
+                });
+            } catch (SevenZipException e) {
+                throw new IOException(e);
+            } finally {
+                if (archive != null) {
+                    try {
+                        archive.close();
+                    } catch (SevenZipException e) {
+                        LOGGER.info("Error closing archive", e);
+                    }
+                }
+            }
+        }
+    }
+
     private static class ArchiveOpenVolumeCallback implements IArchiveOpenVolumeCallback {
 
         /**
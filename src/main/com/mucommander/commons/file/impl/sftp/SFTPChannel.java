@@ -0,0 +1,790 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.sftp;
+
+import com.sshtools.j2ssh.io.ByteArrayReader;
+import com.sshtools.j2ssh.io.ByteArrayWriter;
+import com.sshtools.j2ssh.sftp.FileAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SFTPChannel is a client for version 3 of the SFTP protocol which, unlike J2SSH's <code>SftpSubsystemClient</code>,
+ * does not wait for the response to a request before sending the next one. Each request is sent as soon as it is
+ * made and returns a {@link CompletableFuture}, a reader thread completes the futures in whatever order the server
+ * sends the responses. A single channel can thus be shared by several threads: a folder can be listed while a file is
+ * being transferred, the attributes of many files can be requested at once, and {@link ReadAheadInputStream} and
+ * {@link WriteBehindOutputStream} keep several blocks in flight to hide the round-trip time.
+ *
+ * <p>Futures are completed by the reader thread, which must not be blocked: callers should wait for them with
+ * {@link #await(CompletableFuture)} rather than chain blocking operations to them.</p>
+ */
+class SFTPChannel implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SFTPChannel.class);
+
+    /** Version of the protocol implemented by this class */
+    private final static int PROTOCOL_VERSION = 3;
+
+    // Message types
+    private final static int SSH_FXP_INIT = 1;
+    private final static int SSH_FXP_VERSION = 2;
+    private final static int SSH_FXP_OPEN = 3;
+    private final static int SSH_FXP_CLOSE = 4;
+    private final static int SSH_FXP_READ = 5;
+    private final static int SSH_FXP_WRITE = 6;
+    private final static int SSH_FXP_LSTAT = 7;
+    private final static int SSH_FXP_FSTAT = 8;
+    private final static int SSH_FXP_SETSTAT = 9;
+    private final static int SSH_FXP_OPENDIR = 11;
+    private final static int SSH_FXP_READDIR = 12;
+    private final static int SSH_FXP_REMOVE = 13;
+    private final static int SSH_FXP_MKDIR = 14;
+    private final static int SSH_FXP_RMDIR = 15;
+    private final static int SSH_FXP_STAT = 17;
+    private final static int SSH_FXP_RENAME = 18;
+    private final static int SSH_FXP_READLINK = 19;
+    private final static int SSH_FXP_STATUS = 101;
+    private final static int SSH_FXP_HANDLE = 102;
+    private final static int SSH_FXP_DATA = 103;
+    private final static int SSH_FXP_NAME = 104;
+    private final static int SSH_FXP_ATTRS = 105;
+
+    // Status codes
+    private final static int SSH_FX_OK = 0;
+    private final static int SSH_FX_EOF = 1;
+    private final static int SSH_FX_NO_SUCH_FILE = 2;
+
+    // Flags of SSH_FXP_OPEN
+    final static int OPEN_READ = 0x01;
+    final static int OPEN_WRITE = 0x02;
+    final static int OPEN_APPEND = 0x04;
+    final static int OPEN_CREATE = 0x08;
+    final static int OPEN_TRUNCATE = 0x10;
+
+    /** Number of bytes requested by a read and sent by a write: 32 KB is the largest size all servers accept */
+    final static int BLOCK_SIZE = 32768;
+
+    /** Maximum number of read or write requests that a stream keeps in flight */
+    final static int MAX_PENDING_BLOCKS = 16;
+
+    /**
+     * Maximum length of a message sent by the server: 256 KB, the limit of OpenSSH, plus room for the header of the
+     * message. Longer messages are rejected rather than allocated.
+     */
+    final static int MAX_MESSAGE_LENGTH = 256 * 1024 + 1024;
+
+    /** Minimum length of a message: its type followed by a request id, or by the version for SSH_FXP_VERSION */
+    private final static int MIN_MESSAGE_LENGTH = 5;
+
+    private final DataInputStream in;
+    private final OutputStream out;
+
+    /** Requests that have been sent and whose response hasn't been received yet, by request id */
+    private final Map<Integer, PendingRequest<?>> pendingRequests = new ConcurrentHashMap<>();
+
+    private final AtomicInteger lastRequestId = new AtomicInteger();
+
+    /** The reason why the channel was closed, null while it is open */
+    private volatile IOException closeCause;
+
+
+    /**
+     * Creates a new channel that sends requests to the given stream and reads responses from the other one, usually
+     * those of an SSH session running the <code>sftp</code> subsystem. The protocol version is negotiated before
+     * this constructor returns.
+     *
+     * @param in the stream the server's messages are read from
+     * @param out the stream the client's messages are written to
+     * @throws IOException if the server doesn't speak version 3 of the protocol or if an I/O error occurred
+     */
+    SFTPChannel(InputStream in, OutputStream out) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        this.out = out;
+
+        // SSH_FXP_INIT and SSH_FXP_VERSION are the only messages without a request id
+        ByteArrayWriter init = new ByteArrayWriter();
+        init.writeInt(5);
+        init.write(SSH_FXP_INIT);
+        init.writeInt(PROTOCOL_VERSION);
+        out.write(init.toByteArray());
+        out.flush();
+
+        byte message[] = readMessage();
+        if (message[0] != SSH_FXP_VERSION) {
+            throw new IOException("Unexpected SFTP message " + message[0]);
+        }
+        int serverVersion = (int)ByteArrayReader.readInt(message, 1);
+        if (serverVersion < PROTOCOL_VERSION) {
+            throw new IOException("Unsupported SFTP version " + serverVersion);
+        }
+
+        Thread readerThread = new Thread(this::readResponses, "SFTP channel reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * Returns <code>true</code> until the channel has been closed or the connection has been lost.
+     *
+     * @return <code>true</code> if requests can be sent through the channel
+     */
+    boolean isOpen() {
+        return closeCause == null;
+    }
+
+    /**
+     * Closes the streams of the channel. Requests that are still pending fail with an <code>IOException</code>.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closeCause == null) {
+            closeCause = new IOException("SFTP channel closed");
+        }
+        try {
+            out.close();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Waits for a request of this channel to complete and returns its result.
+     *
+     * @param future a future returned by this channel
+     * @param <T> type of the result
+     * @return the result of the request
+     * @throws IOException if the request failed, or if the thread was interrupted
+     */
+    static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+
+    //////////////
+    // Requests //
+    //////////////
+
+    CompletableFuture<byte[]> open(String path, int flags, FileAttributes attributes) throws IOException {
+        Request request = new Request(SSH_FXP_OPEN);
+        request.writeString(path);
+        request.writeInt(flags);
+        request.write(attributes.toByteArray());
+        return send(request, SFTPChannel::parseHandle);
+    }
+
+    CompletableFuture<byte[]> openDirectory(String path) throws IOException {
+        Request request = new Request(SSH_FXP_OPENDIR);
+        request.writeString(path);
+        return send(request, SFTPChannel::parseHandle);
+    }
+
+    /**
+     * Closes a file or directory handle.
+     */
+    CompletableFuture<Void> close(byte handle[]) throws IOException {
+        Request request = new Request(SSH_FXP_CLOSE);
+        request.writeBinaryString(handle);
+        return send(request, SFTPChannel::parseStatus);
+    }
+
+    /**
+     * Reads up to <code>length</code> bytes at the given offset. The future returns <code>null</code> if the offset is
+     * at or past the end of the file. Servers may return fewer bytes than requested even if the end of the file is not
+     * reached.
+     */
+    CompletableFuture<byte[]> read(byte handle[], long offset, int length) throws IOException {
+        Request request = new Request(SSH_FXP_READ);
+        request.writeBinaryString(handle);
+        request.writeLong(offset);
+        request.writeInt(length);
+        return send(request, (type, reader) -> {
+            if (type == SSH_FXP_DATA) {
+                return reader.readBinaryString();
+            }
+            return parseEOF(type, reader);
+        });
+    }
+
+    /**
+     * Writes <code>b[off..off+len)</code> at the given offset. The bytes are copied before this method returns.
+     */
+    CompletableFuture<Void> write(byte handle[], long offset, byte b[], int off, int len) throws IOException {
+        Request request = new Request(SSH_FXP_WRITE);
+        request.writeBinaryString(handle);
+        request.writeLong(offset);
+        request.writeInt(len);
+        request.write(b, off, len);
+        return send(request, SFTPChannel::parseStatus);
+    }
+
+    /**
+     * Returns the next entries of a directory, <code>null</code> once all of them have been returned.
+     */
+    CompletableFuture<List<DirectoryEntry>> readDirectory(byte handle[]) throws IOException {
+        Request request = new Request(SSH_FXP_READDIR);
+        request.writeBinaryString(handle);
+        return send(request, (type, reader) -> {
+            if (type != SSH_FXP_NAME) {
+                return parseEOF(type, reader);
+            }
+            int count = (int)reader.readInt();
+            List<DirectoryEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String filename = reader.readString();
+                reader.readString();        // long name, as displayed by 'ls -l'
+                entries.add(new DirectoryEntry(filename, new FileAttributes(reader)));
+            }
+            return entries;
+        });
+    }
+
+    /**
+     * Returns the attributes of a file, following symlinks.
+     */
+    CompletableFuture<FileAttributes> stat(String path) throws IOException {
+        return stat(SSH_FXP_STAT, path);
+    }
+
+    /**
+     * Returns the attributes of a file, not following symlinks.
+     */
+    CompletableFuture<FileAttributes> lstat(String path) throws IOException {
+        return stat(SSH_FXP_LSTAT, path);
+    }
+
+    private CompletableFuture<FileAttributes> stat(int type, String path) throws IOException {
+        Request request = new Request(type);
+        request.writeString(path);
+        return send(request, SFTPChannel::parseAttributes);
+    }
+
+    CompletableFuture<FileAttributes> stat(byte handle[]) throws IOException {
+        Request request = new Request(SSH_FXP_FSTAT);
+        request.writeBinaryString(handle);
+        return send(request, SFTPChannel::parseAttributes);
+    }
+
+    /**
+     * Changes the attributes of a file, only those whose flag is set in the given attributes are changed.
+     */
+    CompletableFuture<Void> setAttributes(String path, FileAttributes attributes) throws IOException {
+        Request request = new Request(SSH_FXP_SETSTAT);
+        request.writeString(path);
+        request.write(attributes.toByteArray());
+        return send(request, SFTPChannel::parseStatus);
+    }
+
+    CompletableFuture<Void> removeFile(String path) throws IOException {
+        Request request = new Request(SSH_FXP_REMOVE);
+        request.writeString(path);
+        return send(request, SFTPChannel::parseStatus);
+    }
+
+    CompletableFuture<Void> makeDirectory(String path, FileAttributes attributes) throws IOException {
+        Request request = new Request(SSH_FXP_MKDIR);
+        request.writeString(path);
+        request.write(attributes.toByteArray());
+        return send(request, SFTPChannel::parseStatus);
+    }
+
+    CompletableFuture<Void> removeDirectory(String path) throws IOException {
+        Request request = new Request(SSH_FXP_RMDIR);
+        request.writeString(path);
+        return send(request, SFTPChannel::parseStatus);
+    }
+
+    /**
+     * Renames a file. Version 3 servers fail if the destination exists.
+     */
+    CompletableFuture<Void> rename(String oldPath, String newPath) throws IOException {
+        Request request = new Request(SSH_FXP_RENAME);
+        request.writeString(oldPath);
+        request.writeString(newPath);
+        return send(request, SFTPChannel::parseStatus);
+    }
+
+    /**
+     * Returns the target of a symlink, as stored in the link: it may be relative to the link's parent folder.
+     */
+    CompletableFuture<String> readLink(String path) throws IOException {
+        Request request = new Request(SSH_FXP_READLINK);
+        request.writeString(path);
+        return send(request, (type, reader) -> {
+            if (type != SSH_FXP_NAME) {
+                throw parseError(type, reader);
+            }
+            reader.readInt();       // count, always 1
+            return reader.readString();
+        });
+    }
+
+
+    /////////////////////
+    // Message parsing //
+    /////////////////////
+
+    private static byte[] parseHandle(int type, ByteArrayReader reader) throws IOException {
+        if (type != SSH_FXP_HANDLE) {
+            throw parseError(type, reader);
+        }
+        return reader.readBinaryString();
+    }
+
+    private static FileAttributes parseAttributes(int type, ByteArrayReader reader) throws IOException {
+        if (type != SSH_FXP_ATTRS) {
+            throw parseError(type, reader);
+        }
+        return new FileAttributes(reader);
+    }
+
+    private static Void parseStatus(int type, ByteArrayReader reader) throws IOException {
+        if (type != SSH_FXP_STATUS || reader.readInt() != SSH_FX_OK) {
+            reader.reset();
+            throw parseError(type, reader);
+        }
+        return null;
+    }
+
+    /**
+     * Returns <code>null</code> if the message is an end-of-file status, throws an exception otherwise.
+     */
+    private static <T> T parseEOF(int type, ByteArrayReader reader) throws IOException {
+        if (type == SSH_FXP_STATUS && reader.readInt() == SSH_FX_EOF) {
+            return null;
+        }
+        reader.reset();
+        throw parseError(type, reader);
+    }
+
+    /**
+     * Returns the exception that corresponds to an error status or to an unexpected message.
+     */
+    private static IOException parseError(int type, ByteArrayReader reader) throws IOException {
+        if (type != SSH_FXP_STATUS) {
+            return new IOException("Unexpected SFTP message " + type);
+        }
+        int status = (int)reader.readInt();
+        String message = reader.readString();
+        if (status == SSH_FX_NO_SUCH_FILE) {
+            return new FileNotFoundException(message);
+        }
+        return new IOException(message + " (SFTP status " + status + ")");
+    }
+
+
+    /////////////
+    // Sending //
+    /////////////
+
+    /**
+     * Sends a request and returns the future its response will complete.
+     */
+    private <T> CompletableFuture<T> send(Request request, ResponseParser<T> parser) throws IOException {
+        PendingRequest<T> pendingRequest = new PendingRequest<>(parser);
+        pendingRequests.put(request.id, pendingRequest);
+        try {
+            synchronized (out) {
+                // Checked after the request has been registered, so that either this thread or the reader thread fails it
+                if (closeCause != null) {
+                    throw closeCause;
+                }
+                request.send(out);
+            }
+        } catch (IOException e) {
+            pendingRequests.remove(request.id);
+            throw e;
+        }
+        return pendingRequest.future;
+    }
+
+
+    /////////////
+    // Reading //
+    /////////////
+
+    /**
+     * Reads a message: its type followed by its contents.
+     *
+     * @throws IOException if the length of the message is shorter than {@link #MIN_MESSAGE_LENGTH} or longer than
+     * {@link #MAX_MESSAGE_LENGTH}, or if an I/O error occurred
+     */
+    private byte[] readMessage() throws IOException {
+        int length = in.readInt();
+        if (length < MIN_MESSAGE_LENGTH || length > MAX_MESSAGE_LENGTH) {
+            throw new IOException("Invalid SFTP message length " + length);
+        }
+        byte message[] = new byte[length];
+        in.readFully(message);
+        return message;
+    }
+
+    /**
+     * Body of the reader thread: completes the pending requests with their responses until the channel is closed.
+     */
+    private void readResponses() {
+        try {
+            while (true) {
+                byte message[] = readMessage();
+                int type = message[0] & 0xFF;
+                int id = (int)ByteArrayReader.readInt(message, 1);
+                PendingRequest<?> pendingRequest = pendingRequests.remove(id);
+                if (pendingRequest == null) {
+                    LOGGER.info("Discarding SFTP response to unknown request {}", id);
+                    continue;
+                }
+                ByteArrayReader reader = new ByteArrayReader(message);
+                reader.skip(5);
+                reader.mark(0);
+                pendingRequest.complete(type, reader);
+            }
+        } catch (IOException e) {
+            if (closeCause == null) {
+                LOGGER.info("SFTP channel closed", e);
+                closeCause = e;
+            }
+        }
+
+        for (Integer id : pendingRequests.keySet()) {
+            PendingRequest<?> pendingRequest = pendingRequests.remove(id);
+            if (pendingRequest != null) {
+                pendingRequest.future.completeExceptionally(closeCause);
+            }
+        }
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Parses the response to a request, positioned after the request id.
+     */
+    private interface ResponseParser<T> {
+        T parse(int type, ByteArrayReader reader) throws IOException;
+    }
+
+    private static class PendingRequest<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final ResponseParser<T> parser;
+
+        private PendingRequest(ResponseParser<T> parser) {
+            this.parser = parser;
+        }
+
+        private void complete(int type, ByteArrayReader reader) {
+            try {
+                future.complete(parser.parse(type, reader));
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * A request message, which is built in memory and sent with a single write.
+     */
+    private class Request extends ByteArrayWriter {
+        private final int id = lastRequestId.incrementAndGet();
+
+        private Request(int type) throws IOException {
+            writeInt(0);        // length, set by send()
+            write(type);
+            writeInt(id);
+        }
+
+        private void writeLong(long value) throws IOException {
+            writeInt((int)(value >>> 32));
+            writeInt((int)value);
+        }
+
+        private void send(OutputStream out) throws IOException {
+            int length = count - 4;
+            buf[0] = (byte)(length >>> 24);
+            buf[1] = (byte)(length >>> 16);
+            buf[2] = (byte)(length >>> 8);
+            buf[3] = (byte)length;
+            out.write(buf, 0, count);
+            out.flush();
+        }
+    }
+
+    /**
+     * An entry returned by {@link #readDirectory(byte[])}: the attributes of symlinks are those of the link itself.
+     */
+    static class DirectoryEntry {
+        final String filename;
+        final FileAttributes attributes;
+
+        private DirectoryEntry(String filename, FileAttributes attributes) {
+            this.filename = filename;
+            this.attributes = attributes;
+        }
+    }
+
+
+    /**
+     * Reads a file handle of a channel, keeping up to {@link #MAX_PENDING_BLOCKS} read requests in flight ahead of
+     * the current position. The stream closes the handle when it is closed.
+     */
+    static class ReadAheadInputStream extends InputStream {
+
+        private final SFTPChannel channel;
+        private final byte handle[];
+
+        /** Reads that have been requested, at consecutive offsets starting at the end of the current block */
+        private final ArrayDeque<CompletableFuture<byte[]>> pendingReads = new ArrayDeque<>();
+
+        /** Offset of the next read request */
+        private long requestOffset;
+
+        /** Offset in the file of the next byte returned by this stream */
+        private long position;
+
+        /** Last block that has been received, null if none */
+        private byte block[];
+        private int blockPosition;
+
+        private boolean eof;
+        private boolean closed;
+
+        ReadAheadInputStream(SFTPChannel channel, byte handle[], long offset) {
+            this.channel = channel;
+            this.handle = handle;
+            this.position = offset;
+            this.requestOffset = offset;
+        }
+
+        /**
+         * Makes sure that the current block has bytes left to be read, returns false at the end of the file.
+         */
+        private boolean fill() throws IOException {
+            while (block == null || blockPosition == block.length) {
+                if (eof) {
+                    return false;
+                }
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                while (pendingReads.size() < MAX_PENDING_BLOCKS) {
+                    pendingReads.add(channel.read(handle, requestOffset, BLOCK_SIZE));
+                    requestOffset += BLOCK_SIZE;
+                }
+                block = await(pendingReads.poll());
+                blockPosition = 0;
+                if (block == null) {
+                    eof = true;
+                    pendingReads.clear();
+                } else if (block.length < BLOCK_SIZE) {
+                    // The server returned fewer bytes than requested: the reads in flight don't start where this
+                    // block ends, request them again
+                    pendingReads.clear();
+                    requestOffset = position + block.length;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            position++;
+            return block[blockPosition++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte b[], int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, block.length - blockPosition);
+            System.arraycopy(block, blockPosition, b, off, n);
+            blockPosition += n;
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return block == null ? 0 : block.length - blockPosition;
+        }
+
+        /**
+         * Returns the offset in the file of the next byte returned by this stream.
+         */
+        long getPosition() {
+            return position;
+        }
+
+        /**
+         * Moves to the given offset, discarding the bytes that have been read ahead.
+         */
+        void seek(long offset) {
+            pendingReads.clear();
+            block = null;
+            eof = false;
+            position = offset;
+            requestOffset = offset;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingReads.clear();
+            block = null;
+            await(channel.close(handle));
+        }
+    }
+
+
+    /**
+     * Writes to a file handle of a channel by blocks of {@link #BLOCK_SIZE} bytes, without waiting for the previous
+     * blocks to be acknowledged: up to {@link #MAX_PENDING_BLOCKS} writes are in flight. Errors are reported by a
+     * later write, by {@link #flush()} or by {@link #close()}. The stream closes the handle when it is closed.
+     */
+    static class WriteBehindOutputStream extends OutputStream {
+
+        private final SFTPChannel channel;
+        private final byte handle[];
+
+        private final ArrayDeque<CompletableFuture<Void>> pendingWrites = new ArrayDeque<>();
+
+        /** Offset in the file of the first byte of the buffer */
+        private long offset;
+
+        private final byte buffer[] = new byte[BLOCK_SIZE];
+        private int count;
+
+        private boolean closed;
+
+        WriteBehindOutputStream(SFTPChannel channel, byte handle[], long offset) {
+            this.channel = channel;
+            this.handle = handle;
+            this.offset = offset;
+        }
+
+        /**
+         * Sends a block, once there are fewer than {@link #MAX_PENDING_BLOCKS} writes in flight.
+         */
+        private void sendBlock(byte b[], int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (pendingWrites.size() >= MAX_PENDING_BLOCKS) {
+                await(pendingWrites.poll());
+            }
+            pendingWrites.add(channel.write(handle, offset, b, off, len));
+            offset += len;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == BLOCK_SIZE) {
+                sendBlock(buffer, 0, count);
+                count = 0;
+            }
+            buffer[count++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte b[], int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == 0 && len >= BLOCK_SIZE) {
+                    // Send directly, the bytes are copied into the request
+                    sendBlock(b, off, BLOCK_SIZE);
+                    off += BLOCK_SIZE;
+                    len -= BLOCK_SIZE;
+                    continue;
+                }
+                int n = Math.min(len, BLOCK_SIZE - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == BLOCK_SIZE) {
+                    sendBlock(buffer, 0, count);
+                    count = 0;
+                }
+            }
+        }
+
+        /**
+         * Sends the buffered bytes and waits for all the writes in flight to be acknowledged.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                sendBlock(buffer, 0, count);
+                count = 0;
+            }
+            while (!pendingWrites.isEmpty()) {
+                await(pendingWrites.poll());
+            }
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            try {
+                flush();
+            } finally {
+                closed = true;
+                await(channel.close(handle));
+            }
+        }
+    }
+}
@@ -23,10 +23,9 @@ import com.mucommander.commons.file.AuthException;
 import com.mucommander.commons.file.Credentials;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.connection.ConnectionHandler;
-import com.sshtools.j2ssh.SftpClient;
 import com.sshtools.j2ssh.SshClient;
 import com.sshtools.j2ssh.authentication.*;
-import com.sshtools.j2ssh.sftp.SftpSubsystemClient;
+import com.sshtools.j2ssh.session.SessionChannelClient;
 import com.sshtools.j2ssh.transport.IgnoreHostKeyVerification;
 import com.sshtools.j2ssh.transport.publickey.InvalidSshKeyException;
 import com.sshtools.j2ssh.transport.publickey.SshPrivateKey;
@@ -39,7 +38,8 @@ import java.io.IOException;
 import java.util.List;
 
 /**
- * Handles connections to SFTP servers.
+ * Handles connections to SFTP servers. The connection is {@link #isMultiplexed() multiplexed}: it is shared by the
+ * threads accessing the server, whose requests are all sent through a single {@link SFTPChannel}.
  *
  * @author Maxence Bernard, Vassil Dichev
  */
@@ -47,8 +47,13 @@ class SFTPConnectionHandler extends ConnectionHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(SFTPConnectionHandler.class);
 
     SshClient sshClient;
-    SftpClient sftpClient;
-    SftpSubsystemClient sftpSubsystem;
+    /** The session running the SFTP subsystem */
+    private SessionChannelClient session;
+    /** The channel requests are sent through, null if the connection is not started */
+    volatile SFTPChannel channel;
+
+    /** Lock that prevents threads sharing this connection from starting it more than once */
+    private final Object connectionLock = new Object();
 
     /** 'Password' SSH authentication method */
     private final static String PASSWORD_AUTH_METHOD = "password";
@@ -185,9 +190,12 @@ class SFTPConnectionHandler extends ConnectionHandler {
                 throwAuthException(e.getMessage());
             }
 
-            // Init SFTP connections
-            sftpClient = sshClient.openSftpClient();
-            sftpSubsystem = sshClient.openSftpChannel();
+            // Init SFTP channel
+            session = sshClient.openSessionChannel();
+            if (!session.startSubsystem("sftp")) {
+                throw new IOException("Failed to start the SFTP subsystem");
+            }
+            channel = new SFTPChannel(session.getInputStream(), session.getOutputStream());
         } catch(IOException e) {
             LOGGER.info("IOException thrown while starting connection", e);
 
@@ -197,8 +205,8 @@ class SFTPConnectionHandler extends ConnectionHandler {
             }
 
             sshClient = null;
-            sftpClient = null;
-            sftpSubsystem = null;
+            session = null;
+            channel = null;
 
             // Re-throw exception
             throw e;
@@ -206,29 +214,43 @@ class SFTPConnectionHandler extends ConnectionHandler {
     }
 
 
+    /**
+     * Overridden to start the connection only once when several threads sharing it check it at the same time.
+     */
+    @Override
+    public boolean checkConnection() throws IOException {
+        synchronized(connectionLock) {
+            return super.checkConnection();
+        }
+    }
+
+    @Override
+    public boolean isMultiplexed() {
+        return true;
+    }
+
     @Override
     public synchronized boolean isConnected() {
         return sshClient!=null && sshClient.isConnected()
-            && sftpClient!=null && !sftpClient.isClosed()
-            && sftpSubsystem !=null && !sftpSubsystem.isClosed();
+            && channel!=null && channel.isOpen();
     }
 
 
     @Override
     public synchronized void closeConnection() {
-        if (sftpClient != null) {
+        if (channel != null) {
             try {
-                sftpClient.quit();
+                channel.close();
             } catch(IOException e) {
-                LOGGER.info("IOException caught while calling sftpClient.quit()", e);
+                LOGGER.info("IOException caught while calling channel.close()", e);
             }
         }
 
-        if (sftpSubsystem != null) {
+        if (session != null) {
             try {
-                sftpSubsystem.close();
+                session.close();
             } catch(IOException e) {
-                LOGGER.info("IOException caught while calling sftpChannel.close ()");
+                LOGGER.info("IOException caught while calling session.close()", e);
             }
         }
 
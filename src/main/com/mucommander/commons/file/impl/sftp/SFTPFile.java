@@ -23,18 +23,21 @@ package com.mucommander.commons.file.impl.sftp;
 import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.connection.ConnectionHandler;
 import com.mucommander.commons.file.connection.ConnectionPool;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.io.*;
 import com.sshtools.j2ssh.io.UnsignedInteger32;
 import com.sshtools.j2ssh.sftp.FileAttributes;
-import com.sshtools.j2ssh.sftp.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.mucommander.commons.file.impl.sftp.SFTPChannel.await;
 
 
 /**
@@ -52,10 +55,11 @@ import java.util.List;
  * </p>
  *
  * <p>Internally, SFTPFile uses {@link ConnectionPool} to create SFTP connections as needed and allows them to be
- * reused by SFTPFile instances located on the same server, dealing with concurrency issues. Connections are
- * thus managed transparently and need not be manually managed.</p>
+ * shared by SFTPFile instances located on the same server, dealing with concurrency issues. Connections are
+ * thus managed transparently and need not be manually managed. Requests are multiplexed by {@link SFTPChannel}:
+ * a connection serves several threads at once, and streams keep several reads or writes in flight.</p>
  *
- * <p>Low-level SFTP implementation is provided by the <code>J2SSH</code> library distributed under the LGPL license.</p>
+ * <p>The SSH transport is provided by the <code>J2SSH</code> library distributed under the LGPL license.</p>
  *
  * @see ConnectionPool
  * @author Maxence Bernard
@@ -78,6 +82,8 @@ public class SFTPFile extends ProtocolFile {
     private String canonicalPath;
     /** Timestamp when the canonical path value was fetched */
     private long canonicalPathFetchedTime;
+    /** Symlink target resolved when this file was listed, null if it hasn't been resolved */
+    private AbstractFile canonicalFile;
 
 
     /** Period of time during which file attributes are cached, before being fetched again from the server. */
@@ -129,18 +135,31 @@ public class SFTPFile extends ProtocolFile {
         attributeCachingPeriod = period;
     }
 
-    private OutputStream getOutputStream(boolean append) throws IOException {
-        // Retrieve a ConnectionHandler and lock it
-        final SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
+    /**
+     * Returns a connection handler that the calling thread shares with the other threads accessing the server, and
+     * makes sure its connection is started. {@link ConnectionHandler#releaseSharedUse()} must be called once the
+     * handler is no longer used.
+     */
+    private static SFTPConnectionHandler getConnectionHandler(FileURL url) throws IOException {
+        SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getSharedConnectionHandler(CONN_HANDLER_FACTORY, url);
         try {
             // Makes sure the connection is started, if not starts it
             connHandler.checkConnection();
+        } catch(IOException e) {
+            connHandler.releaseSharedUse();
+            throw e;
+        }
+        return connHandler;
+    }
 
-            SftpFile sftpFile;
+    private OutputStream getOutputStream(boolean append) throws IOException {
+        final SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
+        try {
+            byte handle[];
             if(exists()) {
-                sftpFile = connHandler.sftpSubsystem.openFile(absPath,
-                    append?SftpSubsystemClient.OPEN_WRITE|SftpSubsystemClient.OPEN_APPEND
-                    :SftpSubsystemClient.OPEN_WRITE|SftpSubsystemClient.OPEN_TRUNCATE);
+                handle = await(connHandler.channel.open(absPath,
+                    append?SFTPChannel.OPEN_WRITE|SFTPChannel.OPEN_APPEND
+                    :SFTPChannel.OPEN_WRITE|SFTPChannel.OPEN_TRUNCATE, new FileAttributes()));
 
                 // Update local attributes
                 if(!append)
@@ -150,7 +169,7 @@ public class SFTPFile extends ProtocolFile {
                 // Note: by default, permissions for files freshly created is 0 (not readable/writable/executable by anyone)!
                 FileAttributes atts = new FileAttributes();
                 atts.setPermissions(new UnsignedInteger32(0644));
-                sftpFile = connHandler.sftpSubsystem.openFile(absPath, SftpSubsystemClient.OPEN_WRITE|SftpSubsystemClient.OPEN_CREATE, atts);
+                handle = await(connHandler.channel.open(absPath, SFTPChannel.OPEN_WRITE|SFTPChannel.OPEN_CREATE, atts));
 
                 // Update local attributes
                 fileAttributes.setExists(true);
@@ -159,15 +178,19 @@ public class SFTPFile extends ProtocolFile {
             }
 
             return new CounterOutputStream(
-                // Custom SftpFileOutputStream constructor, not part of the official J2SSH API
-                new SftpFileOutputStream(sftpFile, append ? getSize() : 0L) {
+                new SFTPChannel.WriteBehindOutputStream(connHandler.channel, handle, append ? getSize() : 0L) {
                     @Override
                     public void close() throws IOException {
-                        // SftpFileOutputStream.close() closes the open SftpFile file handle
-                        super.close();
-
-                        // Release the lock on the ConnectionHandler
-                        connHandler.releaseLock();
+                        if (isClosed())
+                            return;
+
+                        try {
+                            // Closes the file handle
+                            super.close();
+                        } finally {
+                            // Release the ConnectionHandler
+                            connHandler.releaseSharedUse();
+                        }
                     }
                 }
                 ,
@@ -180,8 +203,8 @@ public class SFTPFile extends ProtocolFile {
                 }
             );
         } catch(IOException e) {
-            // Release the lock on the ConnectionHandler if the OutputStream could not be created
-            connHandler.releaseLock();
+            // Release the ConnectionHandler if the OutputStream could not be created
+            connHandler.releaseSharedUse();
 
             // Re-throw IOException
             throw e;
@@ -228,36 +251,18 @@ public class SFTPFile extends ProtocolFile {
 
     @Override
     public void changeDate(long lastModified) throws IOException, UnsupportedFileOperationException {
-        SFTPConnectionHandler connHandler = null;
-        SftpFile sftpFile = null;
+        SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
         try {
-            // Retrieve a ConnectionHandler and lock it
-            connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
-
-            // Makes sure the connection is started, if not starts it
-            connHandler.checkConnection();
-
-            // Retrieve an SftpFile instance for write, will throw an IOException if the file does not exist or cannot
-            // be written.
-            // /!\ SftpFile instance must be closed afterwards to release its file handle
-            sftpFile = connHandler.sftpSubsystem.openFile(absPath, SftpSubsystemClient.OPEN_WRITE);
-            FileAttributes attributes = sftpFile.getAttributes();
-            attributes.setTimes(attributes.getAccessedTime(), new UnsignedInteger32(lastModified/1000));
-            connHandler.sftpSubsystem.setAttributes(sftpFile, attributes);
+            // Will throw an IOException if the file does not exist. Only the times are sent back to the server.
+            FileAttributes attributes = await(connHandler.channel.stat(absPath));
+            FileAttributes times = new FileAttributes();
+            times.setTimes(attributes.getAccessedTime(), new UnsignedInteger32(lastModified/1000));
+            await(connHandler.channel.setAttributes(absPath, times));
             // Update local attribute copy
             fileAttributes.setDate(lastModified);
         } finally {
-            // Close SftpFile instance to release its handle
-            if (sftpFile != null) {
-                try {
-                    sftpFile.close();
-                } catch (IOException ignore) {}
-            }
-
-            // Release the lock on the ConnectionHandler
-            if (connHandler != null) {
-                connHandler.releaseLock();
-            }
+            // Release the ConnectionHandler
+            connHandler.releaseSharedUse();
         }
     }
 
@@ -369,19 +374,12 @@ public class SFTPFile extends ProtocolFile {
 
     @Override
     public void delete() throws IOException {
-        // Retrieve a ConnectionHandler and lock it
-        SFTPConnectionHandler connHandler = null;
+        SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
         try {
-            // Retrieve a ConnectionHandler and lock it
-            connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
-
-            // Makes sure the connection is started, if not starts it
-            connHandler.checkConnection();
-
             if (isDirectory()) {
-                connHandler.sftpSubsystem.removeDirectory(absPath);
+                await(connHandler.channel.removeDirectory(absPath));
             } else {
-                connHandler.sftpSubsystem.removeFile(absPath);
+                await(connHandler.channel.removeFile(absPath));
             }
 
             // Update local attributes
@@ -390,85 +388,145 @@ public class SFTPFile extends ProtocolFile {
             fileAttributes.setSymlink(false);
             fileAttributes.setSize(0);
         } finally {
-            // Release the lock on the ConnectionHandler if the OutputStream could not be created
-            if (connHandler != null) {
-                connHandler.releaseLock();
-            }
+            // Release the ConnectionHandler
+            connHandler.releaseSharedUse();
         }
     }
 
 
     @Override
     public AbstractFile[] ls() throws IOException {
-        // Retrieve a ConnectionHandler and lock it
-        SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
-        List<SftpFile> files;
-        try {
-            // Makes sure the connection is started, if not starts it
-            connHandler.checkConnection();
+        final List<AbstractFile> children = new ArrayList<>();
+        ls(null, files -> {
+            for (AbstractFile file : files) {
+                children.add(file);
+            }
+            return true;
+        });
+        return children.toArray(new AbstractFile[children.size()]);
+    }
 
-    //        connHandler.sftpSubsystem.listChildren(file, files);        // Modified J2SSH method to remove the 100 files limitation
+    /**
+     * Overridden to report children as they are returned by the server, which sends the contents of a directory in
+     * batches of a few hundred files: each batch is requested with a separate <code>SSH_FXP_READDIR</code> message.
+     * The targets of the symlinks of a batch are resolved before it is reported, see
+     * {@link #resolveSymlinks(SFTPChannel, List)}.
+     */
+    @Override
+    public void ls(FileFilter filter, FileListingHandler handler) throws IOException {
+        FileListingBuffer buffer = new FileListingBuffer(filter, handler);
 
-            // Use SftpClient.ls() rather than SftpChannel.listChildren() as it seems to be working better
-            files = connHandler.sftpClient.ls(absPath);
-        } finally {
-            // Release the lock on the ConnectionHandler
-            connHandler.releaseLock();
+        String parentPath = fileURL.getPath();
+        if (!parentPath.endsWith(SEPARATOR)) {
+            parentPath += SEPARATOR;
         }
 
-        int nbFiles = files.size();
-
-        // File doesn't exist, return an empty file array
-        if (nbFiles == 0)
-            return new AbstractFile[] {};
+        SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
+        try {
+            SFTPChannel channel = connHandler.channel;
+            byte dir[] = await(channel.openDirectory(absPath));
+            try {
+                List<SFTPChannel.DirectoryEntry> entries;
+                while ((entries = await(channel.readDirectory(dir))) != null) {
+                    List<AbstractFile> children = new ArrayList<>(entries.size());
+                    List<SFTPFile> symlinks = new ArrayList<>();
+                    for (SFTPChannel.DirectoryEntry entry : entries) {
+                        String filename = entry.filename;
+                        // Discard '.' and '..' files, dunno why these are returned
+                        if (filename.equals(".") || filename.equals(".."))
+                            continue;
+
+                        FileURL childURL = (FileURL) fileURL.clone();
+                        childURL.setPath(parentPath + filename);
+
+                        AbstractFile child = FileFactory.getFile(childURL, this, new SFTPFileAttributes(childURL, entry.attributes));
+                        children.add(child);
+                        if (child != null && entry.attributes.isLink()) {
+                            symlinks.add(child.getAncestor(SFTPFile.class));
+                        }
+                    }
 
-        AbstractFile children[] = new AbstractFile[nbFiles];
+                    resolveSymlinks(channel, symlinks);
 
-        int fileCount = 0;
-        String parentPath = fileURL.getPath();
-        if (!parentPath.endsWith(SEPARATOR)) {
-            parentPath += SEPARATOR;
+                    for (AbstractFile child : children) {
+                        if (!buffer.add(child))
+                            return;
+                    }
+                }
+            } finally {
+                await(channel.close(dir));
+            }
+        } finally {
+            // Release the ConnectionHandler
+            connHandler.releaseSharedUse();
         }
 
-        // Fill AbstractFile array and discard '.' and '..' files
-        for (SftpFile file : files) {
-            String filename = file.getFilename();
-            // Discard '.' and '..' files, dunno why these are returned
-            if (filename.equals(".") || filename.equals(".."))
-                continue;
+        buffer.flush();
+    }
 
-            FileURL childURL = (FileURL) fileURL.clone();
-            childURL.setPath(parentPath + filename);
+    /**
+     * Resolves the targets of symlinks that have just been listed, so that their attributes, which are those of
+     * their target, don't have to be fetched one after the other with two round-trips each. The links of all
+     * symlinks are read at once, then the attributes of all targets. Symlinks whose target can't be resolved are
+     * left as is, they will be resolved when needed.
+     *
+     * @param channel the channel the symlinks were listed with
+     * @param symlinks symlinks that have just been listed
+     */
+    private static void resolveSymlinks(SFTPChannel channel, List<SFTPFile> symlinks) throws IOException {
+        if (symlinks.isEmpty())
+            return;
 
-            children[fileCount++] = FileFactory.getFile(childURL, this, new SFTPFileAttributes(childURL, file.getAttributes()));
+        List<CompletableFuture<String>> links = new ArrayList<>(symlinks.size());
+        for (SFTPFile symlink : symlinks) {
+            links.add(channel.readLink(symlink.absPath));
         }
 
-        // create new array of the exact file count
-        if (fileCount < nbFiles) {
-            AbstractFile newChildren[] = new AbstractFile[fileCount];
-            System.arraycopy(children, 0, newChildren, 0, fileCount);
-            return newChildren;
+        List<FileURL> targetURLs = new ArrayList<>(symlinks.size());
+        List<CompletableFuture<FileAttributes>> targetAttributes = new ArrayList<>(symlinks.size());
+        for (int i = 0; i < symlinks.size(); i++) {
+            FileURL targetURL = null;
+            CompletableFuture<FileAttributes> attributes = null;
+            try {
+                targetURL = symlinks.get(i).getSymlinkTargetURL(await(links.get(i)));
+                attributes = channel.stat(targetURL.getPath());
+            } catch(IOException e) {
+                // Resolved when needed
+            }
+            targetURLs.add(targetURL);
+            targetAttributes.add(attributes);
         }
 
-        return children;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < symlinks.size(); i++) {
+            if (targetAttributes.get(i) == null)
+                continue;
+            try {
+                FileURL targetURL = targetURLs.get(i);
+                AbstractFile target = FileFactory.getFile(targetURL, null, new SFTPFileAttributes(targetURL, await(targetAttributes.get(i))));
+                if (target == null)
+                    continue;
+
+                SFTPFile symlink = symlinks.get(i);
+                symlink.canonicalFile = target;
+                symlink.canonicalPath = targetURL.toString(false);
+                symlink.canonicalPathFetchedTime = now;
+            } catch(IOException e) {
+                // Dangling symlink, resolved when needed
+            }
+        }
     }
 
 	
     @Override
     public void mkdir() throws IOException {
-        // Retrieve a ConnectionHandler and lock it
-        SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
+        SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
         try {
-            // Makes sure the connection is started, if not starts it
-            connHandler.checkConnection();
-
-            // Note: this J2SSH method has been patched to set the permissions of the new directory to 0755 (rwxr-xr-x)
-            // instead of 0. This patches allows to avoid a 'change permissions' request (cf comment code hereunder).
-            connHandler.sftpSubsystem.makeDirectory(absPath);
-
-//            // Set new directory permissions to 755 octal (493 dec): "rwxr-xr-x"
-//            // Note: by default, permissions for files freshly created is 0 (not readable/writable/executable by anyone)!
-//            connHandler.sftpSubsystem.changePermissions(absPath, 493);
+            // Set new directory permissions to 755 octal (493 dec): "rwxr-xr-x"
+            // Note: by default, permissions for files freshly created is 0 (not readable/writable/executable by anyone)!
+            FileAttributes atts = new FileAttributes();
+            atts.setPermissions(new UnsignedInteger32(0755));
+            await(connHandler.channel.makeDirectory(absPath, atts));
 
             // Update local attributes
             fileAttributes.setExists(true);
@@ -476,8 +534,8 @@ public class SFTPFile extends ProtocolFile {
             fileAttributes.setDate(System.currentTimeMillis());
             fileAttributes.setSize(0);
         } finally {
-            // Release the lock on the ConnectionHandler
-            connHandler.releaseLock();
+            // Release the ConnectionHandler
+            connHandler.releaseSharedUse();
         }
     }
 
@@ -491,21 +549,15 @@ public class SFTPFile extends ProtocolFile {
         // Fail in situations where SFTPFile#renameTo() does not, for instance when the source and destination are the same.
         checkRenamePrerequisites(destFile, true, false);
 
-        // Retrieve a ConnectionHandler and lock it
-        SFTPConnectionHandler connHandler = null;
+        SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
         try {
-            connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
-
-            // Makes sure the connection is started, if not starts it
-            connHandler.checkConnection();
-
-            // SftpClient#rename() throws an IOException if the destination exists (instead of overwriting the file)
+            // SSH_FXP_RENAME fails if the destination exists (instead of overwriting the file)
             if (destFile.exists()) {
                 destFile.delete();
             }
 
             // Will throw an IOException if the operation failed
-            connHandler.sftpClient.rename(absPath, destFile.getURL().getPath());
+            await(connHandler.channel.rename(absPath, destFile.getURL().getPath()));
 
             // Update destination file attributes by fetching them from the server
             ((SFTPFileAttributes)destFile.getUnderlyingFileObject()).fetchAttributes();
@@ -515,9 +567,8 @@ public class SFTPFile extends ProtocolFile {
             fileAttributes.setDirectory(false);
             fileAttributes.setSize(0);
         } finally {
-            // Release the lock on the ConnectionHandler
-            if (connHandler != null)
-                connHandler.releaseLock();
+            // Release the ConnectionHandler
+            connHandler.releaseSharedUse();
         }
     }
 
@@ -602,50 +653,43 @@ public class SFTPFile extends ProtocolFile {
 
     @Override
     public void changePermissions(int permissions) throws IOException {
-        // Retrieve a ConnectionHandler and lock it
-        SFTPConnectionHandler connHandler = null;
+        SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
         try {
-            connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
-
-            // Makes sure the connection is started, if not starts it
-            connHandler.checkConnection();
-
-            connHandler.sftpSubsystem.changePermissions(absPath, permissions);
+            FileAttributes atts = new FileAttributes();
+            atts.setPermissions(new UnsignedInteger32(permissions));
+            await(connHandler.channel.setAttributes(absPath, atts));
             // Update local attribute copy
             fileAttributes.setPermissions(new SimpleFilePermissions(permissions));
-        }
-        finally {
-            // Release the lock on the ConnectionHandler
-            if(connHandler!=null)
-                connHandler.releaseLock();
+        } finally {
+            // Release the ConnectionHandler
+            connHandler.releaseSharedUse();
         }
     }
 
     @Override
     public InputStream getInputStream(long offset) throws IOException {
-        // Retrieve a ConnectionHandler and lock it
-        final SFTPConnectionHandler connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
+        final SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
         try {
-            // Makes sure the connection is started, if not starts it
-            connHandler.checkConnection();
+            byte handle[] = await(connHandler.channel.open(absPath, SFTPChannel.OPEN_READ, new FileAttributes()));
 
-            SftpFile sftpFile = connHandler.sftpSubsystem.openFile(absPath, SftpSubsystemClient.OPEN_READ);
+            return new SFTPChannel.ReadAheadInputStream(connHandler.channel, handle, offset) {
+                @Override
+                public void close() throws IOException {
+                    if (isClosed())
+                        return;
 
-            // Custom made constructor, not part of the official J2SSH API
-            return new SftpFileInputStream(sftpFile, offset) {
-
-                    @Override
-                    public void close() throws IOException {
-                        // SftpFileInputStream.close() closes the open SftpFile file handle
+                    try {
+                        // Closes the file handle
                         super.close();
-
-                        // Release the lock on the ConnectionHandler
-                        connHandler.releaseLock();
+                    } finally {
+                        // Release the ConnectionHandler
+                        connHandler.releaseSharedUse();
+                    }
                 }
             };
         } catch(IOException e) {
-            // Release the lock on the ConnectionHandler if the InputStream could not be created
-            connHandler.releaseLock();
+            // Release the ConnectionHandler if the InputStream could not be created
+            connHandler.releaseSharedUse();
 
             // Re-throw IOException
             throw e;
@@ -659,39 +703,13 @@ public class SFTPFile extends ProtocolFile {
             if (canonicalPath != null && (System.currentTimeMillis() - canonicalPathFetchedTime < attributeCachingPeriod))
                 return canonicalPath;
 
-            SFTPConnectionHandler connHandler = null;
-            try {
-                // Retrieve a ConnectionHandler and lock it
-                connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
-
-                // Makes sure the connection is started, if not starts it
-                connHandler.checkConnection();
-
-                // getSymbolicLinkTarget returns the raw symlink target which can either be an absolute path or a
-                // relative path. If the path is relative preprend the absolute path of the symlink's parent folder.
-                String symlinkTargetPath = connHandler.sftpSubsystem.getSymbolicLinkTarget(fileURL.getPath());
-                if (!symlinkTargetPath.startsWith("/")) {
-                    String parentPath = fileURL.getParent().getPath();
-                    if (!parentPath.endsWith("/")) {
-                        parentPath += "/";
-                    }
-                    symlinkTargetPath = parentPath + symlinkTargetPath;
-                }
-
-                FileURL canonicalURL = (FileURL)fileURL.clone();
-                canonicalURL.setPath(symlinkTargetPath);
-
+            String symlinkTargetPath = getLink();
+            if (symlinkTargetPath != null) {
                 // Cache the value and return it until it expires
-                canonicalPath = canonicalURL.toString(false);
+                canonicalPath = getSymlinkTargetURL(symlinkTargetPath).toString(false);
                 canonicalPathFetchedTime = System.currentTimeMillis();
+                canonicalFile = null;
                 return canonicalPath;
-            } catch(IOException e) {
-                // Simply continue and return the absolute path
-            } finally {
-                // Release the lock on the ConnectionHandler
-                if (connHandler != null) {
-                    connHandler.releaseLock();
-                }
             }
         }
 
@@ -699,6 +717,39 @@ public class SFTPFile extends ProtocolFile {
         return getAbsolutePath();
     }
 
+    /**
+     * Overridden to return the target that was resolved when this symlink was listed, as long as it hasn't expired.
+     */
+    @Override
+    public AbstractFile getCanonicalFile() {
+        AbstractFile target = canonicalFile;
+        if (target != null && isSymlink() && System.currentTimeMillis() - canonicalPathFetchedTime < attributeCachingPeriod)
+            return target;
+
+        return super.getCanonicalFile();
+    }
+
+    /**
+     * Returns the URL of the target of this symlink. The raw symlink target can either be an absolute path or a
+     * path relative to the symlink's parent folder.
+     *
+     * @param symlinkTargetPath the raw symlink target
+     * @return the URL of the target of this symlink
+     */
+    private FileURL getSymlinkTargetURL(String symlinkTargetPath) {
+        if (!symlinkTargetPath.startsWith("/")) {
+            String parentPath = fileURL.getParent().getPath();
+            if (!parentPath.endsWith("/")) {
+                parentPath += "/";
+            }
+            symlinkTargetPath = parentPath + symlinkTargetPath;
+        }
+
+        FileURL targetURL = (FileURL)fileURL.clone();
+        targetURL.setPath(symlinkTargetPath);
+        return targetURL;
+    }
+
     /**
      * If the SFTPFile is a symbolic link, this method returns the name of the file being pointed to by the symbolic link.
      * @return The file pointed to by the symbolic link (null if the FTPFile is not a symbolic link).
@@ -707,27 +758,18 @@ public class SFTPFile extends ProtocolFile {
         if (!isSymlink()) {
             return null;
         }
-        String symlinkTargetPath;
-        SFTPConnectionHandler connHandler = null;
-        // Retrieve a ConnectionHandler and lock it
         try {
-            connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(CONN_HANDLER_FACTORY, fileURL, true);
-            // Makes sure the connection is started, if not starts it
-            connHandler.checkConnection();
-            // getSymbolicLinkTarget returns the raw symlink target which can either be an absolute path or a
-            // relative path. If the path is relative preprend the absolute path of the symlink's parent folder.
-            symlinkTargetPath = connHandler.sftpSubsystem.getSymbolicLinkTarget(fileURL.getPath());
-
-        } catch (IOException e) {
-            symlinkTargetPath = null;
-            e.printStackTrace();
-        } finally {
-            // Release the lock on the ConnectionHandler
-            if (connHandler != null) {
-                connHandler.releaseLock();
+            SFTPConnectionHandler connHandler = getConnectionHandler(fileURL);
+            try {
+                return await(connHandler.channel.readLink(fileURL.getPath()));
+            } finally {
+                // Release the ConnectionHandler
+                connHandler.releaseSharedUse();
             }
+        } catch (IOException e) {
+            LOGGER.info("Failed to read link {}", fileURL, e);
+            return null;
         }
-        return symlinkTargetPath;
     }
 
 
@@ -772,8 +814,7 @@ public class SFTPFile extends ProtocolFile {
 
             // Some information about this value:
             // FileAttribute#isLink() returns a proper value only for FileAttributes instances that were returned by
-            // SftpFile#ls(). FileAttributes that are returned by SftpSubsystemClient#getAttributes(String) always
-            // return false for isLink().
+            // SSH_FXP_READDIR. FileAttributes that are returned by SSH_FXP_STAT always return false for isLink().
             // That means the value of isSymlink is not updated by fetchAttributes(), because if it was, isSymlink
             // would be false after the first attributes update.
             this.isSymlink = attrs.isLink();
@@ -784,21 +825,15 @@ public class SFTPFile extends ProtocolFile {
         private void fetchAttributes() throws AuthException {
             SFTPConnectionHandler connHandler = null;
             try {
-                // Retrieve a ConnectionHandler and lock it
-                connHandler = (SFTPConnectionHandler)ConnectionPool.getConnectionHandler(SFTPFile.CONN_HANDLER_FACTORY, url, true);
-
-                // Makes sure the connection is started, if not starts it
-                connHandler.checkConnection();
+                connHandler = getConnectionHandler(url);
 
                 // Retrieve the file attributes from the server. This will throws an IOException if the file doesn't
                 // exist on the server
-                // Note for symlinks: the FileAttributes returned by SftpSubsystemClient#getAttributes(String)
-                // returns the values of the symlink's target, not the symlink file itself. In other words: the size,
-                // date, isDirectory, isLink values are those of the linked file. This is not a problem, except for
-                // isLink because it makes impossible to detect changes in the isLink state. Changes should not happen
-                // very often, but still.
-                // Todo: try and fix for this in J2SSH
-                setAttributes(connHandler.sftpSubsystem.getAttributes(url.getPath()));
+                // Note for symlinks: SSH_FXP_STAT returns the values of the symlink's target, not the symlink file
+                // itself. In other words: the size, date, isDirectory, isLink values are those of the linked file.
+                // This is not a problem, except for isLink because it makes impossible to detect changes in the
+                // isLink state. Changes should not happen very often, but still.
+                setAttributes(await(connHandler.channel.stat(url.getPath())));
                 setExists(true);
             } catch (IOException e) {
                 // File doesn't exist on the server
@@ -810,9 +845,9 @@ public class SFTPFile extends ProtocolFile {
                 }
             }
             finally {
-                // Release the lock on the ConnectionHandler
+                // Release the ConnectionHandler
                 if (connHandler != null) {
-                    connHandler.releaseLock();
+                    connHandler.releaseSharedUse();
                 }
             }
         }
@@ -884,10 +919,10 @@ public class SFTPFile extends ProtocolFile {
      */
     private class SFTPRandomAccessInputStream extends RandomAccessInputStream {
 
-        private SftpFileInputStream in;
+        private SFTPChannel.ReadAheadInputStream in;
 
         private SFTPRandomAccessInputStream() throws IOException {
-            this.in = (SftpFileInputStream)getInputStream();
+            this.in = (SFTPChannel.ReadAheadInputStream)getInputStream();
         }
 
         @Override
@@ -901,7 +936,6 @@ public class SFTPFile extends ProtocolFile {
         }
 
         public long getOffset() throws IOException {
-            // Custom method, not part of the official J2SSH API
             return in.getPosition();
         }
 
@@ -910,8 +944,7 @@ public class SFTPFile extends ProtocolFile {
         }
 
         public void seek(long offset) throws IOException {
-            // Custom method, not part of the official J2SSH API
-            in.setPosition(offset);
+            in.seek(offset);
         }
 
         @Override
@@ -23,16 +23,21 @@ import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.impl.tar.provider.TarEntry;
 import com.mucommander.commons.file.impl.tar.provider.TarInputStream;
 import com.mucommander.commons.io.StreamUtils;
+import com.mucommander.commons.io.compress.IndexedBzip2InputStream;
+import com.mucommander.commons.io.compress.IndexedGzipInputStream;
+import com.mucommander.commons.io.compress.MultiMemberGzipInputStream;
+import com.mucommander.commons.io.compress.SeekIndex;
+import com.mucommander.commons.io.compress.SeekPoint;
 import com.mucommander.commons.util.StringUtils;
-import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.GZIPInputStream;
 
 
 /**
@@ -47,6 +52,15 @@ import java.util.zip.GZIPInputStream;
 public class TarArchiveFile extends AbstractROArchiveFile {
     private static final Logger LOGGER = LoggerFactory.getLogger(TarArchiveFile.class);
 
+    /** Minimum number of compressed bytes between two seek points */
+    private final static long MIN_SEEK_POINT_SPAN = 4*1024*1024;
+
+    /** Maximum number of seek points recorded for an archive, each of which may hold a 32KB window */
+    private final static int MAX_SEEK_POINTS = 512;
+
+    /** Seek points recorded when the compressed archive was last listed, null if there are none */
+    private volatile SeekIndex seekIndex;
+
     /**
      * Creates a TarArchiveFile on of the given file.
      *
@@ -58,7 +72,8 @@ public class TarArchiveFile extends AbstractROArchiveFile {
 
 
     /**
-     * Returns a TarInputStream which can be used to read TAR entries.
+     * Returns a TarInputStream which can be used to read TAR entries. If the archive is compressed and seek points
+     * were recorded when it was listed, decompression is resumed at the seek point that is the closest to the entry.
      *
      * @param entryOffset offset from the start of the archive to an entry. Must be a multiple of recordSize, or
      * <code>0</code> to start at the first entry.
@@ -68,28 +83,51 @@ public class TarArchiveFile extends AbstractROArchiveFile {
      * or is not implemented.
      */
     private TarInputStream createTarStream(long entryOffset) throws IOException, UnsupportedFileOperationException {
-        InputStream in = file.getInputStream();
+        SeekIndex index = seekIndex;
+        SeekPoint seekPoint = entryOffset>0 && index!=null?index.getSeekPoint(entryOffset):null;
+        if (seekPoint != null) {
+            InputStream in = file.getInputStream(seekPoint.getCompressedOffset());
+            try {
+                in = isGzipCompressed()
+                    ?new IndexedGzipInputStream(in, seekPoint)
+                    :new IndexedBzip2InputStream(new BufferedInputStream(in), seekPoint);
 
-        String name = getName();
+                StreamUtils.skipFully(in, entryOffset-seekPoint.getUncompressedOffset());
+            }
+            catch(IOException e) {
+                in.close();
+                throw e;
+            }
+
+            return new TarInputStream(in, 0);
+        }
+
+        return new TarInputStream(createDecompressingStream(file.getInputStream()), entryOffset);
+    }
+
+    /**
+     * Returns a stream that decompresses the given stream according to the archive's extension, the given stream
+     * itself if the archive is not compressed.
+     *
+     * @param in the stream to decompress
+     * @return a stream that decompresses the given stream
+     * @throws IOException if an error occurred while create the stream
+     */
+    private InputStream createDecompressingStream(InputStream in) throws IOException {
             // Gzip-compressed file
-        if (StringUtils.endsWithIgnoreCase(name, "tgz") || StringUtils.endsWithIgnoreCase(name, "tar.gz"))
+        if (isGzipCompressed())
                 // Note: this will fail for gz/tgz entries inside a tar file (IOException: Not in GZIP format),
                 // why is a complete mystery: the gz/tgz entry can be extracted and then properly browsed
-            in = new GZIPInputStream(in);
+            in = new MultiMemberGzipInputStream(in);
 
         // Bzip2-compressed file
-        else if (StringUtils.endsWithIgnoreCase(name, "tbz2") || StringUtils.endsWithIgnoreCase(name, "tar.bz2")) {
+        else if (isBzip2Compressed()) {
             try {
-                // Skips the 2 magic bytes 'BZ', as required by CBZip2InputStream. Quoted from CBZip2InputStream's Javadoc:
-                // "Although BZip2 headers are marked with the magic 'Bz'. this constructor expects the next byte in the
-                // stream to be the first one after the magic.  Thus callers have to skip the first two bytes. Otherwise
-                // this constructor will throw an exception."
-                StreamUtils.skipFully(in, 2);
-
-                // Quoted from CBZip2InputStream's Javadoc:
-                // "CBZip2InputStream reads bytes from the compressed source stream via the single byte {@link java.io.InputStream#read()
-                // read()} method exclusively. Thus you should consider to use a buffered source stream."
-                in = new CBZip2InputStream(new BufferedInputStream(in));
+                // IndexedBzip2InputStream decompresses the concatenated BZip2 streams written by parallel compressors,
+                // which CBZip2InputStream in its continuous mode fails to do. It reads the 'BZ' magic bytes itself.
+                // CBZip2InputStream, which does the actual decompression, reads the compressed data one byte at a
+                // time, hence the buffered stream.
+                in = new IndexedBzip2InputStream(new BufferedInputStream(in));
             } catch (Exception e) {
                 // CBZip2InputStream is known to throw NullPointerException if file is not properly Bzip2-encoded
                 // so we need to catch those and throw them as IOException
@@ -99,7 +137,46 @@ public class TarArchiveFile extends AbstractROArchiveFile {
             }
         }
 
-        return new TarInputStream(in, entryOffset);
+        return in;
+    }
+
+    /**
+     * Returns a TarInputStream positioned at the start of the archive, that records seek points into the given index
+     * as the compressed archive is read.
+     *
+     * @param index the index to record seek points into
+     * @return a TarInputStream positioned at the start of the archive
+     * @throws IOException if an error occurred while create the stream
+     */
+    private TarInputStream createIndexingTarStream(SeekIndex index) throws IOException {
+        InputStream in = file.getInputStream();
+        try {
+            // CBZip2InputStream reads the compressed data one byte at a time
+            in = isGzipCompressed()
+                ?new IndexedGzipInputStream(in, index)
+                :new IndexedBzip2InputStream(new BufferedInputStream(in), index);
+        }
+        catch(IOException e) {
+            in.close();
+            throw e;
+        }
+        catch(Exception e) {
+            // CBZip2InputStream is known to throw NullPointerException if file is not properly Bzip2-encoded
+            in.close();
+            throw new IOException(e);
+        }
+
+        return new TarInputStream(in, 0);
+    }
+
+    private boolean isGzipCompressed() {
+        String name = getName();
+        return StringUtils.endsWithIgnoreCase(name, "tgz") || StringUtils.endsWithIgnoreCase(name, "tar.gz");
+    }
+
+    private boolean isBzip2Compressed() {
+        String name = getName();
+        return StringUtils.endsWithIgnoreCase(name, "tbz2") || StringUtils.endsWithIgnoreCase(name, "tar.bz2");
     }
 
 
@@ -109,6 +186,17 @@ public class TarArchiveFile extends AbstractROArchiveFile {
 
     @Override
     public ArchiveEntryIterator getEntryIterator() throws IOException, UnsupportedFileOperationException {
+        // Record seek points while reading large compressed archives, so that entries can later be read without
+        // decompressing everything that precedes them
+        long span = Math.max(MIN_SEEK_POINT_SPAN, getSize()/MAX_SEEK_POINTS);
+        if ((isGzipCompressed() || isBzip2Compressed()) && getSize() > span) {
+            SeekIndex index = new SeekIndex(span);
+            seekIndex = index;
+
+            return new TarEntryIterator(createIndexingTarStream(index));
+        }
+
+        seekIndex = null;
         return new TarEntryIterator(createTarStream(0));
     }
 
@@ -149,4 +237,57 @@ public class TarArchiveFile extends AbstractROArchiveFile {
 
         throw new IOException("Unknown TAR entry: "+entry.getName());
     }
+
+
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    /**
+     * Returns <code>true</code>: TAR archives have no central directory and must be read in their entirety to be
+     * listed, which is all the more expensive if they are compressed.
+     */
+    @Override
+    protected boolean isEntriesTreeCacheable() {
+        return true;
+    }
+
+    /**
+     * Returns the offset of the entry's header from the start of the archive.
+     */
+    @Override
+    protected long getCachedEntryLocator(ArchiveEntry entry) {
+        TarEntry tarEntry = (TarEntry)entry.getEntryObject();
+        return tarEntry==null?-1:tarEntry.getOffset();
+    }
+
+    /**
+     * Restores a <code>TarEntry</code> positioned at the cached offset, which is all that
+     * {@link #getEntryInputStream(ArchiveEntry, ArchiveEntryIterator)} needs to locate the entry in the archive.
+     */
+    @Override
+    protected void restoreCachedEntry(ArchiveEntry entry, long locator) {
+        if(locator<0)
+            return;
+
+        TarEntry tarEntry = new TarEntry(entry.getPath());
+        tarEntry.setOffset(locator);
+        entry.setEntryObject(tarEntry);
+    }
+
+    /**
+     * Writes the seek points that were recorded when the archive was listed, if any.
+     */
+    @Override
+    protected void writeCachedArchiveData(DataOutputStream out) throws IOException {
+        SeekIndex index = seekIndex;
+        out.writeBoolean(index!=null);
+        if(index!=null)
+            index.write(out);
+    }
+
+    @Override
+    protected void readCachedArchiveData(DataInputStream in) throws IOException {
+        seekIndex = in.readBoolean()?SeekIndex.read(in):null;
+    }
 }
@@ -73,11 +73,15 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
     /**
      * Checks if the underlying Zip file is up-to-date, i.e. exists and has not changed without this archive file
      * being aware of it. If one of those 2 conditions are not met, (re)load the ZipFile instance (parse the entries)
-     * and declare the Zip file as up-to-date.
+     * and declare the Zip file as up-to-date. The Zip file is never reloaded while a batch is in progress, as it is not
+     * valid until the batch is committed.
      *
      * @throws IOException if an error occurred while reloading
      */
     private void checkZipFile() throws IOException, UnsupportedFileOperationException {
+        if(zipFile!=null && zipFile.isBatchInProgress())
+            return;
+
         long currentDate = file.getDate();
 
         if(zipFile==null || currentDate!=lastZipFileDate) {
@@ -326,6 +330,10 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
         }
     }
 
+    /**
+     * Removes the free space left by deleted entries, moving only the entries located after the first chunk of free
+     * space. If a batch is in progress, it is committed.
+     */
     @Override
     public synchronized void optimizeArchive() throws IOException, UnsupportedFileOperationException {
         checkZipFile();
@@ -343,6 +351,32 @@ public class ZipArchiveFile extends AbstractRWArchiveFile {
     // Overridden methods //
     ////////////////////////
 
+    /**
+     * Starts a batch of modifications: entries added with {@link #addEntry(ArchiveEntry)} are written one after the
+     * other, while deleted and updated entries are only recorded. {@link #commitBatch()} then reclaims the space used by
+     * deleted entries in a single pass, moving only the entries that follow the first deleted one, and writes the
+     * central directory once. Without a batch, each modification rewrites the central directory, which makes adding or
+     * deleting many entries quadratic in the size of the archive.
+     */
+    @Override
+    public synchronized void beginBatch() throws IOException, UnsupportedFileOperationException {
+        checkZipFile();
+
+        zipFile.beginBatch();
+    }
+
+    @Override
+    public synchronized void commitBatch() throws IOException, UnsupportedFileOperationException {
+        if(zipFile==null || !zipFile.isBatchInProgress())
+            return;
+
+        zipFile.commitBatch();
+
+        // Declare the zip file and entries tree up-to-date
+        declareZipFileUpToDate();
+        declareEntriesTreeUpToDate();
+    }
+
     /**
      * Returns <code>true</code> only if the proxied archive file has random read and write access, as reported
      * by {@link AbstractFile#isFileOperationSupported(FileOperation)}. If that is not the case, this archive has 
@@ -90,13 +90,18 @@ public class DeflatedOutputStream extends ZipEntryOutputStream {
     /////////////////////////////////////////
 
     @Override
-    public int getTotalIn() {
-        return deflater.getTotalIn();
+    public void finishEntry() throws IOException {
+        finishDeflate();
+    }
+
+    @Override
+    public long getTotalIn() {
+        return deflater.getBytesRead();
     }
 
     @Override
-    public int getTotalOut() {
-        return deflater.getTotalOut();
+    public long getTotalOut() {
+        return deflater.getBytesWritten();
     }
 
 
@@ -0,0 +1,281 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.zip.provider;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * ParallelDeflatedOutputStream compresses data using the DEFLATED compression method, on several threads.
+ *
+ * <p>The data is split into chunks that are compressed concurrently, the way <i>pigz</i> does: each chunk is compressed
+ * by its own <code>Deflater</code>, primed with the last 32 KB of the previous chunk so that the compression ratio
+ * stays close to that of a single <code>Deflater</code>, and ends with a sync flush so that the compressed chunks can
+ * simply be concatenated. The last chunk ends the deflate stream. The result is a regular deflate stream that any
+ * inflater can read.</p>
+ *
+ * <p>The compressed chunks are written to the underlying stream in order, by the thread that writes to this stream.
+ * At most twice as many chunks as there are threads are held in memory at once: {@link #write(byte[], int, int)}
+ * blocks until the oldest chunk has been compressed when that limit is reached. The CRC is computed by the writing
+ * thread, as the data is written.</p>
+ */
+public class ParallelDeflatedOutputStream extends ZipEntryOutputStream {
+
+    /** Default size of the chunks that are compressed concurrently */
+    public final static int DEFAULT_CHUNK_SIZE = 128 * 1024;
+
+    /** Size of the deflate window, i.e. the amount of previous data a chunk can refer to */
+    private final static int DICTIONARY_SIZE = 32 * 1024;
+
+    /** Threads that compress the chunks, shared by all instances */
+    private final static ExecutorService COMPRESSORS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ParallelDeflatedOutputStream compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Compression level */
+    private final int level;
+
+    /** Size of a chunk */
+    private final int chunkSize;
+
+    /** Maximum number of chunks being compressed or waiting to be written */
+    private final int maxPendingChunks;
+
+    /** Compressed chunks, in the order they are to be written */
+    private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+
+    /** Chunk being filled */
+    private byte chunk[];
+
+    /** Number of bytes in the chunk being filled */
+    private int chunkLength;
+
+    /** Last bytes of the previous chunk, <code>null</code> for the first chunk */
+    private byte dictionary[];
+
+    /** Number of bytes written to this stream */
+    private long totalIn;
+
+    /** Number of compressed bytes written to the underlying stream */
+    private long totalOut;
+
+    /** True once the last chunk has been written */
+    private boolean finished;
+
+
+    /**
+     * Creates a new <code>ParallelDeflatedOutputStream</code> that compresses chunks of {@link #DEFAULT_CHUNK_SIZE}
+     * bytes.
+     *
+     * @param out the OutputStream where the compressed data is sent to
+     * @param level the compression level
+     * @param nbThreads the number of chunks that are compressed at once
+     */
+    public ParallelDeflatedOutputStream(OutputStream out, int level, int nbThreads) {
+        this(out, level, nbThreads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new <code>ParallelDeflatedOutputStream</code>.
+     *
+     * @param out the OutputStream where the compressed data is sent to
+     * @param level the compression level
+     * @param nbThreads the number of chunks that are compressed at once
+     * @param chunkSize the size of the chunks that are compressed concurrently
+     */
+    public ParallelDeflatedOutputStream(OutputStream out, int level, int nbThreads, int chunkSize) {
+        super(out, ZipConstants.DEFLATED);
+
+        this.level = level;
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = Math.max(1, nbThreads) * 2;
+    }
+
+    /**
+     * Compresses the given chunk.
+     *
+     * @param data the chunk's data
+     * @param length the number of bytes of <code>data</code> that make up the chunk
+     * @param dictionary the data that precedes the chunk, <code>null</code> for the first chunk
+     * @param last <code>true</code> if the chunk is the last one, which ends the deflate stream
+     * @return the compressed chunk
+     */
+    private byte[] compress(byte data[], int length, byte dictionary[], boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data, 0, length);
+
+            byte compressed[] = new byte[length + (length >> 8) + 64];
+            int compressedLength = 0;
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (compressedLength == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                }
+            } else {
+                // A sync flush ends the chunk on a byte boundary without ending the deflate stream. Everything has
+                // been flushed once the output buffer is not filled up.
+                while (true) {
+                    int n = deflater.deflate(compressed, compressedLength, compressed.length - compressedLength, Deflater.SYNC_FLUSH);
+                    compressedLength += n;
+                    if (compressedLength < compressed.length) {
+                        break;
+                    }
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+            }
+
+            return compressedLength == compressed.length ? compressed : Arrays.copyOf(compressed, compressedLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Hands the current chunk to the compressor threads.
+     */
+    private void submitChunk() throws IOException {
+        final byte data[] = chunk;
+        final int length = chunkLength;
+        final byte previous[] = dictionary;
+        dictionary = Arrays.copyOfRange(data, Math.max(0, length - DICTIONARY_SIZE), length);
+        chunk = null;
+        chunkLength = 0;
+
+        pendingChunks.add(COMPRESSORS.submit(() -> compress(data, length, previous, false)));
+
+        // Write the chunks that are ready, and wait for the oldest one if too many are pending
+        while (!pendingChunks.isEmpty() && (pendingChunks.size() >= maxPendingChunks || pendingChunks.peek().isDone())) {
+            writeChunk(pendingChunks.poll());
+        }
+    }
+
+    /**
+     * Waits for the given chunk to be compressed and writes it to the underlying stream.
+     */
+    private void writeChunk(Future<byte[]> pendingChunk) throws IOException {
+        byte compressed[];
+        try {
+            compressed = pendingChunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        out.write(compressed);
+        totalOut += compressed.length;
+    }
+
+
+    /////////////////////////////////////////
+    // ZipEntryOutputStream implementation //
+    /////////////////////////////////////////
+
+    /**
+     * Compresses the last chunk and writes all the chunks that have not been written yet.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    @Override
+    public void finishEntry() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        while (!pendingChunks.isEmpty()) {
+            writeChunk(pendingChunks.poll());
+        }
+
+        // The last chunk is compressed by this thread, there is nothing else to do in the meantime
+        byte compressed[] = compress(chunk == null ? new byte[0] : chunk, chunkLength, dictionary, true);
+        out.write(compressed);
+        totalOut += compressed.length;
+        chunk = null;
+        dictionary = null;
+    }
+
+    @Override
+    public long getTotalIn() {
+        return totalIn;
+    }
+
+    @Override
+    public long getTotalOut() {
+        return totalOut;
+    }
+
+
+    /////////////////////////////////
+    // OutputStream implementation //
+    /////////////////////////////////
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+        if (finished) {
+            throw new IOException("Entry finished");
+        }
+        crc.update(b, offset, length);
+        totalIn += length;
+
+        while (length > 0) {
+            if (chunk == null) {
+                chunk = new byte[chunkSize];
+            }
+            int n = Math.min(length, chunkSize - chunkLength);
+            System.arraycopy(b, offset, chunk, chunkLength, n);
+            chunkLength += n;
+            offset += n;
+            length -= n;
+
+            if (chunkLength == chunkSize) {
+                submitChunk();
+            }
+        }
+    }
+
+    /**
+     * Completes writing the entry <b>without</b> closing the underlying <code>OutputStream</code>.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    @Override
+    public void close() throws IOException {
+        finishEntry();
+    }
+}
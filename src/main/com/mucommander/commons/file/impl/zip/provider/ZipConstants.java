@@ -54,6 +54,21 @@ public interface ZipConstants {
      * */
     long MAX_ZIP32_SIZE = 4294967295l;
 
+    /**
+     * Maximum number of entries of a Zip32 file, i.e. (2^16)-1.
+     */
+    int MAX_ZIP32_ENTRIES = 65535;
+
+    /**
+     * Header id of the ZIP64 extended information extra field
+     */
+    int ZIP64_EXTRA_ID = 0x0001;
+
+    /**
+     * 'Version needed to extract' of entries that use ZIP64 extensions
+     */
+    int ZIP64_VERSION = 45;
+
     /**
      * Size of write buffers
      */
@@ -83,4 +98,14 @@ public interface ZipConstants {
      * End of central dir signature
      */
     static final byte[] EOCD_SIG = ZipLong.getBytes(0X06054B50L);
+
+    /**
+     * ZIP64 end of central dir signature
+     */
+    static final byte[] ZIP64_EOCD_SIG = ZipLong.getBytes(0X06064B50L);
+
+    /**
+     * ZIP64 end of central dir locator signature
+     */
+    static final byte[] ZIP64_EOCD_LOCATOR_SIG = ZipLong.getBytes(0X07064B50L);
 }
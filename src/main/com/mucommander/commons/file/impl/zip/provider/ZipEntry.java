@@ -376,11 +376,13 @@ public class ZipEntry implements Cloneable {
     /**
      * Sets the uncompressed size of the entry data.
      *
+     * <p>Sizes greater than 0xFFFFFFFF bytes are stored using the ZIP64 extensions.</p>
+     *
      * @param size the uncompressed size in bytes
-     * @throws IllegalArgumentException if the specified size is less than 0 or greater than 0xFFFFFFFF bytes
+     * @throws IllegalArgumentException if the specified size is less than 0
      */
     public void setSize(long size) {
-        if(!isValidUnsignedInt(size))
+        if(size<0)
 	        throw new IllegalArgumentException("Invalid entry size");
 
 	    this.size = size;
@@ -400,9 +402,10 @@ public class ZipEntry implements Cloneable {
      * Sets the size of the compressed entry data.
      *
      * @param csize the compressed size to set to
+     * @throws IllegalArgumentException if the specified size is less than 0
      */
     public void setCompressedSize(long csize) {
-        if(!isValidUnsignedInt(csize))
+        if(csize<0)
 	        throw new IllegalArgumentException("Invalid entry size");
 
         this.compressedSize = csize;
@@ -39,6 +39,9 @@ final class ZipEntryInfo {
     /** Offset to the start of file data */
     long dataOffset = -1;
 
+    /** Offset to the data of the ZIP64 extra field in the local file header, relative to the header, -1 if none */
+    long zip64ExtraOffset = -1;
+
     /** <code>true</code> if this entry has a data descriptor in the Zip file */
     boolean hasDataDescriptor;
 
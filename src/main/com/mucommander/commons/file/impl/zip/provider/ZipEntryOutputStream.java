@@ -31,10 +31,12 @@ import java.util.zip.CRC32;
  * current checksum value. The {@link #getTotalIn()} and {@link #getTotalOut()} methods keep track of the uncompressed
  * and compressed of the supplied data.</p>
  *
- * <p>There currently are two implementations of this class:
+ * <p>There currently are three implementations of this class:
  * <ul>
  *  <li>{@link com.mucommander.commons.file.impl.zip.provider.DeflatedOutputStream}: implements the DEFLATED compression method
  *  </li>
+ *  <li>{@link com.mucommander.commons.file.impl.zip.provider.ParallelDeflatedOutputStream}: implements the DEFLATED
+ * compression method using several threads</li>
  *  <li>{@link com.mucommander.commons.file.impl.zip.provider.StoredOutputStream}: implements the STORED compression method
  * (i.e. no compression)</li>
  * </ul>
@@ -102,6 +104,16 @@ public abstract class ZipEntryOutputStream extends OutputStream {
         write(array, 0, 1);
     }
 
+    /**
+     * Completes writing the compressed data <b>without</b> closing the underlying <code>OutputStream</code>. This
+     * method is called once all the entry's data has been written, before the CRC and sizes are retrieved. This
+     * implementation does nothing.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    public void finishEntry() throws IOException {
+    }
+
     /**
      * Flushes the underlying <code>OutputStream</code>.
      */
@@ -120,12 +132,12 @@ public abstract class ZipEntryOutputStream extends OutputStream {
      *
      * @return the uncompressed size of the data written so far
      */
-    public abstract int getTotalIn();
+    public abstract long getTotalIn();
 
     /**
      * Returns the compressed size of the data written so far.
      *
      * @return the compressed size of the data written so far
      */
-    public abstract int getTotalOut();
+    public abstract long getTotalOut();
 }
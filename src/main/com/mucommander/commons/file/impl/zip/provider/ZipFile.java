@@ -25,8 +25,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 import java.util.zip.Deflater;
@@ -100,6 +103,24 @@ public class ZipFile implements ZipConstants {
     /** Holds byte buffer instance used to convert short and longs, avoids creating lots of small arrays */
     private ZipBuffer zipBuffer = new ZipBuffer();
 
+    /** True while a batch of modifications is in progress, see {@link #beginBatch()} */
+    private boolean batchInProgress;
+
+    /** True if the zip file has been modified since the current batch was started */
+    private boolean batchModified;
+
+    /** Offset at which the next entry is added during a batch, -1 until an entry has been added */
+    private long batchAppendOffset = -1;
+
+    /** True while the stream of an entry returned by {@link #addEntry(ZipEntry)} has not been closed */
+    private boolean entryStreamOpen;
+
+    /** True if the current batch has been committed while an entry stream was open, see {@link #commitBatch()} */
+    private boolean batchCommitPending;
+
+    /** False when the zip file is known not to contain any free space between its entries */
+    private boolean mayBeFragmented = true;
+
     
     /**
      * Opens the given Zip file and parses information about the entries it contains.
@@ -313,6 +334,24 @@ public class ZipFile implements ZipConstants {
      * @throws UnsupportedFileOperationException if a required operation is not supported by the underlying filesystem.
      */
     public void deleteEntry(ZipEntry ze) throws IOException, ZipException, UnsupportedFileOperationException {
+        if(batchInProgress) {
+            if(ze.getEntryInfo()==null) {
+                // Fail silently if the entry is a directory, see below
+                if(ze.isDirectory())
+                    return;
+
+                throw new ZipException("Unknown entry: "+ze.getName());
+            }
+
+            // The space used by the entry is reclaimed and the central directory rewritten when the batch is committed
+            entries.remove(ze);
+            nameMap.remove(ze.getName());
+            batchModified = true;
+            mayBeFragmented = true;
+
+            return;
+        }
+
         openRead();
         openWrite();
 
@@ -381,6 +420,8 @@ public class ZipFile implements ZipConstants {
                     if (entryInfo.dataOffset == -1)
                         calculateDataOffset(entryInfo);
 
+                    mayBeFragmented = true;
+
                     // Zero out all bytes of the local file header+data for the deleted entry
                     // Note: the data descriptor (if any) is not erased, this would require some extra check and it is
                     // not really necessary, as the information it contains is not sensitive
@@ -445,25 +486,33 @@ public class ZipFile implements ZipConstants {
      * @throws UnsupportedFileOperationException if a required operation is not supported by the underlying filesystem.
      * or is not implemented.
      */
-    public OutputStream addEntry(final ZipEntry entry) throws IOException, UnsupportedFileOperationException {
+    public synchronized OutputStream addEntry(final ZipEntry entry) throws IOException, UnsupportedFileOperationException {
         try {
             // Open the zip file for random read and write access
             openRead();
             openWrite();
 
-            // Write the new entry's local file header right before the central directory start
-            positionAtCentralDirectory();
-            long centralDirectoryStart = rais.getOffset();
-            raos.seek(centralDirectoryStart);
+            // Write the new entry's local file header right before the central directory start, or after the last
+            // entry added by the current batch, as the central directory is not written until the batch is committed
+            long headerOffset;
+            if(batchInProgress && batchAppendOffset!=-1) {
+                headerOffset = batchAppendOffset;
+            }
+            else {
+                positionAtCentralDirectory();
+                headerOffset = rais.getOffset();
+            }
+            raos.seek(headerOffset);
 
             final ZipEntryInfo entryInfo = new ZipEntryInfo();
             entryInfo.encoding = UTF_8;   // Always use UTF-8 for new entries
-            entryInfo.headerOffset = centralDirectoryStart;
+            entryInfo.headerOffset = headerOffset;
+            // The entry info must be set before the header is written, for the position of a ZIP64 extra field
+            entry.setEntryInfo(entryInfo);
             entryInfo.dataOffset = entryInfo.headerOffset +
                                      ZipOutputStream.writeLocalFileHeader(entry, raos, entryInfo.encoding, false, zipBuffer);
 
             // Add the new entry to the internal lists
-            entry.setEntryInfo(entryInfo);
             entries.add(entry);
             nameMap.put(entry.getName(), entry);
 
@@ -475,47 +524,44 @@ public class ZipFile implements ZipConstants {
                 // Post-data file info and central directory get written when the stream is closed
                 @Override
                 public void close() throws IOException {
-                    // Write data info in the local file header
-                    ZipOutputStream.finalizeEntryData(entry, this, raos, false, zipBuffer);
-
-                    // Write the central directory that was squashed by the new entry (at least partially)
-                    ZipEntry tempZe;
-                    ZipEntryInfo tempEntryInfo;
-                    int nbEntries = entries.size();
-                    long cdLength = 0;                  // Length of central directory
-                    long cdOffset = raos.getOffset();   // Offset of central directory
-                    for(int i=0; i<nbEntries; i++) {
-                        tempZe = entries.elementAt(i);
-                        tempEntryInfo = tempZe.getEntryInfo();
-
-                        // Update offset to central header
-                        tempEntryInfo.centralHeaderOffset = raos.getOffset();
-
-                        cdLength += ZipOutputStream.writeCentralFileHeader(
-                                        tempZe,
-                                        raos,
-                                        tempEntryInfo.encoding,     // Preserve existing encoding so that LFH and CFH match
-                                        tempEntryInfo.headerOffset,
-                                        tempEntryInfo.hasDataDescriptor,
-                                        zipBuffer);
-
-                        // Update length of central header
-                        tempEntryInfo.centralHeaderLen = raos.getOffset() - tempEntryInfo.centralHeaderOffset;
-                    }
-
-                    ZipOutputStream.writeCentralDirectoryEnd(raos, nbEntries, cdLength, cdOffset, comment, UTF_8, zipBuffer);
+                    synchronized(ZipFile.this) {
+                        IOException closeException = null;
+                        try {
+                            // Write data info in the local file header
+                            ZipOutputStream.finalizeEntryData(entry, this, raos, false, zipBuffer);
+
+                            if(batchInProgress) {
+                                // The central directory is written when the batch is committed
+                                batchAppendOffset = raos.getOffset();
+                                batchModified = true;
+                            }
+                            else {
+                                // Write the central directory that was squashed by the new entry (at least partially)
+                                writeCentralDirectory();
+                            }
 
-                    // In some rare cases, the resulting zip file may be smaller.
-                    // Truncate the file to ensure that it ends at the central directory end position.
-                    raos.setLength(raos.getOffset());
+                            // Release the buffer for reuse
+                            BufferPool.releaseByteArray(deflaterBuf);
 
-                    // Release the buffer for reuse
-                    BufferPool.releaseByteArray(deflaterBuf);
+                            super.close();
+                            closeWrite();
+                        }
+                        catch(IOException e) {
+                            closeException = e;
+                            throw e;
+                        }
+                        finally {
+                            entryStreamOpen = false;
 
-                    super.close();
-                    closeWrite();
+                            // Apply the batch if it was committed while the entry was being written, even if the entry
+                            // could not be finalized: the caller of commitBatch() has returned and expects it applied
+                            if(batchCommitPending)
+                                commitPendingBatch(closeException);
+                        }
+                    }
                 }
             };
+            entryStreamOpen = true;
 
             // Directory entries cannot contain data, close the stream now and return null
             if(entry.isDirectory()) {
@@ -560,6 +606,12 @@ public class ZipFile implements ZipConstants {
 
             /* Central file header */
 
+            if(batchInProgress) {
+                // The central directory is rewritten with the new attributes when the batch is committed
+                batchModified = true;
+                return;
+            }
+
             // Update 'Version made by', platform might have changed if the Zip didn't contain Unix permissions
             raos.seek(entryInfo.centralHeaderOffset+4);
             ZipOutputStream.writeVersionMadeBy(entry, raos, zipBuffer);
@@ -578,12 +630,93 @@ public class ZipFile implements ZipConstants {
     }
 
     
+    /**
+     * Starts a batch of modifications. Until {@link #commitBatch()} is called, entries that are added with
+     * {@link #addEntry(ZipEntry)} are written one after the other without writing the central directory, entries
+     * that are deleted with {@link #deleteEntry(ZipEntry)} are only removed from the list of entries, and the central
+     * file headers of entries updated with {@link #updateEntry(ZipEntry)} are not modified.
+     * {@link #commitBatch()} then reclaims the space used by the deleted entries and writes the central directory,
+     * once for all the modifications of the batch. Without a batch, each of these operations rewrites the central
+     * directory, at least partially.
+     *
+     * <p>The zip file is not valid while a batch is in progress: it must not be read by other means, and
+     * {@link #commitBatch()} must always be called, even if a modification failed. This method has no effect if a
+     * batch is already in progress.</p>
+     */
+    public void beginBatch() {
+        batchInProgress = true;
+    }
+
+    /**
+     * Returns <code>true</code> if a batch of modifications is in progress, see {@link #beginBatch()}.
+     *
+     * @return true if a batch of modifications is in progress
+     */
+    public synchronized boolean isBatchInProgress() {
+        return batchInProgress;
+    }
+
+    /**
+     * Ends the current batch of modifications, if any, and applies them: the entries located after the first free
+     * space fragment are moved to reclaim the space used by deleted entries, and the central directory is written.
+     * If the zip file has not been modified during the batch, it is left untouched.
+     *
+     * <p>If the stream of an entry added during the batch is still open, the batch is applied only once that stream is
+     * closed, by {@link OutputStream#close()}: the data of that entry must be finalized before entries are moved and
+     * the central directory is written. The batch is applied even if the entry cannot be finalized, and errors that
+     * occur while applying it are then reported by {@link OutputStream#close()}.</p>
+     *
+     * <p>The underlying {@link AbstractFile} must have random write access. If not, an <code>IOException</code> will be
+     * thrown.</p>
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    public synchronized void commitBatch() throws IOException {
+        if(!batchInProgress)
+            return;
+
+        if(entryStreamOpen) {
+            batchCommitPending = true;
+            return;
+        }
+
+        boolean modified = batchModified;
+        batchInProgress = false;
+        batchModified = false;
+        batchCommitPending = false;
+        batchAppendOffset = -1;
+
+        if(modified)
+            compact(true);
+    }
+
+    /**
+     * Applies the batch that was committed while an entry stream was open, once that stream is closed. If the stream
+     * could not be closed properly, an error that occurs while applying the batch is added to the exception of the
+     * stream rather than replacing it.
+     *
+     * @param closeException the exception thrown while closing the entry stream, null if it was closed properly
+     * @throws IOException if an I/O error occurred while applying the batch, and not while closing the stream
+     */
+    private void commitPendingBatch(IOException closeException) throws IOException {
+        try {
+            commitBatch();
+        }
+        catch(IOException e) {
+            if(closeException==null)
+                throw e;
+            closeException.addSuppressed(e);
+        }
+    }
+
     /**
      * Removes free space fragments from this zip file, thus reducing the size of the zip file. If this zip file does
-     * not contain any free space fragments, the zip file is not modified.
+     * not contain any free space fragments, the zip file is not modified. Only the entries that are located after the
+     * first fragment are moved, and nothing is read if this zip file is known not to contain any fragment.
      *
      * <p>Fragmentation occurs when deleting entries with {@link #deleteEntry(ZipEntry)}. When deleting several entries,
-     * this method should be called once after all entries have deleted.</p>
+     * this method should be called once after all entries have deleted, or the deletions grouped in a batch, see
+     * {@link #beginBatch()}. If a batch is in progress, it is committed.</p>
      *
      * <p>The underlying {@link AbstractFile} must have random write access. If not, an <code>IOException</code> will be
      * thrown.</p>
@@ -591,95 +724,66 @@ public class ZipFile implements ZipConstants {
      * @throws IOException if an I/O error occurred
      * @throws UnsupportedFileOperationException if a required operation is not supported by the underlying filesystem.
      */
-    public void defragment() throws IOException {
-        int nbEntries = entries.size();
-        if(nbEntries==0)
-            return;
+    public synchronized void defragment() throws IOException {
+        if(batchInProgress)
+            commitBatch();
+        else if(mayBeFragmented)
+            compact(false);
+    }
 
+    /**
+     * Moves the entries that are located after the first free space fragment so that they follow each other, and
+     * writes the central directory after the last entry if entries have been moved, if it does not directly follow
+     * the last entry, or if <code>rewriteCentralDirectory</code> is <code>true</code>.
+     *
+     * @param rewriteCentralDirectory true to write the central directory even if no entry has been moved
+     * @throws IOException if an I/O error occurred
+     */
+    private void compact(boolean rewriteCentralDirectory) throws IOException {
         try {
             openRead();
             openWrite();
 
-            ZipEntry currentEntry, previousEntry;
-            ZipEntryInfo currentEntryInfo, previousEntryInfo;
-            long shift = 0;
-
-            // Special case for the first entry
-
-            currentEntry = entries.elementAt(0);
-            currentEntryInfo = currentEntry.getEntryInfo();
+            // Entries in the order they are located in the file, which may differ from the central directory's
+            List<ZipEntry> storedEntries = new ArrayList<>(entries);
+            storedEntries.sort(Comparator.comparingLong(ze -> ze.getEntryInfo().headerOffset));
 
-            // If data offset is -1 (not calculated yet), calculate it now
-            if (currentEntryInfo.dataOffset == -1)
-                calculateDataOffset(currentEntryInfo);
+            long end = 0;   // End of the entries that have been processed
+            for(ZipEntry ze : storedEntries) {
+                ZipEntryInfo entryInfo = ze.getEntryInfo();
 
-            if(currentEntryInfo.headerOffset>0) {
-                StreamUtils.copyChunk(rais, raos, currentEntryInfo.headerOffset, 0, (currentEntryInfo.dataOffset- currentEntryInfo.headerOffset)+currentEntry.getCompressedSize());
-                shift = currentEntryInfo.headerOffset;
-
-                currentEntryInfo.headerOffset = 0;
-                currentEntryInfo.dataOffset -= shift;
-            }
-
-            previousEntry = currentEntry;
-            previousEntryInfo = currentEntryInfo;
+                // If data offset is -1 (not calculated yet), calculate it now
+                if (entryInfo.dataOffset == -1)
+                    calculateDataOffset(entryInfo);
 
-            // Process all other entries
+                long entryLength = getEntryEnd(ze, entryInfo) - entryInfo.headerOffset;
 
-            for(int i=1; i<nbEntries; i++) {
-                currentEntry = entries.elementAt(i);
-                currentEntryInfo = currentEntry.getEntryInfo();
+                // Tests if there is some unused space before the entry
+                if(entryInfo.headerOffset > end) {
+                    StreamUtils.copyChunk(rais, raos, entryInfo.headerOffset, end, entryLength);
+                    long shift = entryInfo.headerOffset - end;
 
-                // If data offset is -1 (not calculated yet), calculate it now
-                if (currentEntryInfo.dataOffset == -1)
-                    calculateDataOffset(currentEntryInfo);
-
-                // Calculate the offset to the end of the previous entry based on its data offset and compressed size
-                // and taking into account a potential data descriptor
-                long previousCompressedSize = previousEntry.getCompressedSize();
-                long previousEntryEnd = previousEntryInfo.dataOffset+previousCompressedSize;
-                if(previousEntryInfo.hasDataDescriptor)
-                    previousEntryEnd += 16;
-
-                // Tests if there is some unused space between the 2 entries
-                if(previousEntryEnd < currentEntryInfo.headerOffset) {
-                    StreamUtils.copyChunk(rais, raos, currentEntryInfo.headerOffset, previousEntryInfo.dataOffset+previousCompressedSize, (currentEntryInfo.dataOffset- currentEntryInfo.headerOffset)+currentEntry.getCompressedSize());
-                    shift = currentEntryInfo.headerOffset - (previousEntryInfo.dataOffset+previousCompressedSize);
-
-                    currentEntryInfo.headerOffset -= shift;
-                    currentEntryInfo.dataOffset -= shift;
+                    entryInfo.headerOffset -= shift;
+                    entryInfo.dataOffset -= shift;
+                    rewriteCentralDirectory = true;
                 }
 
-                previousEntry = currentEntry;
-                previousEntryInfo = currentEntryInfo;
+                end = entryInfo.headerOffset + entryLength;
             }
 
-            // Rewrite central directory with updated offsets
-            if(shift!=0) {
-                long cdLength = 0;                  // Length of central directory
-                long cdOffset = raos.getOffset();   // Offset of central directory
-                ZipEntry ze;
-                ZipEntryInfo entryInfo;
-
-                for(int i=0; i<nbEntries; i++) {
-                    ze = entries.elementAt(i);
-                    entryInfo = ze.getEntryInfo();
-
-                    // Update offset to central directory file header
-                    entryInfo.centralHeaderOffset = raos.getOffset();
-
-                    // Preserve existing encoding when rewriting CFH so that it matches LFH
-                    cdLength += ZipOutputStream.writeCentralFileHeader(ze, raos, entryInfo.encoding, entryInfo.headerOffset, entryInfo.hasDataDescriptor, zipBuffer);
-
-                    // Update length of central directory file header
-                    entryInfo.centralHeaderLen = raos.getOffset() - entryInfo.centralHeaderOffset;
-                }
-
-                ZipOutputStream.writeCentralDirectoryEnd(raos, nbEntries, cdLength, cdOffset, comment, UTF_8, zipBuffer);
+            if(!rewriteCentralDirectory) {
+                // No entry was moved, the central directory only needs to be rewritten if it is not where it should be
+                positionAtCentralDirectory();
+                rewriteCentralDirectory = rais.getOffset() != end;
+            }
 
-                // Truncate the zip file to reclaim the trailing unused space
-                raos.setLength(raos.getOffset());
+            // Rewrite central directory with updated offsets
+            if(rewriteCentralDirectory) {
+                raos.seek(end);
+                writeCentralDirectory();
             }
+
+            mayBeFragmented = false;
         }
         finally {
             try {
@@ -692,6 +796,92 @@ public class ZipFile implements ZipConstants {
         }
     }
 
+    /**
+     * Returns the offset of the end of the given entry: the end of its data, or of its data descriptor if it has one.
+     * The data offset must have been calculated.
+     *
+     * @param ze the entry
+     * @param entryInfo the entry's ZipEntryInfo
+     * @return the offset of the end of the entry
+     * @throws IOException if an I/O error occurred
+     */
+    private long getEntryEnd(ZipEntry ze, ZipEntryInfo entryInfo) throws IOException {
+        long end = entryInfo.dataOffset + ze.getCompressedSize();
+        if(!entryInfo.hasDataDescriptor)
+            return end;
+
+        // The data descriptor's signature is optional, the sizes are 8-byte values if the local file header has a
+        // ZIP64 extra field. Some writers use 8-byte values for entries larger than 4 GB only.
+        boolean zip64 = ze.getCompressedSize() >= MAX_ZIP32_SIZE || ze.getSize() >= MAX_ZIP32_SIZE
+                || hasLocalZip64ExtraField(entryInfo);
+
+        byte sig[] = new byte[4];
+        rais.seek(end);
+        rais.readFully(sig);
+        if(ZipLong.getValue(sig) == ZipLong.getValue(DD_SIG))
+            end += 4;
+
+        return end + 4 + (zip64 ? 16 : 8);
+    }
+
+    /**
+     * Returns <code>true</code> if the local file header of the given entry has a ZIP64 extra field.
+     *
+     * @param entryInfo the entry's ZipEntryInfo
+     * @return true if the local file header of the entry has a ZIP64 extra field
+     * @throws IOException if an I/O error occurred
+     */
+    private boolean hasLocalZip64ExtraField(ZipEntryInfo entryInfo) throws IOException {
+        // Skip the fixed-length fields, see calculateDataOffset()
+        rais.seek(entryInfo.headerOffset + 26);
+
+        byte b[] = new byte[4];
+        rais.readFully(b);
+        int filenameLen = ZipShort.getValue(b, 0);
+        byte extra[] = new byte[ZipShort.getValue(b, 2)];
+        rais.seek(entryInfo.headerOffset + 30 + filenameLen);
+        rais.readFully(extra);
+
+        int off = 0;
+        while(off + 4 <= extra.length) {
+            if(ZipShort.getValue(extra, off) == ZIP64_EXTRA_ID)
+                return true;
+            off += 4 + ZipShort.getValue(extra, off + 2);
+        }
+        return false;
+    }
+
+    /**
+     * Writes the central file headers of all entries and the central directory end at the current position of the
+     * RandomAccessOutputStream, then truncates the zip file after it.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    private void writeCentralDirectory() throws IOException {
+        long cdLength = 0;                  // Length of central directory
+        long cdOffset = raos.getOffset();   // Offset of central directory
+        int nbEntries = entries.size();
+
+        for(int i=0; i<nbEntries; i++) {
+            ZipEntry ze = entries.elementAt(i);
+            ZipEntryInfo entryInfo = ze.getEntryInfo();
+
+            // Update offset to central directory file header
+            entryInfo.centralHeaderOffset = raos.getOffset();
+
+            // Preserve existing encoding when rewriting CFH so that it matches LFH
+            cdLength += ZipOutputStream.writeCentralFileHeader(ze, raos, entryInfo.encoding, entryInfo.headerOffset, entryInfo.hasDataDescriptor, zipBuffer);
+
+            // Update length of central directory file header
+            entryInfo.centralHeaderLen = raos.getOffset() - entryInfo.centralHeaderOffset;
+        }
+
+        ZipOutputStream.writeCentralDirectoryEnd(raos, nbEntries, cdLength, cdOffset, comment, UTF_8, zipBuffer);
+
+        // Truncate the zip file to reclaim the trailing unused space
+        raos.setLength(raos.getOffset());
+    }
+
 
     /**
      * Calulcates the data offset of the entry which starts at the given ZipEntryInfo.headerOffset and stores the result
@@ -872,6 +1062,11 @@ public class ZipFile implements ZipConstants {
             rais.readFully(extra);
             ze.setExtra(extra);
 
+            // Sizes and offset that do not fit in their field are in the ZIP64 extra field. The field is not kept
+            // with the other ones, it is written again if needed when the central directory is rewritten.
+            if(ze.removeExtraField(new ZipShort(ZIP64_EXTRA_ID)))
+                readZip64ExtraField(ze, entryInfo, extra);
+
             // Read comment bytes
             byte[] comment = new byte[commentLen];
             rais.readFully(comment);
@@ -928,6 +1123,53 @@ public class ZipFile implements ZipConstants {
         }
     }
 
+    /**
+     * Reads the values of the ZIP64 extra field found in the given extra bytes of a central file header: the sizes and
+     * offset whose Zip32 field is set to 0xFFFFFFFF.
+     *
+     * @param ze the entry whose sizes to set
+     * @param entryInfo the entry info whose local file header offset to set
+     * @param extra the extra bytes of the central file header
+     */
+    private static void readZip64ExtraField(ZipEntry ze, ZipEntryInfo entryInfo, byte extra[]) {
+        int off = 0;
+        while(off + 4 <= extra.length) {
+            int headerId = ZipShort.getValue(extra, off);
+            int len = ZipShort.getValue(extra, off + 2);
+            off += 4;
+            if(headerId == ZIP64_EXTRA_ID) {
+                int end = Math.min(off + len, extra.length);
+                if(ze.getSize() == MAX_ZIP32_SIZE && off + 8 <= end) {
+                    ze.setSize(getEightByteValue(extra, off));
+                    off += 8;
+                }
+                if(ze.getCompressedSize() == MAX_ZIP32_SIZE && off + 8 <= end) {
+                    ze.setCompressedSize(getEightByteValue(extra, off));
+                    off += 8;
+                }
+                if(entryInfo.headerOffset == MAX_ZIP32_SIZE && off + 8 <= end) {
+                    entryInfo.headerOffset = getEightByteValue(extra, off);
+                }
+                return;
+            }
+            off += len;
+        }
+    }
+
+    /**
+     * Returns the value of the little-endian 8-byte ZIP64 value located at the given offset.
+     *
+     * @param bytes the array containing the value
+     * @param offset the offset of the value in the array
+     * @return the value
+     */
+    private static long getEightByteValue(byte bytes[], int offset) {
+        long value = 0;
+        for(int i=7; i>=0; i--)
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        return value;
+    }
+
     /**
      * Sets the given filename in the ZipEntry.
      *
@@ -1053,6 +1295,9 @@ public class ZipFile implements ZipConstants {
                 throw new ZipException("Invalid Zip stream (EOCD signature not found)");
             }
 
+            // Offset of the EOCD record in the file
+            long eocdOffset = length - bufLen + off;
+
             // Parse the offset to the central directory start
             off += CFD_LOCATOR_OFFSET;
             byte[] cdStart = new byte[4];
@@ -1073,8 +1318,23 @@ public class ZipFile implements ZipConstants {
             // like bit 11 in GPBF.
             comment = getString(commentBytes, defaultEncoding!=null?defaultEncoding:EncodingDetector.detectEncoding(commentBytes));
 
-            // Seek to the start of the central directory
-            rais.seek(ZipLong.getValue(cdStart));
+            // Seek to the start of the central directory, whose offset is in the ZIP64 end of central directory record
+            // if it does not fit in the Zip32 field
+            long cdStartOffset = ZipLong.getValue(cdStart);
+            if(cdStartOffset == MAX_ZIP32_SIZE && eocdOffset >= 20) {
+                byte locator[] = new byte[20];
+                rais.seek(eocdOffset - 20);
+                rais.readFully(locator);
+                if(ZipLong.getValue(locator, 0) == ZipLong.getValue(ZIP64_EOCD_LOCATOR_SIG)) {
+                    byte zip64Eocd[] = new byte[56];
+                    rais.seek(getEightByteValue(locator, 8));
+                    rais.readFully(zip64Eocd);
+                    if(ZipLong.getValue(zip64Eocd, 0) != ZipLong.getValue(ZIP64_EOCD_SIG))
+                        throw new ZipException("Invalid Zip stream (ZIP64 EOCD signature not found)");
+                    cdStartOffset = getEightByteValue(zip64Eocd, 48);
+                }
+            }
+            rais.seek(cdStartOffset);
         }
         finally {
             BufferPool.releaseByteArray(buf);
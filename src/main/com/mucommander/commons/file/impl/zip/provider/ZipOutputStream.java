@@ -61,6 +61,9 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /** Compression method zip entries */
     private int method = DEFLATED;
 
+    /** Number of threads that compress DEFLATED entries */
+    private int compressionThreads = 1;
+
     /** Deflater instance that is used to compress DEFLATED entries */
     protected Deflater deflater = new Deflater(level, true);
 
@@ -103,6 +106,15 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /** 2056 as ZipShort */
     private static final byte[] SHORT_2056 = ZipShort.getBytes(2056);
 
+    /** 45 as ZipShort */
+    private static final byte[] SHORT_45 = ZipShort.getBytes(ZIP64_VERSION);
+
+    /** Value of the Zip32 fields whose actual value is stored in a ZIP64 field */
+    private static final byte[] ZIP64_MAGIC = ZipLong.getBytes(MAX_ZIP32_SIZE);
+
+    /** Length of the ZIP64 end of central directory record, not including the signature and this length */
+    private static final long ZIP64_EOCD_LEN = 44;
+
 
     /**
      * The underlying stream this ZipOutputStream writes zip-compressed data to.
@@ -233,13 +245,12 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @throws IOException if an I/O error occurred
      */
     protected static void finalizeEntryData(ZipEntry entry, ZipEntryOutputStream zeos, OutputStream out, boolean useDataDescriptor, ZipBuffer zipBuffer) throws IOException {
+        zeos.finishEntry();
         long crc = zeos.getCrc();
 
         if (entry.getMethod() == DEFLATED) {
-            ((DeflatedOutputStream)zeos).finishDeflate();
-
-            entry.setSize(adjustToLong(zeos.getTotalIn()));
-            long compressedSize = adjustToLong(zeos.getTotalOut());
+            entry.setSize(zeos.getTotalIn());
+            long compressedSize = zeos.getTotalOut();
             entry.setCompressedSize(compressedSize);
             entry.setCrc(crc);
         }
@@ -255,13 +266,27 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // the correct CRC and compressed/uncompressed sizes
         if (!useDataDescriptor) {
             RandomAccessOutputStream raos = (RandomAccessOutputStream)out;
+            ZipEntryInfo entryInfo = entry.getEntryInfo();
 
             long save = raos.getOffset();
 
-            raos.seek(entry.getEntryInfo().headerOffset + 14);
+            raos.seek(entryInfo.headerOffset + 14);
             raos.write(ZipLong.getBytes(entry.getCrc(), zipBuffer.longBuffer));
-            raos.write(ZipLong.getBytes(entry.getCompressedSize(), zipBuffer.longBuffer));
-            raos.write(ZipLong.getBytes(entry.getSize(), zipBuffer.longBuffer));
+            if (entryInfo.zip64ExtraOffset != -1) {
+                // The sizes go in the ZIP64 extra field that was reserved in the local file header
+                raos.write(ZIP64_MAGIC);
+                raos.write(ZIP64_MAGIC);
+                raos.seek(entryInfo.headerOffset + entryInfo.zip64ExtraOffset);
+                raos.write(getEightBytes(entry.getSize(), zipBuffer));
+                raos.write(getEightBytes(entry.getCompressedSize(), zipBuffer));
+            }
+            else if (entry.getSize() >= MAX_ZIP32_SIZE || entry.getCompressedSize() >= MAX_ZIP32_SIZE) {
+                throw new ZipException("Entry larger than 4 GB whose size was not known in advance: " + entry.getName());
+            }
+            else {
+                raos.write(ZipLong.getBytes(entry.getCompressedSize(), zipBuffer.longBuffer));
+                raos.write(ZipLong.getBytes(entry.getSize(), zipBuffer.longBuffer));
+            }
             raos.seek(save);
         }
     }
@@ -293,7 +318,10 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
             entry.setTime(System.currentTimeMillis());
         }
 
-        if(entryMethod == DEFLATED) {
+        if(entryMethod == DEFLATED && compressionThreads > 1) {
+            zeos = new ParallelDeflatedOutputStream(out, level, compressionThreads);
+        }
+        else if(entryMethod == DEFLATED) {
             deflater.reset();
             deflater.setLevel(level);
 
@@ -334,6 +362,28 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         this.level = level;
     }
 
+    /**
+     * Sets the number of threads that compress subsequent DEFLATED entries, see {@link ParallelDeflatedOutputStream}.
+     * With more than one thread, entries are compressed in chunks: the compressed data differs slightly from that of
+     * a single thread, but remains a regular deflate stream.
+     *
+     * <p>Default is 1, entries are compressed by the thread that writes them.</p>
+     *
+     * @param compressionThreads the number of threads that compress entries
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = Math.max(1, compressionThreads);
+    }
+
+    /**
+     * Returns the number of threads that compress DEFLATED entries.
+     *
+     * @return the number of threads that compress DEFLATED entries
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
     /**
      * Sets the default compression method for subsequent entries.
      *
@@ -354,6 +404,11 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * flag will be set accordingly.
      * @param useDataDescriptor indicates whether a data descriptor will follow the file entry's data. The general
      * purpose bit flag will be set accordingly.
+     * <p>A ZIP64 extra field is written if the entry's size may exceed 4 GB once compressed, or if it is not known and
+     * a data descriptor is used, and its position set in the entry's {@link ZipEntryInfo}, if it has one already.
+     * Without a data descriptor, the sizes are set in the field after the data has been written. With a data
+     * descriptor, the field's sizes are left to zero and the data descriptor holds 8-byte sizes, as required by
+     * section 4.3.9.2 of the Zip specification.</p>
      * @param zipBuffer a ZipBuffer instance used to convert integer values to Zip variants
      * @return the size (number of bytes) of the written local file header
      * @throws IOException if an I/O error occurred
@@ -364,9 +419,13 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         int zipMethod = ze.getMethod();
 
+        // The data descriptor of an entry whose size is not known may need 8-byte sizes, which readers expect only if
+        // the local file header has a ZIP64 extra field
+        boolean zip64 = mayExceedZip32(ze.getSize()) || (useDataDescriptor && ze.getSize() < 0);
+
         // version needed to extract
         // general purpose bit flag
-        writeVersionAndGPBF(out, encoding, useDataDescriptor);
+        writeVersionAndGPBF(out, encoding, useDataDescriptor, zip64);
         // nbWritten += 4;
 
         // compression method
@@ -383,7 +442,15 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // this information is not known at this stage so it will be set after the data has been written,
         // either in the data descriptor (if used), or here by seeking (requires random access)
-        out.write(LONG_TRIPLE_0);   // 12 zero bytes
+        if (zip64 && useDataDescriptor) {
+            // The sizes are in the ZIP64 extra field and the data descriptor
+            out.write(LONG_TRIPLE_0, 0, 4);
+            out.write(ZIP64_MAGIC);
+            out.write(ZIP64_MAGIC);
+        }
+        else {
+            out.write(LONG_TRIPLE_0);   // 12 zero bytes
+        }
         // written += 12;
 
         // file name length
@@ -393,7 +460,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // extra field length
         byte[] extra = ze.getLocalFileDataExtra();
-        out.write(ZipShort.getBytes(extra.length, zipBuffer.shortBuffer));
+        out.write(ZipShort.getBytes(extra.length + (zip64 ? 20 : 0), zipBuffer.shortBuffer));
         // written += 2;
 
         // Number of bytes written by this method so far
@@ -403,6 +470,18 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         out.write(name);
         written += name.length;
 
+        // ZIP64 extra field, the sizes will be set after the data has been written unless a data descriptor is used
+        if (zip64) {
+            out.write(ZipShort.getBytes(ZIP64_EXTRA_ID, zipBuffer.shortBuffer));
+            out.write(ZipShort.getBytes(16, zipBuffer.shortBuffer));
+            out.write(LONG_TRIPLE_0, 0, 8);
+            out.write(LONG_TRIPLE_0, 0, 8);
+            if (ze.getEntryInfo() != null) {
+                ze.getEntryInfo().zip64ExtraOffset = written + 4;
+            }
+            written += 20;
+        }
+
         // extra field
         out.write(extra);
         written += extra.length;
@@ -413,17 +492,31 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     /**
      * Writes the data descriptor, using the CRC, compressed and uncompressed size attributes contained in the
      * given ZipEntry.
-     * The length of the field is returned, it is always 16 bytes.
+     * The length of the field is returned: 16 bytes, or 24 bytes if the entry's local file header has a ZIP64 extra
+     * field, in which case the sizes are written as 8-byte values as ZIP64 requires.
      *
      * @param ze the entry for which to write the data descriptor
      * @param out the OutputStream where to write the data descriptor to
      * @param zipBuffer a ZipBuffer instance used to convert integer values to Zip variants
-     * @return the number of bytes that were written, i.e. the size of the data descriptor (16 bytes)
-     * @throws IOException if an I/O error occurred
+     * @return the number of bytes that were written, i.e. the size of the data descriptor (16 or 24 bytes)
+     * @throws IOException if an I/O error occurred, or if the entry is larger than 4 GB and its local file header
+     * has no ZIP64 extra field
      */
     protected static long writeDataDescriptor(ZipEntry ze, OutputStream out, ZipBuffer zipBuffer) throws IOException {
+        if (ze.getEntryInfo().zip64ExtraOffset == -1 && (ze.getCompressedSize() >= MAX_ZIP32_SIZE || ze.getSize() >= MAX_ZIP32_SIZE)) {
+            throw new ZipException("Entry larger than 4 GB whose declared size was smaller: " + ze.getName());
+        }
+
         out.write(DD_SIG);
         out.write(ZipLong.getBytes(ze.getCrc(), zipBuffer.longBuffer));
+
+        if (ze.getEntryInfo().zip64ExtraOffset != -1) {
+            out.write(getEightBytes(ze.getCompressedSize(), zipBuffer));
+            out.write(getEightBytes(ze.getSize(), zipBuffer));
+
+            return 24;
+        }
+
         out.write(ZipLong.getBytes(ze.getCompressedSize(), zipBuffer.longBuffer));
         out.write(ZipLong.getBytes(ze.getSize(), zipBuffer.longBuffer));
 
@@ -459,16 +552,28 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @return the number of bytes that were written, i.e. the size of the central file header 
      */
     protected static long writeCentralFileHeader(ZipEntry ze, OutputStream out, String encoding, long localFileHeaderOffset, boolean useDataDescriptor, ZipBuffer zipBuffer) throws IOException {
+        // Values that do not fit in their Zip32 field go in a ZIP64 extra field, in this order
+        long size = ze.getSize();
+        long compressedSize = ze.getCompressedSize();
+        int zip64Len = (size >= MAX_ZIP32_SIZE ? 8 : 0)
+                + (compressedSize >= MAX_ZIP32_SIZE ? 8 : 0)
+                + (localFileHeaderOffset >= MAX_ZIP32_SIZE ? 8 : 0);
+        boolean zip64 = zip64Len > 0;
+
         out.write(CFH_SIG);
         // nbWritten += 4;
 
         // version made by
-        writeVersionMadeBy(ze, out, zipBuffer);
+        if (zip64) {
+            out.write(ZipShort.getBytes((ze.getPlatform() << 8) | ZIP64_VERSION, zipBuffer.shortBuffer));
+        } else {
+            writeVersionMadeBy(ze, out, zipBuffer);
+        }
         // nbWritten += 2;
 
         // version needed to extract
         // general purpose bit flag
-        writeVersionAndGPBF(out, encoding, useDataDescriptor);
+        writeVersionAndGPBF(out, encoding, useDataDescriptor, zip64);
         // nbWritten += 4;
 
         // compression method
@@ -483,8 +588,8 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // compressed length
         // uncompressed length
         out.write(ZipLong.getBytes(ze.getCrc(), zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(ze.getCompressedSize(), zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(ze.getSize(), zipBuffer.longBuffer));
+        out.write(compressedSize >= MAX_ZIP32_SIZE ? ZIP64_MAGIC : ZipLong.getBytes(compressedSize, zipBuffer.longBuffer));
+        out.write(size >= MAX_ZIP32_SIZE ? ZIP64_MAGIC : ZipLong.getBytes(size, zipBuffer.longBuffer));
         // nbWritten += 12;
 
         // file name length
@@ -494,7 +599,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         // extra field length
         byte[] extra = ze.getCentralDirectoryExtra();
-        out.write(ZipShort.getBytes(extra.length, zipBuffer.shortBuffer));
+        out.write(ZipShort.getBytes(extra.length + (zip64 ? 4 + zip64Len : 0), zipBuffer.shortBuffer));
         // nbWritten += 2;
 
         // file comment length
@@ -519,7 +624,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         // nbWritten += 4;
 
         // relative offset of LFH
-        out.write(ZipLong.getBytes(localFileHeaderOffset, zipBuffer.longBuffer));
+        out.write(localFileHeaderOffset >= MAX_ZIP32_SIZE ? ZIP64_MAGIC : ZipLong.getBytes(localFileHeaderOffset, zipBuffer.longBuffer));
         // nbWritten += 4;
 
         long nbWritten = 46;
@@ -528,6 +633,19 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         out.write(name);
         nbWritten += name.length;
 
+        // ZIP64 extra field
+        if (zip64) {
+            out.write(ZipShort.getBytes(ZIP64_EXTRA_ID, zipBuffer.shortBuffer));
+            out.write(ZipShort.getBytes(zip64Len, zipBuffer.shortBuffer));
+            if (size >= MAX_ZIP32_SIZE)
+                out.write(getEightBytes(size, zipBuffer));
+            if (compressedSize >= MAX_ZIP32_SIZE)
+                out.write(getEightBytes(compressedSize, zipBuffer));
+            if (localFileHeaderOffset >= MAX_ZIP32_SIZE)
+                out.write(getEightBytes(localFileHeaderOffset, zipBuffer));
+            nbWritten += 4 + zip64Len;
+        }
+
         // extra field
         out.write(extra);
         nbWritten += extra.length;
@@ -550,6 +668,20 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
      * @throws IOException if an I/O error occurred
      */
     protected static long writeVersionAndGPBF(OutputStream out, String encoding, boolean useDataDescriptor) throws IOException {
+        return writeVersionAndGPBF(out, encoding, useDataDescriptor, false);
+    }
+
+    /**
+     * Writes the 'version needed to extract' (2 bytes) and 'general purpose bit flag' (2 bytes) fields.
+     *
+     * @param out the OutputStream to write the fields to
+     * @param encoding the encoding used for writing the filename and optional comment
+     * @param useDataDescriptor true if a data descriptor is used for the entry
+     * @param zip64 true if the header has a ZIP64 extra field
+     * @return the number of bytes that were written, i.e. 4
+     * @throws IOException if an I/O error occurred
+     */
+    protected static long writeVersionAndGPBF(OutputStream out, String encoding, boolean useDataDescriptor, boolean zip64) throws IOException {
         boolean isUTF8 = isUTF8(encoding);
 
         // General purpose bit flag :
@@ -558,7 +690,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
         if (useDataDescriptor) {
             // requires version 2 as we are going to store length info in the data descriptor
-            out.write(SHORT_20);
+            out.write(zip64 ? SHORT_45 : SHORT_20);
 
             // General purpose bit flag
             out.write(isUTF8?
@@ -568,7 +700,7 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         }
         else {
             // Version
-            out.write(SHORT_10);
+            out.write(zip64 ? SHORT_45 : SHORT_10);
 
             // General purpose bit flag
             out.write(isUTF8?
@@ -582,7 +714,9 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
 
 
     /**
-     * Writes the end of the central directory record.
+     * Writes the end of the central directory record. If the number of entries, or the length or offset of the
+     * central directory, do not fit in the record, the ZIP64 end of central directory record and its locator are
+     * written first, right after the central directory.
      *
      * @param out the OutputStream to write the end of the central directory record to
      * @param nbEntries number of entries the Zip file contains
@@ -596,19 +730,41 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
     protected static void writeCentralDirectoryEnd(OutputStream out, int nbEntries, long cdLength, long cdOffset, String comment, String encoding, ZipBuffer zipBuffer)
             throws IOException {
 
+        if (nbEntries >= MAX_ZIP32_ENTRIES || cdLength >= MAX_ZIP32_SIZE || cdOffset >= MAX_ZIP32_SIZE) {
+            long zip64EocdOffset = cdOffset + cdLength;
+
+            // ZIP64 end of central directory record
+            out.write(ZIP64_EOCD_SIG);
+            out.write(getEightBytes(ZIP64_EOCD_LEN, zipBuffer));
+            out.write(SHORT_45);    // version made by
+            out.write(SHORT_45);    // version needed to extract
+            out.write(LONG_0);      // number of this disk
+            out.write(LONG_0);      // disk of the central directory start
+            out.write(getEightBytes(nbEntries, zipBuffer));
+            out.write(getEightBytes(nbEntries, zipBuffer));
+            out.write(getEightBytes(cdLength, zipBuffer));
+            out.write(getEightBytes(cdOffset, zipBuffer));
+
+            // ZIP64 end of central directory locator
+            out.write(ZIP64_EOCD_LOCATOR_SIG);
+            out.write(LONG_0);      // disk of the ZIP64 end of central directory record
+            out.write(getEightBytes(zip64EocdOffset, zipBuffer));
+            out.write(ZipLong.getBytes(1, zipBuffer.longBuffer));  // total number of disks
+        }
+
         out.write(EOCD_SIG);
 
         // disk numbers
         out.write(LONG_0);      // 2x SHORT_0
 
         // number of entries
-        ZipShort.getBytes(nbEntries, zipBuffer.shortBuffer);
+        ZipShort.getBytes(Math.min(nbEntries, MAX_ZIP32_ENTRIES), zipBuffer.shortBuffer);
         out.write(zipBuffer.shortBuffer);
         out.write(zipBuffer.shortBuffer);
 
         // length and location of CD
-        out.write(ZipLong.getBytes(cdLength, zipBuffer.longBuffer));
-        out.write(ZipLong.getBytes(cdOffset, zipBuffer.longBuffer));
+        out.write(cdLength >= MAX_ZIP32_SIZE ? ZIP64_MAGIC : ZipLong.getBytes(cdLength, zipBuffer.longBuffer));
+        out.write(cdOffset >= MAX_ZIP32_SIZE ? ZIP64_MAGIC : ZipLong.getBytes(cdOffset, zipBuffer.longBuffer));
 
         // ZIP file comment
         byte[] data = getBytes(comment, encoding);
@@ -636,6 +792,32 @@ public class ZipOutputStream extends OutputStream implements ZipConstants {
         }
     }
 
+    /**
+     * Returns <code>true</code> if an entry of the given size may be larger than 4 GB once compressed, leaving some
+     * room for incompressible data that gets slightly larger once deflated.
+     *
+     * @param size the size of an entry, <code>-1</code> if not known
+     * @return true if the entry may need ZIP64 extensions
+     */
+    private static boolean mayExceedZip32(long size) {
+        return size >= 0 && size + (size >> 6) + 65536 >= MAX_ZIP32_SIZE;
+    }
+
+    /**
+     * Returns the given value as a little-endian 8-byte ZIP64 value.
+     *
+     * @param value the value to convert
+     * @param zipBuffer the ZipBuffer whose 8-byte buffer is returned
+     * @return the ZipBuffer's 8-byte buffer, filled with the given value
+     */
+    protected static byte[] getEightBytes(long value, ZipBuffer zipBuffer) {
+        byte bytes[] = zipBuffer.eightByteBuffer;
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte)(value >>> (8 * i));
+        }
+        return bytes;
+    }
+
     /**
      * Returns a long that is the unsigned intepretation of the given (signed) int.
      *
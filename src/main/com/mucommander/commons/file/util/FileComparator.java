@@ -102,7 +102,7 @@ public class FileComparator implements Comparator<AbstractFile> {
      * @param c character for which to return a value
      * @return a <code>value</code> for the given character
      */
-    private static int getCharacterValue(int c) {
+    public static int getCharacterValue(int c) {
         // Note: max char value is 65535
         if (Character.isLetter(c))
             c += 131070;    // yields a value higher than any other symbol or digit
@@ -144,7 +144,7 @@ public class FileComparator implements Comparator<AbstractFile> {
      * @return a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater
      * than the second.
      */
-    private static int compareStrings(String s1, String s2, boolean ignoreCase, boolean nullProtection) {
+    public static int compareStrings(String s1, String s2, boolean ignoreCase, boolean nullProtection) {
         // Protect against null values, only if requested
         if (nullProtection) {
             if (s1 == null && s2 != null)	    // s1 is null, s2 isn't
@@ -171,7 +171,7 @@ public class FileComparator implements Comparator<AbstractFile> {
      * @return a negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater
      * than the second.
      */
-    private static int compareStrings(String s1, String s2, boolean ignoreCase) {
+    public static int compareStrings(String s1, String s2, boolean ignoreCase) {
         // Special treatment for strings that contain a number, so they are ordered by the number's value, e.g.:
         // 1 < 1a < 2 < 10, like Mac OS X Finder and Windows Explorer do.
         //
@@ -23,6 +23,9 @@ import com.mucommander.commons.file.AbstractFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.WeakHashMap;
 
 /**
@@ -47,10 +50,10 @@ import java.util.WeakHashMap;
  * are checked. The lower this period is, the faster changes will be reported to listeners, but also the higher the
  * impact on I/O and CPU. This parameter should be carefully specified to avoid hogging resources excessively.</p>
  *
- * <p>Note that FileMonitor uses file attributes polling because the Java API doesn't currently provide any better way
- * to do detect file changes. If Java ever does provide a callback mechanism for detecting file changes, this class
- * will be modified to take advantage of it. Another possible improvement would be to add JNI hooks for platform-specific
- * filesystem events such as 'inotify' (Linux Kernel), 'kqueue' (BSD, Mac OS X), PAM (Solaris), ...</p>
+ * <p>Local files are not polled at the poll period but watched with {@link FolderWatcher} whenever possible: the
+ * file's parent folder (and the file itself if it is a directory) is watched, and the file's attributes are checked
+ * only when the system reports a change, or every {@link #WATCHED_POLL_PERIOD} milliseconds as a safety net.
+ * Files that cannot be watched, such as remote files, are polled at the poll period.</p>
  *
  * @see FileChangeListener
  * @author Maxence Bernard
@@ -58,6 +61,9 @@ import java.util.WeakHashMap;
 public class FileMonitor implements FileMonitorConstants, Runnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileMonitor.class);
 
+    /** Minimum number of milliseconds between two file attributes polls when the file is watched */
+    public final static long WATCHED_POLL_PERIOD = 60000;
+
     /** Monitored file */
     private AbstractFile file;
     /** Monitored attributes */
@@ -74,6 +80,9 @@ public class FileMonitor implements FileMonitorConstants, Runnable {
      */
     private boolean isInitialized;
 
+    /** True when a change has been reported by {@link FolderWatcher} and the file's attributes haven't been checked since */
+    private boolean changeReported;
+
     /** Registered FileChangeListener instances, stored as weak references */
     private WeakHashMap<FileChangeListener, ?> listeners = new WeakHashMap<>();
 
@@ -215,6 +224,8 @@ public class FileMonitor implements FileMonitorConstants, Runnable {
      */
     public synchronized void stopMonitoring() {
         monitorThread = null;
+        // Wake up the monitor thread so that it stops now
+        notifyAll();
     }
 
     /**
@@ -242,6 +253,47 @@ public class FileMonitor implements FileMonitorConstants, Runnable {
     }
 
     
+    /**
+     * Starts watching the monitored file with {@link FolderWatcher}, and returns the watches that were created.
+     * The returned list is empty if the file cannot be watched.
+     *
+     * @return the watches that were created
+     */
+    private List<FolderWatcher.Watch> startWatching() {
+        List<FolderWatcher.Watch> watches = new ArrayList<>();
+
+        FolderWatchListener listener = new FolderWatchListener() {
+            @Override
+            public void folderChanged(AbstractFile folder, Set<String> changedNames) {
+                // Changes made to the file's siblings are of no interest
+                if (changedNames == null || changedNames.contains(file.getName()) || folder.equals(file)) {
+                    synchronized(FileMonitor.this) {
+                        changeReported = true;
+                        FileMonitor.this.notifyAll();
+                    }
+                }
+            }
+        };
+
+        AbstractFile parent = file.getParent();
+        FolderWatcher.Watch watch = parent == null ? null : FolderWatcher.watch(parent, listener);
+        if (watch == null) {
+            // Changes to the file itself could not be reported
+            return watches;
+        }
+        watches.add(watch);
+
+        if (file.isDirectory()) {
+            watch = FolderWatcher.watch(file, listener);
+            if (watch != null) {
+                watches.add(watch);
+            }
+        }
+
+        return watches;
+    }
+
+
     /////////////////////////////
     // Runnable implementation //
     /////////////////////////////
@@ -249,6 +301,10 @@ public class FileMonitor implements FileMonitorConstants, Runnable {
     public void run() {
         Thread thisThread = monitorThread;
 
+        // Watches must be in place before the initial attributes are fetched, so that no change is missed
+        List<FolderWatcher.Watch> watches = startWatching();
+        long period = watches.isEmpty() ? pollPeriod : Math.max(pollPeriod, WATCHED_POLL_PERIOD);
+
         long lastDate = (attributes&DATE_ATTRIBUTE)!=0?file.getDate():0;
         long lastSize = (attributes&SIZE_ATTRIBUTE)!=0?file.getSize():0;
         int lastPermissions = (attributes&PERMISSIONS_ATTRIBUTE)!=0?file.getPermissions().getIntValue():0;
@@ -258,7 +314,7 @@ public class FileMonitor implements FileMonitorConstants, Runnable {
         synchronized(this) {
             // We are now ready to detect file changes, notify the thread that started this thread
             isInitialized = true;
-            notify();
+            notifyAll();
         }
 
         long now;
@@ -310,13 +366,22 @@ public class FileMonitor implements FileMonitorConstants, Runnable {
             if(changedAttributes!=0)
                 fireFileChangeEvent(changedAttributes);
 
-            // Get some well-deserved rest: sleep for the specified poll period minus the time we spent
-            // for this iteration
-            try {
-                Thread.sleep(Math.max(pollPeriod-(System.currentTimeMillis()-now), 0));
-            }
-            catch(InterruptedException e) {
+            // Get some well-deserved rest: wait for the specified poll period minus the time we spent
+            // for this iteration, or until a change is reported
+            synchronized(this) {
+                long waitTime;
+                while(monitorThread ==thisThread && !changeReported && (waitTime=period-(System.currentTimeMillis()-now))>0) {
+                    try {
+                        wait(waitTime);
+                    }
+                    catch(InterruptedException e) {
+                    }
+                }
+                changeReported = false;
             }
         }
+
+        for(FolderWatcher.Watch watch : watches)
+            watch.cancel();
     }
 }
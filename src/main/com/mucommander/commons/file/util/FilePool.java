@@ -20,7 +20,13 @@
 package com.mucommander.commons.file.util;
 
 import com.mucommander.commons.file.AbstractFile;
-import org.apache.commons.collections4.map.ReferenceMap;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class allows {@link AbstractFile} instances to be pooled, so that existing file instances can be reused,
@@ -29,17 +35,33 @@ import org.apache.commons.collections4.map.ReferenceMap;
  * but a sensible choice is to use the {@link AbstractFile#getURL() file's URL}.
  *
  * <p>Files are stored as {@link java.lang.ref.WeakReference weak references} so they can be garbage collected
- * when they are no longer hard-referenced.</p>
+ * when they are no longer hard-referenced. Mappings whose file has been garbage collected are removed from the pool
+ * the next time a file is added to it. No other mapping is ever removed, so that a file remains the only instance
+ * for its key for as long as it is in use: the size of the pool is bounded by the number of files that are
+ * hard-referenced.</p>
  *
- * <p>This class uses the {@link ReferenceMap} class part of the <code>Apache Commons Collection</code> library.
- * All accesses to the underlying map is synchronized, making this class thread-safe.</p>
+ * <p>This class is thread-safe: it is backed by a <code>ConcurrentHashMap</code>, so that neither lookups nor
+ * additions take a lock. The number of hits, misses and collected files is recorded, see {@link #getHitCount()},
+ * {@link #getMissCount()} and {@link #getCollectedCount()}.</p>
  *
  * @author Maxence Bernard
  */
 public class FilePool {
 
     /** The actual hash map */
-    protected final ReferenceMap<Object, AbstractFile> hashMap = new ReferenceMap<>(ReferenceMap.ReferenceStrength.HARD, ReferenceMap.ReferenceStrength.WEAK);
+    private final Map<Object, FileReference> hashMap = new ConcurrentHashMap<>();
+
+    /** Queue where references to files that have been garbage collected are enqueued */
+    private final ReferenceQueue<AbstractFile> referenceQueue = new ReferenceQueue<>();
+
+    /** Number of lookups that returned a file */
+    private final LongAdder hitCount = new LongAdder();
+
+    /** Number of lookups that didn't return a file */
+    private final LongAdder missCount = new LongAdder();
+
+    /** Number of mappings removed because their file was garbage collected */
+    private final LongAdder collectedCount = new LongAdder();
 
     /**
      * Creates a new file pool.
@@ -56,8 +78,12 @@ public class FilePool {
      * @return returns the file instance previously mapped onto the given key, <code>null</code> if no
      * such mapping existed
      */
-    public synchronized AbstractFile put(Object key, AbstractFile value) {
-        return hashMap.put(key, value);
+    public AbstractFile put(Object key, AbstractFile value) {
+        expungeStaleMappings();
+
+        FileReference previous = hashMap.put(key, new FileReference(key, value, referenceQueue));
+
+        return previous==null?null:previous.get();
     }
 
     /**
@@ -68,8 +94,16 @@ public class FilePool {
      * @return the {@link AbstractFile} instance mapped onto the given key if there is one,
      * <code>null</code> otherwise
      */
-    public synchronized AbstractFile get(Object key) {
-        return hashMap.get(key);
+    public AbstractFile get(Object key) {
+        FileReference reference = hashMap.get(key);
+        AbstractFile file = reference==null?null:reference.get();
+
+        if(file==null)
+            missCount.increment();
+        else
+            hitCount.increment();
+
+        return file;
     }
 
     /**
@@ -80,8 +114,9 @@ public class FilePool {
      * @return <code>true</code> if this pool currently contains a key/file mapping where the given key is used as
      * the mapping's key.
      */
-    public synchronized boolean containsKey(Object key) {
-        return hashMap.containsKey(key);
+    public boolean containsKey(Object key) {
+        FileReference reference = hashMap.get(key);
+        return reference!=null && reference.get()!=null;
     }
 
     /**
@@ -92,16 +127,25 @@ public class FilePool {
      * @return <code>true</code> if this pool currently contains a key/file mapping where the given file is used as
      * the mapping's key.
      */
-    public synchronized boolean containsValue(AbstractFile file) {
-        return hashMap.containsValue(file);
+    public boolean containsValue(AbstractFile file) {
+        for(FileReference reference : hashMap.values()) {
+            AbstractFile pooledFile = reference.get();
+            if(pooledFile!=null && pooledFile.equals(file))
+                return true;
+        }
+
+        return false;
     }
 
     /**
      * Removes all existing key/file mapping from this pool, leaving the pool in the same state as it was right after
-     * its creation.
+     * its creation. Counters are not reset.
      */
-    public synchronized void clear() {
+    public void clear() {
         hashMap.clear();
+
+        // Drain the queue, the mappings are gone already
+        while(referenceQueue.poll()!=null);
     }
 
     /**
@@ -109,7 +153,61 @@ public class FilePool {
      *
      * @return the number of key/file mapping this pool currently contains.
      */
-    public synchronized int size() {
+    public int size() {
+        expungeStaleMappings();
+
         return hashMap.size();
     }
+
+    /**
+     * Returns the number of times {@link #get(Object)} returned a file.
+     *
+     * @return the number of times a file was found in the pool
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of times {@link #get(Object)} returned <code>null</code>.
+     *
+     * @return the number of times a file was not found in the pool
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of mappings that have been removed from the pool because their file was garbage collected.
+     *
+     * @return the number of mappings whose file was garbage collected
+     */
+    public long getCollectedCount() {
+        return collectedCount.sum();
+    }
+
+    /**
+     * Removes the mappings whose file has been garbage collected.
+     */
+    private void expungeStaleMappings() {
+        Reference<? extends AbstractFile> reference;
+        while((reference=referenceQueue.poll())!=null) {
+            FileReference fileReference = (FileReference)reference;
+            // The mapping may have been replaced in the meantime
+            if(hashMap.remove(fileReference.key, fileReference))
+                collectedCount.increment();
+        }
+    }
+
+    /**
+     * Weak reference to a pooled file that remembers the key it is mapped onto.
+     */
+    private static class FileReference extends WeakReference<AbstractFile> {
+        private final Object key;
+
+        private FileReference(Object key, AbstractFile file, ReferenceQueue<AbstractFile> queue) {
+            super(file, queue);
+            this.key = key;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.util;
+
+import com.mucommander.commons.file.AbstractFile;
+
+import java.util.Set;
+
+/**
+ * Interface to be implemented by classes that wish to be notified when the contents of a folder watched by
+ * {@link FolderWatcher} change.
+ *
+ * @see FolderWatcher
+ */
+public interface FolderWatchListener {
+
+    /**
+     * Called in the watcher thread when children of the given folder have been created, deleted or modified. Events
+     * that occur in a short period of time are reported at once.
+     *
+     * <p><code>changedNames</code> is <code>null</code> when the changes could not be tracked individually: too many
+     * changes occurred, or the folder itself has been deleted or moved, in which case it is not watched anymore.
+     * The whole folder should then be considered as changed.</p>
+     *
+     * @param folder the watched folder
+     * @param changedNames names of the children that have been created, deleted or modified, <code>null</code> if
+     * unknown
+     */
+    void folderChanged(AbstractFile folder, Set<String> changedNames);
+}
@@ -0,0 +1,390 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.commons.file.util;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.impl.ProxyFile;
+import com.mucommander.commons.file.impl.local.LocalFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>FolderWatcher</code> notifies {@link FolderWatchListener} listeners of changes made to the contents of local
+ * folders, using the filesystem's change notifications (e.g. <i>inotify</i> on Linux) through
+ * <code>java.nio.file.WatchService</code>.
+ *
+ * <p>All folders are watched by a single thread, which is started when the first folder is watched. Events are not
+ * reported as soon as they occur, but coalesced: the changes made to a folder are reported at once when no other
+ * change has occurred for {@link #COALESCE_DELAY} milliseconds, and at most {@link #MAX_COALESCE_DELAY} milliseconds
+ * after the first change, so that a burst of changes results in a few notifications only.</p>
+ *
+ * <p>Only local folders can be watched. Watching is not available on platforms where the <code>WatchService</code>
+ * is not backed by native notifications but polls folders itself, as polling is better left to the caller in
+ * that case: {@link #watch(AbstractFile, FolderWatchListener)} returns <code>null</code> when a folder cannot be
+ * watched, and the caller should fall back to polling.</p>
+ *
+ * @see FolderWatchListener
+ */
+public class FolderWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FolderWatcher.class);
+
+    /** Number of milliseconds without changes after which the changes made to a folder are reported */
+    public final static long COALESCE_DELAY = 100;
+
+    /** Maximum number of milliseconds between a change and its notification, when changes occur continuously */
+    public final static long MAX_COALESCE_DELAY = 1000;
+
+    /** Maximum number of changed names reported at once, beyond that the whole folder is reported as changed */
+    public final static int MAX_CHANGED_NAMES = 1000;
+
+    /** The watch service, null until a folder has been watched or if it is not available */
+    private static WatchService watchService;
+
+    /** True once the creation of the watch service has been attempted */
+    private static boolean initialized;
+
+    /** Watches registered for each watch key */
+    private final static Map<WatchKey, List<Watch>> watches = new HashMap<>();
+
+    /** Changes that haven't been reported yet, for each watch key */
+    private final static Map<WatchKey, PendingChanges> pendingChanges = new HashMap<>();
+
+
+    /**
+     * Starts watching the given folder for changes, and returns a {@link Watch} that must be cancelled when the folder
+     * does not need to be watched anymore. Returns <code>null</code> if the folder cannot be watched, either because
+     * it is not a local folder, or because watching folders is not available on this platform.
+     *
+     * @param folder the folder to watch
+     * @param listener the listener to notify when the contents of the folder change
+     * @return a Watch to cancel when the folder does not need to be watched anymore, <code>null</code> if the folder
+     * cannot be watched
+     */
+    public static Watch watch(AbstractFile folder, FolderWatchListener listener) {
+        Path path = getLocalPath(folder);
+        if (path == null) {
+            return null;
+        }
+
+        synchronized(watches) {
+            if (!initialize()) {
+                return null;
+            }
+
+            WatchKey key;
+            try {
+                key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Could not watch " + path, e);
+                return null;
+            }
+
+            Watch watch = new Watch(key, folder, listener);
+            List<Watch> keyWatches = watches.get(key);
+            if (keyWatches == null) {
+                keyWatches = new ArrayList<>();
+                watches.put(key, keyWatches);
+            }
+            keyWatches.add(watch);
+
+            return watch;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if watching folders is available on this platform, in which case local folders can be
+     * watched.
+     *
+     * @return <code>true</code> if watching folders is available on this platform
+     */
+    public static boolean isAvailable() {
+        synchronized(watches) {
+            return initialize();
+        }
+    }
+
+    /**
+     * Returns the path of the given folder if it is a local folder, <code>null</code> otherwise.
+     */
+    private static Path getLocalPath(AbstractFile folder) {
+        // Archives and archive entries are not watched, only local files (possibly proxied) are
+        while (folder instanceof ProxyFile) {
+            folder = ((ProxyFile)folder).getProxiedFile();
+        }
+        if (!(folder instanceof LocalFile) || !folder.isDirectory()) {
+            return null;
+        }
+
+        try {
+            return new File(folder.getAbsolutePath()).toPath();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the watch service and starts the watcher thread the first time this method is called. Returns
+     * <code>false</code> if the watch service is not available. Must be called while synchronized on {@link #watches}.
+     */
+    private static boolean initialize() {
+        if (!initialized) {
+            initialized = true;
+            try {
+                WatchService service = FileSystems.getDefault().newWatchService();
+                // Some platforms (e.g. Mac OS X) have no native implementation and poll watched folders at a fixed,
+                // long period, which is worse than the callers' own polling
+                if (service.getClass().getName().contains("Polling")) {
+                    LOGGER.info("WatchService polls folders on this platform, folders won't be watched");
+                    service.close();
+                } else {
+                    watchService = service;
+
+                    Thread watcherThread = new Thread("FolderWatcher") {
+                        @Override
+                        public void run() {
+                            processEvents();
+                        }
+                    };
+                    watcherThread.setDaemon(true);
+                    watcherThread.start();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.info("WatchService is not available, folders won't be watched", e);
+            }
+        }
+
+        return watchService != null;
+    }
+
+    /**
+     * Waits for events and reports them to listeners, called by the watcher thread.
+     */
+    private static void processEvents() {
+        while (true) {
+            try {
+                long delay = getNextNotificationDelay();
+                WatchKey key = delay < 0 ? watchService.take() : watchService.poll(delay, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    addEvents(key);
+                }
+
+                notifyListeners();
+            } catch (InterruptedException e) {
+                // will keep looping
+            } catch (Throwable t) {
+                LOGGER.info("Caught exception while watching folders", t);
+            }
+        }
+    }
+
+    /**
+     * Adds the events of the given key to the pending changes.
+     */
+    private static void addEvents(WatchKey key) {
+        List<WatchEvent<?>> events = key.pollEvents();
+        boolean valid = key.reset();
+
+        synchronized(watches) {
+            // Events may have been received for a key that has just been cancelled
+            if (!watches.containsKey(key)) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            PendingChanges changes = pendingChanges.get(key);
+            if (changes == null) {
+                changes = new PendingChanges(now);
+                pendingChanges.put(key, changes);
+            }
+            changes.lastEventTime = now;
+
+            for (WatchEvent<?> event : events) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || changes.names.size() >= MAX_CHANGED_NAMES) {
+                    changes.overflow = true;
+                } else if (!changes.overflow) {
+                    changes.names.add(event.context().toString());
+                }
+            }
+
+            // The folder has been deleted or is not accessible anymore, report it now
+            if (!valid) {
+                changes.overflow = true;
+                changes.firstEventTime = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of milliseconds until pending changes must be reported, <code>-1</code> if there are none.
+     */
+    private static long getNextNotificationDelay() {
+        synchronized(watches) {
+            long delay = -1;
+            long now = System.currentTimeMillis();
+            for (PendingChanges changes : pendingChanges.values()) {
+                long changesDelay = Math.max(0, changes.getNotificationTime() - now);
+                delay = delay < 0 ? changesDelay : Math.min(delay, changesDelay);
+            }
+
+            return delay;
+        }
+    }
+
+    /**
+     * Reports the pending changes that are due to the listeners, and stops watching folders that are not valid anymore.
+     */
+    private static void notifyListeners() {
+        List<Watch> notifiedWatches = new ArrayList<>();
+        List<Set<String>> notifiedNames = new ArrayList<>();
+
+        synchronized(watches) {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<WatchKey, PendingChanges>> iterator = pendingChanges.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<WatchKey, PendingChanges> entry = iterator.next();
+                PendingChanges changes = entry.getValue();
+                if (changes.getNotificationTime() > now) {
+                    continue;
+                }
+                iterator.remove();
+
+                WatchKey key = entry.getKey();
+                List<Watch> keyWatches = watches.get(key);
+                if (keyWatches == null) {
+                    continue;
+                }
+                for (Watch watch : keyWatches) {
+                    notifiedWatches.add(watch);
+                    notifiedNames.add(changes.overflow ? null : new HashSet<>(changes.names));
+                }
+
+                if (!key.isValid()) {
+                    watches.remove(key);
+                }
+            }
+        }
+
+        // Listeners are called without holding the lock
+        for (int i = 0; i < notifiedWatches.size(); i++) {
+            Watch watch = notifiedWatches.get(i);
+            try {
+                watch.listener.folderChanged(watch.folder, notifiedNames.get(i));
+            } catch (RuntimeException e) {
+                LOGGER.info("Caught exception while notifying listener", e);
+            }
+        }
+    }
+
+
+    /**
+     * Represents a folder being watched for a listener. Once {@link #cancel()} has been called, the listener is not
+     * notified of the folder's changes anymore.
+     */
+    public static class Watch {
+
+        /** The key the folder is registered with */
+        private final WatchKey key;
+
+        /** The watched folder */
+        private final AbstractFile folder;
+
+        /** The listener to notify */
+        private final FolderWatchListener listener;
+
+        private Watch(WatchKey key, AbstractFile folder, FolderWatchListener listener) {
+            this.key = key;
+            this.folder = folder;
+            this.listener = listener;
+        }
+
+        /**
+         * Returns the watched folder.
+         *
+         * @return the watched folder
+         */
+        public AbstractFile getFolder() {
+            return folder;
+        }
+
+        /**
+         * Stops watching the folder. The folder keeps being watched by the system as long as other watches exist on
+         * it.
+         */
+        public void cancel() {
+            synchronized(watches) {
+                List<Watch> keyWatches = watches.get(key);
+                if (keyWatches == null || !keyWatches.remove(this) || !keyWatches.isEmpty()) {
+                    return;
+                }
+
+                watches.remove(key);
+                pendingChanges.remove(key);
+                key.cancel();
+            }
+        }
+    }
+
+    /**
+     * Changes made to a watched folder that haven't been reported yet.
+     */
+    private static class PendingChanges {
+
+        /** Names of the children that have changed */
+        private final Set<String> names = new HashSet<>();
+
+        /** True if the changes could not be tracked individually */
+        private boolean overflow;
+
+        /** Time of the first change */
+        private long firstEventTime;
+
+        /** Time of the last change */
+        private long lastEventTime;
+
+        private PendingChanges(long firstEventTime) {
+            this.firstEventTime = firstEventTime;
+            this.lastEventTime = firstEventTime;
+        }
+
+        /**
+         * Returns the time at which the changes must be reported.
+         */
+        private long getNotificationTime() {
+            return Math.min(lastEventTime + COALESCE_DELAY, firstEventTime + MAX_COALESCE_DELAY);
+        }
+    }
+}
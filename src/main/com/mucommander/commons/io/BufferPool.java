@@ -21,11 +21,20 @@ package com.mucommander.commons.io;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class allows to share and reuse byte buffers to avoid excessive memory allocation and garbage collection.
@@ -48,6 +57,13 @@ import java.util.List;
  * </ul>
  * </p>
  *
+ * <p>Pooled buffers are grouped in size classes, one per buffer class and length. Each thread keeps a few buffers of
+ * each size class in a cache of its own, up to {@link #THREAD_CACHE_MAX_SIZE} bytes, which it looks up first without
+ * any synchronization; the other buffers are shared by all threads through lock-free queues. A thread can hand its
+ * cached buffers back to the shared queues with {@link #releaseThreadCache()}, which threads that are about to finish
+ * or to stay idle for a while should call. Buffers cached by a thread that has died are handed back to the shared
+ * queues the next time a buffer can't be found in the pool.</p>
+ *
  * <p>Note: this class is thread safe and thus can safely be used by concurrent threads.</p>
  *
  * @author Maxence Bernard, Nicolas Rinaudo
@@ -57,23 +73,60 @@ public class BufferPool {
     /** Logger used by this class. */
     private static final Logger LOGGER = LoggerFactory.getLogger(BufferPool.class);
 
-    /** List of BufferContainer instances that wraps available buffers */
-    private static List<BufferContainer> bufferContainers = new ArrayList<>();
+    /** All buffers that are currently in the pool, whether shared or cached by a thread */
+    private static final Map<BufferContainer, Boolean> pooledBuffers = new ConcurrentHashMap<>();
+
+    /** Buffers shared by all threads, one queue per size class */
+    private static final Map<SizeClass, Deque<BufferContainer>> sharedBuffers = new ConcurrentHashMap<>();
+
+    /** Caches of all the threads that have used the pool, used to reclaim the buffers of dead threads */
+    private static final Queue<ThreadCache> threadCaches = new ConcurrentLinkedQueue<>();
+
+    /** The calling thread's cache */
+    private static final ThreadLocal<ThreadCache> threadCache = ThreadLocal.withInitial(() -> {
+        ThreadCache cache = new ThreadCache(Thread.currentThread());
+        threadCaches.add(cache);
+        return cache;
+    });
+
+    /** Incremented by {@link #releaseAll()} to invalidate the contents of all thread caches */
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    /** Maximum number of buffers of a same size class that a thread keeps for itself */
+    private final static int THREAD_CACHE_CAPACITY = 2;
+
+    /** Maximum combined size in bytes of the buffers that a thread keeps for itself */
+    public final static int THREAD_CACHE_MAX_SIZE = 262144;
 
     /** The initial default buffer size */
     public final static int INITIAL_DEFAULT_BUFFER_SIZE = 65536;
 
     /** Size of buffers returned by get*Buffer methods without a size argument */
-    public static int defaultBufferSize = INITIAL_DEFAULT_BUFFER_SIZE;
+    public static volatile int defaultBufferSize = INITIAL_DEFAULT_BUFFER_SIZE;
 
     /** The initial max pool size */
     public final static long INITIAL_POOL_LIMIT = 10485760;
 
     /** Maximum combined size of all pooled buffers, in bytes */
-    public static long maxPoolSize = INITIAL_POOL_LIMIT;
+    public static volatile long maxPoolSize = INITIAL_POOL_LIMIT;
 
     /** Current combined size of all pooled buffers, in bytes */
-    public static long poolSize;
+    private static final AtomicLong poolSize = new AtomicLong();
+
+    /** Number of buffers that were found in the pool */
+    private static final LongAdder hitCount = new LongAdder();
+
+    /** Number of buffers that could not be found in the pool and had to be created */
+    private static final LongAdder missCount = new LongAdder();
+
+    /** Combined size in bytes of the buffers that had to be created */
+    private static final LongAdder allocatedBytes = new LongAdder();
+
+    /** Factories used by the get/release methods of the predefined buffer types, factories being stateless */
+    private static final BufferFactory BYTE_ARRAY_FACTORY = new ByteArrayFactory();
+    private static final BufferFactory CHAR_ARRAY_FACTORY = new CharArrayFactory();
+    private static final BufferFactory BYTE_BUFFER_FACTORY = new ByteBufferFactory();
+    private static final BufferFactory CHAR_BUFFER_FACTORY = new CharBufferFactory();
 
 
     /**
@@ -82,7 +135,7 @@ public class BufferPool {
      *
      * @return a byte array with a length of {@link #getDefaultBufferSize()}
      */
-    public static synchronized byte[] getByteArray() {
+    public static byte[] getByteArray() {
         return getByteArray(getDefaultBufferSize());
     }
 
@@ -100,8 +153,8 @@ public class BufferPool {
      * @param length length of the byte array
      * @return a byte array of the specified size
      */
-    public static synchronized byte[] getByteArray(int length) {
-        return (byte[])getBuffer(new ByteArrayFactory(), length);
+    public static byte[] getByteArray(int length) {
+        return (byte[])getBuffer(BYTE_ARRAY_FACTORY, length);
     }
 
     /**
@@ -110,7 +163,7 @@ public class BufferPool {
      *
      * @return a char array with a length of {@link #getDefaultBufferSize()}
      */
-    public static synchronized char[] getCharArray() {
+    public static char[] getCharArray() {
         return getCharArray(getDefaultBufferSize());
     }
 
@@ -128,8 +181,8 @@ public class BufferPool {
      * @param length length of the char array
      * @return a char array of the specified length
      */
-    public static synchronized char[] getCharArray(int length) {
-        return (char[])getBuffer(new CharArrayFactory(), length);
+    public static char[] getCharArray(int length) {
+        return (char[])getBuffer(CHAR_ARRAY_FACTORY, length);
     }
 
     /**
@@ -138,7 +191,7 @@ public class BufferPool {
      *
      * @return a ByteBuffer with a capacity equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized ByteBuffer getByteBuffer() {
+    public static ByteBuffer getByteBuffer() {
         return getByteBuffer(getDefaultBufferSize());
     }
 
@@ -156,8 +209,8 @@ public class BufferPool {
      * @param capacity capacity of the ByteBuffer
      * @return a ByteBuffer with the specified capacity
      */
-    public static synchronized ByteBuffer getByteBuffer(int capacity) {
-        return (ByteBuffer)getBuffer(new ByteBufferFactory(), capacity);
+    public static ByteBuffer getByteBuffer(int capacity) {
+        return (ByteBuffer)getBuffer(BYTE_BUFFER_FACTORY, capacity);
     }
 
 
@@ -167,7 +220,7 @@ public class BufferPool {
      *
      * @return a CharBuffer with a capacity equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized CharBuffer getCharBuffer() {
+    public static CharBuffer getCharBuffer() {
         return getCharBuffer(getDefaultBufferSize());
     }
 
@@ -185,8 +238,8 @@ public class BufferPool {
      * @param capacity capacity of the CharBuffer
      * @return a CharBuffer with the specified capacity
      */
-    public static synchronized CharBuffer getCharBuffer(int capacity) {
-        return (CharBuffer)getBuffer(new CharBufferFactory(), capacity);
+    public static CharBuffer getCharBuffer(int capacity) {
+        return (CharBuffer)getBuffer(CHAR_BUFFER_FACTORY, capacity);
     }
 
 
@@ -197,7 +250,7 @@ public class BufferPool {
      * @param factory BufferFactory used to identify the target buffer class and create a new buffer (if necessary)
      * @return a buffer with a size equal to {@link #getDefaultBufferSize()}
      */
-    public static synchronized Object getBuffer(BufferFactory factory) {
+    public static Object getBuffer(BufferFactory factory) {
         return getBuffer(factory, getDefaultBufferSize());
     }
 
@@ -214,26 +267,36 @@ public class BufferPool {
      * @param size size of the buffer
      * @return a buffer of the specified size
      */
-    public static synchronized Object getBuffer(BufferFactory factory, int size) {
-        // Looks for a buffer container in the pool that matches the specified size and buffer class.
-        Iterator<BufferContainer> it = bufferContainers.iterator();
-        while (it.hasNext()) {
-            BufferContainer bufferContainer = it.next();
-            Object buffer = bufferContainer.getBuffer();
+    public static Object getBuffer(BufferFactory factory, int size) {
+        SizeClass sizeClass = new SizeClass(factory.getBufferClass(), size);
+
+        // Look in the calling thread's cache first, then in the buffers shared by all threads
+        BufferContainer bufferContainer = getThreadCache().poll(sizeClass);
+        if(bufferContainer==null) {
+            bufferContainer = pollSharedBuffer(sizeClass);
 
+            // Buffers of threads that have died may be lying around, put them back into circulation
+            if(bufferContainer==null && reclaimOrphanedBuffers())
+                bufferContainer = pollSharedBuffer(sizeClass);
+        }
+
+        if(bufferContainer!=null) {
             // Caution: mind the difference between BufferContainer#getLength() and BufferContainer#getSize()
-            if (bufferContainer.getLength() == size && (factory.matchesBufferClass(buffer.getClass()))) {
-                it.remove();
-                //bufferContainers.removeElementAt(i);
-                poolSize -= bufferContainer.getSize();
-                return buffer;
-            }
+            pooledBuffers.remove(bufferContainer);
+            poolSize.addAndGet(-bufferContainer.getSize());
+            hitCount.increment();
+
+            return bufferContainer.getBuffer();
         }
 
-        LOGGER.trace("Creating new buffer with {} size=", factory, size);
+        LOGGER.trace("Creating new buffer with {} size={}", factory, size);
 
         // No buffer with the same class and size found in the pool, create a new one and return it
-        return factory.newBuffer(size);
+        Object buffer = factory.newBuffer(size);
+        missCount.increment();
+        allocatedBytes.add(factory.newBufferContainer(buffer).getSize());
+
+        return buffer;
     }
 
 
@@ -249,8 +312,8 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseByteArray(byte buffer[]) {
-        return releaseBuffer(buffer, new ByteArrayFactory());
+    public static boolean releaseByteArray(byte buffer[]) {
+        return releaseBuffer(buffer, BYTE_ARRAY_FACTORY);
     }
 
     /**
@@ -265,8 +328,8 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseCharArray(char buffer[]) {
-        return releaseBuffer(buffer, new CharArrayFactory());
+    public static boolean releaseCharArray(char buffer[]) {
+        return releaseBuffer(buffer, CHAR_ARRAY_FACTORY);
     }
 
     /**
@@ -281,8 +344,8 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseByteBuffer(ByteBuffer buffer) {
-        return releaseBuffer(buffer, new ByteBufferFactory());
+    public static boolean releaseByteBuffer(ByteBuffer buffer) {
+        return releaseBuffer(buffer, BYTE_BUFFER_FACTORY);
     }
 
     /**
@@ -297,8 +360,8 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseCharBuffer(CharBuffer buffer) {
-        return releaseBuffer(buffer, new CharBufferFactory());
+    public static boolean releaseCharBuffer(CharBuffer buffer) {
+        return releaseBuffer(buffer, CHAR_BUFFER_FACTORY);
     }
 
     /**
@@ -315,35 +378,149 @@ public class BufferPool {
      * @return <code>true</code> if the buffer was added to the pool, <code>false</code> if the buffer was already in the pool or the pool size limit has been reached
      * @throws IllegalArgumentException if specified buffer is null
      */
-    public static synchronized boolean releaseBuffer(Object buffer, BufferFactory factory) {
+    public static boolean releaseBuffer(Object buffer, BufferFactory factory) {
         if(buffer==null)
             throw new IllegalArgumentException("specified buffer is null");
 
         BufferContainer bufferContainer = factory.newBufferContainer(buffer);
 
-        if(bufferContainers.contains(bufferContainer)) {
+        if(pooledBuffers.putIfAbsent(bufferContainer, Boolean.TRUE)!=null) {
             LOGGER.info("Warning: specified buffer is already in the pool: {}", buffer);
             return false;
         }
 
         long bufferSize = bufferContainer.getSize();        // size in bytes (!= length)
 
-        if(maxPoolSize!=-1 && poolSize+bufferSize>maxPoolSize) {
+        if(!reservePoolSize(bufferSize)) {
+            pooledBuffers.remove(bufferContainer);
+
             LOGGER.info("Warning: maximum pool size reached, buffer not added to the pool of type {}. Enable trace to get the buffer.", buffer.getClass());
             LOGGER.trace("Warning: maximum pool size reached, buffer not added to the pool of type {} : {}", buffer.getClass(), buffer);
             return false;
         }
 
-        bufferContainers.add(bufferContainer);
-        poolSize += bufferSize;
+        SizeClass sizeClass = new SizeClass(factory.getBufferClass(), bufferContainer.getLength());
+        if(!getThreadCache().offer(sizeClass, bufferContainer))
+            getSharedBuffers(sizeClass).offerFirst(bufferContainer);
 
         return true;
     }
 
+    /**
+     * Adds the given number of bytes to the pool size, only if the max pool size is not exceeded.
+     *
+     * @param bufferSize size of the buffer to add to the pool, in bytes
+     * @return <code>true</code> if the pool size was increased, <code>false</code> if the max pool size would have been exceeded
+     */
+    private static boolean reservePoolSize(long bufferSize) {
+        long currentPoolSize;
+        do {
+            currentPoolSize = poolSize.get();
+            long max = maxPoolSize;
+            if(max!=-1 && currentPoolSize+bufferSize>max)
+                return false;
+        }
+        while(!poolSize.compareAndSet(currentPoolSize, currentPoolSize+bufferSize));
+
+        return true;
+    }
+
+    /**
+     * Returns the calling thread's cache, emptied first if {@link #releaseAll()} was called since it was last used.
+     *
+     * @return the calling thread's cache
+     */
+    private static ThreadCache getThreadCache() {
+        ThreadCache cache = threadCache.get();
+        int currentGeneration = generation.get();
+        if(cache.generation!=currentGeneration) {
+            cache.clear();
+            cache.generation = currentGeneration;
+        }
+
+        return cache;
+    }
+
+    /**
+     * Returns the queue of shared buffers for the given size class, creating it if necessary.
+     *
+     * @param sizeClass the size class
+     * @return the queue of shared buffers for the given size class
+     */
+    private static Deque<BufferContainer> getSharedBuffers(SizeClass sizeClass) {
+        Deque<BufferContainer> buffers = sharedBuffers.get(sizeClass);
+        if(buffers==null)
+            buffers = sharedBuffers.computeIfAbsent(sizeClass, key -> new ConcurrentLinkedDeque<>());
+
+        return buffers;
+    }
+
+    /**
+     * Removes and returns a shared buffer of the given size class, <code>null</code> if there is none.
+     *
+     * @param sizeClass the size class
+     * @return a shared buffer of the given size class, <code>null</code> if there is none
+     */
+    private static BufferContainer pollSharedBuffer(SizeClass sizeClass) {
+        Deque<BufferContainer> buffers = sharedBuffers.get(sizeClass);
+
+        return buffers==null?null:buffers.pollFirst();
+    }
+
+    /**
+     * Moves the buffers cached by threads that have died to the shared queues.
+     *
+     * @return <code>true</code> if at least one buffer was moved
+     */
+    private static boolean reclaimOrphanedBuffers() {
+        boolean reclaimed = false;
+        for(ThreadCache cache : threadCaches) {
+            // The thread that removes the cache from the list is the only one to access its buffers
+            if(cache.isOwnerAlive() || !threadCaches.remove(cache))
+                continue;
+
+            if(cache.generation!=generation.get())
+                continue;
+
+            reclaimed |= moveToSharedBuffers(cache);
+        }
+
+        return reclaimed;
+    }
+
+    /**
+     * Moves the buffers of the given thread cache to the shared queues, leaving the cache empty.
+     *
+     * @param cache a cache that no other thread accesses
+     * @return <code>true</code> if at least one buffer was moved
+     */
+    private static boolean moveToSharedBuffers(ThreadCache cache) {
+        boolean moved = false;
+        for(Map.Entry<SizeClass, ArrayDeque<BufferContainer>> entry : cache.buffers.entrySet()) {
+            Deque<BufferContainer> buffers = getSharedBuffers(entry.getKey());
+            for(BufferContainer bufferContainer : entry.getValue()) {
+                buffers.offerFirst(bufferContainer);
+                moved = true;
+            }
+        }
+        cache.clear();
+
+        return moved;
+    }
+
+    /**
+     * Makes the buffers that the calling thread keeps for itself available to all threads. This method should be
+     * called by threads that are about to finish, or to stay idle for a while, so that the buffers they released
+     * can be reused by other threads without waiting for them to die.
+     */
+    public static void releaseThreadCache() {
+        moveToSharedBuffers(getThreadCache());
+    }
+
     /**
      * Returns <code>true</code> if the specified buffer is currently in the pool.
      *
-     * <p>Note that it is not necessary (and thus not recommended for performance reasons) to call this method before
+     * <p>Note that it is not necessary (and thus not recommended for performance reasons) to call this method before
      * calling <code>release*Buffer</code> as it already performs this test before adding a buffer to the pool.</p>
      *
      * @param buffer the buffer to look for in the pool
@@ -351,7 +528,7 @@ public class BufferPool {
      * @return <code>true</code> if the specified buffer is already in the pool
      */
     public static boolean containsBuffer(Object buffer, BufferFactory factory) {
-        return bufferContainers.contains(factory.newBufferContainer(buffer));
+        return pooledBuffers.containsKey(factory.newBufferContainer(buffer));
     }
 
 
@@ -362,7 +539,7 @@ public class BufferPool {
      * @return the number of buffers currently in the pool
      */
     public static int getBufferCount() {
-        return bufferContainers.size();
+        return pooledBuffers.size();
     }
 
     /**
@@ -374,7 +551,7 @@ public class BufferPool {
      */
     public static int getBufferCount(BufferFactory factory) {
         int count = 0;
-        for (BufferContainer bufferContainer : bufferContainers) {
+        for (BufferContainer bufferContainer : pooledBuffers.keySet()) {
             if (factory.matchesBufferClass(bufferContainer.getBuffer().getClass())) {
                 count ++;
             }
@@ -400,18 +577,19 @@ public class BufferPool {
      *
      * @param bufferSize the new buffer size
      */
-    public static synchronized void setDefaultBufferSize(int bufferSize) {
+    public static void setDefaultBufferSize(int bufferSize) {
         BufferPool.defaultBufferSize = bufferSize;
     }
 
 
     /**
-     * Returns the combined size in bytes of all buffers that are currently in the pool.
+     * Returns the combined size in bytes of all buffers that are currently in the pool. This method replaces the
+     * <code>poolSize</code> field, which is no longer public.
      *
      * @return the combined size in bytes of all buffers that are currenty in the pool
      */
     public static long getPoolSize() {
-        return poolSize;
+        return poolSize.get();
     }
 
     /**
@@ -434,10 +612,48 @@ public class BufferPool {
      *
      * @param maxPoolSize the maximum combined size in bytes for all buffers in the pool
      */
-    public static synchronized void setMaxPoolSize(long maxPoolSize) {
+    public static void setMaxPoolSize(long maxPoolSize) {
         BufferPool.maxPoolSize = maxPoolSize;
     }
 
+    /**
+     * Returns the number of times a <code>get*Buffer</code> method found a suitable buffer in the pool.
+     *
+     * @return the number of buffers that were found in the pool
+     */
+    public static long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of times a <code>get*Buffer</code> method could not find a suitable buffer in the pool and
+     * had to create a new one.
+     *
+     * @return the number of buffers that had to be created
+     */
+    public static long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the combined size in bytes of the buffers that <code>get*Buffer</code> methods had to create.
+     *
+     * @return the combined size in bytes of the buffers that had to be created
+     */
+    public static long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * Resets the values returned by {@link #getHitCount()}, {@link #getMissCount()} and {@link #getAllocatedBytes()}
+     * to zero.
+     */
+    public static void resetCounters() {
+        hitCount.reset();
+        missCount.reset();
+        allocatedBytes.reset();
+    }
+
 
     ///////////////////
     // Inner classes //
@@ -473,10 +689,17 @@ public class BufferPool {
          * Implements a shallow equal comparison.
          */
         public boolean equals(Object o) {
-            // Note: this method is used by Vector.contains()
+            // Note: this method is used to look up the buffers that are in the pool
             return (o instanceof BufferContainer) && buffer == ((BufferContainer)o).buffer;
         }
 
+        /**
+         * Returns the identity hash code of the wrapped buffer, consistently with {@link #equals(Object)}.
+         */
+        public int hashCode() {
+            return System.identityHashCode(buffer);
+        }
+
         /**
          * Returns the length of the wrapped buffer instance.
          *
@@ -660,8 +883,92 @@ public class BufferPool {
         }
     }
 
-	public static synchronized void releaseAll() {
-		bufferContainers.clear();
-		poolSize = 0;
-	}
+    /**
+     * Identifies a size class of the pool: buffers of a same class and length.
+     */
+    private static class SizeClass {
+        private final Class<?> bufferClass;
+        private final int length;
+
+        private SizeClass(Class<?> bufferClass, int length) {
+            this.bufferClass = bufferClass;
+            this.length = length;
+        }
+
+        public boolean equals(Object o) {
+            if(!(o instanceof SizeClass))
+                return false;
+
+            SizeClass sizeClass = (SizeClass)o;
+            return length==sizeClass.length && bufferClass==sizeClass.bufferClass;
+        }
+
+        public int hashCode() {
+            return 31*bufferClass.hashCode() + length;
+        }
+    }
+
+    /**
+     * Buffers cached by a thread for its own use. A cache is accessed only by the thread that owns it, or by the
+     * thread that reclaims its buffers after the owner has died.
+     */
+    private static class ThreadCache {
+        private final WeakReference<Thread> owner;
+        private final Map<SizeClass, ArrayDeque<BufferContainer>> buffers = new HashMap<>();
+        /** Combined size in bytes of the cached buffers */
+        private long size;
+        private int generation = BufferPool.generation.get();
+
+        private ThreadCache(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        private boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread!=null && thread.isAlive();
+        }
+
+        private BufferContainer poll(SizeClass sizeClass) {
+            ArrayDeque<BufferContainer> cachedBuffers = buffers.get(sizeClass);
+            BufferContainer bufferContainer = cachedBuffers==null?null:cachedBuffers.pollFirst();
+            if(bufferContainer!=null)
+                size -= bufferContainer.getSize();
+
+            return bufferContainer;
+        }
+
+        private boolean offer(SizeClass sizeClass, BufferContainer bufferContainer) {
+            if(size+bufferContainer.getSize()>THREAD_CACHE_MAX_SIZE)
+                return false;
+
+            ArrayDeque<BufferContainer> cachedBuffers = buffers.get(sizeClass);
+            if(cachedBuffers==null) {
+                cachedBuffers = new ArrayDeque<>(THREAD_CACHE_CAPACITY);
+                buffers.put(sizeClass, cachedBuffers);
+            }
+            else if(cachedBuffers.size()>=THREAD_CACHE_CAPACITY) {
+                return false;
+            }
+
+            cachedBuffers.offerFirst(bufferContainer);
+            size += bufferContainer.getSize();
+            return true;
+        }
+
+        private void clear() {
+            buffers.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Removes all buffers from the pool. Buffers cached by other threads are discarded the next time these threads
+     * use the pool. This method should not be called while other threads are using the pool.
+     */
+    public static void releaseAll() {
+        generation.incrementAndGet();
+        sharedBuffers.clear();
+        pooledBuffers.clear();
+        poolSize.set(0);
+    }
 }
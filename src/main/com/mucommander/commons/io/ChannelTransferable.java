@@ -0,0 +1,57 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This interface is implemented by <code>InputStream</code> classes that can transfer their bytes directly to a
+ * channel, without copying them through a user-space buffer. Streams backed by a
+ * {@link java.nio.channels.FileChannel} typically delegate to {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}
+ * which lets the operating system move the bytes (e.g. <code>sendfile</code> or <code>copy_file_range</code> under Linux).
+ *
+ * <p>Filter streams such as {@link CounterInputStream} and {@link ThroughputLimitInputStream} implement this interface
+ * by delegating to their underlying stream, so that the bytes transferred are accounted for as if they had been read.
+ * Channel transfers are available only if the whole chain of streams supports it, as reported by
+ * {@link #isChannelTransferSupported()}.</p>
+ *
+ * @see StreamUtils#copyChannel(ChannelTransferable, WritableByteChannel, long)
+ */
+public interface ChannelTransferable {
+
+    /**
+     * Returns <code>true</code> if {@link #transferTo(WritableByteChannel, long)} can currently be used to transfer
+     * this stream's bytes.
+     *
+     * @return true if bytes can currently be transferred to a channel
+     */
+    boolean isChannelTransferSupported();
+
+    /**
+     * Transfers up to <code>maxCount</code> bytes from the current position of this stream to the given channel,
+     * and advances the position of this stream by the number of bytes transferred.
+     *
+     * @param target the channel to write to
+     * @param maxCount maximum number of bytes to transfer
+     * @return the number of bytes transferred, <code>-1</code> if the end of the stream has been reached
+     * @throws IOException if an I/O error occurred while reading or writing
+     */
+    long transferTo(WritableByteChannel target, long maxCount) throws IOException;
+}
@@ -0,0 +1,323 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <code>ParallelRangeInputStream</code> is a <code>RandomAccessInputStream</code> for remote resources that can be
+ * read partially, for instance with HTTP <code>Range</code> requests. The resource is read in blocks that are fetched
+ * ahead by several threads at once, each block with its own request, and are handed to the reader in order.
+ *
+ * <p>The number of blocks requested ahead starts at 1 and doubles each time a block is consumed sequentially, up to
+ * the maximum given to the constructor: a stream that is only used to read a few bytes here and there does not
+ * request more than it needs. Seeking within the current block or one of the blocks requested ahead reuses them,
+ * seeking anywhere else discards the blocks requested ahead and starts over with a single block.</p>
+ *
+ * <p>Subclasses implement {@link #readBlock(long, byte[], int)}, which is called concurrently from several threads.</p>
+ */
+public abstract class ParallelRangeInputStream extends RandomAccessInputStream {
+
+    /** Default size of a block, in bytes */
+    public final static int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    /** Default maximum number of blocks being fetched at once */
+    public final static int DEFAULT_MAX_PENDING_BLOCKS = 4;
+
+    /** Threads that fetch the blocks, shared by all instances */
+    private final static ExecutorService FETCHERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ParallelRangeInputStream fetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Length of the resource */
+    private final long length;
+
+    /** Size of a block */
+    private final int blockSize;
+
+    /** Maximum number of blocks being fetched at once */
+    private final int maxPendingBlocks;
+
+    /** Blocks being fetched, in the order of their offset */
+    private final Deque<Block> pendingBlocks = new ArrayDeque<>();
+
+    /** Block currently being consumed, <code>null</code> if none */
+    private Block currentBlock;
+
+    /** Offset of the next byte to read */
+    private long offset;
+
+    /** Offset of the next block to request */
+    private long nextBlockOffset;
+
+    /** Number of blocks to keep being fetched ahead */
+    private int window = 1;
+
+    /** True once this stream has been closed */
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>ParallelRangeInputStream</code> using {@link #DEFAULT_BLOCK_SIZE} and
+     * {@link #DEFAULT_MAX_PENDING_BLOCKS}.
+     *
+     * @param length length of the resource, in bytes
+     */
+    protected ParallelRangeInputStream(long length) {
+        this(length, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_PENDING_BLOCKS);
+    }
+
+    /**
+     * Creates a new <code>ParallelRangeInputStream</code>. Nothing is requested until the first byte is read.
+     *
+     * @param length length of the resource, in bytes
+     * @param blockSize size of the blocks that are requested, in bytes
+     * @param maxPendingBlocks maximum number of blocks being fetched at once
+     */
+    protected ParallelRangeInputStream(long length, int blockSize, int maxPendingBlocks) {
+        if (blockSize < 1 || maxPendingBlocks < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.length = length;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = maxPendingBlocks;
+    }
+
+    /**
+     * Makes sure that the current block contains the byte at {@link #offset}, requesting and waiting for blocks as
+     * needed.
+     *
+     * @return <code>false</code> if the resource turned out to end before {@link #offset}, <code>true</code> if a block
+     * was read, which may end before {@link #offset} if the server returned fewer bytes than requested
+     * @throws IOException if the block could not be fetched
+     */
+    private boolean fill() throws IOException {
+        // Skip the blocks that end before the offset, discard all of them if the offset is before the first one
+        while (!pendingBlocks.isEmpty()) {
+            Block block = pendingBlocks.peekFirst();
+            if (offset < block.offset) {
+                discardPendingBlocks();
+                break;
+            } else if (offset >= block.offset + block.length) {
+                pendingBlocks.removeFirst().cancel();
+            } else {
+                break;
+            }
+        }
+
+        if (pendingBlocks.isEmpty() && offset != nextBlockOffset) {
+            // Random access: do not assume that the following blocks will be needed
+            nextBlockOffset = offset;
+            window = 1;
+        }
+        requestBlocks();
+
+        Block block = pendingBlocks.removeFirst();
+        int read = block.await();
+        if (read < block.length) {
+            // The resource is shorter than expected, or the server returned less than requested: the blocks that
+            // were requested after this one are discarded and requested again after the missing bytes
+            discardPendingBlocks();
+            nextBlockOffset = block.offset + Math.max(read, 0);
+            if (read <= 0) {
+                currentBlock = null;
+                return false;
+            }
+        }
+        currentBlock = block;
+        currentBlock.length = read;
+
+        if (window < maxPendingBlocks && offset == block.offset) {
+            window = Math.min(window * 2, maxPendingBlocks);
+        }
+        requestBlocks();
+
+        return true;
+    }
+
+    /**
+     * Requests blocks after the last pending one, until {@link #window} blocks are pending or the end of the resource
+     * is reached.
+     */
+    private void requestBlocks() {
+        while (pendingBlocks.size() < window && nextBlockOffset < length) {
+            int blockLength = (int) Math.min(blockSize, length - nextBlockOffset);
+            Block block = new Block(nextBlockOffset, blockLength);
+            block.future = FETCHERS.submit(() -> readBlock(block.offset, block.data, block.length));
+            pendingBlocks.addLast(block);
+            nextBlockOffset += blockLength;
+        }
+    }
+
+    /**
+     * Cancels the blocks being fetched.
+     */
+    private void discardPendingBlocks() {
+        Block block;
+        while ((block = pendingBlocks.pollFirst()) != null) {
+            block.cancel();
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+
+    ////////////////////////////////////////////
+    // RandomAccessInputStream implementation //
+    ////////////////////////////////////////////
+
+    @Override
+    public int read() throws IOException {
+        byte b[] = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        checkClosed();
+        if (len == 0) {
+            return 0;
+        }
+        if (offset >= length) {
+            return -1;
+        }
+
+        while (currentBlock == null || offset < currentBlock.offset || offset >= currentBlock.offset + currentBlock.length) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+
+        int blockPosition = (int) (offset - currentBlock.offset);
+        int n = Math.min(len, currentBlock.length - blockPosition);
+        System.arraycopy(currentBlock.data, blockPosition, b, off, n);
+        offset += n;
+
+        return n;
+    }
+
+    @Override
+    public long getOffset() throws IOException {
+        checkClosed();
+        return offset;
+    }
+
+    @Override
+    public long getLength() throws IOException {
+        return length;
+    }
+
+    /**
+     * Moves the offset; blocks are requested only when the next byte is read.
+     */
+    @Override
+    public void seek(long offset) throws IOException {
+        checkClosed();
+        if (offset < 0) {
+            throw new IOException("Negative offset: " + offset);
+        }
+        this.offset = offset;
+    }
+
+    /**
+     * Cancels the blocks being fetched. Subclasses that hold resources must call this method when overriding it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        discardPendingBlocks();
+        currentBlock = null;
+    }
+
+
+    //////////////////////
+    // Abstract methods //
+    //////////////////////
+
+    /**
+     * Reads the given number of bytes of the resource starting at the specified offset. This method is called
+     * concurrently from several threads, each with its own <code>block</code> array.
+     *
+     * @param fileOffset offset of the first byte to read
+     * @param block the array to read the bytes into, starting at index 0
+     * @param blockLen number of bytes to read
+     * @return the number of bytes read, less than <code>blockLen</code> only if fewer bytes are available, 0 if the
+     * resource ends before <code>fileOffset</code>
+     * @throws IOException if the bytes could not be read
+     */
+    protected abstract int readBlock(long fileOffset, byte block[], int blockLen) throws IOException;
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * A block of the resource that is fetched by one of the {@link #FETCHERS} threads.
+     */
+    private static class Block {
+        final long offset;
+        final byte data[];
+        /** Number of bytes requested, then number of bytes actually read */
+        int length;
+        Future<Integer> future;
+
+        Block(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+            this.data = new byte[length];
+        }
+
+        int await() throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        void cancel() {
+            future.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>PipelinedInputStream</code> reads ahead an underlying <code>InputStream</code> in a dedicated thread, so that
+ * the underlying stream is being read while the bytes previously read are being consumed. This is useful when both
+ * reading from the underlying stream and processing its bytes take time, for instance when copying a file from a
+ * remote server to another.
+ *
+ * <p>The reader thread fills a ring of buffers retrieved from {@link BufferPool}: it blocks when all the buffers are
+ * full, and the bytes are handed to the reading thread in the order they were read. An <code>IOException</code>
+ * thrown by the underlying stream is rethrown by the <code>read</code> methods of this stream, once all the bytes
+ * that were read before the error have been consumed.</p>
+ *
+ * <p>Closing this stream stops the reader thread and closes the underlying stream. {@link #stop()} stops the reader
+ * thread without closing the underlying stream, discarding the bytes that were read ahead.</p>
+ */
+public class PipelinedInputStream extends InputStream {
+
+    /** Default number of buffers in the ring */
+    public final static int DEFAULT_BUFFER_COUNT = 4;
+
+    /** Marks the end of the bytes read by the reader thread, whether because of EOF, an error or a stop */
+    private final static Chunk END_OF_STREAM = new Chunk(null, -1);
+
+    /** Handed to the reader thread to wake it up when it is stopped */
+    private final static byte[] STOP_BUFFER = new byte[0];
+
+    /** Threads that read the underlying streams ahead, shared by all instances */
+    private final static ExecutorService READERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "PipelinedInputStream reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The stream that is read ahead */
+    private final InputStream in;
+
+    /** All the buffers of the ring */
+    private final byte[][] buffers;
+
+    /** Buffers that can be filled by the reader thread */
+    private final BlockingQueue<byte[]> freeBuffers;
+
+    /** Buffers that have been filled by the reader thread and not consumed yet */
+    private final BlockingQueue<Chunk> filledChunks = new LinkedBlockingQueue<>();
+
+    /** Number of parties (reader thread and consumer) still using the buffers */
+    private final AtomicInteger bufferUsers = new AtomicInteger(2);
+
+    /** Error that stopped the reader thread, if any */
+    private volatile IOException failure;
+
+    /** True once the reader thread has been asked to stop */
+    private volatile boolean stopped;
+
+    /** True once this stream has been closed */
+    private volatile boolean closed;
+
+    /** Chunk currently being consumed, <code>null</code> if none */
+    private Chunk currentChunk;
+
+    /** Position of the next byte to consume in the current chunk */
+    private int currentPosition;
+
+    /** True once the consumer has reached the end of the bytes read by the reader thread */
+    private boolean endReached;
+
+
+    /**
+     * Creates a new <code>PipelinedInputStream</code> that reads ahead the given stream using
+     * {@link #DEFAULT_BUFFER_COUNT} buffers of {@link BufferPool#getDefaultBufferSize()} bytes.
+     *
+     * @param in the stream to read ahead
+     */
+    public PipelinedInputStream(InputStream in) {
+        this(in, BufferPool.getDefaultBufferSize(), DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * Creates a new <code>PipelinedInputStream</code> that reads ahead the given stream using the specified number of
+     * buffers. The reader thread is started immediately.
+     *
+     * @param in the stream to read ahead
+     * @param bufferSize size of each buffer of the ring, in bytes
+     * @param nbBuffers number of buffers in the ring, at least 2 for reads and writes to overlap
+     */
+    public PipelinedInputStream(InputStream in, int bufferSize, int nbBuffers) {
+        this.in = in;
+
+        buffers = new byte[nbBuffers][];
+        freeBuffers = new ArrayBlockingQueue<>(nbBuffers);
+        for(int i=0; i<nbBuffers; i++) {
+            buffers[i] = BufferPool.getByteArray(bufferSize);
+            freeBuffers.add(buffers[i]);
+        }
+
+        READERS.execute(this::readAhead);
+    }
+
+    /**
+     * Reads the underlying stream into free buffers until EOF is reached, an error occurs or the reader thread is
+     * stopped. This method is executed by the reader thread.
+     */
+    private void readAhead() {
+        try {
+            while(!stopped) {
+                byte[] buffer = freeBuffers.take();
+                if(stopped)
+                    break;
+
+                int nbRead = StreamUtils.readUpTo(in, buffer);
+                if(nbRead>0)
+                    filledChunks.add(new Chunk(buffer, nbRead));
+
+                // readUpTo() returns less than requested only when EOF has been reached
+                if(nbRead<buffer.length)
+                    break;
+            }
+        }
+        catch(IOException e) {
+            // An error caused by the stream being closed from another thread is not reported
+            if(!stopped)
+                failure = e;
+        }
+        catch(InterruptedException e) {
+            // The reader thread has been stopped
+        }
+        finally {
+            filledChunks.add(END_OF_STREAM);
+            releaseBuffers();
+        }
+    }
+
+    /**
+     * Stops the reader thread without closing the underlying stream. Bytes that have been read ahead and not consumed
+     * yet are lost. This stream can no longer be read after this method has been called.
+     */
+    public void stop() {
+        if(closed)
+            return;
+
+        closed = true;
+        stopped = true;
+        // Wake up the reader thread if it is waiting for a free buffer. The thread is not interrupted as this would
+        // close the underlying stream if it is backed by an interruptible channel.
+        freeBuffers.offer(STOP_BUFFER);
+
+        releaseBuffers();
+    }
+
+    /**
+     * Returns the next chunk that has bytes to consume, waiting for the reader thread if necessary. Returns
+     * <code>null</code> if the end of the stream has been reached.
+     */
+    private Chunk getCurrentChunk() throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+
+        if(currentChunk!=null) {
+            if(currentPosition<currentChunk.length)
+                return currentChunk;
+
+            // The current chunk has been consumed, hand its buffer back to the reader thread
+            freeBuffers.offer(currentChunk.buffer);
+            currentChunk = null;
+        }
+
+        if(!endReached) {
+            Chunk chunk;
+            try {
+                chunk = filledChunks.take();
+            }
+            catch(InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+
+            if(chunk!=END_OF_STREAM) {
+                currentChunk = chunk;
+                currentPosition = 0;
+                return chunk;
+            }
+
+            endReached = true;
+        }
+
+        if(failure!=null)
+            throw failure;
+
+        return null;
+    }
+
+    /**
+     * Returns the buffers to the pool once both the reader thread and the consumer are done with them.
+     */
+    private void releaseBuffers() {
+        if(bufferUsers.decrementAndGet()==0) {
+            for(byte[] buffer : buffers)
+                BufferPool.releaseByteArray(buffer);
+        }
+    }
+
+
+    ////////////////////////////////
+    // InputStream implementation //
+    ////////////////////////////////
+
+    @Override
+    public int read() throws IOException {
+        Chunk chunk = getCurrentChunk();
+        if(chunk==null)
+            return -1;
+
+        return chunk.buffer[currentPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        if(len==0)
+            return 0;
+
+        Chunk chunk = getCurrentChunk();
+        if(chunk==null)
+            return -1;
+
+        int nbRead = Math.min(len, chunk.length-currentPosition);
+        System.arraycopy(chunk.buffer, currentPosition, b, off, nbRead);
+        currentPosition += nbRead;
+
+        return nbRead;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+
+        return currentChunk==null?0:currentChunk.length-currentPosition;
+    }
+
+    /**
+     * Stops the reader thread and closes the underlying stream.
+     *
+     * @throws IOException if an I/O error occurred while closing the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed)
+            return;
+
+        stop();
+        in.close();
+    }
+
+
+    /**
+     * Bytes that were read by the reader thread into a buffer of the ring.
+     */
+    private static class Chunk {
+        private final byte[] buffer;
+        private final int length;
+
+        private Chunk(byte[] buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+    }
+}
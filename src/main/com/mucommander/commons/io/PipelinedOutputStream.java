@@ -0,0 +1,296 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <code>PipelinedOutputStream</code> writes to an underlying <code>OutputStream</code> in a dedicated thread, so that
+ * the bytes previously written are being written to the underlying stream while the next ones are being produced.
+ * This is the writing counterpart of {@link PipelinedInputStream}, useful when both producing the bytes and writing
+ * them take time, for instance when extracting archive entries to a slow destination.
+ *
+ * <p>The bytes are copied into a ring of buffers retrieved from {@link BufferPool}, which the writer thread writes to
+ * the underlying stream in order: the <code>write</code> methods block when all the buffers are full. An
+ * <code>IOException</code> thrown by the underlying stream is rethrown by the next call to a <code>write</code>,
+ * {@link #flush()} or {@link #close()} method of this stream.</p>
+ *
+ * <p>{@link #close()} waits for all the bytes to be written, then closes the underlying stream.</p>
+ */
+public class PipelinedOutputStream extends OutputStream {
+
+    /** Default number of buffers in the ring */
+    public final static int DEFAULT_BUFFER_COUNT = 4;
+
+    /** Threads that write to the underlying streams, shared by all instances */
+    private final static ExecutorService WRITERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "PipelinedOutputStream writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The stream the bytes are written to */
+    private final OutputStream out;
+
+    /** All the buffers of the ring */
+    private final byte[][] buffers;
+
+    /** Buffers that can be filled */
+    private final BlockingQueue<byte[]> freeBuffers;
+
+    /** Buffers that have been filled and not written yet, flush and close requests */
+    private final BlockingQueue<Chunk> filledChunks = new LinkedBlockingQueue<>();
+
+    /** Signals that the writer thread is done */
+    private final CountDownLatch writerDone = new CountDownLatch(1);
+
+    /** Error thrown by the underlying stream, if any */
+    private volatile IOException failure;
+
+    /** Buffer currently being filled, <code>null</code> if none */
+    private byte[] currentBuffer;
+
+    /** Number of bytes in the current buffer */
+    private int currentLength;
+
+    /** True once this stream has been closed */
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>PipelinedOutputStream</code> that writes to the given stream using
+     * {@link #DEFAULT_BUFFER_COUNT} buffers of {@link BufferPool#getDefaultBufferSize()} bytes.
+     *
+     * @param out the stream to write to
+     */
+    public PipelinedOutputStream(OutputStream out) {
+        this(out, BufferPool.getDefaultBufferSize(), DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * Creates a new <code>PipelinedOutputStream</code> that writes to the given stream using the specified number of
+     * buffers. The writer thread is started immediately.
+     *
+     * @param out the stream to write to
+     * @param bufferSize size of each buffer of the ring, in bytes
+     * @param nbBuffers number of buffers in the ring, at least 2 for writes to overlap
+     */
+    public PipelinedOutputStream(OutputStream out, int bufferSize, int nbBuffers) {
+        this.out = out;
+
+        buffers = new byte[nbBuffers][];
+        freeBuffers = new ArrayBlockingQueue<>(nbBuffers);
+        for(int i=0; i<nbBuffers; i++) {
+            buffers[i] = BufferPool.getByteArray(bufferSize);
+            freeBuffers.add(buffers[i]);
+        }
+
+        WRITERS.execute(this::writeBehind);
+    }
+
+    /**
+     * Writes the filled buffers to the underlying stream until the stream is closed. After an error, buffers are
+     * still taken and given back so that the producer never blocks. This method is executed by the writer thread.
+     */
+    private void writeBehind() {
+        try {
+            while(true) {
+                Chunk chunk = filledChunks.take();
+                if(chunk.buffer!=null) {
+                    if(failure==null) {
+                        try {
+                            out.write(chunk.buffer, 0, chunk.length);
+                        }
+                        catch(IOException e) {
+                            failure = e;
+                        }
+                    }
+                    freeBuffers.add(chunk.buffer);
+                }
+                else if(chunk.flushed!=null) {
+                    if(failure==null) {
+                        try {
+                            out.flush();
+                        }
+                        catch(IOException e) {
+                            failure = e;
+                        }
+                    }
+                    chunk.flushed.countDown();
+                }
+                else {
+                    break;      // Closed
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            failure = new InterruptedIOException();
+        }
+        finally {
+            writerDone.countDown();
+        }
+    }
+
+    /**
+     * Throws the error that occurred in the writer thread, if any.
+     */
+    private void checkFailure() throws IOException {
+        if(failure!=null)
+            throw failure;
+    }
+
+    /**
+     * Hands the current buffer to the writer thread.
+     */
+    private void submitCurrentBuffer() {
+        if(currentLength>0)
+            filledChunks.add(new Chunk(currentBuffer, currentLength, null));
+        else if(currentBuffer!=null)
+            freeBuffers.add(currentBuffer);
+
+        currentBuffer = null;
+        currentLength = 0;
+    }
+
+    private void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+
+    /////////////////////////////////
+    // OutputStream implementation //
+    /////////////////////////////////
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+
+        checkFailure();
+
+        while(len>0) {
+            if(currentBuffer==null) {
+                try {
+                    currentBuffer = freeBuffers.take();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            int n = Math.min(len, currentBuffer.length-currentLength);
+            System.arraycopy(b, off, currentBuffer, currentLength, n);
+            currentLength += n;
+            off += n;
+            len -= n;
+
+            if(currentLength==currentBuffer.length)
+                submitCurrentBuffer();
+        }
+    }
+
+    /**
+     * Waits for all the bytes written so far to be written to the underlying stream, and flushes it.
+     *
+     * @throws IOException if an error occurred while writing to or flushing the underlying stream
+     */
+    @Override
+    public void flush() throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+
+        submitCurrentBuffer();
+        CountDownLatch flushed = new CountDownLatch(1);
+        filledChunks.add(new Chunk(null, 0, flushed));
+        await(flushed);
+
+        checkFailure();
+    }
+
+    /**
+     * Waits for all the bytes to be written, releases the buffers and closes the underlying stream.
+     *
+     * @throws IOException if an error occurred while writing to or closing the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed)
+            return;
+        closed = true;
+
+        try {
+            submitCurrentBuffer();
+            filledChunks.add(new Chunk(null, 0, null));
+            await(writerDone);
+        }
+        finally {
+            // The buffers may still be in use if waiting for the writer thread was interrupted
+            if(writerDone.getCount()==0) {
+                for(byte[] buffer : buffers)
+                    BufferPool.releaseByteArray(buffer);
+            }
+
+            try {
+                out.close();
+            }
+            catch(IOException e) {
+                if(failure==null)
+                    failure = e;
+            }
+        }
+
+        checkFailure();
+    }
+
+
+    /**
+     * A filled buffer, a flush request if <code>flushed</code> is not <code>null</code>, or the end of the stream.
+     */
+    private static class Chunk {
+        private final byte[] buffer;
+        private final int length;
+        private final CountDownLatch flushed;
+
+        private Chunk(byte[] buffer, int length, CountDownLatch flushed) {
+            this.buffer = buffer;
+            this.length = length;
+            this.flushed = flushed;
+        }
+    }
+}
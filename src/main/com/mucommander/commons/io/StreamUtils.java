@@ -19,6 +19,7 @@
 package com.mucommander.commons.io;
 
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * This class provides convience static methods that operate on streams. All read/write buffers are allocated using
@@ -127,6 +128,42 @@ public class StreamUtils {
         return totalRead;
     }
 
+    /**
+     * Copies the contents of the given {@link ChannelTransferable} stream to the specified channel, from the current
+     * position of the stream until its end. Unlike {@link #copyStream(InputStream, OutputStream, byte[], long)}, the
+     * bytes are not copied through a user-space buffer: the transfer is delegated to the stream, which typically lets
+     * the operating system move the bytes between the file descriptors.
+     * This method does *NOT* close the stream or the channel.
+     *
+     * <p>Bytes are transferred in chunks of at most <code>chunkSize</code> bytes, so that filter streams such as
+     * {@link CounterInputStream} and {@link ThroughputLimitInputStream} can report progress and enforce their limit
+     * between chunks.</p>
+     *
+     * @param in the stream to transfer the bytes from, must support channel transfers
+     * @param out the channel to write to
+     * @param chunkSize maximum number of bytes transferred at once
+     * @return the number of bytes that were copied
+     * @throws FileTransferException if something went wrong while reading from the stream or writing to the channel
+     */
+    public static long copyChannel(ChannelTransferable in, WritableByteChannel out, long chunkSize) throws FileTransferException {
+        long nbTransferred;
+        long totalTransferred = 0;
+
+        try {
+            while ((nbTransferred = in.transferTo(out, chunkSize)) != -1) {
+                totalTransferred += nbTransferred;
+            }
+        } catch(IOException e) {
+            // The stream no longer supports transfers once it has been closed, which is how transfers are interrupted
+            if (!in.isChannelTransferSupported()) {
+                throw new FileTransferException(FileTransferException.READING_SOURCE);
+            }
+            throw new FileTransferException(FileTransferException.WRITING_DESTINATION, totalTransferred);
+        }
+
+        return totalTransferred;
+    }
+
     /**
      * This method is a shorthand for {@link #transcode(java.io.InputStream, String, java.io.OutputStream, String, int)}
      * called with a {@link BufferPool#getDefaultBufferSize() default buffer size}.
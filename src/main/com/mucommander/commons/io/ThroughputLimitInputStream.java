@@ -20,6 +20,7 @@ package com.mucommander.commons.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * ThroughputLimitInputStream extends InputStream to provide control over the transfer speed and limit it to a specified
@@ -42,9 +43,12 @@ import java.io.InputStream;
  * current second intact and thus the throughput limit stable. This does not hold true if a new ThroughputLimitInputStream
  * is created for each InputStream, the bytes count for the current second starting at 0.  
  *
+ * <p>If the underlying stream implements {@link ChannelTransferable}, so does this stream: channel transfers are
+ * subject to the same limit as read and skip calls.
+ *
  * @author Maxence Bernard
  */
-public class ThroughputLimitInputStream extends InputStream {
+public class ThroughputLimitInputStream extends InputStream implements ChannelTransferable {
 
     /** Underlying InputStream */
     private InputStream in;
@@ -277,4 +281,23 @@ public class ThroughputLimitInputStream extends InputStream {
     public boolean markSupported() {
         return in.markSupported();
     }
+
+
+    ////////////////////////////////////////
+    // ChannelTransferable implementation //
+    ////////////////////////////////////////
+
+    public boolean isChannelTransferSupported() {
+        return in instanceof ChannelTransferable && ((ChannelTransferable)in).isChannelTransferSupported();
+    }
+
+    public long transferTo(WritableByteChannel target, long maxCount) throws IOException {
+        long nbTransferred = ((ChannelTransferable)in).transferTo(target, bpsLimit>=0?Math.min(getNbAllowedBytes(),maxCount):maxCount);
+
+        // Increase read counter by the number of bytes that have actually been transferred by the underlying stream
+        if(nbTransferred>0)
+            addToLimitCounter(nbTransferred);
+
+        return nbTransferred;
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <code>IndexedBzip2InputStream</code> decompresses BZip2 data and records {@link SeekPoint seek points} as it goes,
+ * so that decompression can later be resumed close to a given offset instead of from the start of the data.
+ *
+ * <p>BZip2 blocks are compressed independently from each other and start with a 48-bit marker, at an arbitrary bit
+ * position. The data is decompressed by <code>CBZip2InputStream</code> in its block mode, which reports the end of
+ * each block: a seek point is recorded at the start of a block whenever {@link SeekIndex#getSpan()} compressed bytes
+ * have been read since the last one. The offset of a seek point is that of a byte shortly before the block marker;
+ * decompression is resumed by looking for the marker from there. Seek points have no window.</p>
+ *
+ * @see SeekIndex
+ */
+public class IndexedBzip2InputStream extends InputStream {
+
+    /** Value returned by <code>CBZip2InputStream</code> in block mode when the end of a block has been reached */
+    private final static int END_OF_BLOCK = -2;
+
+    /** Number of bytes before the end of a block marker where the search for the marker must start */
+    private final static int MARKER_SEARCH_OFFSET = 7;
+
+    /** Decompresses the data */
+    private final CBZip2InputStream bzin;
+
+    /** Index seek points are added to, null if none are recorded */
+    private final SeekIndex index;
+
+    /** Offset in the compressed data of the byte decompression started at */
+    private final long compressedStart;
+
+    /** Offset in the uncompressed data of the next byte to be read */
+    private long position;
+
+
+    /**
+     * Creates a new <code>IndexedBzip2InputStream</code> that decompresses the given BZip2 stream without recording
+     * seek points.
+     *
+     * @param in the BZip2 stream to decompress, positioned at its start
+     * @throws IOException if an I/O error occurred
+     */
+    public IndexedBzip2InputStream(InputStream in) throws IOException {
+        this(in, (SeekIndex)null);
+    }
+
+    /**
+     * Creates a new <code>IndexedBzip2InputStream</code> that decompresses the given BZip2 stream and adds seek points
+     * to the given index as it goes.
+     *
+     * @param in the BZip2 stream to decompress, positioned at its start, i.e. before the <code>BZh</code> header
+     * @param index the index to add seek points to, null to record none
+     * @throws IOException if an I/O error occurred
+     */
+    public IndexedBzip2InputStream(InputStream in, SeekIndex index) throws IOException {
+        this.bzin = new CBZip2InputStream(in, SplittableCompressionCodec.READ_MODE.BYBLOCK);
+        this.index = index;
+        this.compressedStart = 0;
+    }
+
+    /**
+     * Creates a new <code>IndexedBzip2InputStream</code> that resumes decompression at the given seek point, which
+     * must have been recorded by an <code>IndexedBzip2InputStream</code> from the same BZip2 data. The first byte
+     * returned by this stream is the one at {@link SeekPoint#getUncompressedOffset()}.
+     *
+     * @param in the BZip2 stream, positioned at the byte returned by {@link SeekPoint#getCompressedOffset()}
+     * @param point the seek point to resume decompression at
+     * @throws IOException if an I/O error occurred
+     */
+    public IndexedBzip2InputStream(InputStream in, SeekPoint point) throws IOException {
+        this.bzin = new CBZip2InputStream(in, SplittableCompressionCodec.READ_MODE.BYBLOCK);
+        this.index = null;
+        this.compressedStart = point.getCompressedOffset();
+        this.position = point.getUncompressedOffset();
+    }
+
+    /**
+     * Called when the end of a block has been reached and the marker of the next block has been read.
+     */
+    private void blockEnded() {
+        if(index==null)
+            return;
+
+        // The marker may start in any of the bytes that precede the current position
+        long markerSearchOffset = Math.max(0, compressedStart+bzin.getProcessedByteCount()-MARKER_SEARCH_OFFSET);
+        if(index.isSeekPointDue(markerSearchOffset*8))
+            index.addSeekPoint(new SeekPoint(position, markerSearchOffset*8, new byte[0]));
+    }
+
+
+    ////////////////////////////////
+    // InputStream implementation //
+    ////////////////////////////////
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1)==-1?-1:b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len==0)
+            return 0;
+
+        int nbRead;
+        while((nbRead=bzin.read(b, off, len))==END_OF_BLOCK)
+            blockEnded();
+
+        if(nbRead>0)
+            position += nbRead;
+
+        return nbRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        bzin.close();
+    }
+}
@@ -0,0 +1,701 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * <code>IndexedGzipInputStream</code> decompresses GZIP data and records {@link SeekPoint seek points} as it goes,
+ * so that decompression can later be resumed close to a given offset instead of from the start of the data.
+ *
+ * <p>Deflate blocks start at arbitrary bit positions and may reference up to 32KB of previously decompressed data,
+ * which <code>java.util.zip.Inflater</code> doesn't allow to resume from. This class therefore implements the
+ * decompression itself: a seek point is recorded at the start of a block, along with the position of its first bit
+ * and the 32KB window that precede it, whenever {@link SeekIndex#getSpan()} compressed bytes have been read since
+ * the last one. This is the technique of zlib's <code>zran</code> example.</p>
+ *
+ * <p>A stream created with {@link #IndexedGzipInputStream(InputStream, SeekPoint)} resumes decompression at a seek
+ * point. The CRC and size of the GZIP member the seek point belongs to are not verified, as the data that precedes
+ * the point isn't read. Concatenated GZIP members are supported.</p>
+ *
+ * @see SeekIndex
+ */
+public class IndexedGzipInputStream extends InputStream {
+
+    /** Maximum distance of a match, i.e. size of the window of previous bytes a block can reference */
+    private final static int WINDOW_SIZE = 32768;
+
+    /** Size of the circular buffer that holds the window and the bytes that have been decompressed but not read */
+    private final static int BUFFER_SIZE = 2*WINDOW_SIZE;
+
+    private final static int BUFFER_MASK = BUFFER_SIZE-1;
+
+    /** Maximum length of a match */
+    private final static int MAX_MATCH = 258;
+
+    private final static int STATE_BLOCK_HEADER = 0;
+    private final static int STATE_STORED = 1;
+    private final static int STATE_HUFFMAN = 2;
+    private final static int STATE_MEMBER_TRAILER = 3;
+    private final static int STATE_END = 4;
+
+    private final static int GZIP_MAGIC = 0x8b1f;
+
+    private final static int FLAG_HCRC = 2;
+    private final static int FLAG_EXTRA = 4;
+    private final static int FLAG_NAME = 8;
+    private final static int FLAG_COMMENT = 16;
+
+    private final static int[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258
+    };
+
+    private final static int[] LENGTH_EXTRA_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+
+    private final static int[] DISTANCE_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097,
+        6145, 8193, 12289, 16385, 24577
+    };
+
+    private final static int[] DISTANCE_EXTRA_BITS = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+
+    /** Order in which the code lengths of the code length alphabet are stored */
+    private final static int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private final static HuffmanTable FIXED_LITERALS = new HuffmanTable();
+
+    private final static HuffmanTable FIXED_DISTANCES = new HuffmanTable();
+
+    static {
+        byte[] lengths = new byte[288];
+        Arrays.fill(lengths, 0, 144, (byte)8);
+        Arrays.fill(lengths, 144, 256, (byte)9);
+        Arrays.fill(lengths, 256, 280, (byte)7);
+        Arrays.fill(lengths, 280, 288, (byte)8);
+        byte[] distanceLengths = new byte[30];
+        Arrays.fill(distanceLengths, (byte)5);
+
+        try {
+            FIXED_LITERALS.build(lengths, 0, lengths.length);
+            FIXED_DISTANCES.build(distanceLengths, 0, distanceLengths.length);
+        }
+        catch(ZipException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The compressed stream */
+    private final InputStream in;
+
+    /** Index seek points are added to, null if none are recorded */
+    private final SeekIndex index;
+
+    private final byte[] inBuffer = new byte[65536];
+    private int inPos;
+    private int inLimit;
+    /** Offset of the first byte of the input buffer in the compressed stream */
+    private long inBufferOffset;
+
+    /** Bits read from the input buffer and not consumed yet, least significant first */
+    private long bitBuffer;
+    private int bitCount;
+    /** Number of zero bytes appended to the bit buffer past the end of the compressed stream */
+    private int paddingBytes;
+
+    /** Circular buffer of decompressed bytes */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /** Number of bytes decompressed so far, including the offset of the seek point this stream resumed at */
+    private long produced;
+    /** Number of bytes returned by this stream so far, including the offset of the seek point this stream resumed at */
+    private long consumed;
+    /** Offset of the first decompressed byte that may be referenced by a match */
+    private long historyStart;
+
+    private int state;
+    private boolean finalBlock;
+    private int storedRemaining;
+    private HuffmanTable literals;
+    private HuffmanTable distances;
+    private final HuffmanTable dynamicLiterals = new HuffmanTable();
+    private final HuffmanTable dynamicDistances = new HuffmanTable();
+    private final HuffmanTable codeLengths = new HuffmanTable();
+    private final byte[] lengths = new byte[288+32];
+
+    private final CRC32 crc = new CRC32();
+    /** Offset of the first decompressed byte that hasn't been added to the CRC yet */
+    private long crcOffset;
+    /** Offset of the first byte of the current GZIP member */
+    private long memberStart;
+    /** False if the current member's CRC and size cannot be verified, because this stream resumed in it */
+    private boolean verifyMember;
+
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>IndexedGzipInputStream</code> that decompresses the given GZIP stream without recording
+     * seek points.
+     *
+     * @param in the GZIP stream to decompress
+     * @throws IOException if the stream is not in the GZIP format or an I/O error occurred
+     */
+    public IndexedGzipInputStream(InputStream in) throws IOException {
+        this(in, (SeekIndex)null);
+    }
+
+    /**
+     * Creates a new <code>IndexedGzipInputStream</code> that decompresses the given GZIP stream and adds seek points
+     * to the given index as it goes.
+     *
+     * @param in the GZIP stream to decompress, positioned at its start
+     * @param index the index to add seek points to, null to record none
+     * @throws IOException if the stream is not in the GZIP format or an I/O error occurred
+     */
+    public IndexedGzipInputStream(InputStream in, SeekIndex index) throws IOException {
+        this.in = in;
+        this.index = index;
+
+        if(!readMemberHeader())
+            throw new ZipException("Not in GZIP format");
+    }
+
+    /**
+     * Creates a new <code>IndexedGzipInputStream</code> that resumes decompression at the given seek point, which
+     * must have been recorded by an <code>IndexedGzipInputStream</code> from the same GZIP data. The first byte
+     * returned by this stream is the one at {@link SeekPoint#getUncompressedOffset()}.
+     *
+     * @param in the GZIP stream, positioned at the byte returned by {@link SeekPoint#getCompressedOffset()}
+     * @param point the seek point to resume decompression at
+     * @throws IOException if an I/O error occurred
+     */
+    public IndexedGzipInputStream(InputStream in, SeekPoint point) throws IOException {
+        this.in = in;
+        this.index = null;
+
+        inBufferOffset = point.getCompressedOffset();
+        produced = consumed = crcOffset = memberStart = point.getUncompressedOffset();
+
+        byte[] window = point.getWindow();
+        historyStart = produced-window.length;
+        for(int i=0; i<window.length; i++)
+            buffer[(int)(historyStart+i) & BUFFER_MASK] = window[i];
+
+        // Skip the bits of the first byte that precede the seek point
+        getBits((int)(point.getCompressedBitOffset() & 7));
+        state = STATE_BLOCK_HEADER;
+    }
+
+
+    ///////////////////
+    // Input methods //
+    ///////////////////
+
+    /**
+     * Refills the input buffer, returns <code>false</code> if the end of the compressed stream has been reached.
+     */
+    private boolean refill() throws IOException {
+        inBufferOffset += inLimit;
+        inPos = 0;
+        inLimit = 0;
+
+        int nbRead;
+        do {
+            nbRead = in.read(inBuffer);
+        }
+        while(nbRead==0);
+
+        if(nbRead<0)
+            return false;
+
+        inLimit = nbRead;
+        return true;
+    }
+
+    /**
+     * Makes sure the bit buffer contains at least <code>n</code> bits. Zero bytes are appended past the end of the
+     * compressed stream, so that the codes that end the stream can be peeked at.
+     */
+    private void needBits(int n) throws IOException {
+        if(bitCount>=n)
+            return;
+
+        // Fast path: fill the bit buffer with as many whole bytes as it can hold
+        if(inLimit-inPos>=8) {
+            while(bitCount<=56) {
+                bitBuffer |= (long)(inBuffer[inPos++] & 0xFF) << bitCount;
+                bitCount += 8;
+            }
+            return;
+        }
+
+        while(bitCount<n) {
+            int b;
+            if(inPos<inLimit || refill()) {
+                b = inBuffer[inPos++] & 0xFF;
+            }
+            else {
+                b = 0;
+                paddingBytes++;
+            }
+
+            bitBuffer |= (long)b << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    private int getBits(int n) throws IOException {
+        needBits(n);
+        int value = (int)(bitBuffer & ((1L<<n)-1));
+        bitBuffer >>>= n;
+        bitCount -= n;
+
+        return value;
+    }
+
+    /**
+     * Throws an <code>EOFException</code> if bits appended past the end of the compressed stream have been consumed.
+     */
+    private void checkTruncated() throws EOFException {
+        if(paddingBytes*8>bitCount)
+            throw new EOFException("Unexpected end of GZIP stream");
+    }
+
+    /**
+     * Discards the bits that remain in the current byte.
+     */
+    private void alignToByte() throws IOException {
+        getBits(bitCount & 7);
+    }
+
+    /**
+     * Returns the position of the next bit to decode in the compressed stream.
+     */
+    private long getCompressedBitOffset() {
+        return (inBufferOffset+inPos)*8-bitCount;
+    }
+
+    private int decodeSymbol(HuffmanTable table) throws IOException {
+        needBits(table.maxLength);
+        int entry = table.entries[(int)bitBuffer & table.mask];
+        int length = entry & 0xF;
+        if(length==0)
+            throw new ZipException("Invalid Huffman code");
+
+        bitBuffer >>>= length;
+        bitCount -= length;
+
+        return entry>>>4;
+    }
+
+
+    ////////////////////
+    // Member methods //
+    ////////////////////
+
+    /**
+     * Reads the header of a GZIP member. Returns <code>false</code> if the stream is at its end or doesn't start with
+     * the GZIP magic number.
+     */
+    private boolean readMemberHeader() throws IOException {
+        // The bit buffer only holds whole bytes at this point
+        if(bitCount==0 && inPos==inLimit && !refill())
+            return false;
+
+        if(getBits(16)!=GZIP_MAGIC)
+            return false;
+
+        if(getBits(8)!=8)
+            throw new ZipException("Unsupported compression method");
+
+        int flags = getBits(8);
+        // Skip the modification time, extra flags and OS
+        for(int i=0; i<6; i++)
+            getBits(8);
+
+        if((flags & FLAG_EXTRA)!=0) {
+            int extraLength = getBits(16);
+            for(int i=0; i<extraLength; i++)
+                getBits(8);
+        }
+        if((flags & FLAG_NAME)!=0)
+            skipZeroTerminatedString();
+        if((flags & FLAG_COMMENT)!=0)
+            skipZeroTerminatedString();
+        if((flags & FLAG_HCRC)!=0)
+            getBits(16);
+
+        checkTruncated();
+
+        memberStart = historyStart = crcOffset = produced;
+        crc.reset();
+        verifyMember = true;
+        state = STATE_BLOCK_HEADER;
+
+        return true;
+    }
+
+    private void skipZeroTerminatedString() throws IOException {
+        while(getBits(8)!=0)
+            checkTruncated();
+    }
+
+    /**
+     * Reads and verifies the trailer of the current GZIP member, and moves on to the next member if there is one.
+     */
+    private void readMemberTrailer() throws IOException {
+        alignToByte();
+        long expectedCrc = getBits(16) | (long)getBits(16)<<16;
+        long expectedSize = getBits(16) | (long)getBits(16)<<16;
+        checkTruncated();
+
+        if(verifyMember) {
+            updateCrc();
+            if(expectedCrc!=crc.getValue())
+                throw new ZipException("Corrupt GZIP trailer");
+            if(expectedSize!=((produced-memberStart) & 0xFFFFFFFFL))
+                throw new ZipException("Corrupt GZIP trailer");
+        }
+
+        // Data that follows the last member and doesn't start with the GZIP magic number is ignored, as is done by
+        // java.util.zip.GZIPInputStream
+        if(!readMemberHeader())
+            state = STATE_END;
+    }
+
+    /**
+     * Adds the bytes that have been decompressed since the last call to the CRC of the current member.
+     */
+    private void updateCrc() {
+        while(crcOffset<produced) {
+            int start = (int)crcOffset & BUFFER_MASK;
+            int length = (int)Math.min(produced-crcOffset, BUFFER_SIZE-start);
+            crc.update(buffer, start, length);
+            crcOffset += length;
+        }
+    }
+
+
+    ///////////////////
+    // Block methods //
+    ///////////////////
+
+    private void readBlockHeader() throws IOException {
+        // Blocks are where decompression can be resumed
+        if(index!=null && index.isSeekPointDue(getCompressedBitOffset()))
+            index.addSeekPoint(new SeekPoint(produced, getCompressedBitOffset(), getWindow()));
+
+        finalBlock = getBits(1)==1;
+        switch(getBits(2)) {
+            case 0:
+                alignToByte();
+                storedRemaining = getBits(16);
+                if(storedRemaining!=(~getBits(16) & 0xFFFF))
+                    throw new ZipException("Invalid stored block length");
+                state = STATE_STORED;
+                break;
+
+            case 1:
+                literals = FIXED_LITERALS;
+                distances = FIXED_DISTANCES;
+                state = STATE_HUFFMAN;
+                break;
+
+            case 2:
+                readDynamicTables();
+                literals = dynamicLiterals;
+                distances = dynamicDistances;
+                state = STATE_HUFFMAN;
+                break;
+
+            default:
+                throw new ZipException("Invalid block type");
+        }
+
+        checkTruncated();
+    }
+
+    private void readDynamicTables() throws IOException {
+        int nbLiterals = getBits(5)+257;
+        int nbDistances = getBits(5)+1;
+        int nbCodeLengths = getBits(4)+4;
+
+        Arrays.fill(lengths, 0, 19, (byte)0);
+        for(int i=0; i<nbCodeLengths; i++)
+            lengths[CODE_LENGTH_ORDER[i]] = (byte)getBits(3);
+        codeLengths.build(lengths, 0, 19);
+
+        int total = nbLiterals+nbDistances;
+        int i = 0;
+        while(i<total) {
+            int symbol = decodeSymbol(codeLengths);
+            if(symbol<16) {
+                lengths[i++] = (byte)symbol;
+                continue;
+            }
+
+            byte length = 0;
+            int repeat;
+            if(symbol==16) {
+                if(i==0)
+                    throw new ZipException("Invalid code lengths");
+                length = lengths[i-1];
+                repeat = 3+getBits(2);
+            }
+            else if(symbol==17) {
+                repeat = 3+getBits(3);
+            }
+            else {
+                repeat = 11+getBits(7);
+            }
+
+            if(i+repeat>total)
+                throw new ZipException("Invalid code lengths");
+
+            Arrays.fill(lengths, i, i+repeat, length);
+            i += repeat;
+        }
+
+        if(lengths[256]==0)
+            throw new ZipException("Missing end-of-block code");
+
+        dynamicLiterals.build(lengths, 0, nbLiterals);
+        dynamicDistances.build(lengths, nbLiterals, nbDistances);
+    }
+
+    private void copyStored() throws IOException {
+        while(storedRemaining>0 && produced-consumed<WINDOW_SIZE) {
+            // Bytes left in the bit buffer come first
+            if(bitCount>0) {
+                buffer[(int)produced++ & BUFFER_MASK] = (byte)getBits(8);
+                checkTruncated();
+                storedRemaining--;
+                continue;
+            }
+
+            if(inPos==inLimit && !refill())
+                throw new EOFException("Unexpected end of GZIP stream");
+
+            int outPos = (int)produced & BUFFER_MASK;
+            int length = Math.min(Math.min(storedRemaining, inLimit-inPos), Math.min(BUFFER_SIZE-outPos, WINDOW_SIZE-(int)(produced-consumed)));
+            System.arraycopy(inBuffer, inPos, buffer, outPos, length);
+            inPos += length;
+            produced += length;
+            storedRemaining -= length;
+        }
+
+        if(storedRemaining==0)
+            endBlock();
+    }
+
+    private void decodeHuffman() throws IOException {
+        while(produced-consumed<=WINDOW_SIZE-MAX_MATCH) {
+            int symbol = decodeSymbol(literals);
+            if(symbol<256) {
+                buffer[(int)produced++ & BUFFER_MASK] = (byte)symbol;
+            }
+            else if(symbol==256) {
+                checkTruncated();
+                endBlock();
+                return;
+            }
+            else {
+                symbol -= 257;
+                if(symbol>=LENGTH_BASE.length)
+                    throw new ZipException("Invalid length code");
+                int length = LENGTH_BASE[symbol]+getBits(LENGTH_EXTRA_BITS[symbol]);
+
+                symbol = decodeSymbol(distances);
+                if(symbol>=DISTANCE_BASE.length)
+                    throw new ZipException("Invalid distance code");
+                int distance = DISTANCE_BASE[symbol]+getBits(DISTANCE_EXTRA_BITS[symbol]);
+                if(distance>produced-historyStart)
+                    throw new ZipException("Invalid distance too far back");
+
+                int outPos = (int)produced & BUFFER_MASK;
+                int fromPos = (outPos-distance) & BUFFER_MASK;
+                if(distance>=length && outPos+length<=BUFFER_SIZE && fromPos+length<=BUFFER_SIZE) {
+                    System.arraycopy(buffer, fromPos, buffer, outPos, length);
+                }
+                else {
+                    // Overlapping or wrapping match, copy byte per byte
+                    for(int i=0; i<length; i++)
+                        buffer[(outPos+i) & BUFFER_MASK] = buffer[(fromPos+i) & BUFFER_MASK];
+                }
+                produced += length;
+            }
+
+            if(paddingBytes!=0)
+                checkTruncated();
+        }
+    }
+
+    private void endBlock() {
+        state = finalBlock?STATE_MEMBER_TRAILER:STATE_BLOCK_HEADER;
+    }
+
+    /**
+     * Returns a copy of the decompressed bytes that may be referenced by the next block, i.e. up to the last 32KB.
+     */
+    private byte[] getWindow() {
+        int length = (int)Math.min(WINDOW_SIZE, produced-historyStart);
+        byte[] window = new byte[length];
+        int start = (int)(produced-length) & BUFFER_MASK;
+        int firstPart = Math.min(length, BUFFER_SIZE-start);
+        System.arraycopy(buffer, start, window, 0, firstPart);
+        System.arraycopy(buffer, 0, window, firstPart, length-firstPart);
+
+        return window;
+    }
+
+    /**
+     * Decompresses bytes until the buffer is full or the end of the stream has been reached.
+     */
+    private void decompress() throws IOException {
+        while(state!=STATE_END && produced-consumed<=WINDOW_SIZE-MAX_MATCH) {
+            switch(state) {
+                case STATE_BLOCK_HEADER:
+                    readBlockHeader();
+                    break;
+
+                case STATE_STORED:
+                    copyStored();
+                    break;
+
+                case STATE_HUFFMAN:
+                    decodeHuffman();
+                    break;
+
+                case STATE_MEMBER_TRAILER:
+                    readMemberTrailer();
+                    break;
+            }
+        }
+
+        if(verifyMember)
+            updateCrc();
+    }
+
+
+    ////////////////////////////////
+    // InputStream implementation //
+    ////////////////////////////////
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1)==-1?-1:b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+
+        if(len==0)
+            return 0;
+
+        if(produced==consumed) {
+            decompress();
+            if(produced==consumed)
+                return -1;
+        }
+
+        int start = (int)consumed & BUFFER_MASK;
+        int nbRead = (int)Math.min(Math.min(len, produced-consumed), BUFFER_SIZE-start);
+        System.arraycopy(buffer, start, b, off, nbRead);
+        consumed += nbRead;
+
+        return nbRead;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int)(produced-consumed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        in.close();
+    }
+
+
+    /**
+     * A lookup table that decodes a canonical Huffman code in a single step: the table is indexed by the next
+     * <code>maxLength</code> bits of the stream, and each entry holds a symbol and the length of its code.
+     */
+    private static class HuffmanTable {
+
+        /** Entries indexed by bit-reversed code, <code>symbol&lt;&lt;4 | length</code>, 0 for invalid codes */
+        private final int[] entries = new int[1<<15];
+
+        /** Length of the longest code */
+        private int maxLength;
+
+        private int mask;
+
+        private void build(byte[] lengths, int offset, int count) throws ZipException {
+            int[] lengthCounts = new int[16];
+            maxLength = 0;
+            for(int i=0; i<count; i++) {
+                int length = lengths[offset+i];
+                lengthCounts[length]++;
+                maxLength = Math.max(maxLength, length);
+            }
+            lengthCounts[0] = 0;
+
+            // Reject over-subscribed codes. Incomplete codes are allowed, their unused entries are invalid codes.
+            int left = 1;
+            for(int length=1; length<16; length++) {
+                left = (left<<1)-lengthCounts[length];
+                if(left<0)
+                    throw new ZipException("Over-subscribed Huffman code");
+            }
+
+            int[] nextCodes = new int[16];
+            int code = 0;
+            for(int length=1; length<16; length++) {
+                code = (code+lengthCounts[length-1])<<1;
+                nextCodes[length] = code;
+            }
+
+            int size = 1<<maxLength;
+            mask = size-1;
+            Arrays.fill(entries, 0, size, 0);
+            for(int symbol=0; symbol<count; symbol++) {
+                int length = lengths[offset+symbol];
+                if(length==0)
+                    continue;
+
+                int reversed = Integer.reverse(nextCodes[length]++)>>>(32-length);
+                for(int i=reversed; i<size; i+=1<<length)
+                    entries[i] = symbol<<4 | length;
+            }
+        }
+    }
+}
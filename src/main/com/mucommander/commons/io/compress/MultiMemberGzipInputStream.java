@@ -0,0 +1,77 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <code>MultiMemberGzipInputStream</code> is a <code>GZIPInputStream</code> that reliably decompresses all the
+ * members of a GZIP stream, such as those written by {@link ParallelGzipOutputStream} or <i>pigz</i>.
+ *
+ * <p><code>GZIPInputStream</code> only looks for a member after the current one if the underlying stream reports
+ * available bytes: with streams whose <code>available()</code> method returns 0, such as most network streams, the
+ * decompressed data is silently truncated to the first member. This class makes <code>available()</code> report the
+ * next byte when there is one. It also reads the compressed data with a larger buffer than the default one of
+ * <code>GZIPInputStream</code>, which is only 512 bytes.</p>
+ */
+public class MultiMemberGzipInputStream extends GZIPInputStream {
+
+    /** Size of the buffer the compressed data is read with */
+    private final static int BUFFER_SIZE = 64*1024;
+
+
+    /**
+     * Creates a new <code>MultiMemberGzipInputStream</code>.
+     *
+     * @param in the GZIP stream to decompress
+     * @throws IOException if an I/O error occurred or the stream is not in the GZIP format
+     */
+    public MultiMemberGzipInputStream(InputStream in) throws IOException {
+        super(new LookAheadInputStream(in), BUFFER_SIZE);
+    }
+
+
+    /**
+     * A stream whose <code>available()</code> method returns at least 1 unless the end of the stream has been
+     * reached, which it finds out by reading the next byte and pushing it back.
+     */
+    private static class LookAheadInputStream extends PushbackInputStream {
+
+        private LookAheadInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int available() throws IOException {
+            int available = super.available();
+            if(available>0)
+                return available;
+
+            int b = read();
+            if(b==-1)
+                return 0;
+
+            unread(b);
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <code>ParallelBzip2OutputStream</code> compresses data in the BZip2 format, on several threads.
+ *
+ * <p>With more than one thread, each block of {@link #DEFAULT_BLOCK_SIZE} bytes is compressed into a complete BZip2
+ * stream, the way <i>pbzip2</i> does. BZip2 blocks are compressed independently from each other anyway, so the
+ * compression ratio is nearly the same as that of a single stream. Concatenated streams are decompressed as a whole by
+ * <code>bzip2</code> and the other standard tools, and by {@link IndexedBzip2InputStream}. With a single thread, the
+ * data is compressed as a single stream.</p>
+ *
+ * <p>Like the streams created by <code>CBZip2OutputStream</code>, the compressed data starts with the
+ * <code>BZ</code> magic bytes.</p>
+ */
+public class ParallelBzip2OutputStream extends ParallelCompressorOutputStream {
+
+    /** Default size of the blocks that are compressed concurrently: a little less than the size of a BZip2 block
+     * with the default block size of 900k, so that each of them usually makes up a single BZip2 block */
+    public final static int DEFAULT_BLOCK_SIZE = 899*1000;
+
+
+    /**
+     * Creates a new <code>ParallelBzip2OutputStream</code> that compresses blocks of {@link #DEFAULT_BLOCK_SIZE} bytes.
+     *
+     * @param out the stream the compressed data is written to
+     */
+    public ParallelBzip2OutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new <code>ParallelBzip2OutputStream</code>.
+     *
+     * @param out the stream the compressed data is written to
+     * @param blockSize the size of the blocks that are compressed concurrently
+     */
+    public ParallelBzip2OutputStream(OutputStream out, int blockSize) {
+        super(out, blockSize);
+    }
+
+    /**
+     * Writes the 2 magic bytes 'BZ' and returns a <code>CBZip2OutputStream</code> that writes the rest of the stream.
+     */
+    private static OutputStream createBzip2OutputStream(OutputStream out) throws IOException {
+        // The caller of CBZip2OutputStream is responsible for writing the magic bytes
+        out.write('B');
+        out.write('Z');
+
+        return new CBZip2OutputStream(out);
+    }
+
+
+    ///////////////////////////////////////////////////
+    // ParallelCompressorOutputStream implementation //
+    ///////////////////////////////////////////////////
+
+    @Override
+    protected byte[] compressBlock(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(length/4 + 64);
+        OutputStream bzout = createBzip2OutputStream(bout);
+        bzout.write(data, 0, length);
+        bzout.close();
+
+        return bout.toByteArray();
+    }
+
+    @Override
+    protected OutputStream createSerialStream(OutputStream out) throws IOException {
+        return createBzip2OutputStream(out);
+    }
+}
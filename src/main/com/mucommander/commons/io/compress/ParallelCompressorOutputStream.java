@@ -0,0 +1,267 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <code>ParallelCompressorOutputStream</code> is the base class of compressing streams for formats whose compressed
+ * streams can simply be concatenated, such as GZIP members or BZip2 streams.
+ *
+ * <p>With more than one thread, the data is split into blocks that are compressed concurrently, each into a complete
+ * compressed stream of its own, the way <i>pigz</i> and <i>pbzip2</i> do. The compressed blocks are written to the
+ * underlying stream in order, by the thread that writes to this stream. At most twice as many blocks as there are
+ * threads are held in memory at once: {@link #write(byte[], int, int)} blocks until the oldest block has been
+ * compressed when that limit is reached.</p>
+ *
+ * <p>With a single thread, which is the default, the data is compressed as one stream by the thread that writes to
+ * this stream, exactly as the regular compressing stream of the format does.</p>
+ */
+public abstract class ParallelCompressorOutputStream extends OutputStream {
+
+    /** Threads that compress the blocks, shared by all instances */
+    private final static ExecutorService COMPRESSORS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ParallelCompressorOutputStream compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The underlying stream the compressed data is written to */
+    protected final OutputStream out;
+
+    /** Size of a block */
+    private final int blockSize;
+
+    /** Number of blocks that are compressed at once */
+    private int nbThreads = 1;
+
+    /** Compresses the data when a single thread is used, null otherwise or if nothing has been written yet */
+    private OutputStream serialOut;
+
+    /** Compressed blocks, in the order they are to be written */
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    /** Block being filled */
+    private byte[] block;
+
+    /** Number of bytes in the block being filled */
+    private int blockLength;
+
+    /** Number of blocks that have been handed to the compressor threads */
+    private long nbBlocks;
+
+    /** True once data has been written or the stream has been closed */
+    private boolean started;
+
+    /** True once the stream has been closed */
+    private boolean closed;
+
+
+    /**
+     * Creates a new <code>ParallelCompressorOutputStream</code>.
+     *
+     * @param out the stream the compressed data is written to
+     * @param blockSize the size of the blocks that are compressed concurrently
+     */
+    protected ParallelCompressorOutputStream(OutputStream out, int blockSize) {
+        this.out = out;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Sets the number of blocks that are compressed at once. This method has no effect once data has been written to
+     * this stream.
+     *
+     * @param nbThreads the number of threads that compress the data, 1 to compress it as a single stream on the
+     * writing thread
+     */
+    public void setThreads(int nbThreads) {
+        if(!started)
+            this.nbThreads = Math.max(1, nbThreads);
+    }
+
+    /**
+     * Returns the number of blocks that are compressed at once.
+     *
+     * @return the number of threads that compress the data
+     */
+    public int getThreads() {
+        return nbThreads;
+    }
+
+    /**
+     * Compresses the given block into a complete compressed stream, that can be concatenated to the others.
+     * This method is called by the compressor threads, concurrently.
+     *
+     * @param data the block's data
+     * @param length the number of bytes of <code>data</code> that make up the block
+     * @return the compressed block
+     * @throws IOException if an error occurred while compressing the block
+     */
+    protected abstract byte[] compressBlock(byte[] data, int length) throws IOException;
+
+    /**
+     * Creates the stream that compresses the data when a single thread is used.
+     *
+     * @param out the stream the compressed data is to be written to
+     * @return a compressing stream writing to the given stream
+     * @throws IOException if an error occurred while creating the stream
+     */
+    protected abstract OutputStream createSerialStream(OutputStream out) throws IOException;
+
+    private void start() throws IOException {
+        started = true;
+        if(nbThreads==1)
+            serialOut = createSerialStream(out);
+    }
+
+    /**
+     * Hands the current block to the compressor threads and writes the blocks that are ready.
+     */
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        block = null;
+        blockLength = 0;
+        nbBlocks++;
+
+        pendingBlocks.add(COMPRESSORS.submit(() -> compressBlock(data, length)));
+
+        // Write the blocks that are ready, and wait for the oldest one if too many are pending
+        while(!pendingBlocks.isEmpty() && (pendingBlocks.size()>=2*nbThreads || pendingBlocks.peek().isDone()))
+            writeBlock(pendingBlocks.poll());
+    }
+
+    /**
+     * Waits for the given block to be compressed and writes it to the underlying stream.
+     */
+    private void writeBlock(Future<byte[]> pendingBlock) throws IOException {
+        try {
+            out.write(pendingBlock.get());
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+        }
+    }
+
+
+    /////////////////////////////////
+    // OutputStream implementation //
+    /////////////////////////////////
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if(closed)
+            throw new IOException("Stream closed");
+
+        if(!started)
+            start();
+
+        if(serialOut!=null) {
+            serialOut.write(b, off, len);
+            return;
+        }
+
+        while(len>0) {
+            if(block==null)
+                block = new byte[blockSize];
+
+            int n = Math.min(len, blockSize-blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+
+            if(blockLength==blockSize)
+                submitBlock();
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. The block being filled is not compressed before it is full, as that would
+     * degrade the compression ratio.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    @Override
+    public void flush() throws IOException {
+        if(serialOut!=null)
+            serialOut.flush();
+        else
+            out.flush();
+    }
+
+    /**
+     * Compresses the last block, writes all the blocks that have not been written yet and closes the underlying
+     * stream.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed)
+            return;
+        closed = true;
+
+        try {
+            if(!started)
+                start();
+
+            if(serialOut!=null) {
+                serialOut.close();
+                return;
+            }
+
+            while(!pendingBlocks.isEmpty())
+                writeBlock(pendingBlocks.poll());
+
+            // The last block is compressed by this thread, there is nothing else to do in the meantime.
+            // An empty stream is written if no data was written at all, so that the output is valid.
+            if(blockLength>0 || nbBlocks==0)
+                out.write(compressBlock(block==null?new byte[0]:block, blockLength));
+            block = null;
+        }
+        finally {
+            for(Future<byte[]> pendingBlock : pendingBlocks)
+                pendingBlock.cancel(false);
+            pendingBlocks.clear();
+
+            if(serialOut==null)
+                out.close();
+        }
+    }
+}
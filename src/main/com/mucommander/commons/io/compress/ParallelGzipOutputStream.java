@@ -0,0 +1,116 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <code>ParallelGzipOutputStream</code> compresses data in the GZIP format, on several threads.
+ *
+ * <p>With more than one thread, each block of {@link #DEFAULT_BLOCK_SIZE} bytes is compressed into an independent
+ * GZIP member. Concatenated members make up a valid GZIP stream, which <code>gzip</code> and the other standard tools
+ * decompress as a whole. Blocks are large enough for the compression ratio to be close to that of a single member.
+ * With a single thread, the data is compressed by a regular <code>GZIPOutputStream</code>.</p>
+ *
+ * @see MultiMemberGzipInputStream
+ */
+public class ParallelGzipOutputStream extends ParallelCompressorOutputStream {
+
+    /** Default size of the blocks that are compressed concurrently */
+    public final static int DEFAULT_BLOCK_SIZE = 1024*1024;
+
+    /** GZIP member header: magic number, DEFLATE method, no flags, no modification time, no extra flags, unknown OS */
+    private final static byte[] HEADER = {0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte)0xff};
+
+    /** Size of the GZIP member trailer: CRC32 and size of the uncompressed data */
+    private final static int TRAILER_SIZE = 8;
+
+
+    /**
+     * Creates a new <code>ParallelGzipOutputStream</code> that compresses blocks of {@link #DEFAULT_BLOCK_SIZE} bytes.
+     *
+     * @param out the stream the compressed data is written to
+     */
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new <code>ParallelGzipOutputStream</code>.
+     *
+     * @param out the stream the compressed data is written to
+     * @param blockSize the size of the blocks that are compressed concurrently
+     */
+    public ParallelGzipOutputStream(OutputStream out, int blockSize) {
+        super(out, blockSize);
+    }
+
+
+    ///////////////////////////////////////////////////
+    // ParallelCompressorOutputStream implementation //
+    ///////////////////////////////////////////////////
+
+    @Override
+    protected byte[] compressBlock(byte[] data, int length) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            byte[] member = new byte[HEADER.length + length + (length>>8) + 64];
+            System.arraycopy(HEADER, 0, member, 0, HEADER.length);
+            int memberLength = HEADER.length;
+            while(!deflater.finished()) {
+                if(memberLength==member.length)
+                    member = Arrays.copyOf(member, member.length*2);
+                memberLength += deflater.deflate(member, memberLength, member.length-memberLength);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            if(memberLength+TRAILER_SIZE>member.length)
+                member = Arrays.copyOf(member, memberLength+TRAILER_SIZE);
+            writeIntLE(member, memberLength, crc.getValue());
+            writeIntLE(member, memberLength+4, length);
+            memberLength += TRAILER_SIZE;
+
+            return memberLength==member.length ? member : Arrays.copyOf(member, memberLength);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    protected OutputStream createSerialStream(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out);
+    }
+
+    private static void writeIntLE(byte[] b, int off, long value) {
+        b[off] = (byte)value;
+        b[off+1] = (byte)(value>>8);
+        b[off+2] = (byte)(value>>16);
+        b[off+3] = (byte)(value>>24);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * <code>SeekIndex</code> holds the {@link SeekPoint seek points} of a compressed stream, in increasing offset order.
+ * Seek points are added by a decompression stream as it goes through the compressed data, for instance
+ * {@link IndexedGzipInputStream} or {@link IndexedBzip2InputStream}, and are later used to resume decompression
+ * close to a given offset without decompressing all the data that precedes it.
+ *
+ * <p>An index can be persisted using {@link #write(DataOutput)} and read back using {@link #read(DataInput)}.
+ * Windows are compressed when the index is written. This class is thread-safe: seek points can be looked up while
+ * they are being added.</p>
+ */
+public class SeekIndex {
+
+    /** Seek points, in increasing offset order */
+    private final List<SeekPoint> points = new ArrayList<>();
+
+    /** Minimum number of compressed bytes between two seek points */
+    private final long span;
+
+
+    /**
+     * Creates a new empty index whose seek points are at least <code>span</code> compressed bytes apart.
+     *
+     * @param span minimum number of compressed bytes between two seek points
+     */
+    public SeekIndex(long span) {
+        this.span = span;
+    }
+
+    /**
+     * Returns the minimum number of compressed bytes between two seek points of this index.
+     *
+     * @return the minimum number of compressed bytes between two seek points
+     */
+    public long getSpan() {
+        return span;
+    }
+
+    /**
+     * Returns <code>true</code> if a seek point should be added at the given compressed offset, i.e. if it is at
+     * least {@link #getSpan()} bytes past the last point of this index.
+     *
+     * @param compressedBitOffset a compressed offset, in bits
+     * @return true if a seek point should be added at the given compressed offset
+     */
+    public synchronized boolean isSeekPointDue(long compressedBitOffset) {
+        long lastBitOffset = points.isEmpty()?0:points.get(points.size()-1).getCompressedBitOffset();
+        return compressedBitOffset-lastBitOffset >= span*8;
+    }
+
+    /**
+     * Adds a seek point to this index. Points must be added in increasing offset order.
+     *
+     * @param point the seek point to add
+     */
+    public synchronized void addSeekPoint(SeekPoint point) {
+        points.add(point);
+    }
+
+    /**
+     * Returns the seek point that is the closest to the given uncompressed offset, without exceeding it.
+     * Returns <code>null</code> if there is none.
+     *
+     * @param uncompressedOffset an offset in the uncompressed data
+     * @return the last seek point whose uncompressed offset is lower or equal to the given one, null if there is none
+     */
+    public synchronized SeekPoint getSeekPoint(long uncompressedOffset) {
+        int low = 0;
+        int high = points.size()-1;
+        SeekPoint match = null;
+        while(low<=high) {
+            int mid = (low+high)>>>1;
+            SeekPoint point = points.get(mid);
+            if(point.getUncompressedOffset()<=uncompressedOffset) {
+                match = point;
+                low = mid+1;
+            }
+            else {
+                high = mid-1;
+            }
+        }
+
+        return match;
+    }
+
+    /**
+     * Returns the number of seek points in this index.
+     *
+     * @return the number of seek points in this index
+     */
+    public synchronized int size() {
+        return points.size();
+    }
+
+    /**
+     * Writes this index to the given output.
+     *
+     * @param out the output to write the index to
+     * @throws IOException if an I/O error occurred
+     */
+    public synchronized void write(DataOutput out) throws IOException {
+        out.writeLong(span);
+        out.writeInt(points.size());
+
+        Deflater deflater = new Deflater();
+        byte[] buffer = new byte[1024];
+        try {
+            for(SeekPoint point : points) {
+                out.writeLong(point.getUncompressedOffset());
+                out.writeLong(point.getCompressedBitOffset());
+
+                byte[] window = point.getWindow();
+                out.writeInt(window.length);
+                if(window.length==0)
+                    continue;
+
+                deflater.reset();
+                deflater.setInput(window);
+                deflater.finish();
+
+                List<byte[]> chunks = new ArrayList<>();
+                int compressedLength = 0;
+                while(!deflater.finished()) {
+                    int nbDeflated = deflater.deflate(buffer);
+                    byte[] chunk = new byte[nbDeflated];
+                    System.arraycopy(buffer, 0, chunk, 0, nbDeflated);
+                    chunks.add(chunk);
+                    compressedLength += nbDeflated;
+                }
+
+                out.writeInt(compressedLength);
+                for(byte[] chunk : chunks)
+                    out.write(chunk);
+            }
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads an index that was written by {@link #write(DataOutput)}.
+     *
+     * @param in the input to read the index from
+     * @return the index that was read
+     * @throws IOException if an I/O error occurred or the data is not a valid index
+     */
+    public static SeekIndex read(DataInput in) throws IOException {
+        SeekIndex index = new SeekIndex(in.readLong());
+
+        int nbPoints = in.readInt();
+        Inflater inflater = new Inflater();
+        try {
+            for(int i=0; i<nbPoints; i++) {
+                long uncompressedOffset = in.readLong();
+                long compressedBitOffset = in.readLong();
+
+                byte[] window = new byte[in.readInt()];
+                if(window.length>0) {
+                    byte[] compressedWindow = new byte[in.readInt()];
+                    in.readFully(compressedWindow);
+
+                    inflater.reset();
+                    inflater.setInput(compressedWindow);
+                    if(inflater.inflate(window)!=window.length)
+                        throw new ZipException("Truncated seek point window");
+                }
+
+                index.addSeekPoint(new SeekPoint(uncompressedOffset, compressedBitOffset, window));
+            }
+        }
+        catch(DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+        finally {
+            inflater.end();
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+/**
+ * A position in a compressed stream where decompression can be resumed. A seek point associates an offset in the
+ * uncompressed data with the position of the compressed bits that decode it and, for formats that reference
+ * previously decompressed data, the window of uncompressed bytes that precede it.
+ *
+ * @see SeekIndex
+ */
+public class SeekPoint {
+
+    /** Offset of this point in the uncompressed data */
+    private final long uncompressedOffset;
+
+    /** Offset of this point in the compressed data, in bits */
+    private final long compressedBitOffset;
+
+    /** Uncompressed bytes preceding this point, empty if the format doesn't need any */
+    private final byte[] window;
+
+    /**
+     * Creates a new seek point.
+     *
+     * @param uncompressedOffset offset of the point in the uncompressed data
+     * @param compressedBitOffset offset of the point in the compressed data, in bits
+     * @param window uncompressed bytes preceding the point, an empty array if the format doesn't need any
+     */
+    public SeekPoint(long uncompressedOffset, long compressedBitOffset, byte[] window) {
+        this.uncompressedOffset = uncompressedOffset;
+        this.compressedBitOffset = compressedBitOffset;
+        this.window = window;
+    }
+
+    /**
+     * Returns the offset of this point in the uncompressed data.
+     *
+     * @return the offset of this point in the uncompressed data
+     */
+    public long getUncompressedOffset() {
+        return uncompressedOffset;
+    }
+
+    /**
+     * Returns the offset of this point in the compressed data, in bits.
+     *
+     * @return the offset of this point in the compressed data, in bits
+     */
+    public long getCompressedBitOffset() {
+        return compressedBitOffset;
+    }
+
+    /**
+     * Returns the offset of the byte of the compressed data that contains the first bit of this point. This is the
+     * offset at which the compressed stream must be positioned to resume decompression at this point.
+     *
+     * @return the offset of the compressed byte this point starts in
+     */
+    public long getCompressedOffset() {
+        return compressedBitOffset >>> 3;
+    }
+
+    /**
+     * Returns the uncompressed bytes that precede this point, an empty array if the format doesn't need any.
+     *
+     * @return the uncompressed bytes that precede this point
+     */
+    public byte[] getWindow() {
+        return window;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"(uncompressed="+uncompressedOffset+", compressedBits="+compressedBitOffset+", window="+window.length+")";
+    }
+}
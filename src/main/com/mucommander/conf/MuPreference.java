@@ -69,6 +69,9 @@ public enum MuPreference {
 	WAIT_AFTER_REFRESH(MuPreferences.WAIT_AFTER_REFRESH),
 	PROGRESS_DIALOG_EXPANDED(MuPreferences.PROGRESS_DIALOG_EXPANDED),
 	PROGRESS_DIALOG_CLOSE_WHEN_FINISHED(MuPreferences.PROGRESS_DIALOG_CLOSE_WHEN_FINISHED),
+	TRANSFER_THREADS(MuPreferences.TRANSFER_THREADS),
+	ARCHIVE_ENTRY_CACHE_SIZE(MuPreferences.ARCHIVE_ENTRY_CACHE_SIZE),
+	SEARCH_INDEX_CPU_BUDGET(MuPreferences.SEARCH_INDEX_CPU_BUDGET),
 	THEME_TYPE(MuPreferences.THEME_TYPE),
 	THEME_NAME(MuPreferences.THEME_NAME),
     SYNTAX_THEME_NAME(MuPreferences.SYNTAX_THEME_NAME),
@@ -27,6 +27,7 @@ import com.mucommander.commons.conf.Configuration;
 import com.mucommander.commons.conf.ConfigurationException;
 import com.mucommander.commons.conf.ConfigurationListener;
 import com.mucommander.commons.conf.ValueList;
+import com.mucommander.commons.file.ArchiveEntryCache;
 import com.mucommander.commons.runtime.JavaVersion;
 import com.mucommander.commons.runtime.OsFamily;
 import com.mucommander.ui.icon.FileIcons;
@@ -326,6 +327,35 @@ public class MuPreferences implements MuPreferencesAPI {
 	public static final boolean DEFAULT_PROGRESS_DIALOG_CLOSE_WHEN_FINISHED  = true;
 
 
+	// - File transfer variables ---------------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section describing the behavior of copy and move jobs. */
+	public static final String  FILE_TRANSFER_SECTION             = "file_transfer";
+	/** Number of files that are transferred concurrently, 1 to transfer files one after the other. This value can be
+	 * overridden for a given protocol with a variable suffixed by the protocol's scheme, e.g. <code>file_transfer.threads.sftp</code>. */
+	public static final String  TRANSFER_THREADS                  = FILE_TRANSFER_SECTION + '.' + "threads";
+	/** Default number of files that are transferred concurrently. */
+	public static final int     DEFAULT_TRANSFER_THREADS          = 1;
+
+	// - Archive variables ---------------------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section describing how archives are browsed. */
+	public static final String  ARCHIVE_SECTION                   = "archive";
+	/** Maximum total size in bytes of the archive entries cached in the preferences folder, 0 to disable the cache. */
+	public static final String  ARCHIVE_ENTRY_CACHE_SIZE          = ARCHIVE_SECTION + '.' + "entry_cache_size";
+	/** Default maximum total size of the archive entries cache. */
+	public static final long    DEFAULT_ARCHIVE_ENTRY_CACHE_SIZE  = ArchiveEntryCache.DEFAULT_MAX_SIZE;
+
+	// - Search index variables ----------------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section describing how the index of file names used by the search dialog is maintained. */
+	public static final String  SEARCH_INDEX_SECTION              = "search_index";
+	/** Percentage of one CPU the background indexer may use, between 1 and 100. */
+	public static final String  SEARCH_INDEX_CPU_BUDGET           = SEARCH_INDEX_SECTION + '.' + "cpu_budget";
+	/** Default percentage of one CPU the background indexer may use. */
+	public static final int     DEFAULT_SEARCH_INDEX_CPU_BUDGET   = 25;
+
+
 
 	// - Variables used for themes -------------------------------------------
 	// -----------------------------------------------------------------------
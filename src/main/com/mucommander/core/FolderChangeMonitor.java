@@ -20,8 +20,11 @@ package com.mucommander.core;
 
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import org.slf4j.Logger;
@@ -32,6 +35,8 @@ import com.mucommander.commons.file.FileProtocols;
 import com.mucommander.commons.file.filter.AbstractFileFilter;
 import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.filter.OrFileFilter;
+import com.mucommander.commons.file.util.FolderWatchListener;
+import com.mucommander.commons.file.util.FolderWatcher;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
@@ -43,12 +48,17 @@ import com.mucommander.ui.main.FolderPanel;
 /**
  * This file monitors changes in the current folder of a FolderPanel, checking periodically if the current folder's
  * date has changed. If a change has been detected, the FolderPanel will be asked to refresh its current folder.
+ *
+ * <p>Local folders are not checked periodically but watched with {@link FolderWatcher}, which reports the names of
+ * the files that have changed: only those files are refreshed in the file table, instead of the whole folder.
+ * Folders that cannot be watched, such as remote folders, are checked periodically.
  * 
  * <p>If the MainFrame which contains the monitored FolderPanel becomes inactive (lies in the background), monitoring
  * on will be not happen until the MainFrame becomes active again.
  *
  * <p>Implementation note: the monitoring is done in one single thread for all folders, each folder being monitored
- * one after another. Current folder refreshes are performed in a separate thread.
+ * one after another. The thread waits until a change is reported when no folder needs to be checked periodically.
+ * Current folder refreshes are performed in a separate thread.
  *
  * @author Maxence Bernard
  * @see <a href="http://trac.mucommander.com/wiki/FolderAutoRefresh">FolderAutoRefresh wiki entry</a>
@@ -83,6 +93,15 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     /** Number of checks in current folder */
     private int nbSamples = 0;
 
+    /** Watches the current folder, null if it cannot be watched and must be checked periodically */
+    private FolderWatcher.Watch folderWatch;
+
+    /** Names of the files of the current folder that have changed and haven't been refreshed yet */
+    private final Set<String> changedNames = new HashSet<>();
+
+    /** True if changes have been reported for the current folder without the names of the files that have changed */
+    private boolean allFilesChanged;
+
     /**
      * If not null then refresh folder that contains this files
      */
@@ -111,6 +130,15 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     /** Granularity of the thread check (number of milliseconds to sleep before next loop) */
     private final static int TICK = 300;
 
+    /** Maximum number of changed files that are refreshed individually, beyond that the whole folder is refreshed */
+    private final static int MAX_REFRESHED_FILES = 100;
+
+    /** Lock the monitor thread waits on */
+    private final static Object MONITOR_LOCK = new Object();
+
+    /** True when the monitor thread has been woken up and hasn't looped on instances since */
+    private static boolean wakeUpRequested;
+
     static {
         instances = new Vector<>();
 
@@ -160,21 +188,25 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
             monitorThread.setDaemon(true);
             monitorThread.start();
         }
+
+        watchCurrentFolder();
     }
 
 
     public void run() {
-        // TODO: it would be more efficient to use a wait/notify scheme rather than sleeping. 
-        // It would also allow folders to be checked immediately upon certain conditions such as a window becoming activated.
-
         int needToClearRefreshQueueCounter = 0;
         while (monitorThread != null) {
 			
-            // Sleep for a while
-            try {
-                Thread.sleep(TICK);
-            } catch(InterruptedException e) {
-                // ignore exception
+            // Wait for a while, or until a change is reported if no folder needs to be checked periodically
+            synchronized (MONITOR_LOCK) {
+                if (!wakeUpRequested) {
+                    try {
+                        MONITOR_LOCK.wait(needsPolling() ? TICK : 0);
+                    } catch(InterruptedException e) {
+                        // ignore exception
+                    }
+                }
+                wakeUpRequested = false;
             }
 			
             // Loop on instances
@@ -198,12 +230,47 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     }
 
 
+    /**
+     * Returns <code>true</code> if the monitor thread needs to loop periodically, that is if some folders cannot be
+     * watched or some files must be refreshed.
+     */
+    private static boolean needsPolling() {
+        if (!forceRefreshFilePath.isEmpty()) {
+            return true;
+        }
+        synchronized (instances) {
+            for (FolderChangeMonitor instance : instances) {
+                if (instance.folderWatch == null) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Wakes up the monitor thread so that folders are checked immediately.
+     */
+    private static void wakeUp() {
+        synchronized (MONITOR_LOCK) {
+            wakeUpRequested = true;
+            MONITOR_LOCK.notifyAll();
+        }
+    }
+
+
     private void checkForMonitor(FolderChangeMonitor monitor) {
         // Check for changes in current folder and refresh it only if :
         // - MainFrame is in the foreground
         // - monitor is not paused
         // - current folder is not being changed
-        if (!monitor.folderPanel.getMainFrame().isForegroundActive() || folderChanging || monitor.paused) {
+        if (!monitor.folderPanel.getMainFrame().isForegroundActive() || monitor.folderChanging || monitor.paused) {
+            return;
+        }
+        // Watched folders report their changes, they need not be checked
+        if (monitor.folderWatch != null) {
+            monitor.refreshChangedFiles();
             return;
         }
         // By checking FolderPanel.getLastFolderChangeTime(), we ensure that we don't check right after
@@ -226,6 +293,7 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
      */
     public void stop() {
         monitorThread = null;
+        wakeUp();
     }
 
 
@@ -242,6 +310,7 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         // Check folder for changes immediately as setPaused(false) is often called after a FileJob
         if (!paused) {
             this.waitBeforeCheckTime = 0;
+            wakeUp();
         }
     }
 	
@@ -259,6 +328,121 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         // Reset time average
         totalCheckTime = 0;
         nbSamples = 0;
+
+        watchCurrentFolder();
+    }
+
+
+    /**
+     * Starts watching the current folder for changes, and stops watching the previous one. The current folder will be
+     * checked periodically if it cannot be watched.
+     */
+    private void watchCurrentFolder() {
+        FolderWatcher.Watch previousWatch = folderWatch;
+
+        // Note: the new watch is created before the previous one is cancelled, so that the folder remains watched
+        // when the current folder is refreshed
+        if (monitorThread != null && !disableAutoRefreshFilter.match(currentFolder)) {
+            folderWatch = FolderWatcher.watch(currentFolder, new FolderWatchListener() {
+                @Override
+                public void folderChanged(AbstractFile folder, Set<String> names) {
+                    addChangedFiles(folder, names);
+                }
+            });
+        } else {
+            folderWatch = null;
+        }
+
+        if (previousWatch != null) {
+            previousWatch.cancel();
+        }
+
+        // The new folder may need to be checked periodically
+        wakeUp();
+    }
+
+
+    /**
+     * Records the files of the current folder that have been reported as changed, so that they are refreshed by the
+     * monitor thread.
+     *
+     * @param folder the folder the changes were reported for
+     * @param names names of the files that have changed, <code>null</code> if unknown
+     */
+    private void addChangedFiles(AbstractFile folder, Set<String> names) {
+        // Changes may be reported for the previous folder while the current folder is being changed
+        if (!folder.equals(currentFolder)) {
+            return;
+        }
+
+        synchronized (changedNames) {
+            if (names == null || changedNames.size() + names.size() > MAX_REFRESHED_FILES) {
+                allFilesChanged = true;
+                changedNames.clear();
+            } else if (!allFilesChanged) {
+                changedNames.addAll(names);
+            }
+        }
+
+        wakeUp();
+    }
+
+
+    /**
+     * Refreshes the files of the current folder that have been reported as changed, or the whole folder if the names
+     * of the files are unknown or could not be resolved.
+     */
+    private synchronized void refreshChangedFiles() {
+        Set<String> names;
+        boolean refreshFolder;
+        synchronized (changedNames) {
+            if (!allFilesChanged && changedNames.isEmpty()) {
+                return;
+            }
+            names = new HashSet<>(changedNames);
+            refreshFolder = allFilesChanged;
+        }
+
+        if (!refreshFolder) {
+            // Only the files about to be refreshed are cleared: changes reported from now on are refreshed next time
+            synchronized (changedNames) {
+                changedNames.removeAll(names);
+            }
+
+            // Files are displayed only if they match the filter used for listing the folder
+            FileFilter filter = folderPanel.getLocationManager().getFolderFilter();
+            List<AbstractFile> updatedFiles = new ArrayList<>();
+            List<AbstractFile> removedFiles = new ArrayList<>();
+            try {
+                for (String name : names) {
+                    AbstractFile file = currentFolder.getChild(name);
+                    if (file.exists() && (filter == null || filter.match(file))) {
+                        updatedFiles.add(file);
+                    } else {
+                        removedFiles.add(file);
+                    }
+                }
+
+                LOGGER.debug(this+" ("+currentFolder.getName()+") Detected changes in "+names.size()+" files, refreshing them");
+                folderPanel.getFileTable().refreshFiles(currentFolder,
+                        updatedFiles.toArray(new AbstractFile[updatedFiles.size()]),
+                        removedFiles.toArray(new AbstractFile[removedFiles.size()]));
+            } catch (IOException e) {
+                LOGGER.debug("Could not resolve changed files, refreshing folder", e);
+                refreshFolder = true;
+            }
+        }
+
+        if (refreshFolder) {
+            // The listing of the folder will include all the changes reported so far
+            synchronized (changedNames) {
+                changedNames.clear();
+                allFilesChanged = false;
+            }
+
+            LOGGER.debug(this+" ("+currentFolder.getName()+") Detected changes in current folder, refreshing table!");
+            folderPanel.tryRefreshCurrentFolder();
+        }
     }
 	
 	
@@ -315,6 +499,12 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
 
     public void locationChanging(LocationEvent locationEvent) {
         folderChanging = true;
+
+        // The folder is about to be listed, changes reported so far will be part of the listing
+        synchronized (changedNames) {
+            changedNames.clear();
+            allFilesChanged = false;
+        }
     }
 
     public void locationChanged(LocationEvent locationEvent) {
@@ -322,6 +512,7 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         updateFolderInfo(locationEvent.getFolderPanel().getCurrentFolder());
 
         folderChanging = false;
+        wakeUp();
     }
 
     public void locationCancelled(LocationEvent locationEvent) {
@@ -337,7 +528,10 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
     // WindowListener implementation //
     ///////////////////////////////////
 
-    public void windowActivated(WindowEvent e) {}
+    public void windowActivated(WindowEvent e) {
+        // Refresh the changes that were reported while the window was in the background
+        wakeUp();
+    }
 
     public void windowDeactivated(WindowEvent e) {}
 
@@ -353,6 +547,11 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         // Remove the MainFrame from the list of monitored instances
         instances.remove(this);
         LOGGER.debug("nbInstances="+instances.size());
+
+        if (folderWatch != null) {
+            folderWatch.cancel();
+            folderWatch = null;
+        }
     }
 
     /**
@@ -363,6 +562,7 @@ public class FolderChangeMonitor implements Runnable, WindowListener, LocationLi
         synchronized (forceRefreshFilePath) {
             forceRefreshFilePath.add(path);
         }
+        wakeUp();
     }
 	
 }
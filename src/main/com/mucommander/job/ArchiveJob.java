@@ -93,6 +93,8 @@ public class ArchiveJob extends TransferFileJob {
             return false;
         }
 
+        processedFilesCount++;
+
         String filePath = file.getAbsolutePath(false);
         String entryRelativePath = filePath.substring(baseFolderPath.length()+1, filePath.length());
 
@@ -104,7 +106,7 @@ public class ArchiveJob extends TransferFileJob {
                     archiver.createEntry(entryRelativePath, file);
 
                     // Recurse on files
-                    AbstractFile subFiles[] = file.ls();
+                    AbstractFile subFiles[] = scanDirectoryThread.ls(file);
                     boolean folderComplete = true;
                     for (int i=0; i<subFiles.length && getState() != State.INTERRUPTED; i++) {
                         // Notify job that we're starting to process this file (needed for recursive calls to processFile)
@@ -190,6 +192,7 @@ public class ArchiveJob extends TransferFileJob {
                 // Tries to get an Archiver instance.
                 this.archiver = Archiver.getArchiver(destFile, archiveFormat);
                 this.archiver.setComment(archiveComment);
+                this.archiver.setCompressionThreads(Runtime.getRuntime().availableProcessors());
 
                 break;
             } catch (Exception e) {
@@ -249,13 +252,21 @@ public class ArchiveJob extends TransferFileJob {
 
     @Override
     public float getTotalPercentDone() {
-        if (scanDirectoryThread == null || !scanDirectoryThread.isCompleted()) {
+        // The totals are estimated from the part of the files that has been scanned until the scan is completed
+        long totalBytes = scanDirectoryThread == null ? -1 : scanDirectoryThread.getEstimatedTotalBytes();
+        long filesCount = scanDirectoryThread == null ? -1 : scanDirectoryThread.getEstimatedFilesCount();
+        if (filesCount <= 0) {
             float result = super.getTotalPercentDone();
             return result > 5 ? 5 : result;
         }
-        float progressBySize = 1.0f*(getTotalByteCounter().getByteCount() + getTotalSkippedByteCounter().getByteCount()) / scanDirectoryThread.getTotalBytes();
-        float progressByCount = 1.0f*(processedFilesCount-1) / scanDirectoryThread.getFilesCount();
-        float result = (progressBySize * 8 + progressByCount * 2) / 10;
+        float progressByCount = 1.0f*(processedFilesCount-1) / filesCount;
+        float result;
+        if (totalBytes > 0) {
+            float progressBySize = 1.0f*(getTotalByteCounter().getByteCount() + getTotalSkippedByteCounter().getByteCount()) / totalBytes;
+            result = (progressBySize * 8 + progressByCount * 2) / 10;
+        } else {
+            result = progressByCount;
+        }
         if (result < 0) {
             result = 0;
         } else if (result > 1) {
@@ -20,6 +20,8 @@
 package com.mucommander.job;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.impl.local.LocalFile;
@@ -51,6 +53,13 @@ public class CopyJob extends AbstractCopyJob {
     /** Processed files counter */
     protected long processedFilesCount;
 
+    /** Dates of the destination folders whose files are transferred concurrently, applied once all transfers are
+     * finished. Subfolders are added before their parent folder. */
+    private final Map<AbstractFile, Long> pendingFolderDates = new LinkedHashMap<>();
+
+    /** The archive to which the files are added as a batch, null if none */
+    private AbstractRWArchiveFile batchArchive;
+
 
 
     /** Operating mode : COPY or DOWNLOAD */
@@ -163,7 +172,7 @@ public class CopyJob extends AbstractCopyJob {
             do {		// Loop for retry
                 try {
                     // for each file in folder...
-                    AbstractFile subFiles[] = file.ls();
+                    AbstractFile subFiles[] = scanDirectoryThread.ls(file);
 //filesDiscovered(subFiles);
                     for (int i = 0; i < subFiles.length && getState() != State.INTERRUPTED; i++) {
                         // Notify job that we're starting to process this file (needed for recursive calls to processFile)
@@ -175,14 +184,12 @@ public class CopyJob extends AbstractCopyJob {
                     // needs to work with the folder after calling super.processFile.
                     currentDestFile = destFile;
 
-                    // Only when finished with folder, set destination folder's date to match the original folder one
-                    if (destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
-                        try {
-                            destFile.changeDate(file.getDate());
-                        } catch (IOException e) {
-                            LOGGER.debug("failed to change the date of "+destFile, e);
-                            // Fail silently
-                        }
+                    // Only when finished with folder, set destination folder's date to match the original folder one.
+                    // Files that are transferred concurrently may not be finished yet, the date is set when they are.
+                    if (getTransferThreads() > 1) {
+                        pendingFolderDates.put(destFile, file.getDate());
+                    } else {
+                        changeFolderDate(destFile, file.getDate());
                     }
 
                     return true;
@@ -200,11 +207,30 @@ public class CopyJob extends AbstractCopyJob {
         }
         // File is a regular file, copy it
         else  {
-            // Copy the file
+            // Copy the file, on a worker thread if files are transferred concurrently
+            if (getTransferThreads() > 1) {
+                tryCopyFileConcurrently(file, destFile, append, errorDialogTitle, null);
+                return true;
+            }
+
             return tryCopyFile(file, destFile, append, errorDialogTitle);
         }
     }
 
+    /**
+     * Sets the date of the given destination folder, failing silently.
+     */
+    private void changeFolderDate(AbstractFile destFolder, long date) {
+        if (destFolder.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
+            try {
+                destFolder.changeDate(date);
+            } catch (IOException e) {
+                LOGGER.debug("failed to change the date of "+destFolder, e);
+                // Fail silently
+            }
+        }
+    }
+
 
 
     // This job modifies baseDestFolder and its subfolders
@@ -218,6 +244,62 @@ public class CopyJob extends AbstractCopyJob {
     // Overridden methods //
     ////////////////////////
 
+    @Override
+    protected void jobStarted() {
+        super.jobStarted();
+
+        // If the destination is located inside an archive, add the files as a batch so that the archive is rewritten
+        // once. Files copied from the same archive must remain readable, and concurrent transfers would write to the
+        // archive at the same time.
+        AbstractArchiveFile archiveFile = baseDestFolder.getParentArchive();
+        AbstractArchiveFile sourceArchiveFile = getBaseSourceFolder()==null?null:getBaseSourceFolder().getParentArchive();
+        if (archiveFile != null && archiveFile.isArchive() && archiveFile.isWritable() && getTransferThreads() <= 1
+                && !(sourceArchiveFile != null && archiveFile.equalsCanonical(sourceArchiveFile))) {
+            try {
+                ((AbstractRWArchiveFile)archiveFile).beginBatch();
+                batchArchive = (AbstractRWArchiveFile)archiveFile;
+            } catch (IOException e) {
+                // Files will be added one at a time
+                LOGGER.debug("failed to start a batch in "+archiveFile, e);
+            }
+        }
+    }
+
+    @Override
+    protected void jobThreadStopped() {
+        super.jobThreadStopped();
+
+        // Write the files' entries, whether the job was completed or interrupted. This is done on the job's thread so
+        // that the entry being written when the job is interrupted has been finalized.
+        if (batchArchive != null) {
+            while (true) {
+                try {
+                    batchArchive.commitBatch();
+                    break;
+                } catch (IOException e) {
+                    if (showErrorDialog(errorDialogTitle, Translator.get("error_while_optimizing_archive", batchArchive.getName())) == RETRY_ACTION) {
+                        continue;
+                    }
+
+                    break;
+                }
+            }
+
+            batchArchive = null;
+        }
+    }
+
+    @Override
+    protected void waitForPendingFiles() {
+        super.waitForPendingFiles();
+
+        // Now that all files have been transferred, folder dates won't be modified anymore
+        for (Map.Entry<AbstractFile, Long> folderDate : pendingFolderDates.entrySet()) {
+            changeFolderDate(folderDate.getKey(), folderDate.getValue());
+        }
+        pendingFolderDates.clear();
+    }
+
     @Override
     protected void jobCompleted() {
         super.jobCompleted();
@@ -259,13 +341,21 @@ public class CopyJob extends AbstractCopyJob {
 
     @Override
     public float getTotalPercentDone() {
-        if (scanDirectoryThread == null || !scanDirectoryThread.isCompleted()) {
+        // The totals are estimated from the part of the files that has been scanned until the scan is completed
+        long totalBytes = scanDirectoryThread == null ? -1 : scanDirectoryThread.getEstimatedTotalBytes();
+        long filesCount = scanDirectoryThread == null ? -1 : scanDirectoryThread.getEstimatedFilesCount();
+        if (filesCount <= 0) {
             float result = super.getTotalPercentDone();
             return result > 5 ? 5 : result;
         }
-        float progressBySize = 1.0f*(getTotalByteCounter().getByteCount() + getTotalSkippedByteCounter().getByteCount()) / scanDirectoryThread.getTotalBytes();
-        float progressByCount = 1.0f*(processedFilesCount-1) / scanDirectoryThread.getFilesCount();
-        float result = (progressBySize * 8 + progressByCount * 2) / 10;
+        float progressByCount = 1.0f*(processedFilesCount-1) / filesCount;
+        float result;
+        if (totalBytes > 0) {
+            float progressBySize = 1.0f*(getTotalByteCounter().getByteCount() + getTotalSkippedByteCounter().getByteCount()) / totalBytes;
+            result = (progressBySize * 8 + progressByCount * 2) / 10;
+        } else {
+            result = progressByCount;
+        }
         if (result < 0) {
             result = 0;
         } else if (result > 1) {
@@ -61,6 +61,9 @@ public class DeleteJob extends FileJob {
     /** The archive that contains the deleted files (may be null) */ 
     private AbstractRWArchiveFile archiveToOptimize;
 
+    /** The archive in which the entries are deleted as a batch, null if none */
+    private AbstractRWArchiveFile batchArchive;
+
     /** True when an archive is being optimized */
     private boolean isOptimizingArchive;
 
@@ -89,7 +92,7 @@ public class DeleteJob extends FileJob {
             trash = DesktopManager.getTrash();
         }
 
-        scanDirectoryThread = new ScanDirectoryThread(files, false);
+        scanDirectoryThread = new ScanDirectoryThread(files, false, !moveToTrash);
         scanDirectoryThread.start();
     }
 
@@ -139,7 +142,7 @@ public class DeleteJob extends FileJob {
                 do {		// Loop for retry
                     // Delete each file in this folder
                     try {
-                        AbstractFile subFiles[] = file.ls();
+                        AbstractFile subFiles[] = scanDirectoryThread.ls(file);
                         for(int i=0; i<subFiles.length && getState() != State.INTERRUPTED; i++) {
                             // Notify job that we're starting to process this file (needed for recursive calls to processFile)
                             nextFile(subFiles[i]);
@@ -196,6 +199,23 @@ public class DeleteJob extends FileJob {
     // Overridden methods //
     ////////////////////////
 
+    @Override
+    protected void jobStarted() {
+        super.jobStarted();
+
+        // If the files are located inside an archive, delete them as a batch so that the archive is rewritten once
+        AbstractArchiveFile archiveFile = getBaseSourceFolder()==null?null:getBaseSourceFolder().getParentArchive();
+        if (!moveToTrash && archiveFile!=null && archiveFile.isArchive() && archiveFile.isWritable()) {
+            try {
+                ((AbstractRWArchiveFile)archiveFile).beginBatch();
+                batchArchive = (AbstractRWArchiveFile)archiveFile;
+            } catch(IOException e) {
+                // Entries will be deleted one at a time
+                LOGGER.debug("IOException caught", e);
+            }
+        }
+    }
+
     @Override
     protected void jobStopped() {
         super.jobStopped();
@@ -205,6 +225,30 @@ public class DeleteJob extends FileJob {
         }
     }
 
+    @Override
+    protected void jobThreadStopped() {
+        super.jobThreadStopped();
+
+        // Apply the deletions, whether the job was completed or interrupted. This is done on the job's thread so that
+        // no entry is being deleted at the same time.
+        if (batchArchive != null) {
+            while(true) {
+                try {
+                    batchArchive.commitBatch();
+                    break;
+                } catch(IOException e) {
+                    if (showErrorDialog(errorDialogTitle, Translator.get("error_while_optimizing_archive", batchArchive.getName()))==RETRY_ACTION) {
+                        continue;
+                    }
+
+                    break;
+                }
+            }
+
+            batchArchive = null;
+        }
+    }
+
     @Override
     protected void jobCompleted() {
         super.jobCompleted();
@@ -253,11 +297,13 @@ public class DeleteJob extends FileJob {
 
     @Override
     public float getTotalPercentDone() {
-        if (scanDirectoryThread == null || !scanDirectoryThread.isCompleted()) {
+        // The number of files is estimated from the part of the files that has been scanned until the scan is completed
+        long filesCount = scanDirectoryThread == null ? -1 : scanDirectoryThread.getEstimatedFilesCount();
+        if (filesCount <= 0) {
             float result = super.getTotalPercentDone();
             return result > 15 ? 15 : result;
         }
-        float result = 1.0f*(processedFilesCount-1) / scanDirectoryThread.getFilesCount();
+        float result = 1.0f*(processedFilesCount-1) / filesCount;
         if (result < 0) {
             result = 0;
         } else if (result > 1) {
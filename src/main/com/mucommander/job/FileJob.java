@@ -71,6 +71,12 @@ public abstract class FileJob implements Runnable {
     /** Lock used when job is being paused */
     private final Object pauseLock = new Object();
 
+    /** Ensures that the dialogs of the job's thread and of its worker threads are displayed one at a time */
+    private final Object dialogLock = new Object();
+
+    /** Number of threads waiting for the user to answer a dialog, guarded by {@link #pauseLock} */
+    private int nbPendingDialogs;
+
     /** Timestamp in milliseconds when job started */
     private long startDate;
 
@@ -578,6 +584,14 @@ public abstract class FileJob implements Runnable {
     }
 
 
+    /**
+     * This method is called by the job's thread after the last call to {@link #processFile(AbstractFile,Object)}, before
+     * the job is completed. This method implementation does nothing but it can be overridden by subclasses that
+     * process files asynchronously, to block until all files have been processed.
+     */
+    protected void waitForPendingFiles() {
+    }
+
     /**
      * This method is called when this job has been stopped. The call happens after all calls to {@link #processFile(AbstractFile,Object)} and
      * {@link #jobCompleted()}.
@@ -590,6 +604,18 @@ public abstract class FileJob implements Runnable {
     protected void jobStopped() {
         LOGGER.debug("called");
     }
+
+    /**
+     * This method is called by the job's thread once it has stopped processing files, whether the job has been
+     * completed or interrupted. The call happens after {@link #jobCompleted()} if the job has been completed.
+     * This method implementation does nothing but it can be overridden by subclasses that need to finish their work
+     * on the job's thread.
+     *
+     * <p>Unlike {@link #jobStopped()}, which is called by the thread that interrupts the job if any, this method is never
+     * called while a file is being processed.</p>
+     */
+    protected void jobThreadStopped() {
+    }
 	
 	
     /**
@@ -609,8 +635,26 @@ public abstract class FileJob implements Runnable {
 	
     /**
      * Displays an error dialog with the specified title and message and returns the selection action's value.
+     * This method may be called by several threads: the dialogs are displayed one at a time, and
+     * {@link #CANCEL_ACTION} is returned without displaying the dialog if the job has been interrupted in the meantime.
      */
     protected int showErrorDialog(String title, String message, String actionTexts[], int actionValues[]) {
+        dialogPending();
+        try {
+            synchronized(dialogLock) {
+                // The job may have been interrupted while waiting for another dialog to be answered
+                if (getState() == State.INTERRUPTED)
+                    return CANCEL_ACTION;
+
+                return showErrorDialogLocked(title, message, actionTexts, actionValues);
+            }
+        }
+        finally {
+            dialogAnswered();
+        }
+    }
+
+    private int showErrorDialogLocked(String title, String message, String actionTexts[], int actionValues[]) {
         // Return SKIP_ACTION if 'skip all' has previously been selected and 'skip' is in the list of actions.
         if (autoSkipErrors) {
             for (int actionValue : actionValues)
@@ -666,14 +710,37 @@ public abstract class FileJob implements Runnable {
     
     protected Object waitForUserResponseObject(DialogResult dialog) {
         // Put this job in pause mode while waiting for user response
-        setPaused(true);
-        
-        UserInputHelper jobUserInput = new UserInputHelper(this, dialog);
-        Object userInput = jobUserInput.getUserInput();
-        
-        // Back to work
-        setPaused(false);
-        return userInput;
+        dialogPending();
+        try {
+            synchronized(dialogLock) {
+                UserInputHelper jobUserInput = new UserInputHelper(this, dialog);
+                return jobUserInput.getUserInput();
+            }
+        }
+        finally {
+            // Back to work, unless other dialogs are waiting for an answer
+            dialogAnswered();
+        }
+    }
+
+    /**
+     * Pauses this job before a dialog is displayed, if no other dialog is pending.
+     */
+    private void dialogPending() {
+        synchronized(pauseLock) {
+            if (nbPendingDialogs++ == 0)
+                setPaused(true);
+        }
+    }
+
+    /**
+     * Resumes this job after a dialog has been answered, if no other dialog is pending.
+     */
+    private void dialogAnswered() {
+        synchronized(pauseLock) {
+            if (--nbPendingDialogs == 0)
+                setPaused(false);
+        }
     }
     
 	
@@ -851,6 +918,11 @@ public abstract class FileJob implements Runnable {
             // If last file was reached without any user interruption, all files have been processed with or
             // without errors, switch to FINISHED state and notify listeners
             if (i == nbFiles-1) {
+                // Files may still be processed by other threads
+                waitForPendingFiles();
+                if (getState() == State.INTERRUPTED)
+                    break;
+
                 currentFileIndex++;
                 stop();
                 jobCompleted();
@@ -858,6 +930,8 @@ public abstract class FileJob implements Runnable {
             }
         }
 
+        jobThreadStopped();
+
         // Refresh tables's current folders, based on the job's refresh policy.
         refreshTables();
     }
@@ -18,22 +18,28 @@
 package com.mucommander.job;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.filter.AbstractFileFilter;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.runtime.OsFamily;
+import com.mucommander.job.utils.ParallelFileSearch;
 import com.mucommander.ui.main.MainFrame;
 import org.apache.commons.io.IOCase;
-import org.apache.commons.io.filefilter.AbstractFileFilter;
+import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
 import ru.trolsoft.utils.search.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Job for directory scanning
+ * Job for directory scanning.
+ *
+ * <p>The start directory is searched by a {@link ParallelFileSearch}, which lists folders and reads files in several
+ * threads. Files are added to the {@link #getResults() results} as soon as they are found.</p>
  */
 public class FindFileJob extends FileJob {
 
@@ -42,12 +48,16 @@ public class FindFileJob extends FileJob {
     private boolean searchSubdirectories;
     private boolean searchArchives;
     private boolean ignoreHidden;
-    private SearchPattern searchPattern;
+    /** Searches the contents of files, null if the search pattern is invalid */
+    private ByteSearcher searcher;
 
-    private AbstractFileFilter fileFilter;
+    private IOFileFilter fileFilter;
 
     private final List<AbstractFile> list = new ArrayList<>();
 
+    /** The search in progress, null when no search is in progress */
+    private volatile ParallelFileSearch search;
+
     public FindFileJob(MainFrame mainFrame) {
         super(mainFrame);
         setAutoUnmark(false);
@@ -65,56 +75,51 @@ public class FindFileJob extends FileJob {
         if (getState() == State.INTERRUPTED) {
             return false;
         }
-        // If file is a directory, recurs
-        if (file.isDirectory() && (!file.isSymlink() || file.equals(startDirectory))) {
-            searchInFile(file);
-            if (!searchSubdirectories && !file.equals(startDirectory)) {
-                return true;
-            }
-            try {
-                AbstractFile subFiles[] = file.ls();
-                for (int i = 0; i < subFiles.length && getState() != State.INTERRUPTED; i++) {
-                    if (ignoreHidden && file.isHidden()) {
-                        continue;
-                    }
-                    // Notify job that we're starting to process this file (needed for recursive calls to processFile)
-                    nextFile(subFiles[i]);
-                    processFile(subFiles[i], null);
-                }
-            } catch(Throwable e) {
-                // Should we tell the user?
+
+        ParallelFileSearch search = new ParallelFileSearch(new AbstractFileFilter() {
+            @Override
+            public boolean accept(AbstractFile file) {
+                return fileFilter.accept(new File(file.toString())) && fileContainsString(file);
             }
-        } else { // If not, increase file counter and bytes total
-            if (!ignoreHidden || !file.isHidden()) {
-                searchInFile(file);
+        }, new ParallelFileSearch.Listener() {
+            @Override
+            public void fileVisited(AbstractFile file) {
+                // Notify job that we're starting to process this file, waits while the job is paused
+                nextFile(file);
             }
-        }
 
-        if (file.isArchive() && searchArchives) {
-            try {
-                AbstractFile subFiles[] = file.ls();
-                for (int i = 0; i < subFiles.length && getState() != State.INTERRUPTED; i++) {
-                    if (ignoreHidden && file.isHidden()) {
-                        continue;
-                    }
-                    // Notify job that we're starting to process this file (needed for recursive calls to processFile)
-                    nextFile(subFiles[i]);
-                    processFile(subFiles[i], null);
+            @Override
+            public void fileFound(AbstractFile file) {
+                synchronized (FindFileJob.this) {
+                    list.add(file);
                 }
-            } catch(Throwable e) {
-                // Should we tell the user?
             }
+        });
+        search.setSearchSubfolders(searchSubdirectories);
+        search.setSearchArchives(searchArchives);
+        search.setIgnoreHidden(ignoreHidden);
+
+        this.search = search;
+        // The job may have been interrupted before the search was set
+        if (getState() == State.INTERRUPTED) {
+            return false;
+        }
+        try {
+            search.search(file);
+        } finally {
+            this.search = null;
         }
 
-        return true;
+        return getState() != State.INTERRUPTED;
     }
 
-    private void searchInFile(AbstractFile file) {
-        File f = new File(file.toString());
-        if (fileFilter.accept(f) && fileContainsString(file)) {
-            synchronized (this) {
-                list.add(file);
-            }
+    @Override
+    protected void jobStopped() {
+        super.jobStopped();
+
+        ParallelFileSearch search = this.search;
+        if (search != null) {
+            search.cancel();
         }
     }
 
@@ -128,16 +133,29 @@ public class FindFileJob extends FileJob {
             return false;
         }
 
+        if (searcher == null) {
+            return false;
+        }
+
+        InputStream in = null;
         try {
-            SearchSourceStream source = new InputStreamSource(f.getInputStream());
-            long pos = SearchUtils.indexOf(source, searchPattern);
+            in = f.getInputStream();
+            long pos = searcher.indexOf(in);
             //Profiler.stop("check_new");
             return pos >= 0;
-        } catch (SearchException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
                 }
             }
+        }
+    }
 
 
 
@@ -172,12 +190,10 @@ public class FindFileJob extends FileJob {
         }
 
         if (hexMode) {
-            searchPattern = new BytesSearchPattern(bytes);
+            searcher = SearchUtils.compile(new BytesSearchPattern(bytes));
         } else {
             try {
-                searchPattern = caseSensitive ?
-                        new StringCaseSensitiveSearchPattern(fileContent, encoding) :
-                        new StringCaseInsensitiveSearchPattern(fileContent, encoding);
+                searcher = SearchUtils.compile(fileContent, caseSensitive, encoding);
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
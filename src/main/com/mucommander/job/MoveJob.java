@@ -20,6 +20,10 @@
 package com.mucommander.job;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +50,9 @@ public class MoveJob extends AbstractCopyJob {
     /** True if this job corresponds to a single file renaming */
     protected boolean renameMode = false;
 
+    /** Files that are moved concurrently and haven't been moved completely (copied + deleted) yet */
+    private final Set<AbstractFile> pendingConcurrentMoves = Collections.synchronizedSet(new HashSet<>());
+
     
     /**
      * Creates a new MoveJob without starting it.
@@ -180,6 +187,13 @@ public class MoveJob extends AbstractCopyJob {
                             isFolderEmpty = false;
                     }
 
+                    // Files that are moved concurrently must be moved completely before the folder can be deleted
+                    if (getTransferThreads() > 1) {
+                        waitForConcurrentTransfers();
+                        if (pendingConcurrentMoves.removeAll(Arrays.asList(subFiles)))
+                            isFolderEmpty = false;
+                    }
+
                     // Only when finished with folder, set destination folder's date to match the original folder one
                     if (destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
                         try {
@@ -229,30 +243,46 @@ public class MoveJob extends AbstractCopyJob {
         else  {
             // if renameTo() was not supported or failed, or if it wasn't possible because of 'append',
             // try the hard way by copying the file first, and then deleting the source file.
-            if (tryCopyFile(file, destFile, append, errorDialogTitle) && getState() != State.INTERRUPTED) {
-                // Delete the source file
-                do {		// Loop for retry
-                    try  {
-                        file.delete();
-                        // All OK
-                        return true;
-                    } catch(IOException e) {
-                        LOGGER.debug("IOException caught", e);
-
-                        int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_file", file.getAbsolutePath()));
-                        // Retry loops
-                        if (ret==RETRY_ACTION)
-                            continue;
-                        // Cancel, skip or close dialog returns false
-                        return false;
-                    }
-                } while(true);
+            if (getTransferThreads() > 1) {
+                // The file is copied and deleted by a worker thread, it stays pending until it has been deleted
+                pendingConcurrentMoves.add(file);
+                tryCopyFileConcurrently(file, destFile, append, errorDialogTitle, () -> {
+                    if (deleteSourceFile(file))
+                        pendingConcurrentMoves.remove(file);
+                });
+                return true;
             }
 
-            return false;
+            return tryCopyFile(file, destFile, append, errorDialogTitle) && getState() != State.INTERRUPTED && deleteSourceFile(file);
         }
     }
 
+    /**
+     * Deletes the given source file after it has been copied to the destination.
+     *
+     * @param file the source file to delete
+     * @return <code>true</code> if the file has been deleted
+     */
+    private boolean deleteSourceFile(AbstractFile file) {
+        do {		// Loop for retry
+            try  {
+                file.delete();
+                // All OK
+                return true;
+            } catch(IOException e) {
+                LOGGER.debug("IOException caught", e);
+
+                // Called by worker threads
+                int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_delete_file", file.getAbsolutePath()));
+                // Retry loops
+                if (ret==RETRY_ACTION)
+                    continue;
+                // Cancel, skip or close dialog returns false
+                return false;
+            }
+        } while(true);
+    }
+
     // This job modifies baseDestFolder and its subfolders
     @Override
     protected boolean hasFolderChanged(AbstractFile folder) {
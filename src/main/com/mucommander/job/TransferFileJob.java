@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.mucommander.commons.file.*;
 import org.slf4j.Logger;
@@ -31,13 +33,19 @@ import org.slf4j.LoggerFactory;
 import com.apple.eio.FileManager;
 import com.mucommander.commons.file.impl.local.LocalFile;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.io.BufferPool;
 import com.mucommander.commons.io.ByteCounter;
 import com.mucommander.commons.io.ChecksumInputStream;
 import com.mucommander.commons.io.CounterInputStream;
 import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.commons.io.PipelinedInputStream;
 import com.mucommander.commons.io.ThroughputLimitInputStream;
 import com.mucommander.commons.io.security.MuProvider;
 import com.mucommander.commons.runtime.OsFamily;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.job.utils.TransferThreadPool;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.dialog.file.ProgressDialog;
 import com.mucommander.ui.main.MainFrame;
@@ -48,6 +56,12 @@ import com.mucommander.ui.main.MainFrame;
  *
  * <p>What makes TransferFileJob different from FileJob (and explains its very inspired name) is that a class
  * implementing TransferFileJob has to be able to give progress information about the file currently being processed.
+ *
+ * <p>Regular files can optionally be transferred concurrently by a bounded pool of worker threads, see
+ * {@link #setTransferThreads(int)} and {@link #tryCopyFileConcurrently(AbstractFile, AbstractFile, boolean, String, Runnable)}.
+ * Collisions are still resolved on the job's thread, before a file is handed over to a worker. Concurrent transfers
+ * are paused, resumed, throttled and stopped along with the job, and their bytes are accounted in
+ * {@link #getTotalByteCounter()}.
  * 
  * @author Maxence Bernard
  */
@@ -66,22 +80,31 @@ public abstract class TransferFileJob extends FileJob {
     /** Contains the number of bytes skipped so far (resumed files), see {@link #getTotalSkippedByteCounter()} */
     private ByteCounter totalSkippedByteCounter;
 
-    /** InputStream currently being processed, may be null */
-    private ThroughputLimitInputStream tlin;
+    /** Transfer carried out by the job's thread */
+    private final Transfer mainTransfer;
+
+    /** Transfers currently carried out by worker threads, guarded by the list's lock */
+    private final List<Transfer> concurrentTransfers = new ArrayList<>();
+
+    /** Contains the number of bytes processed by worker threads so far, including the transfers in progress */
+    private ConcurrentByteCounter concurrentByteCounter;
+
+    /** Contains the number of bytes skipped by worker threads so far, including the transfers in progress */
+    private ConcurrentByteCounter concurrentSkippedByteCounter;
+
+    /** Maximum number of files transferred concurrently, 1 (files are transferred by the job's thread) by default */
+    private int transferThreads = 1;
+
+    /** Worker threads transferring files concurrently, created the first time a file is transferred concurrently */
+    private TransferThreadPool transferThreadPool;
 
     /** ThroughputLimit in bytes per second, -1 initially (no limit) */
     private long throughputLimit = -1;
 
-    /** Has the file currently being processed been skipped ? */
-    private boolean currentFileSkipped;
-
     /** If true, all transfers will be checked for integrity: the checksum of the source and destination file will
      *  be calculated and compared to verify they match. */
     private boolean integrityCheckEnabled;
 
-    /** True when the checksum of the source or destination file is being calculated. */
-    private boolean isCheckingIntegrity;
-
     /** The checksum algorithm used for checking the integrity of transferred files. The algorithm has to be the fastest
      * possible (to have the minimum impact on transfer speed) and does not need to have a good resitance to collision. */
     private final static String CHECKSUM_VERIFICATION_ALGORITHM = "Adler32";
@@ -105,16 +128,77 @@ public abstract class TransferFileJob extends FileJob {
 
         this.currentFileByteCounter = new ByteCounter();
         this.currentFileSkippedByteCounter = new ByteCounter();
+        this.mainTransfer = new Transfer(null, currentFileByteCounter, currentFileSkippedByteCounter);
+
+        // Account the current file's and the worker threads' byte counters in the total byte counter
+        this.concurrentByteCounter = new ConcurrentByteCounter(currentFileByteCounter, false);
+        this.concurrentSkippedByteCounter = new ConcurrentByteCounter(currentFileSkippedByteCounter, true);
+        this.totalByteCounter = new ByteCounter(concurrentByteCounter);
+        this.totalSkippedByteCounter = new ByteCounter(concurrentSkippedByteCounter);
+    }
+
+    /**
+     * Returns the number of files that should be transferred concurrently from the given source folder to the given
+     * destination folder, as configured in the preferences.
+     *
+     * <p>The number of threads can be configured globally ({@link MuPreferences#TRANSFER_THREADS}) and overridden for
+     * each protocol by suffixing the variable with the protocol's scheme. When source and destination use different
+     * protocols, the lowest of the two values is used. Files are transferred one at a time when the source or the
+     * destination is located inside an archive, as archive entries cannot be read or written concurrently.</p>
+     *
+     * @param sourceFolder the folder containing the files to transfer, may be <code>null</code>
+     * @param destFolder the folder the files are transferred to
+     * @return the number of files that should be transferred concurrently, at least 1
+     */
+    public static int getConfiguredTransferThreads(AbstractFile sourceFolder, AbstractFile destFolder) {
+        if (destFolder.getParentArchive() != null || (sourceFolder != null && sourceFolder.getParentArchive() != null)) {
+            return 1;
+        }
+
+        int nbThreads = getConfiguredTransferThreads(destFolder.getURL().getScheme());
+        if (sourceFolder != null) {
+            nbThreads = Math.min(nbThreads, getConfiguredTransferThreads(sourceFolder.getURL().getScheme()));
+        }
+
+        return Math.max(1, nbThreads);
+    }
 
-        // Account the current file's byte counter in the total byte counter
-        this.totalByteCounter = new ByteCounter(currentFileByteCounter);
-        this.totalSkippedByteCounter = new ByteCounter(currentFileSkippedByteCounter);
+    private static int getConfiguredTransferThreads(String scheme) {
+        int nbThreads = MuConfigurations.getPreferences().getVariable(MuPreference.TRANSFER_THREADS, MuPreferences.DEFAULT_TRANSFER_THREADS);
+        String schemeValue = MuConfigurations.getPreferences().getVariable(MuPreferences.TRANSFER_THREADS + '.' + scheme);
+        if (schemeValue != null) {
+            try {
+                nbThreads = Integer.parseInt(schemeValue.trim());
+            } catch(NumberFormatException e) {
+                LOGGER.info("Invalid number of transfer threads for " + scheme + ": " + schemeValue);
+            }
+        }
+
+        return nbThreads;
+    }
+
+    /**
+     * Returns <code>true</code> if the given file should be copied with reads and writes overlapping, i.e. if the
+     * source and destination files are on different protocols and the file is larger than a buffer.
+     *
+     * @param sourceFile the file to copy
+     * @param destFile the destination file
+     * @param length number of bytes to copy
+     * @return true if reads and writes should overlap
+     */
+    private static boolean isPipelinedTransfer(AbstractFile sourceFile, AbstractFile destFile, long length) {
+        return length > BufferPool.getDefaultBufferSize()
+                && !sourceFile.getURL().getScheme().equals(destFile.getURL().getScheme());
     }
 
     protected void copyToReadonlyFile(AbstractFile sourceFile, AbstractFile destFile, boolean append) throws FileTransferException {
+        copyToReadonlyFile(sourceFile, destFile, append, mainTransfer);
+    }
+
+    private void copyToReadonlyFile(AbstractFile sourceFile, AbstractFile destFile, boolean append, Transfer transfer) throws FileTransferException {
         try {
             destFile.changePermission(PermissionAccesses.USER_ACCESS, PermissionTypes.WRITE_PERMISSION, true);
-            copyFile(sourceFile, destFile, append);
+            copyFile(sourceFile, destFile, append, transfer);
             destFile.changePermission(PermissionAccesses.USER_ACCESS, PermissionTypes.WRITE_PERMISSION, false);
         } catch (IOException e) {
             e.printStackTrace();
@@ -128,8 +212,12 @@ public abstract class TransferFileJob extends FileJob {
      * As much as the source and destination protocols allow, the source file's date and permissions will be preserved.
      */
     protected void copyFile(AbstractFile sourceFile, AbstractFile destFile, boolean append) throws FileTransferException {
+        copyFile(sourceFile, destFile, append, mainTransfer);
+    }
+
+    private void copyFile(AbstractFile sourceFile, AbstractFile destFile, boolean append, Transfer transfer) throws FileTransferException {
         // Reset this field in case it was set to true for the previous file
-        isCheckingIntegrity = false;
+        transfer.checkingIntegrity = false;
 
         // Throw a specific FileTransferException if source and destination files are identical
         if (sourceFile.equalsCanonical(destFile))
@@ -165,9 +253,9 @@ public abstract class TransferFileJob extends FileJob {
 
                         inLength -= destFileSize;
                         // Increase current file ByteCounter by the number of bytes skipped
-                        currentFileByteCounter.add(destFileSize);
+                        transfer.byteCounter.add(destFileSize);
                         // Increase skipped ByteCounter by the number of bytes skipped
-                        currentFileSkippedByteCounter.add(destFileSize);
+                        transfer.skippedByteCounter.add(destFileSize);
                     } else {
                         in = sourceFile.getInputStream();
                         if (integrityCheckEnabled) {
@@ -175,21 +263,27 @@ public abstract class TransferFileJob extends FileJob {
                     }
                     }
 
-                    setCurrentInputStream(in);
+                    // Overlap reads and writes when the source and destination are on different protocols, as
+                    // both ends are then likely to be slow in their own way
+                    if (isPipelinedTransfer(sourceFile, destFile, inLength)) {
+                        transfer.setInputStream(new PipelinedInputStream(in));
+                    } else {
+                        transfer.setInputStream(in);
+                    }
                 } catch(Exception e) {
                     LOGGER.debug("IOException caught, throwing FileTransferException", e);
                     throw new FileTransferException(FileTransferException.OPENING_SOURCE);
                 }
 
                 // Copy source stream to destination file
-                destFile.copyStream(tlin, append, inLength);
+                destFile.copyStream(transfer.tlin, append, inLength);
             }
             finally {
                 // This block will always be executed, even if an exception
                 // was thrown in the catch block
 
                 // Tries to close the streams no matter what happened before
-                closeCurrentInputStream();
+                transfer.closeInputStream();
             }
         }
 
@@ -234,7 +328,7 @@ public abstract class TransferFileJob extends FileJob {
             String destinationChecksum;
 
             // Indicate that integrity is being checked, the value is reset when the next file starts
-            isCheckingIntegrity = true;
+            transfer.checkingIntegrity = true;
 
             if (in != null && (in instanceof ChecksumInputStream)) {
                 // The file was copied with a ChecksumInputStream, the checksum is already calculated, simply
@@ -244,7 +338,7 @@ public abstract class TransferFileJob extends FileJob {
                 // The file was copied using AbstractFile#copyRemotelyTo(), or the transfer was resumed:
                 // we have to calculate the source file's checksum from scratch.
                 try {
-                    sourceChecksum = calculateChecksum(sourceFile);
+                    sourceChecksum = calculateChecksum(sourceFile, transfer);
                 } catch (Exception e) {
                     throw new FileTransferException(FileTransferException.READING_SOURCE);
                 }
@@ -254,7 +348,7 @@ public abstract class TransferFileJob extends FileJob {
 
             // Calculate the destination file's checksum
             try {
-                destinationChecksum = calculateChecksum(destFile);
+                destinationChecksum = calculateChecksum(destFile, transfer);
             } catch(Exception e) {
                 throw new FileTransferException(FileTransferException.READING_DESTINATION);
             }
@@ -268,13 +362,13 @@ public abstract class TransferFileJob extends FileJob {
         }
     }
 
-    private String calculateChecksum(AbstractFile file) throws IOException, NoSuchAlgorithmException {
-        currentFileByteCounter.reset();
-        InputStream in = setCurrentInputStream(file.getInputStream());
+    private String calculateChecksum(AbstractFile file, Transfer transfer) throws IOException, NoSuchAlgorithmException {
+        transfer.byteCounter.reset();
+        InputStream in = transfer.setInputStream(file.getInputStream());
         try {
             return AbstractFile.calculateChecksum(in, MessageDigest.getInstance(CHECKSUM_VERIFICATION_ALGORITHM));
         } finally {
-            closeCurrentInputStream();
+            transfer.closeInputStream();
         }
     }
 
@@ -287,14 +381,89 @@ public abstract class TransferFileJob extends FileJob {
      *
      */
     protected boolean tryCopyFile(AbstractFile sourceFile, AbstractFile destFile, boolean append, String errorDialogTitle) {
+        return tryCopyFile(sourceFile, destFile, append, errorDialogTitle, mainTransfer);
+    }
+
+    /**
+     * Transfers the given source file to the specified destination file on one of this job's worker threads, as
+     * {@link #tryCopyFile(AbstractFile, AbstractFile, boolean, String)} does on the job's thread. The file is copied
+     * by the calling thread if concurrent transfers are disabled (see {@link #setTransferThreads(int)}).
+     *
+     * <p>This method returns as soon as the transfer has been scheduled, blocking only while all worker threads are
+     * busy. The given callback is invoked by the thread that carried out the transfer, only if the file was properly
+     * copied. Errors are reported to the user the same way as with {@link #tryCopyFile(AbstractFile, AbstractFile, boolean, String)},
+     * one dialog at a time. {@link #waitForConcurrentTransfers()} can be used to wait for scheduled transfers to finish.</p>
+     *
+     * @param sourceFile the file to copy
+     * @param destFile the file to copy to
+     * @param append true to resume the transfer, appending to the destination file
+     * @param errorDialogTitle title of the error dialogs
+     * @param onSuccess invoked after the file was properly copied, may be <code>null</code>
+     */
+    protected void tryCopyFileConcurrently(final AbstractFile sourceFile, final AbstractFile destFile, final boolean append,
+                                           final String errorDialogTitle, final Runnable onSuccess) {
+        if (transferThreads <= 1) {
+            if (tryCopyFile(sourceFile, destFile, append, errorDialogTitle) && onSuccess != null) {
+                onSuccess.run();
+            }
+            return;
+        }
+
+        synchronized(this) {
+            if (transferThreadPool == null) {
+                transferThreadPool = new TransferThreadPool(transferThreads, getClass().getSimpleName());
+            }
+        }
+
+        transferThreadPool.execute(() -> {
+            // Transfers still queued when the job is interrupted are simply dropped
+            if (getState() == State.INTERRUPTED) {
+                return;
+            }
+
+            Transfer transfer = new Transfer(sourceFile, new ByteCounter(), new ByteCounter());
+            synchronized(concurrentTransfers) {
+                concurrentTransfers.add(transfer);
+            }
+            try {
+                if (tryCopyFile(sourceFile, destFile, append, errorDialogTitle, transfer) && getState() != State.INTERRUPTED && onSuccess != null) {
+                    onSuccess.run();
+                }
+            } finally {
+                synchronized(concurrentTransfers) {
+                    concurrentTransfers.remove(transfer);
+                    // Accounts the bytes of the finished transfer in the worker threads' byte counters
+                    concurrentByteCounter.addFinishedTransfer(transfer);
+                    concurrentSkippedByteCounter.addFinishedTransfer(transfer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocks until all the transfers scheduled with {@link #tryCopyFileConcurrently(AbstractFile, AbstractFile, boolean, String, Runnable)}
+     * are finished. Returns immediately if no transfer is pending.
+     */
+    protected void waitForConcurrentTransfers() {
+        TransferThreadPool pool;
+        synchronized(this) {
+            pool = transferThreadPool;
+        }
+
+        if (pool != null) {
+            pool.waitForCompletion();
+        }
+    }
+
+    private boolean tryCopyFile(AbstractFile sourceFile, AbstractFile destFile, boolean append, String errorDialogTitle, Transfer transfer) {
         boolean overwriteReadonly = false;
         // Copy file to destination
         do {				// Loop for retry
             try {
                 if (overwriteReadonly) {
-                    copyToReadonlyFile(sourceFile, destFile, append);
+                    copyToReadonlyFile(sourceFile, destFile, append, transfer);
                 } else {
-                copyFile(sourceFile, destFile, append);
+                copyFile(sourceFile, destFile, append, transfer);
                 }
                 return true;
             } catch(FileTransferException e) {
@@ -303,56 +472,20 @@ public abstract class TransferFileJob extends FileJob {
                 // the IOException was caused by the stream being closed as a result of the user interruption.
                 // If that is the case, the exception should not be interpreted as an error.
                 // Same goes if the current file was skipped.
-                if (getState() == State.INTERRUPTED || wasCurrentFileSkipped()) {
+                if (getState() == State.INTERRUPTED || transfer.skipped) {
                     return false;
                 }
 
                 // Print the exception's stack trace
                 LOGGER.debug("Copy failed", e);
 
-                int reason = e.getReason();
-                int choice;
-                switch(reason) {
-                    // Could not open source file for read
-                    case FileTransferException.OPENING_SOURCE:
-                        choice = showErrorDialog(errorDialogTitle, Translator.get("cannot_read_file", sourceFile.getName()));
-                        break;
-                    // Could not open destination file for write
-                    case FileTransferException.OPENING_DESTINATION:
-                        // if write to read-only file
-                        if (!destFile.getPermissions().getBitValue(PermissionAccesses.USER_ACCESS, PermissionTypes.WRITE_PERMISSION)) {
-                            if (overwriteAllReadonly) {
-                                choice = OVERWRITE_READONLY_ACTION;
-                            } else {
-                                String actionTexts[] = new String[]{SKIP_TEXT, SKIP_ALL_TEXT, OVERWRITE_READONLY_TEXT, OVERWRITE_READONLY_ALL_TEXT, CANCEL_TEXT};
-                                int actionValues[] = new int[]{SKIP_ACTION, SKIP_ALL_ACTION, OVERWRITE_READONLY_ACTION, OVERWRITE_READONLY_ALL_ACTION, CANCEL_ACTION};
-                                choice = showErrorDialog(errorDialogTitle, Translator.get("overwrite_readonly_file", destFile.getName()), actionTexts, actionValues);
-                            }
-                        } else {
-                        choice = showErrorDialog(errorDialogTitle, Translator.get("cannot_write_file", destFile.getName()));
-                        }
-                        break;
-                    // Source and destination files are identical
-                    case FileTransferException.SOURCE_AND_DESTINATION_IDENTICAL:
-                        choice = showErrorDialog(errorDialogTitle, Translator.get("same_source_destination"));
-                        break;
-                    // Checksum of source and destination files don't match
-                    case FileTransferException.CHECKSUM_MISMATCH:
-                        choice = showErrorDialog(errorDialogTitle, Translator.get("integrity_check_error"));
-                        break;
-                    default:
-                        choice = showErrorDialog(errorDialogTitle,
-                                                 Translator.get("error_while_transferring", sourceFile.getName()),
-                                                 new String[]{SKIP_TEXT, SKIP_ALL_TEXT, APPEND_TEXT, RETRY_TEXT, CANCEL_TEXT},
-                                                 new int[]{SKIP_ACTION, SKIP_ALL_ACTION, APPEND_ACTION, RETRY_ACTION, CANCEL_ACTION}
-                                                 );
-                    break;
-                }
+                // Dialogs are displayed one at a time, CANCEL_ACTION is returned if the job has been interrupted
+                int choice = askErrorAction(sourceFile, destFile, errorDialogTitle, e.getReason());
                 // Retry action (append or retry)
                 if (choice == RETRY_ACTION || choice == APPEND_ACTION || choice == OVERWRITE_READONLY_ACTION || choice == OVERWRITE_READONLY_ALL_ACTION) {
                     // Reset current file byte counters
-                    currentFileByteCounter.reset();
-                    currentFileSkippedByteCounter.reset();
+                    transfer.byteCounter.reset();
+                    transfer.skippedByteCounter.reset();
                     // Append resumes transfer
                     append = choice == APPEND_ACTION;
                     overwriteReadonly = choice == OVERWRITE_READONLY_ACTION || choice == OVERWRITE_READONLY_ALL_ACTION;
@@ -368,6 +501,50 @@ public abstract class TransferFileJob extends FileJob {
         } while(true);
     }
 
+    /**
+     * Asks the user what to do after the transfer of the given file failed for the specified reason.
+     */
+    private int askErrorAction(AbstractFile sourceFile, AbstractFile destFile, String errorDialogTitle, int reason) {
+        int choice;
+        switch(reason) {
+            // Could not open source file for read
+            case FileTransferException.OPENING_SOURCE:
+                choice = showErrorDialog(errorDialogTitle, Translator.get("cannot_read_file", sourceFile.getName()));
+                break;
+            // Could not open destination file for write
+            case FileTransferException.OPENING_DESTINATION:
+                // if write to read-only file
+                if (!destFile.getPermissions().getBitValue(PermissionAccesses.USER_ACCESS, PermissionTypes.WRITE_PERMISSION)) {
+                    if (overwriteAllReadonly) {
+                        choice = OVERWRITE_READONLY_ACTION;
+                    } else {
+                        String actionTexts[] = new String[]{SKIP_TEXT, SKIP_ALL_TEXT, OVERWRITE_READONLY_TEXT, OVERWRITE_READONLY_ALL_TEXT, CANCEL_TEXT};
+                        int actionValues[] = new int[]{SKIP_ACTION, SKIP_ALL_ACTION, OVERWRITE_READONLY_ACTION, OVERWRITE_READONLY_ALL_ACTION, CANCEL_ACTION};
+                        choice = showErrorDialog(errorDialogTitle, Translator.get("overwrite_readonly_file", destFile.getName()), actionTexts, actionValues);
+                    }
+                } else {
+                choice = showErrorDialog(errorDialogTitle, Translator.get("cannot_write_file", destFile.getName()));
+                }
+                break;
+            // Source and destination files are identical
+            case FileTransferException.SOURCE_AND_DESTINATION_IDENTICAL:
+                choice = showErrorDialog(errorDialogTitle, Translator.get("same_source_destination"));
+                break;
+            // Checksum of source and destination files don't match
+            case FileTransferException.CHECKSUM_MISMATCH:
+                choice = showErrorDialog(errorDialogTitle, Translator.get("integrity_check_error"));
+                break;
+            default:
+                choice = showErrorDialog(errorDialogTitle,
+                                         Translator.get("error_while_transferring", sourceFile.getName()),
+                                         new String[]{SKIP_TEXT, SKIP_ALL_TEXT, APPEND_TEXT, RETRY_TEXT, CANCEL_TEXT},
+                                         new int[]{SKIP_ACTION, SKIP_ALL_ACTION, APPEND_ACTION, RETRY_ACTION, CANCEL_ACTION}
+                                         );
+            break;
+        }
+        return choice;
+    }
+
 
     /**
      * Registers the given InputStream as currently in use, in order to:
@@ -383,25 +560,59 @@ public abstract class TransferFileJob extends FileJob {
      * @param in the InputStream to be used
      * @return the 'augmented' InputStream using the given stream as the underlying InputStream
      */
-    protected synchronized InputStream setCurrentInputStream(InputStream in) {
-        if(tlin==null) {
-            tlin = new ThroughputLimitInputStream(new CounterInputStream(in, currentFileByteCounter), throughputLimit);
-        } else {
-            tlin.setUnderlyingInputStream(new CounterInputStream(in, currentFileByteCounter));
+    protected InputStream setCurrentInputStream(InputStream in) {
+        return mainTransfer.setInputStream(in);
+    }
+
+    /**
+     * Closes the currently registered source InputStream.
+     */
+    protected void closeCurrentInputStream() {
+        mainTransfer.closeInputStream();
+    }
+
+    /**
+     * Returns the maximum number of files that are transferred concurrently by
+     * {@link #tryCopyFileConcurrently(AbstractFile, AbstractFile, boolean, String, Runnable)}.
+     *
+     * @return the maximum number of files that are transferred concurrently
+     */
+    public int getTransferThreads() {
+        return transferThreads;
+    }
+
+    /**
+     * Sets the maximum number of files that are transferred concurrently by
+     * {@link #tryCopyFileConcurrently(AbstractFile, AbstractFile, boolean, String, Runnable)}, 1 to have files
+     * transferred by the job's thread. This method must be called before the job is started.
+     *
+     * @param transferThreads maximum number of files that are transferred concurrently
+     * @see #getConfiguredTransferThreads(AbstractFile, AbstractFile)
+     */
+    public void setTransferThreads(int transferThreads) {
+        this.transferThreads = Math.max(1, transferThreads);
+    }
+
+    /**
+     * Returns the throughput limit of each stream, the job's limit being shared by all the files that are
+     * transferred concurrently.
+     */
+    private long getStreamThroughputLimit() {
+        if (throughputLimit <= 0 || transferThreads <= 1) {
+            return throughputLimit;
         }
 
-        return tlin;
+        return Math.max(1, throughputLimit / transferThreads);
     }
 
     /**
-     * Closes the currently registered source InputStream.
+     * Applies the given throughput limit to all the streams currently in use.
      */
-    protected synchronized void closeCurrentInputStream() {
-        if (tlin != null) {
-            try {
-                tlin.close();
-            } catch(IOException e) {
-                e.printStackTrace();
+    private void setStreamsThroughputLimit(long bytesPerSecond) {
+        mainTransfer.setThroughputLimit(bytesPerSecond);
+        synchronized(concurrentTransfers) {
+            for (Transfer transfer : concurrentTransfers) {
+                transfer.setThroughputLimit(bytesPerSecond);
             }
         }
     }
@@ -433,7 +644,7 @@ public abstract class TransferFileJob extends FileJob {
      * @return true if the integrity of the current file is being verified
      */
     protected boolean isCheckingIntegrity() {
-        return isCheckingIntegrity;
+        return mainTransfer.checkingIntegrity;
     }
 
 
@@ -441,14 +652,24 @@ public abstract class TransferFileJob extends FileJob {
      * Interrupts the current file transfer and advance to the next one.
      */
     public synchronized void skipCurrentFile() {
-        if (tlin != null) {
-            LOGGER.debug("skipping current file, closing "+ tlin);
+        // When files are transferred concurrently, the current file is the last one that was handed over to a worker
+        Transfer transfer = mainTransfer;
+        synchronized(concurrentTransfers) {
+            for (Transfer concurrentTransfer : concurrentTransfers) {
+                if (concurrentTransfer.sourceFile == getCurrentFile()) {
+                    transfer = concurrentTransfer;
+                }
+            }
+        }
+
+        if (transfer.tlin != null) {
+            LOGGER.debug("skipping current file, closing "+ transfer.tlin);
 
             // Prevents an error from being reported when the current InputStream is closed
-            currentFileSkipped = true;
+            transfer.skipped = true;
 
             // Close the current input stream to interrupt the transfer
-            closeCurrentInputStream();
+            transfer.closeInputStream();
         }
 
         // Resume job if currently paused 
@@ -463,7 +684,7 @@ public abstract class TransferFileJob extends FileJob {
      * @return true if the file that is currently being processed has been skipped
      */
     public synchronized boolean wasCurrentFileSkipped() {
-        return currentFileSkipped;
+        return mainTransfer.skipped;
     }
 
     /**
@@ -543,11 +764,11 @@ public abstract class TransferFileJob extends FileJob {
         this.throughputLimit = bytesPerSecond<=0?-1:bytesPerSecond;
 
         synchronized(this) {
-            if (getState() != State.PAUSED && tlin != null) {
-                tlin.setThroughputLimit(throughputLimit);
+            if (getState() != State.PAUSED) {
+                setStreamsThroughputLimit(getStreamThroughputLimit());
+            }
         }
     }
-    }
 
     /**
      * Returns the current transfer throughput limit, in bytes per second. <code>0</code> or <code>-1</code> means that
@@ -565,21 +786,42 @@ public abstract class TransferFileJob extends FileJob {
     ////////////////////////
 
     /**
-     * Overrides {@link FileJob#jobStopped()} to stop any file processing by closing the source InputStream.
+     * Overrides {@link FileJob#jobStopped()} to stop any file processing by closing the source InputStreams,
+     * including the ones of concurrent transfers.
      */
     @Override
     protected void jobStopped() {
         super.jobStopped();
 
         synchronized(this) {
-            if (tlin !=null) {
-                LOGGER.debug("closing current InputStream "+ tlin);
+            if (mainTransfer.tlin != null) {
+                LOGGER.debug("closing current InputStream "+ mainTransfer.tlin);
+
+                mainTransfer.closeInputStream();
+            }
 
-                closeCurrentInputStream();
+            synchronized(concurrentTransfers) {
+                for (Transfer transfer : concurrentTransfers) {
+                    transfer.closeInputStream();
+                }
+            }
+
+            if (transferThreadPool != null) {
+                transferThreadPool.shutdown();
             }
         }
     }
 
+    /**
+     * Overrides {@link FileJob#waitForPendingFiles()} to wait for concurrent transfers to finish.
+     */
+    @Override
+    protected void waitForPendingFiles() {
+        super.waitForPendingFiles();
+
+        waitForConcurrentTransfers();
+    }
+
 
     /**
      * Overrides {@link FileJob#jobPaused()} to pause any file processing
@@ -590,8 +832,7 @@ public abstract class TransferFileJob extends FileJob {
         super.jobPaused();
 
         synchronized(this) {
-            if(tlin !=null)
-                tlin.setThroughputLimit(0);
+            setStreamsThroughputLimit(0);
         }
     }
 
@@ -606,11 +847,9 @@ public abstract class TransferFileJob extends FileJob {
 
         synchronized(this) {
             // Restore previous throughput limit (if any, -1 by default)
-            if (tlin != null) {
-                tlin.setThroughputLimit(throughputLimit);
+            setStreamsThroughputLimit(getStreamThroughputLimit());
         }
     }
-    }
 
 
     /**
@@ -623,7 +862,7 @@ public abstract class TransferFileJob extends FileJob {
         totalSkippedByteCounter.add(currentFileSkippedByteCounter, true);
 
         // Reset some fields that need it
-        currentFileSkipped = false;
+        mainTransfer.skipped = false;
 
         super.nextFile(file);
     }
@@ -661,6 +900,101 @@ public abstract class TransferFileJob extends FileJob {
         return super.getStatusString();
     }
 
+
+    /**
+     * Holds the state of a file transfer: the source InputStream and the byte counters it feeds. The job's thread
+     * uses a single instance for all the files it processes, worker threads use one instance per file.
+     */
+    private class Transfer {
+
+        /** File being transferred, <code>null</code> for the job's thread transfer */
+        private final AbstractFile sourceFile;
+
+        /** Contains the number of bytes processed so far */
+        private final ByteCounter byteCounter;
+
+        /** Contains the number of bytes skipped so far (resumed file) */
+        private final ByteCounter skippedByteCounter;
+
+        /** InputStream currently being processed, may be null */
+        private ThroughputLimitInputStream tlin;
+
+        /** Has the file been skipped ? */
+        private volatile boolean skipped;
+
+        /** True when the checksum of the source or destination file is being calculated. */
+        private volatile boolean checkingIntegrity;
+
+        private Transfer(AbstractFile sourceFile, ByteCounter byteCounter, ByteCounter skippedByteCounter) {
+            this.sourceFile = sourceFile;
+            this.byteCounter = byteCounter;
+            this.skippedByteCounter = skippedByteCounter;
+        }
+
+        private InputStream setInputStream(InputStream in) {
+            synchronized(TransferFileJob.this) {
+                // Streams opened while the job is paused are blocked until it is resumed
+                long limit = getState() == State.PAUSED ? 0 : getStreamThroughputLimit();
+                if (tlin == null) {
+                    tlin = new ThroughputLimitInputStream(new CounterInputStream(in, byteCounter), limit);
+                } else {
+                    tlin.setUnderlyingInputStream(new CounterInputStream(in, byteCounter));
+                }
+
+                return tlin;
+            }
+        }
+
+        private void closeInputStream() {
+            synchronized(TransferFileJob.this) {
+                if (tlin != null) {
+                    try {
+                        tlin.close();
+                    } catch(IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        private void setThroughputLimit(long bytesPerSecond) {
+            if (tlin != null) {
+                tlin.setThroughputLimit(bytesPerSecond);
+            }
+        }
+    }
+
+    /**
+     * ByteCounter that accounts the bytes of the transfers carried out by worker threads: the ones of the transfers
+     * that are finished, plus the ones of the transfers in progress.
+     */
+    private class ConcurrentByteCounter extends ByteCounter {
+
+        /** If true, the skipped bytes of the transfers are accounted rather than the processed bytes */
+        private final boolean skippedBytes;
+
+        private ConcurrentByteCounter(ByteCounter counter, boolean skippedBytes) {
+            super(counter);
+            this.skippedBytes = skippedBytes;
+        }
+
+        private void addFinishedTransfer(Transfer transfer) {
+            add(skippedBytes ? transfer.skippedByteCounter : transfer.byteCounter, false);
+        }
+
+        @Override
+        public long getByteCount() {
+            synchronized(concurrentTransfers) {
+                long count = super.getByteCount();
+                for (Transfer transfer : concurrentTransfers) {
+                    count += (skippedBytes ? transfer.skippedByteCounter : transfer.byteCounter).getByteCount();
+                }
+
+                return count;
+            }
+        }
+    }
+
 //    /**
 //     * Method overridden to return a more accurate percentage of job processed so far by taking
 //     * into account the current file's processed percentage.
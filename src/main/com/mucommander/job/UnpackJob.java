@@ -23,6 +23,11 @@ import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.impl.ProxyFile;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.file.util.PathUtils;
+import com.mucommander.commons.io.BufferPool;
+import com.mucommander.commons.io.ChannelTransferable;
+import com.mucommander.commons.io.FileTransferException;
+import com.mucommander.commons.io.PipelinedOutputStream;
+import com.mucommander.commons.io.StreamUtils;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.action.ActionManager;
 import com.mucommander.ui.action.impl.UnmarkAllAction;
@@ -31,14 +36,18 @@ import com.mucommander.ui.main.MainFrame;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 /**
- * This job unpacks a set of archive files to a base destination folder. Archive entries are extracted in their natural
- * order using {@link com.mucommander.commons.file.AbstractArchiveFile#getEntryIterator()}, to traverse the archive only once
- * and achieve optimal performance.
+ * This job unpacks a set of archive files to a base destination folder. The entries to extract are first looked up in
+ * the archive's entries tree, then extracted in their natural order using
+ * {@link com.mucommander.commons.file.AbstractArchiveFile#getEntryIterator(java.util.Collection)}, to traverse the
+ * archive only once and achieve optimal performance, including for solid archives. Large entries are written to their
+ * destination by a separate thread, while the next bytes are being extracted.
  *
  * @author Maxence Bernard
  */
@@ -184,10 +193,6 @@ public class UnpackJob extends AbstractCopyJob {
         AbstractArchiveFile archiveFile = file.getAncestor(AbstractArchiveFile.class);
         ArchiveEntryIterator iterator = null;
 
-
-        // calculate total size and files count
-        calculateTotalSize(archiveFile);
-
         ArchiveEntry entry;
         String entryPath;
         AbstractFile entryFile;
@@ -197,43 +202,17 @@ public class UnpackJob extends AbstractCopyJob {
 
         // Unpack the archive, copying entries one by one, in the iterator's order
         try {
-            iterator = archiveFile.getEntryIterator();
-            while ((entry = iterator.nextEntry()) != null && getState() != State.INTERRUPTED) {
-                entryPath = entry.getPath();
-
-                boolean processEntry = false;
-                if (selectedEntries == null) {    // Entries are processed
-                    processEntry = true;
-                } else {                          // We need to determine if the entry should be processed or not
-                    // Process this entry if the selectedEntries set contains this entry, or a parent of this entry
-                    int nbSelectedEntries = selectedEntries.size();
-                    for(int i=0; i<nbSelectedEntries; i++) {
-                        ArchiveEntry selectedEntry = selectedEntries.get(i);
-                        // Note: paths of directory entries must end with '/', so this compares whether
-                        // selectedEntry is a parent of the current entry.
-                        if (selectedEntry.isDirectory()) {
-                            if (entryPath.startsWith(selectedEntry.getPath())) {
-                                processEntry = true;
-                                break;
-                                // Note: we can't remove selectedEntryPath from the set, we still need it
-                            }
-                        } else if (entryPath.equals(selectedEntry.getPath())) {
-                            // If the (regular file) entry is in the set, remove it as we no longer need it (will speed up
-                            // subsequent searches)
-                            processEntry = true;
-                            selectedEntries.remove(i);
-                            break;
-                        }
+            // The entries to unpack: the selected entries and those they contain
+            Set<ArchiveEntry> plannedEntries = planEntries(archiveFile);
 
-                        else {
-                    }
-                }
-                }
-
-                if (!processEntry) {
+            iterator = archiveFile.getEntryIterator(plannedEntries);
+            while ((entry = iterator.nextEntry()) != null && getState() != State.INTERRUPTED) {
+                if (!plannedEntries.contains(entry)) {
                     continue;
                 }
 
+                entryPath = entry.getPath();
+
                 processedFilesCount++;
                 processedFilesSize += entry.getSize();
 
@@ -311,6 +290,11 @@ System.out.println(file.getAbsolutePath() + " -> " + file.getCanonicalPath());
                         destParentFile.mkdirs();
                     }
 
+                    // Large entries are written by a separate thread, while the next bytes are being extracted
+                    if (entry.getSize() > BufferPool.getDefaultBufferSize()) {
+                        destFile = new PipelinedWriteFile(destFile);
+                    }
+
                     // The entry is wrapped in a ProxyFile to override #getInputStream() and delegate it to
                     // ArchiveFile#getEntryInputStream in order to take advantage of the ArchiveEntryIterator, which for
                     // some archive file implementations (such as TAR) can speed things by an order of magnitude.
@@ -378,60 +362,30 @@ System.out.println(file.getAbsolutePath() + " -> " + file.getCanonicalPath());
     }
 
 
-    private void calculateTotalSize(AbstractArchiveFile archiveFile) {
+    /**
+     * Returns the entries to unpack, looked up in the archive's entries tree: the selected entries and, for those that
+     * are directories, all the entries they contain, or all the entries of the archive if no entries were selected.
+     * The total size and number of files to unpack are calculated from them.
+     *
+     * @param archiveFile the archive to unpack
+     * @return the entries to unpack
+     * @throws IOException if an error occurred while reading the archive's entries
+     */
+    private Set<ArchiveEntry> planEntries(AbstractArchiveFile archiveFile) throws IOException {
         totalFilesSize = 0;
         totalFilesCount = 0;
-        // get all directoires
-        List<String> selectedDirectories = new ArrayList<>();
-        List<ArchiveEntry> fileEntries = new ArrayList<>();
-
-        if (selectedEntries != null) {
-            for (ArchiveEntry entry : selectedEntries) {
-                if (entry.isDirectory()) {
-                    selectedDirectories.add(entry.getPath());
-                } else {
-                    fileEntries.add(entry);
-                }
-            }
-        }
 
         try {
-            ArchiveEntryIterator iterator = archiveFile.getEntryIterator();
-            ArchiveEntry entry;
-            while ((entry = iterator.nextEntry()) != null && getState() != State.INTERRUPTED) {
-                // check in directories
-                boolean addThisEntry = false;
-                if (selectedEntries != null) {
-                    if (!selectedDirectories.isEmpty()) {
-                        String path = entry.getPath();
-                        for (String dir : selectedDirectories) {
-                            if (path.startsWith(dir)) {
-                                addThisEntry = true;
-                                break;
-                            }
-                        }
-                    } // directories
-                    if (!addThisEntry && !selectedEntries.isEmpty()) {
-                        for (ArchiveEntry selEntry : selectedEntries) {
-                            if (entry == selEntry) {
-                                addThisEntry = true;
-                                break;
-                            }
-                        }
-                    } // entries
-                } else {
-                    addThisEntry = true;
-                }
+            List<ArchiveEntry> entries = archiveFile.getEntries(selectedEntries);
+            for (ArchiveEntry entry : entries) {
+                totalFilesSize += entry.getSize();
+                totalFilesCount++;
+            }
 
-                if (addThisEntry) {
-                    totalFilesSize += entry.getSize();
-                    totalFilesCount++;
-                }
-            } // while
-        } catch (IOException e) {
-            e.printStackTrace();
+            return new HashSet<>(entries);
+        } finally {
+            preparingFinished = true;
         }
-        preparingFinished = true;
     }
 
 
@@ -477,4 +431,56 @@ System.out.println(file.getAbsolutePath() + " -> " + file.getCanonicalPath());
             return archiveFile.getEntryInputStream(entry, iterator);
         }
     }
+
+    /**
+     * Wraps a destination file to write to it through a {@link PipelinedOutputStream}, so that the entry's bytes are
+     * written by a separate thread while the next ones are being extracted.
+     */
+    private static class PipelinedWriteFile extends ProxyFile {
+
+        public PipelinedWriteFile(AbstractFile destFile) {
+            super(destFile);
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return new PipelinedOutputStream(file.getOutputStream());
+        }
+
+        @Override
+        public OutputStream getAppendOutputStream() throws IOException {
+            return new PipelinedOutputStream(file.getAppendOutputStream());
+        }
+
+        /**
+         * Overridden to write through {@link #getOutputStream()} or {@link #getAppendOutputStream()}, as
+         * <code>ProxyFile</code> delegates this method to the proxied file. Streams that can be transferred from
+         * channel to channel are left to the proxied file.
+         */
+        @Override
+        public void copyStream(InputStream in, boolean append, long length) throws FileTransferException {
+            if (in instanceof ChannelTransferable && ((ChannelTransferable)in).isChannelTransferSupported()) {
+                file.copyStream(in, append, length);
+                return;
+            }
+
+            OutputStream out;
+            try {
+                out = append ? getAppendOutputStream() : getOutputStream();
+            } catch(IOException e) {
+                throw new FileTransferException(FileTransferException.OPENING_DESTINATION);
+            }
+
+            try {
+                StreamUtils.copyStream(in, out, IO_BUFFER_SIZE);
+            } finally {
+                // Close stream even if copyStream() threw an IOException, this waits for the bytes to be written
+                try {
+                    out.close();
+                } catch(IOException e) {
+                    throw new FileTransferException(FileTransferException.CLOSING_DESTINATION);
+                }
+            }
+        }
+    }
 }
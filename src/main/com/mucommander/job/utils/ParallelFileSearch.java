@@ -0,0 +1,306 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.job.utils;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.filter.FileFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Searches a directory tree for files matching a {@link FileFilter}, spreading both the directory traversal and the
+ * examination of files (which may involve reading their contents) over several threads.
+ *
+ * <p>The search runs in a work-stealing <code>ForkJoinPool</code>: each folder is listed by its own task, which
+ * forks a task per subfolder and a task per group of {@link #FILES_PER_TASK} files, so that idle threads pick up
+ * the work of busy ones whatever the shape of the tree. The contents of archives are examined by a single task, as
+ * reading several entries of the same archive at once is usually slower than reading them in sequence.</p>
+ *
+ * <p>Matching files are reported to the {@link Listener} as soon as they are found, from the worker threads; the
+ * order in which they are reported is not specified.</p>
+ */
+public class ParallelFileSearch {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelFileSearch.class);
+
+    /** Number of files examined by a single task */
+    public final static int FILES_PER_TASK = 8;
+
+    /** Filter that files must match to be reported */
+    private final FileFilter filter;
+
+    /** Receives the files that are examined and found */
+    private final Listener listener;
+
+    /** Number of threads the search runs in */
+    private final int parallelism;
+
+    /** True if subfolders are searched */
+    private boolean searchSubfolders = true;
+
+    /** True if the contents of archives are searched */
+    private boolean searchArchives;
+
+    /** True if hidden files are ignored */
+    private boolean ignoreHidden;
+
+    /** True once the search has been cancelled */
+    private volatile boolean cancelled;
+
+
+    /**
+     * Creates a new search that runs in as many threads as there are available processors.
+     *
+     * @param filter filter that files must match to be reported
+     * @param listener receives the files that are examined and found
+     */
+    public ParallelFileSearch(FileFilter filter, Listener listener) {
+        this(filter, listener, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new search that runs in the given number of threads.
+     *
+     * @param filter filter that files must match to be reported
+     * @param listener receives the files that are examined and found
+     * @param parallelism number of threads the search runs in, must be greater than 0
+     */
+    public ParallelFileSearch(FileFilter filter, Listener listener, int parallelism) {
+        this.filter = filter;
+        this.listener = listener;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets whether subfolders of the start folder are searched, <code>true</code> by default.
+     *
+     * @param searchSubfolders <code>true</code> to search subfolders
+     */
+    public void setSearchSubfolders(boolean searchSubfolders) {
+        this.searchSubfolders = searchSubfolders;
+    }
+
+    /**
+     * Sets whether the contents of archives are searched, <code>false</code> by default.
+     *
+     * @param searchArchives <code>true</code> to search the contents of archives
+     */
+    public void setSearchArchives(boolean searchArchives) {
+        this.searchArchives = searchArchives;
+    }
+
+    /**
+     * Sets whether hidden files and folders are ignored, <code>false</code> by default.
+     *
+     * @param ignoreHidden <code>true</code> to ignore hidden files and folders
+     */
+    public void setIgnoreHidden(boolean ignoreHidden) {
+        this.ignoreHidden = ignoreHidden;
+    }
+
+    /**
+     * Returns the number of threads the search runs in.
+     *
+     * @return the number of threads the search runs in
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Searches the given folder, blocking until all files have been examined or the search has been
+     * {@link #cancel() cancelled}. The start folder is examined itself, like its children.
+     *
+     * @param startFolder the folder to search
+     */
+    public void search(AbstractFile startFolder) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(ParallelFileSearch.class.getSimpleName() + " worker " + thread.getPoolIndex());
+                return thread;
+            }
+        }, null, false);
+
+        try {
+            examine(startFolder);
+            if (startFolder.isDirectory()) {
+                pool.invoke(new FolderTask(startFolder, false));
+            } else if (searchArchives && startFolder.isArchive()) {
+                pool.invoke(new FolderTask(startFolder, true));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Cancels the search: files that haven't been examined yet are not examined, and {@link #search(AbstractFile)}
+     * returns as soon as the files currently being examined have been examined.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns <code>true</code> if the search has been cancelled.
+     *
+     * @return <code>true</code> if the search has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Examines the given file, and reports it to the listener if it matches the filter.
+     */
+    private void examine(AbstractFile file) {
+        listener.fileVisited(file);
+        if (cancelled) {
+            return;
+        }
+
+        try {
+            if (filter.match(file)) {
+                listener.fileFound(file);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.debug("Caught exception while examining " + file, e);
+        }
+    }
+
+
+    /**
+     * Lists a folder or an archive, examines its children and searches its subfolders.
+     */
+    private class FolderTask extends RecursiveAction {
+
+        private final AbstractFile folder;
+
+        /** True if the folder is an archive or is located inside an archive: children are examined sequentially */
+        private final boolean inArchive;
+
+        private FolderTask(AbstractFile folder, boolean inArchive) {
+            this.folder = folder;
+            this.inArchive = inArchive;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+
+            AbstractFile children[];
+            try {
+                children = folder.ls();
+            } catch (Throwable e) {
+                LOGGER.debug("Could not list " + folder, e);
+                return;
+            }
+
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            List<AbstractFile> files = new ArrayList<>(FILES_PER_TASK);
+            for (AbstractFile child : children) {
+                if (ignoreHidden && child.isHidden()) {
+                    continue;
+                }
+
+                // Folders are cheap to examine, they are examined here and searched by their own task
+                if (child.isDirectory() && !child.isSymlink()) {
+                    examine(child);
+                    if (searchSubfolders) {
+                        tasks.add(new FolderTask(child, inArchive));
+                    }
+                    continue;
+                }
+
+                files.add(child);
+                if (files.size() == FILES_PER_TASK) {
+                    tasks.add(new FilesTask(files));
+                    files = new ArrayList<>(FILES_PER_TASK);
+                }
+            }
+            if (!files.isEmpty()) {
+                tasks.add(new FilesTask(files));
+            }
+
+            if (inArchive) {
+                for (ForkJoinTask<?> task : tasks) {
+                    task.invoke();
+                }
+            } else {
+                invokeAll(tasks);
+            }
+        }
+    }
+
+    /**
+     * Examines a group of files that are not folders, and searches the contents of archives.
+     */
+    private class FilesTask extends RecursiveAction {
+
+        private final List<AbstractFile> files;
+
+        private FilesTask(List<AbstractFile> files) {
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            for (AbstractFile file : files) {
+                if (cancelled) {
+                    return;
+                }
+                examine(file);
+
+                if (searchArchives && file.isArchive()) {
+                    new FolderTask(file, true).invoke();
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the files that are examined and found by a {@link ParallelFileSearch}. Methods are called from the
+     * search's worker threads, possibly concurrently.
+     */
+    public interface Listener {
+
+        /**
+         * Called before a file is examined. This method may block, the file being examined only when it returns.
+         *
+         * @param file the file about to be examined
+         */
+        void fileVisited(AbstractFile file);
+
+        /**
+         * Called when a file matching the filter has been found.
+         *
+         * @param file the file that has been found
+         */
+        void fileFound(AbstractFile file);
+    }
+}
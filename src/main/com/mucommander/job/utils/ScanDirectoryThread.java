@@ -21,64 +21,113 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.util.FileSet;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
- * Thread to calculating the total size of files
+ * Thread to calculating the total size of files.
+ *
+ * The thread walks the files ahead of the job that processes them, in the same order. Folders listings are shared
+ * with the job through {@link #ls(AbstractFile)}, so that each folder is listed only once: by the scan if it gets
+ * there first, which is usually the case, otherwise by the job. While the scan is running, the totals are
+ * extrapolated from the part of the tree that has been scanned, see {@link #getEstimatedTotalBytes()}.
  */
 public class ScanDirectoryThread extends Thread {
 
     private final FileSet files;
-    private long totalBytes;
-    private boolean completed;
+    private volatile long totalBytes;
+    private volatile boolean completed;
     private long executionTime;
-    private long filesCount;
-    private boolean interrupted;
+    private volatile long filesCount;
+    private volatile boolean interrupted;
     private final boolean calcSize;
+    private final boolean shareListings;
+
+    /** Fraction of the tree that has been scanned, from 0 to 1 */
+    private volatile double scannedFraction;
+
+    /**
+     * Maximum number of listings the scan keeps for the job. Beyond it, the scan is too far ahead of the job, or the job
+     * skips folders, and the folders it lists are only counted: the job lists them again when it gets there.
+     */
+    final static int MAX_PENDING_LISTINGS = 1000;
+
+    /** Listings of the folders that have been listed by one of the scan and the job and not yet used by the other */
+    private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+
+    /** Maximum number of listings the scan keeps for the job */
+    private final int maxPendingListings;
 
     public ScanDirectoryThread(FileSet files) {
-        this.files = files;
-        this.calcSize = true;
-        setName("ScanDirectoryThread " + files.getBaseFolder());
+        this(files, true);
     }
 
     public ScanDirectoryThread(FileSet files, boolean calcSize) {
+        this(files, calcSize, true);
+    }
+
+    /**
+     * @param files the files to scan
+     * @param calcSize if true, the size of the files is computed
+     * @param shareListings if true, folder listings are kept for the job to get them with {@link #ls(AbstractFile)};
+     * must be false if the job does not list the folders, otherwise the listings would be kept in memory for nothing
+     */
+    public ScanDirectoryThread(FileSet files, boolean calcSize, boolean shareListings) {
+        this(files, calcSize, shareListings, MAX_PENDING_LISTINGS);
+    }
+
+    /**
+     * @param maxPendingListings maximum number of listings the scan keeps for the job
+     */
+    ScanDirectoryThread(FileSet files, boolean calcSize, boolean shareListings, int maxPendingListings) {
         this.files = files;
         this.calcSize = calcSize;
+        this.shareListings = shareListings;
+        this.maxPendingListings = maxPendingListings;
         setName("ScanDirectoryThread " + files.getBaseFolder());
     }
 
     @Override
     public void run() {
         executionTime = System.currentTimeMillis();
-        for (AbstractFile file : files) {
+        int nbFiles = files.size();
+        for (int i = 0; i < nbFiles; i++) {
             if (interrupted) {
                 break;
             }
             try {
-                processFile(file);
+                processFile(files.get(i), (double) i / nbFiles, 1.0 / nbFiles);
             } catch (Throwable ignore) {}
+            scannedFraction = (double) (i + 1) / nbFiles;
         }
         completed = true;
         executionTime = System.currentTimeMillis() - executionTime;
 //System.out.println("finished  " + totalBytes + " " + filesCount + "    time " + executionTime);
     }
 
-    private void processFile(AbstractFile file) {
+    /**
+     * Scans the given file, which makes up <code>weight</code> of the whole tree and starts at <code>start</code>.
+     */
+    private void processFile(AbstractFile file, double start, double weight) {
         if (interrupted) {
             return;
         }
+        scannedFraction = start;
         filesCount++;
         if (file.isSymlink()) {
             return; // ignore symlinks
         }
         if (file.isDirectory()) {
             try {
-                AbstractFile[] subfiles = file.ls();
-                for (AbstractFile subfile : subfiles ) {
+                AbstractFile[] subfiles = list(file, false);
+                for (int i = 0; i < subfiles.length; i++) {
                     if (interrupted) {
                         return;
                     }
-                    processFile(subfile);
+                    processFile(subfiles[i], start + weight * i / subfiles.length, weight / subfiles.length);
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -90,6 +139,81 @@ public class ScanDirectoryThread extends Thread {
         }
     }
 
+    /**
+     * Returns the children of the given folder, listing it only if the other party (the scan or the job) has not
+     * listed it yet or is not listing it already. A listing is kept only until the other party retrieves it, and the
+     * scan keeps no more than <code>maxPendingListings</code> of them.
+     *
+     * @param folder the folder to list
+     * @param byJob true if called by the job, false if called by the scan
+     */
+    private AbstractFile[] list(AbstractFile folder, boolean byJob) throws IOException {
+        if (!shareListings) {
+            return folder.ls();
+        }
+
+        String key = folder.getAbsolutePath();
+        Listing existing = listings.get(key);
+        if (existing == null) {
+            if (byJob && (completed || interrupted)) {
+                // The scan will not ask for the listing
+                return folder.ls();
+            }
+            if (!byJob && listings.size() >= maxPendingListings) {
+                // Too many listings are waiting for the job, this one would only take up memory until it gets there
+                return folder.ls();
+            }
+
+            Listing listing = new Listing();
+            existing = listings.putIfAbsent(key, listing);
+            if (existing == null) {
+                AbstractFile[] children;
+                try {
+                    children = folder.ls();
+                } catch (IOException | RuntimeException e) {
+                    // The other party lists the folder itself
+                    listings.remove(key, listing);
+                    listing.children.completeExceptionally(e);
+                    throw e;
+                }
+                listing.children.complete(children);
+                if (byJob && (completed || interrupted)) {
+                    // The scan has stopped in the meantime, without getting to the folder
+                    listings.remove(key, listing);
+                }
+                return children;
+            }
+        }
+
+        // The listing has been handed over, it is not needed anymore
+        listings.remove(key, existing);
+        try {
+            return existing.children.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (byJob) {
+                // The job handles errors itself, with a retry dialog
+                return folder.ls();
+            }
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the children of the given folder, as listed by the scan if it got to the folder first. Jobs call this
+     * method instead of {@link AbstractFile#ls()} for the folders they process.
+     *
+     * @param folder the folder to list
+     * @return the children of the folder
+     * @throws IOException if the folder could not be listed
+     */
+    public AbstractFile[] ls(AbstractFile folder) throws IOException {
+        return list(folder, true);
+    }
+
     public long getTotalBytes() {
         return totalBytes;
     }
@@ -102,7 +226,56 @@ public class ScanDirectoryThread extends Thread {
         return filesCount;
     }
 
+    /**
+     * Returns the total size of the files, extrapolated from the part of the tree that has been scanned while the scan
+     * is running, or <code>-1</code> if nothing has been scanned yet. The estimate gets closer to the actual value as
+     * the scan progresses.
+     *
+     * @return the estimated total size of the files
+     */
+    public long getEstimatedTotalBytes() {
+        return estimate(totalBytes);
+    }
+
+    /**
+     * Returns the number of files, extrapolated from the part of the tree that has been scanned while the scan is
+     * running, or <code>-1</code> if nothing has been scanned yet.
+     *
+     * @return the estimated number of files
+     */
+    public long getEstimatedFilesCount() {
+        return estimate(filesCount);
+    }
+
+    private long estimate(long scannedValue) {
+        if (completed) {
+            return scannedValue;
+        }
+        double fraction = scannedFraction;
+        if (fraction <= 0 || scannedValue <= 0) {
+            return -1;
+        }
+        return (long) (scannedValue / fraction);
+    }
+
     public void interrupt() {
         interrupted = true;
+        // The job lists the folders itself from now on
+        listings.clear();
+    }
+
+    /**
+     * Returns the number of listings that have not been retrieved by the other party yet.
+     */
+    int getNbPendingListings() {
+        return listings.size();
+    }
+
+
+    /**
+     * The children of a folder, listed by the scan or the job for both of them.
+     */
+    private static class Listing {
+        final CompletableFuture<AbstractFile[]> children = new CompletableFuture<>();
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.utils;
+
+import com.mucommander.commons.io.BufferPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of worker threads used by {@link com.mucommander.job.TransferFileJob} to transfer several files
+ * at once.
+ *
+ * <p>The number of tasks that can be queued is bounded: {@link #execute(Runnable)} blocks the calling thread while
+ * the pool is saturated, so that the thread walking the source tree never gets too far ahead of the transfers.
+ * {@link #waitForCompletion()} blocks until all submitted tasks have been carried out.</p>
+ */
+public class TransferThreadPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TransferThreadPool.class);
+
+    /** Maximum number of tasks queued per worker thread, on top of the one being executed */
+    private final static int QUEUED_TASKS_PER_THREAD = 2;
+
+    private final ExecutorService executor;
+
+    /** Bounds the number of tasks that are either running or waiting to be run */
+    private final Semaphore slots;
+
+    /** Number of tasks submitted and not finished yet, guarded by the instance lock */
+    private int pendingTasks;
+
+    /**
+     * Creates a new pool with the given number of worker threads.
+     *
+     * @param nbThreads number of worker threads, must be greater than 0
+     * @param name name used as a prefix for the worker threads' names
+     */
+    public TransferThreadPool(int nbThreads, final String name) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(nbThreads, r -> {
+            Thread thread = new Thread(() -> {
+                try {
+                    r.run();
+                } finally {
+                    // Make the buffers cached by the worker available to other threads
+                    BufferPool.releaseThreadCache();
+                }
+            }, name + " worker " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.slots = new Semaphore(nbThreads * (1 + QUEUED_TASKS_PER_THREAD));
+    }
+
+    /**
+     * Schedules the given task for execution, blocking while the pool is saturated.
+     *
+     * @param task the task to execute
+     * @return <code>false</code> if the calling thread was interrupted while waiting for a free slot, or if the pool
+     * has been {@link #shutdown() shut down}, in which case the task has not been scheduled
+     */
+    public boolean execute(final Runnable task) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            return false;
+        }
+
+        synchronized(this) {
+            pendingTasks++;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch(Throwable t) {
+                    LOGGER.info("Caught exception in transfer task", t);
+                } finally {
+                    taskFinished();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The pool has been shut down
+            taskFinished();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases the slot of a task that has been carried out or rejected.
+     */
+    private void taskFinished() {
+        slots.release();
+        synchronized(this) {
+            pendingTasks--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until all the tasks that have been scheduled so far are finished.
+     */
+    public synchronized void waitForCompletion() {
+        while (pendingTasks > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Loop one more time
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks that have been scheduled and are not finished yet.
+     *
+     * @return the number of tasks that have been scheduled and are not finished yet
+     */
+    public synchronized int getPendingTasks() {
+        return pendingTasks;
+    }
+
+    /**
+     * Stops accepting tasks. Tasks that are currently running are not interrupted, they are expected to be stopped
+     * by closing their streams.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -8,4 +8,12 @@ package com.mucommander.search;
 public class SearchFields {
     public static final String PATH = "path";
     public static final String FILE_NAME = "file_name";
+    /** Absolute path of the folder containing the file */
+    public static final String PARENT = "parent";
+    /** Size of the file when it was indexed, stored only */
+    public static final String SIZE = "size";
+    /** Date of the file when it was indexed, stored only */
+    public static final String DATE = "date";
+    /** Whether the file is a folder, stored only */
+    public static final String DIRECTORY = "directory";
 }
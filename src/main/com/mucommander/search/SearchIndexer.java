@@ -0,0 +1,532 @@
+package com.mucommander.search;
+
+import com.mucommander.PlatformManager;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FolderWatchListener;
+import com.mucommander.commons.file.util.FolderWatcher;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Maintains the lucene index of file names searched by {@link SearchTask}, in a background thread.
+ *
+ * <p>Each document records the path, name, parent folder, size and date of a file. Folders are indexed incrementally:
+ * their children are compared with the documents of the index, only the files whose size or date changed are indexed
+ * again, and the documents of files that don't exist anymore are deleted in a single batch per folder.
+ * Once a folder has been indexed, the local folders it contains are watched with {@link FolderWatcher}, and the
+ * changes they report are queued and applied to the index as they come, so that searches can be answered from the
+ * index without walking the folder again. The folders that cannot be watched (remote folders, folders beyond
+ * {@link #MAX_WATCHED_FOLDERS}, or folders the platform refuses to watch) are listed again each time a folder that
+ * contains them is updated.</p>
+ *
+ * <p>The indexing thread uses at most a fraction of one CPU, its <i>CPU budget</i>: after each folder, it sleeps in
+ * proportion to the time spent indexing it. The budget is read from the {@link MuPreference#SEARCH_INDEX_CPU_BUDGET}
+ * preference.</p>
+ */
+public class SearchIndexer implements FolderWatchListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexer.class);
+
+    /** Maximum number of folders that are watched for changes */
+    public final static int MAX_WATCHED_FOLDERS = 4096;
+
+    /** Maximum number of milliseconds between two refreshes of the searcher while a folder is being indexed */
+    private final static long REFRESH_PERIOD = 1000;
+
+    private static SearchIndexer instance;
+
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    /** Runs the indexing tasks one after the other */
+    private final ExecutorService executor;
+
+    /** Percentage of one CPU the indexing thread may use */
+    private volatile int cpuBudget;
+
+    /** Folders that have been fully indexed during this session, or are queued for indexing */
+    private final Map<String, Future<?>> indexedFolders = new HashMap<>();
+
+    /** Watches of the indexed local folders, by path, guarded by the lock of {@link #indexedFolders} */
+    private final Map<String, FolderWatcher.Watch> watches = new HashMap<>();
+
+    /** Indexed folders that are not watched, by path, guarded by the lock of {@link #indexedFolders} */
+    private final Map<String, AbstractFile> unwatchedFolders = new HashMap<>();
+
+    /** Time of the last refresh of the searcher, accessed by the indexing thread only */
+    private long lastRefresh;
+
+
+    /**
+     * Returns the indexer of the index stored in the preferences folder, opening it the first time.
+     *
+     * @return the indexer
+     * @throws IOException if the index could not be opened
+     */
+    public static synchronized SearchIndexer getInstance() throws IOException {
+        if (instance == null) {
+            File indexPath = new File(PlatformManager.getPreferencesFolder().getAbsolutePath(), "index");
+            if (!indexPath.exists()) {
+                indexPath.mkdir();
+            }
+            instance = new SearchIndexer(FSDirectory.open(indexPath));
+            instance.setCpuBudget(MuConfigurations.getPreferences().getVariable(
+                    MuPreference.SEARCH_INDEX_CPU_BUDGET, MuPreferences.DEFAULT_SEARCH_INDEX_CPU_BUDGET));
+        }
+        return instance;
+    }
+
+    SearchIndexer(Directory dir) throws IOException {
+        IndexWriterConfig iwc = new IndexWriterConfig(Version.LUCENE_43, new StandardAnalyzer(Version.LUCENE_43));
+        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        this.writer = new IndexWriter(dir, iwc);
+        this.writer.commit();
+        this.searcherManager = new SearcherManager(writer, true, null);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Search indexer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.cpuBudget = MuPreferences.DEFAULT_SEARCH_INDEX_CPU_BUDGET;
+    }
+
+    /**
+     * Sets the percentage of one CPU the indexing thread may use.
+     *
+     * @param cpuBudget a percentage between 1 and 100
+     */
+    public void setCpuBudget(int cpuBudget) {
+        this.cpuBudget = Math.max(1, Math.min(100, cpuBudget));
+    }
+
+    /**
+     * Queues the indexing of the given folder and of its subfolders. If the folder or one of its parents has already
+     * been indexed during this session, the index is kept up to date by the watched folders: only the folders it
+     * contains that are not watched are listed again, and the returned future is already done if there are none.
+     *
+     * @param folder the folder to index
+     * @return a future that is done when the folder has been indexed
+     */
+    public Future<?> update(final AbstractFile folder) {
+        String path = folder.getAbsolutePath();
+        synchronized (indexedFolders) {
+            for (Map.Entry<String, Future<?>> entry : indexedFolders.entrySet()) {
+                if (isSameOrParent(entry.getKey(), path)) {
+                    final List<String> staleFolders = getUnwatchedFolders(path);
+                    if (staleFolders.isEmpty()) {
+                        return entry.getValue();
+                    }
+                    return executor.submit(() -> {
+                        reindexFolders(staleFolders);
+                        return null;
+                    });
+                }
+            }
+            Future<?> future = executor.submit(() -> {
+                try {
+                    indexFolder(folder, true);
+                } catch (IOException e) {
+                    // Index the folder again next time
+                    synchronized (indexedFolders) {
+                        indexedFolders.remove(path);
+                    }
+                    throw e;
+                }
+                return null;
+            });
+            indexedFolders.put(path, future);
+            return future;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given folder has been indexed, during this session or a previous one.
+     *
+     * @param path absolute path of the folder
+     * @return <code>true</code> if the folder is in the index
+     * @throws IOException if the index could not be read
+     */
+    public boolean isIndexed(String path) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searcher.search(new TermQuery(new Term(SearchFields.PATH, path)), 1).totalHits > 0;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Searches the index and returns the paths of the best matching files.
+     *
+     * @param query the query
+     * @param maxResults maximum number of paths to return
+     * @return the paths of the matching files
+     * @throws IOException if the index could not be read
+     */
+    public List<String> search(Query query, int maxResults) throws IOException {
+        searcherManager.maybeRefresh();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopScoreDocCollector collector = TopScoreDocCollector.create(maxResults, true);
+            searcher.search(query, collector);
+            List<String> paths = new ArrayList<>();
+            for (ScoreDoc hit : collector.topDocs().scoreDocs) {
+                paths.add(searcher.doc(hit.doc).get(SearchFields.PATH));
+            }
+            return paths;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Queues the removal of the documents of the given files, which don't exist anymore. The documents are deleted
+     * at once.
+     *
+     * @param paths absolute paths of the files to remove from the index
+     */
+    public void remove(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        final Term[] terms = new Term[paths.size()];
+        int i = 0;
+        for (String path : paths) {
+            terms[i++] = new Term(SearchFields.PATH, path);
+        }
+        executor.execute(() -> {
+            try {
+                writer.deleteDocuments(terms);
+                writer.commit();
+                searcherManager.maybeRefresh();
+            } catch (IOException e) {
+                LOGGER.info("Could not remove files from the index", e);
+            }
+        });
+    }
+
+    @Override
+    public void folderChanged(final AbstractFile folder, Set<String> changedNames) {
+        // The listed folder is compared with the index whatever the names that changed, which is cheap compared to
+        // the listing. The whole folder is indexed again if it has been replaced.
+        final boolean recursive = changedNames == null;
+        executor.execute(() -> {
+            try {
+                if (folder.exists()) {
+                    indexFolder(folder, recursive);
+                } else {
+                    String path = folder.getAbsolutePath();
+                    writer.deleteDocuments(new TermQuery(new Term(SearchFields.PATH, path)),
+                            new PrefixQuery(new Term(SearchFields.PATH, withSeparator(folder, path))));
+                    writer.commit();
+                    searcherManager.maybeRefresh();
+                    unwatch(path);
+                }
+            } catch (IOException e) {
+                LOGGER.info("Could not index changes of " + folder, e);
+            }
+        });
+    }
+
+
+    /**
+     * Returns the paths of the unwatched folders that are the given folder or are contained in it, parents first.
+     */
+    private List<String> getUnwatchedFolders(String path) {
+        List<String> folders = new ArrayList<>();
+        for (String folderPath : unwatchedFolders.keySet()) {
+            if (isSameOrParent(path, folderPath)) {
+                folders.add(folderPath);
+            }
+        }
+        folders.sort(null);
+        return folders;
+    }
+
+    /**
+     * Indexes the children of the given unwatched folders again, in the indexing thread. The folders that have been
+     * deleted in the meantime, along with their parent, are skipped.
+     */
+    private void reindexFolders(List<String> paths) throws IOException {
+        for (String path : paths) {
+            AbstractFile folder;
+            synchronized (indexedFolders) {
+                folder = unwatchedFolders.get(path);
+            }
+            if (folder != null) {
+                indexFolder(folder, false);
+            }
+        }
+    }
+
+    /**
+     * Indexes the given folder, in the indexing thread. If <code>recursive</code> is <code>true</code>, its subfolders
+     * are indexed too, otherwise only the subfolders that are not in the index yet are.
+     */
+    private void indexFolder(AbstractFile root, boolean recursive) throws IOException {
+        Deque<AbstractFile> folders = new ArrayDeque<>();
+        folders.add(root);
+        // The folder itself, so that it can be found and isIndexed() knows about it
+        if (!isIndexed(root.getAbsolutePath())) {
+            writer.updateDocument(new Term(SearchFields.PATH, root.getAbsolutePath()), createDocument(root, getParentPath(root)));
+        }
+        lastRefresh = System.currentTimeMillis();
+        try {
+            while (!folders.isEmpty()) {
+                AbstractFile folder = folders.pollFirst();
+                long start = System.nanoTime();
+
+                folders.addAll(indexChildren(folder, recursive));
+                watch(folder);
+
+                throttle(System.nanoTime() - start);
+                if (System.currentTimeMillis() - lastRefresh > REFRESH_PERIOD) {
+                    searcherManager.maybeRefresh();
+                    lastRefresh = System.currentTimeMillis();
+                }
+            }
+        } finally {
+            writer.commit();
+            searcherManager.maybeRefresh();
+        }
+    }
+
+    /**
+     * Compares the children of the given folder with their documents, indexes those which are new or have changed,
+     * and deletes the documents of those which don't exist anymore.
+     *
+     * @return the subfolders to index next: all of them if <code>recursive</code> is <code>true</code>, only those
+     * which were not in the index otherwise
+     */
+    private List<AbstractFile> indexChildren(AbstractFile folder, boolean recursive) throws IOException {
+        String folderPath = folder.getAbsolutePath();
+        List<AbstractFile> subfolders = new ArrayList<>();
+
+        AbstractFile[] children;
+        try {
+            children = folder.ls();
+        } catch (NullPointerException e) {
+            //com.github.junrar.Archive setFile
+            //exception in archive constructor maybe file is encrypted or currupt
+            return subfolders;
+        } catch (IOException e) {
+            //broken channel or archive error can occur
+            return subfolders;
+        }
+
+        Map<String, Document> indexed = getChildDocuments(folderPath);
+        for (AbstractFile child : children) {
+            //{@link com.mucommander.commons.file.AbstractArchiveFile#ls} may return itself!
+            if (folder.equals(child)) {
+                continue;
+            }
+            String path = child.getAbsolutePath();
+            Document doc = indexed.remove(path);
+            if (doc == null || getLong(doc, SearchFields.SIZE) != child.getSize() || getLong(doc, SearchFields.DATE) != child.getDate()) {
+                writer.updateDocument(new Term(SearchFields.PATH, path), createDocument(child, folderPath));
+            }
+            if ((recursive || doc == null) && isIndexedFolder(child)) {
+                subfolders.add(child);
+            }
+        }
+
+        // Delete the documents of the files that have disappeared, and of the files they contained
+        if (!indexed.isEmpty()) {
+            List<Query> deletions = new ArrayList<>();
+            for (Map.Entry<String, Document> entry : indexed.entrySet()) {
+                deletions.add(new TermQuery(new Term(SearchFields.PATH, entry.getKey())));
+                if (getLong(entry.getValue(), SearchFields.DIRECTORY) != 0) {
+                    deletions.add(new PrefixQuery(new Term(SearchFields.PATH, withSeparator(folder, entry.getKey()))));
+                    unwatch(entry.getKey());
+                }
+            }
+            writer.deleteDocuments(deletions.toArray(new Query[deletions.size()]));
+        }
+
+        return subfolders;
+    }
+
+    /**
+     * Returns the documents of the children of the given folder, by path.
+     */
+    private Map<String, Document> getChildDocuments(String folderPath) throws IOException {
+        final Map<String, Document> docs = new HashMap<>();
+        searcherManager.maybeRefresh();
+        final IndexSearcher searcher = searcherManager.acquire();
+        try {
+            final List<Integer> ids = new ArrayList<>();
+            searcher.search(new TermQuery(new Term(SearchFields.PARENT, folderPath)), new Collector() {
+                private int docBase;
+
+                @Override
+                public void setScorer(Scorer scorer) {
+                }
+
+                @Override
+                public void collect(int doc) {
+                    ids.add(docBase + doc);
+                }
+
+                @Override
+                public void setNextReader(AtomicReaderContext context) {
+                    docBase = context.docBase;
+                }
+
+                @Override
+                public boolean acceptsDocsOutOfOrder() {
+                    return true;
+                }
+            });
+            for (int id : ids) {
+                Document doc = searcher.doc(id);
+                docs.put(doc.get(SearchFields.PATH), doc);
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return docs;
+    }
+
+    /**
+     * Sleeps long enough for the time spent working to stay within the CPU budget.
+     */
+    private void throttle(long workNanos) {
+        int budget = cpuBudget;
+        if (budget >= 100) {
+            return;
+        }
+        long sleepMillis = workNanos * (100 - budget) / budget / 1000000;
+        if (sleepMillis > 0) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Watches the given folder if it is not watched already, or remembers that it is not watched if it cannot be.
+     */
+    private void watch(AbstractFile folder) {
+        String path = folder.getAbsolutePath();
+        synchronized (indexedFolders) {
+            if (watches.containsKey(path)) {
+                return;
+            }
+            FolderWatcher.Watch watch = watches.size() < MAX_WATCHED_FOLDERS ? FolderWatcher.watch(folder, this) : null;
+            if (watch != null) {
+                watches.put(path, watch);
+                unwatchedFolders.remove(path);
+            } else {
+                unwatchedFolders.put(path, folder);
+            }
+        }
+    }
+
+    /**
+     * Stops watching the given folder and the folders it contains, which have been deleted.
+     */
+    private void unwatch(String path) {
+        synchronized (indexedFolders) {
+            Set<String> removed = new HashSet<>();
+            for (Map.Entry<String, FolderWatcher.Watch> entry : watches.entrySet()) {
+                if (isSameOrParent(path, entry.getKey())) {
+                    entry.getValue().cancel();
+                    removed.add(entry.getKey());
+                }
+            }
+            watches.keySet().removeAll(removed);
+            unwatchedFolders.keySet().removeIf(folderPath -> isSameOrParent(path, folderPath));
+        }
+    }
+
+    private static Document createDocument(AbstractFile file, String parentPath) {
+        Document doc = new Document();
+        // Indexed but not tokenized, to be searched by exact value or prefix
+        doc.add(new StringField(SearchFields.PATH, file.getAbsolutePath(), Field.Store.YES));
+        doc.add(new StringField(SearchFields.FILE_NAME, file.getName(), Field.Store.YES));
+        doc.add(new StringField(SearchFields.PARENT, parentPath, Field.Store.YES));
+        // Only used to tell whether the file has changed since it was indexed
+        doc.add(new StoredField(SearchFields.SIZE, file.getSize()));
+        doc.add(new StoredField(SearchFields.DATE, file.getDate()));
+        doc.add(new StoredField(SearchFields.DIRECTORY, file.isDirectory() ? 1 : 0));
+        return doc;
+    }
+
+    /**
+     * Returns the value of a numeric stored field, -1 if the document predates the field.
+     */
+    private static long getLong(Document doc, String name) {
+        IndexableField field = doc.getField(name);
+        return field == null || field.numericValue() == null ? -1 : field.numericValue().longValue();
+    }
+
+    private static String getParentPath(AbstractFile file) {
+        AbstractFile parent = file.getParent();
+        return parent == null ? "" : parent.getAbsolutePath();
+    }
+
+    /**
+     * Returns <code>true</code> if the contents of the given file are indexed.
+     */
+    private static boolean isIndexedFolder(AbstractFile file) {
+        return file.isBrowsable() && !file.isHidden() && !file.isSymlink();
+    }
+
+    private static String withSeparator(AbstractFile file, String path) {
+        String separator = file.getSeparator();
+        return path.endsWith(separator) ? path : path + separator;
+    }
+
+    private static boolean isSameOrParent(String parentPath, String path) {
+        if (!path.startsWith(parentPath)) {
+            return false;
+        }
+        if (path.length() == parentPath.length()) {
+            return true;
+        }
+        char c = path.charAt(parentPath.length());
+        return c == '/' || c == '\\' || parentPath.endsWith("/") || parentPath.endsWith("\\");
+    }
+}
@@ -326,6 +326,7 @@ public abstract class TransferDestinationDialog extends JobDialog implements Act
         if (job != null) {
             job.setAutoSkipErrors(skipErrors);
             job.setIntegrityCheckEnabled(verifyIntegrity);
+            job.setTransferThreads(TransferFileJob.getConfiguredTransferThreads(files.getBaseFolder(), resolvedDest.getDestinationFolder()));
             progressDialog.start(job);
         }
     }
@@ -36,6 +36,7 @@ import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.runtime.OsFamily;
 import com.mucommander.job.CopyJob;
 import com.mucommander.job.MoveJob;
+import com.mucommander.job.TransferFileJob;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.dialog.file.FileCollisionDialog;
 import com.mucommander.ui.dialog.file.ProgressDialog;
@@ -280,12 +281,14 @@ public class FileDropTargetListener implements DropTargetListener {
                 // Start moving files
                 ProgressDialog progressDialog = new ProgressDialog(mainFrame, Translator.get("move_dialog.moving"));
                 MoveJob moveJob = new MoveJob(progressDialog, mainFrame, droppedFiles, destFolder, null, FileCollisionDialog.ASK_ACTION, false);
+                moveJob.setTransferThreads(TransferFileJob.getConfiguredTransferThreads(droppedFiles.getBaseFolder(), destFolder));
                 progressDialog.start(moveJob);
             }
             else {
                 // Start copying files
                 ProgressDialog progressDialog = new ProgressDialog(mainFrame, Translator.get("copy_dialog.copying"));
                 CopyJob job = new CopyJob(progressDialog, mainFrame, droppedFiles, destFolder, null, CopyJob.Mode.COPY, FileCollisionDialog.ASK_ACTION);
+                job.setTransferThreads(TransferFileJob.getConfiguredTransferThreads(droppedFiles.getBaseFolder(), destFolder));
                 progressDialog.start(job);
             }
         }
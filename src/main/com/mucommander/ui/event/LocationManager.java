@@ -19,14 +19,19 @@
 package com.mucommander.ui.event;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.WeakHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileListingHandler;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.UnsupportedFileOperationException;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.core.FolderChangeMonitor;
 import com.mucommander.core.GlobalLocationHistory;
 import com.mucommander.ui.main.ConfigurableFolderFilter;
@@ -52,6 +57,12 @@ public class LocationManager {
 
 	private FolderChangeMonitor folderChangeMonitor;
 
+	/** Lists the current folder, null until a folder has been set */
+	private FolderListingThread folderListingThread;
+
+	/** Lock that protects the state of folder listing threads */
+	private final Object FOLDER_LISTING_LOCK = new Object();
+
     /**
      * Creates a new LocationManager that manages location events listeners and broadcasts for the specified FolderPanel.
      *
@@ -74,16 +85,22 @@ public class LocationManager {
      */
     public void setCurrentFolder(AbstractFile folder, AbstractFile fileToSelect, boolean changeLockedTab) {
     	LOGGER.trace("calling ls()");
-    	AbstractFile[] children;
-		try {
-			children = folder.ls(configurableFolderFilter);
-		} catch (Exception e) {
-			LOGGER.debug("Couldn't ls children of " + folder.getAbsolutePath() + ", error: " + e.getMessage());
-			children = new AbstractFile[0];
-		}
+    	// The folder is listed in a separate thread: it is set with the first files that are listed, and the
+    	// remaining ones are added to the FolderPanel as they are listed.
+    	FolderListingThread listingThread = new FolderListingThread(folder);
+    	synchronized(FOLDER_LISTING_LOCK) {
+    		if (folderListingThread != null)
+    			folderListingThread.cancel();
+    		folderListingThread = listingThread;
+    	}
+    	listingThread.start();
+
+    	AbstractFile[] children = listingThread.waitForFirstFiles();
 
     	folderPanel.setCurrentFolder(folder, children, fileToSelect, changeLockedTab);
 
+    	listingThread.firstFilesShown();
+
     	this.currentFolder = folder;
 
     	// Notify listeners that the location has changed
@@ -107,6 +124,15 @@ public class LocationManager {
         return folderChangeMonitor;
     }
 
+    /**
+     * Returns the filter that files must match to be displayed when listing folder contents.
+     *
+     * @return the filter that files must match to be displayed
+     */
+    public FileFilter getFolderFilter() {
+        return configurableFolderFilter;
+    }
+
     /**
      * Registers a LocationListener to receive notifications whenever the current folder of the associated FolderPanel
      * has or is being changed.
@@ -171,4 +197,107 @@ public class LocationManager {
         for(LocationListener listener : locationListeners.keySet())
             listener.locationFailed(new LocationEvent(folderPanel, folderURL));
     }
+
+
+    /**
+     * This thread lists a folder incrementally. The files that are listed until the folder is set in the FolderPanel
+     * are buffered, the ones that are listed afterwards are added to the FolderPanel's table as they are listed.
+     * The listing is cancelled when another folder is set.
+     */
+    private class FolderListingThread extends Thread implements FileListingHandler {
+
+        /** The folder to list */
+        private final AbstractFile folder;
+
+        /** Files that have been listed but not yet passed to the FolderPanel */
+        private final List<AbstractFile> files = new ArrayList<>();
+
+        /** True when the first files have been shown, files are then added to the FolderPanel as they are listed */
+        private boolean firstFilesShown;
+
+        /** True when the listing has ended, successfully or not */
+        private boolean done;
+
+        /** True if the listing has been cancelled */
+        private boolean cancelled;
+
+        private FolderListingThread(AbstractFile folder) {
+            super("FolderListingThread");
+            this.folder = folder;
+            setDaemon(true);
+        }
+
+        /**
+         * Waits until a first chunk of files has been listed or the listing has ended, and returns the files that have
+         * been listed so far. An empty array is returned if the folder could not be listed.
+         */
+        private AbstractFile[] waitForFirstFiles() {
+            synchronized(FOLDER_LISTING_LOCK) {
+                while (files.isEmpty() && !done && !cancelled) {
+                    try {
+                        FOLDER_LISTING_LOCK.wait();
+                    } catch (InterruptedException e) {
+                        // will keep looping
+                    }
+                }
+
+                AbstractFile[] firstFiles = files.toArray(new AbstractFile[files.size()]);
+                files.clear();
+                return firstFiles;
+            }
+        }
+
+        /**
+         * Called once the folder has been set with the first files, adds the files listed in the meantime to the
+         * FolderPanel.
+         */
+        private void firstFilesShown() {
+            synchronized(FOLDER_LISTING_LOCK) {
+                firstFilesShown = true;
+                if (!cancelled && !files.isEmpty())
+                    folderPanel.getFileTable().addFiles(files.toArray(new AbstractFile[files.size()]));
+                files.clear();
+            }
+        }
+
+        /**
+         * Cancels the listing, no files are passed to the FolderPanel once this method has returned.
+         */
+        private void cancel() {
+            synchronized(FOLDER_LISTING_LOCK) {
+                cancelled = true;
+                FOLDER_LISTING_LOCK.notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                folder.ls(configurableFolderFilter, this);
+            } catch (Exception e) {
+                LOGGER.debug("Couldn't ls children of " + folder.getAbsolutePath() + ", error: " + e.getMessage());
+            } finally {
+                synchronized(FOLDER_LISTING_LOCK) {
+                    done = true;
+                    FOLDER_LISTING_LOCK.notifyAll();
+                }
+            }
+        }
+
+        public boolean filesListed(AbstractFile[] chunk) {
+            synchronized(FOLDER_LISTING_LOCK) {
+                if (cancelled)
+                    return false;
+
+                if (firstFilesShown) {
+                    folderPanel.getFileTable().addFiles(chunk);
+                } else {
+                    Collections.addAll(files, chunk);
+                    FOLDER_LISTING_LOCK.notifyAll();
+                }
+
+                return true;
+            }
+        }
+    }
 }
@@ -20,7 +20,10 @@ package com.mucommander.ui.main.table;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.WeakHashMap;
 
 import javax.swing.*;
@@ -187,6 +190,21 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
      */
     private int pageSize;
 
+    /** Files of the current folder that have been listed but not yet added to the table, see {@link #addFiles(AbstractFile[])} */
+    private final List<AbstractFile> pendingFiles = new ArrayList<>();
+
+    /** True if the pending files are about to be added to the table in the event dispatch thread */
+    private boolean pendingFilesScheduled;
+
+    /** File to select once it has been listed, if it was not among the files the current folder was set with */
+    private AbstractFile fileToSelectWhenListed;
+
+    /** File that was selected instead of {@link #fileToSelectWhenListed} */
+    private AbstractFile defaultSelectedFile;
+
+    /** Files to mark once they have been listed, if they were not among the files the current folder was set with */
+    private FileSet filesToMarkWhenListed;
+
 
     public FileTable(MainFrame mainFrame, FolderPanel folderPanel, FileTableConfiguration conf) {
         super(new FileTableModel(), new FileTableColumnModel(conf));    // TODO !!!
@@ -289,6 +307,11 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         tableModel = newModel;
         cellRenderer = mode.createCellRenderer(this);
         tableModel.setSortInfo(sortInfo);
+        // Rows sorted before the attributes they are sorted by were loaded are sorted again once they are
+        tableModel.setSortListener(this::sortTable);
+        if (oldModel != newModel) {
+            oldModel.setSortListener(null);
+        }
         if (!fromConstructor) {
             doLayout();
             try {
@@ -600,6 +623,11 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         // Stop quick search in case it was being used before folder change
         quickSearch.stop();
 
+        // Discard the files of the previous folder that haven't been added yet
+        synchronized(pendingFiles) {
+            pendingFiles.clear();
+        }
+
         AbstractFile currentFolder = folderPanel.getCurrentFolder();
         // If we're refreshing the current folder, save the current selection and marked files
         // in order to restore them properly.
@@ -641,6 +669,123 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         }
     }
 
+    /**
+     * Adds the given files to the current folder, for folders that are listed incrementally: the current folder is set
+     * with the files that have been listed first, and the remaining ones are added as they are listed. The selected
+     * and marked files remain the same.
+     *
+     * <p>This method can be called from any thread and returns immediately: the files are added in the event dispatch
+     * thread, along with any other files added in the meantime. Files that have not been added yet when the current
+     * folder is changed are discarded.</p>
+     *
+     * @param files the files to add to the current folder
+     */
+    public void addFiles(AbstractFile[] files) {
+        synchronized(pendingFiles) {
+            Collections.addAll(pendingFiles, files);
+            if (pendingFilesScheduled) {
+                return;
+            }
+            pendingFilesScheduled = true;
+        }
+
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                addPendingFiles();
+            }
+        });
+    }
+
+    /**
+     * Adds the files that have been passed to {@link #addFiles(AbstractFile[])} to the table model. This method must be
+     * called from the event dispatch thread.
+     */
+    private void addPendingFiles() {
+        AbstractFile[] files;
+        synchronized(pendingFiles) {
+            files = pendingFiles.toArray(new AbstractFile[pendingFiles.size()]);
+            pendingFiles.clear();
+            pendingFilesScheduled = false;
+        }
+
+        if (files.length == 0) {
+            return;
+        }
+
+        // Add files, doesn't affect marked files
+        AbstractFile selectedFile = tableModel.getFileAt(currentRow, currentColumn);
+        tableModel.addFiles(files);
+
+        // Select the file the folder change was meant to select if it has just been listed, unless the selection has
+        // been changed in the meantime
+        if (fileToSelectWhenListed != null) {
+            if (selectedFile == null ? defaultSelectedFile != null : !selectedFile.equals(defaultSelectedFile)) {
+                fileToSelectWhenListed = null;
+            } else if (tableModel.getFileIndex(fileToSelectWhenListed) >= 0) {
+                selectedFile = fileToSelectWhenListed;
+                fileToSelectWhenListed = null;
+            }
+        }
+        if (selectedFile != null) {
+            selectFile(selectedFile);
+        }
+
+        // Restore the marked files that have just been listed
+        if (filesToMarkWhenListed != null) {
+            for (AbstractFile file : files) {
+                if (filesToMarkWhenListed.contains(file)) {
+                    int fileIndex = tableModel.getFileIndex(file);
+                    if (fileIndex != -1) {
+                        tableModel.setFileMarked(fileIndex, true);
+                    }
+                }
+            }
+        }
+
+        // Notify registered listeners, the number of files has changed
+        fireMarkedFilesChangedEvent();
+        resizeAndRepaint();
+    }
+
+    /**
+     * Refreshes the given children of the current folder, for folders whose changes are reported individually rather
+     * than detected by listing the folder again: updated files are added or replace the current ones, removed files are
+     * removed from the table. The selected file and marked files remain the same, provided they still exist.
+     *
+     * <p>This method can be called from any thread and returns immediately: the table is refreshed in the event
+     * dispatch thread, provided the given folder is still the current folder at that time.</p>
+     *
+     * @param folder the folder the given files are children of
+     * @param updated the files that have been created or modified
+     * @param removed the files that have been deleted
+     */
+    public void refreshFiles(final AbstractFile folder, final AbstractFile[] updated, final AbstractFile[] removed) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                // Changes are discarded if the current folder has been changed in the meantime
+                if (!folder.equals(tableModel.getCurrentFolder())) {
+                    return;
+                }
+
+                AbstractFile selectedFile = tableModel.getFileAt(currentRow, currentColumn);
+                int selectedIndex = tableModel.getFileIndexAt(currentRow, currentColumn);
+
+                tableModel.refreshFiles(updated, removed);
+
+                // Select the same file, or the closest row if it has been removed
+                int indexToSelect = selectedFile == null ? -1 : tableModel.getFileIndex(selectedFile);
+                if (indexToSelect < 0) {
+                    indexToSelect = Math.max(0, Math.min(selectedIndex, tableModel.getFilesCount() - 1));
+                }
+                selectFile(indexToSelect);
+
+                // Notify registered listeners, marked files may have been removed
+                fireMarkedFilesChangedEvent();
+                resizeAndRepaint();
+            }
+        });
+    }
+
     /**
      * Sets row height based on current cell's font and border, revalidates and repaints this JTable.
      */
@@ -1166,7 +1311,8 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
 
     /**
      * Sorts this FileTable and repaints it. Marked files and selected file will remain the same, only
-     * their position will have changed in the newly sorted table.
+     * their position will have changed in the newly sorted table. This method is also called by the table model when
+     * the attributes the rows are sorted by have been loaded in the background.
      */
     private void sortTable() {
         // Save currently selected file
@@ -2181,6 +2327,16 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                 selectFile(indexToSelect);
                 fireSelectedFileChangedEvent();
 
+                // The file to select and the marked files may not have been listed yet, see #addFiles
+                if (selectedFile != null && tableModel.getFileIndex(selectedFile) < 0) {
+                    fileToSelectWhenListed = selectedFile;
+                    defaultSelectedFile = tableModel.getFileAt(currentRow, currentColumn);
+                } else {
+                    fileToSelectWhenListed = null;
+                    defaultSelectedFile = null;
+                }
+                filesToMarkWhenListed = markedFiles;
+
                 // Restore previously marked files (if any / current folder hasn't changed)
                 if (markedFiles != null) {
                     // Restore previously marked files
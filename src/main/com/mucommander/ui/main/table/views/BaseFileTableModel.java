@@ -31,6 +31,7 @@ import com.mucommander.ui.main.table.CalculateDirectorySizeWorker;
 import com.mucommander.ui.main.table.FileTable;
 import com.mucommander.ui.main.table.SortInfo;
 
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 import java.awt.Cursor;
 import java.util.*;
@@ -71,7 +72,10 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
     /** The current folder's parent folder, may be null */
     protected AbstractFile parent;
 
-    /** Cached file instances */
+    /** Attributes of the current folder's children, used to sort and mark them */
+    protected FileColumns fileColumns;
+
+    /** Cached file instances, created when the file is first accessed */
     protected AbstractFile cachedFiles[];
 
     /** Combined size of files currently marked */
@@ -99,7 +103,19 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
     /** Here will be stored sizes of directories calculated by F3 command */
     protected final Map<AbstractFile, Long> directorySizes = new HashMap<>();
 
-    protected FileComparator fileComparator;
+    /** The criterion, order and 'folders first' value the rows are sorted by, the criterion is -1 if they aren't */
+    private int sortCriterion = -1;
+    private boolean sortAscending;
+    private boolean sortFoldersFirst;
+
+    /** Sorts the rows by the current criterion, order and 'folders first' value */
+    private FileRowSorter rowSorter;
+
+    /** False while the rows are sorted by attributes that are being loaded in the background */
+    private boolean sortComplete;
+
+    /** Called from the event dispatch thread to sort the rows again once those attributes have been loaded */
+    private Runnable sortListener;
 
     /**
      * First visible row
@@ -139,6 +155,7 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         fileMarked = new boolean[0];
         // Init arrays to avoid NullPointerExceptions until setCurrentFolder() gets called for the first time
         cachedFiles = new AbstractFile[0];
+        fileColumns = new FileColumns(cachedFiles);
     }
 
 
@@ -151,6 +168,7 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         this.currentFolder = model.currentFolder;
         this.currentFolderDateSnapshot = model.currentFolderDateSnapshot;
         this.parent = model.parent;
+        this.fileColumns = model.fileColumns;
         this.cachedFiles = model.cachedFiles;
         this.markedTotalSize = model.markedTotalSize;
         this.nbFilesMarked = model.nbFilesMarked;
@@ -221,7 +239,7 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         // because if table has just been changed (rows have been removed),
         // JTable may have an old row count value and may try to repaint rows that are out of bounds.
         if (fileIndex >= 0 && fileIndex < fileArrayIndex.length) {
-            return ((CachedFile)cachedFiles[fileArrayIndex[fileIndex]]).getProxiedFile();
+            return getProxiedFile(fileColumns.getFile(fileArrayIndex[fileIndex]));
         }
         return null;
     }
@@ -253,10 +271,10 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
      * @see #getCachedFiles()
      */
     public synchronized AbstractFile[] getFiles() {
-        int nbFiles = cachedFiles.length;
+        int nbFiles = fileColumns.size();
         AbstractFile[] files = new AbstractFile[nbFiles];
         for (int i=0; i<nbFiles; i++) {
-            files[i] = cachedFiles[i] == null ? null : ((CachedFile) cachedFiles[i]).getProxiedFile();
+            files[i] = getProxiedFile(fileColumns.getFile(i));
         }
 
         return files;
@@ -273,18 +291,38 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
     public synchronized AbstractFile[] getCachedFiles() {
         // Clone the array to make sure it can't be modified outside of this class
         AbstractFile[] cachedFilesCopy = new AbstractFile[cachedFiles.length];
-        System.arraycopy(cachedFiles, 0, cachedFilesCopy, 0, cachedFiles.length);
+        for (int i = 0; i < cachedFiles.length; i++) {
+            cachedFilesCopy[i] = getCachedFile(i);
+        }
 
         return cachedFilesCopy;
     }
 
     /**
-     * Sorts rows by the current criterion, ascending/descending order and 'folders first' value.
+     * Sets the listener that is called from the event dispatch thread when the rows have been sorted by attributes
+     * that were not loaded yet, once they are. The listener is expected to call {@link #sortRows()}.
+     *
+     * @param sortListener the listener, may be null
+     */
+    public void setSortListener(Runnable sortListener) {
+        this.sortListener = sortListener;
+    }
+
+    /**
+     * Sorts rows by the current criterion, ascending/descending order and 'folders first' value. The files are not
+     * accessed: attributes that have not been loaded yet are loaded in the background, rows are sorted by those that
+     * have been, and the sort listener is called once the others are.
      */
     public synchronized void sortRows() {
-        this.fileComparator = createFileComparator(sortInfo);
-        sort(0, fileArrayIndex.length - 1);
-        this.fileComparator = null;
+        int criterion = sortInfo.getCriterion().getFileComparatorCriterion();
+        if (criterion == sortCriterion && sortInfo.getFoldersFirst() == sortFoldersFirst && sortInfo.getAscendingOrder() != sortAscending) {
+            // Only the order has changed, rows don't have to be compared again
+            FileRowSorter.reverse(fileColumns, fileArrayIndex, sortFoldersFirst);
+            prepareSort();
+            return;
+        }
+        prepareSort();
+        rowSorter.sort(fileArrayIndex, 0, fileArrayIndex.length);
     }
 
 
@@ -298,73 +336,58 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
 
 
     /**
-     * Quick sort implementation, based on James Gosling's implementation.
+     * Starts loading the attributes needed to sort by the current criterion, remembers the sort parameters and creates
+     * the sorter for them, which reads neither the files nor the sort info.
      */
-    protected void sort(int lo0, int hi0) {
-        int lo = lo0;
-        int hi = hi0;
+    private void prepareSort() {
+        this.sortCriterion = sortInfo.getCriterion().getFileComparatorCriterion();
+        this.sortAscending = sortInfo.getAscendingOrder();
+        this.sortFoldersFirst = sortInfo.getFoldersFirst();
+        final FileColumns columns = fileColumns;
+        final int criterion = sortCriterion;
+        this.sortComplete = columns.prepareSortInBackground(criterion,
+                () -> SwingUtilities.invokeLater(() -> sortAttributesLoaded(columns, criterion)));
+        this.rowSorter = new FileRowSorter(fileColumns, sortCriterion, sortAscending, sortFoldersFirst);
+    }
 
-        if (lo >= hi) {
-            return;
-        } else if (lo == hi - 1) {
-            // sort a two element list by swapping if necessary
-            int loIndex = fileArrayIndex[lo];
-            int hiIndex = fileArrayIndex[hi];
-            if (compare(loIndex, hiIndex) > 0) {
-                fileArrayIndex[lo] = hiIndex;
-                fileArrayIndex[hi] = loIndex;
+    /**
+     * Called once the attributes of the given columns have been loaded for the given criterion. The sort listener is
+     * notified if the rows are still sorted by these attributes and have not been sorted again since they were loaded.
+     */
+    private void sortAttributesLoaded(FileColumns columns, int criterion) {
+        Runnable listener;
+        synchronized (this) {
+            if (sortComplete || columns != fileColumns || criterion != sortCriterion) {
+                return;
             }
-            return;
+            listener = sortListener;
         }
-
-        // Pick a pivot and move it out of the way
-        int pivotIndex = fileArrayIndex[(lo + hi) / 2];
-        fileArrayIndex[(lo + hi) / 2] = fileArrayIndex[hi];
-        fileArrayIndex[hi] = pivotIndex;
-
-        while (lo < hi) {
-            // Search forward from files[lo] until an element is found that
-            // is greater than the pivot or lo >= hi
-            //while (compare(cachedFiles[fileArrayIndex[lo]], pivot)<=0 && lo < hi) {
-            while (compare(fileArrayIndex[lo], pivotIndex) <= 0 && lo < hi) {
-                lo++;
-            }
-
-            // Search backward from files[hi] until element is found that
-            // is less than the pivot, or lo >= hi
-            //while (compare(pivot, cachedFiles[fileArrayIndex[hi]])<=0 && lo < hi ) {
-            while (compare(pivotIndex, fileArrayIndex[hi]) <= 0 && lo < hi ) {
-                hi--;
-            }
-
-            // Swap elements files[lo] and files[hi]
-            if (lo < hi) {
-                int temp = fileArrayIndex[lo];
-                fileArrayIndex[lo] = fileArrayIndex[hi];
-                fileArrayIndex[hi] = temp;
-            }
+        if (listener != null) {
+            listener.run();
         }
-
-        // Put the median in the "center" of the list
-        fileArrayIndex[hi0] = fileArrayIndex[hi];
-        fileArrayIndex[hi] = pivotIndex;
-
-        // Recursive calls, elements files[lo0] to files[lo-1] are less than or
-        // equal to pivot, elements files[hi+1] to files[hi0] are greater than pivot.
-        sort(lo0, lo-1);
-        sort(hi+1, hi0);
     }
 
 
-    private int compare(int index1, int index2) {
-        if (index1 == index2) {
-            return 0;
+    /**
+     * Merges the two sorted runs of the index array that are separated by the given position.
+     */
+    private void merge(int mid) {
+        int left[] = Arrays.copyOf(fileArrayIndex, mid);
+        int nbFiles = fileArrayIndex.length;
+        int i = 0, j = mid, k = 0;
+        while (i < mid && j < nbFiles) {
+            if (rowSorter.compare(left[i], fileArrayIndex[j]) <= 0) {
+                fileArrayIndex[k++] = left[i++];
+            } else {
+                fileArrayIndex[k++] = fileArrayIndex[j++];
+            }
+        }
+        while (i < mid) {
+            fileArrayIndex[k++] = left[i++];
         }
-        return fileComparator.compare(cachedFiles[index1], cachedFiles[index2]);
     }
 
 
-
     /**
      * Returns the current folder, i.e. the last folder set using {@link #setCurrentFolder(com.mucommander.commons.file.AbstractFile, com.mucommander.commons.file.AbstractFile[])}.
      *
@@ -402,26 +425,17 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         }
         stopSizeCalculation();
 
-        // Initialize file indexes and create CachedFile instances to speed up table display and navigation
-        this.cachedFiles = children;
+        // Initialize file indexes. CachedFile instances are only created for the files that are displayed or used by
+        // actions, the attributes needed to sort and mark files are loaded in the background.
+        this.fileColumns.discard();
+        this.fileColumns = new FileColumns(children);
+        this.sortCriterion = -1;
+        this.cachedFiles = new AbstractFile[nbFiles];
         this.fileArrayIndex = new int[nbFiles];
-
-        // we needn't prefetch local files for performance optimization purposes
-        // in the case of local files the lazy initialization will be enough
-        boolean needPrefetch = nbFiles > 0 && !(children[0] instanceof LocalFile);
-
         for (int i=0; i < nbFiles; i++) {
-            AbstractFile child = children[i];
-            AbstractFile file = child instanceof CachedFile ? child : new CachedFile(child, true);
-
-            // Pre-fetch the attributes that are used by the table renderer and some actions.
-            if (needPrefetch) {
-            prefetchCachedFileAttributes(file);
-            }
-
-            cachedFiles[i] = file;
             fileArrayIndex[i] = i;
         }
+        fileColumns.loadInBackground();
 
         // Reset marked files
         //this.rowMarked = new boolean[getRowCount()];
@@ -435,6 +449,150 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         fillCellCache();
     }
 
+    /**
+     * Adds the given files to the children of the current folder, for folders that are listed incrementally.
+     * The rows must have been sorted with {@link #sortRows()}: the new files are sorted and merged with the current
+     * ones, so that rows remain sorted. Marked files remain marked.
+     *
+     * @param files the files to add to the current folder's children
+     */
+    public synchronized void addFiles(AbstractFile files[]) {
+        int nbNewFiles = files.length;
+        if (nbNewFiles == 0) {
+            return;
+        }
+        int oldNbFiles = cachedFiles.length;
+        int nbFiles = oldNbFiles + nbNewFiles;
+
+        // Files are appended to the arrays, which keeps the indexes of the current files unchanged
+        this.fileColumns = fileColumns.append(files);
+        this.cachedFiles = Arrays.copyOf(cachedFiles, nbFiles);
+        this.fileArrayIndex = Arrays.copyOf(fileArrayIndex, nbFiles);
+        this.fileMarked = Arrays.copyOf(fileMarked, nbFiles);
+        for (int i = oldNbFiles; i < nbFiles; i++) {
+            fileArrayIndex[i] = i;
+        }
+
+        // Sort the new files only, then merge them with the current ones which are already sorted
+        prepareSort();
+        rowSorter.sort(fileArrayIndex, oldNbFiles, nbFiles);
+        merge(oldNbFiles);
+
+        initCellValuesCache();
+        fillCellCache();
+    }
+
+    /**
+     * Refreshes the given children of the current folder, for changes that have been reported without the whole folder
+     * being listed again: updated files replace the current files with the same name, or are added if there is no such
+     * file, and removed files are removed if present. Rows are sorted again, and marked files that haven't been
+     * removed remain marked.
+     *
+     * @param updated the files that have been created or modified
+     * @param removed the files that have been deleted
+     */
+    public synchronized void refreshFiles(AbstractFile updated[], AbstractFile removed[]) {
+        // Files are children of the current folder, they can be matched by name
+        Map<String, AbstractFile> updatedFiles = new HashMap<>();
+        for (AbstractFile file : updated) {
+            updatedFiles.put(file.getName(), file);
+        }
+        Set<String> removedNames = new HashSet<>();
+        for (AbstractFile file : removed) {
+            removedNames.add(file.getName());
+        }
+
+        int oldNbFiles = cachedFiles.length;
+        AbstractFile newFiles[] = new AbstractFile[oldNbFiles + updated.length];
+        AbstractFile newCachedFiles[] = new AbstractFile[oldNbFiles + updated.length];
+        boolean newFileMarked[] = new boolean[oldNbFiles + updated.length];
+        int nbFiles = 0;
+
+        // Replace or remove the current files, the remaining updated files are new ones
+        for (int i = 0; i < oldNbFiles; i++) {
+            String name = fileColumns.getName(i);
+            if (removedNames.contains(name)) {
+                if (cachedFiles[i] != null) {
+                    markedDirectories.remove(cachedFiles[i]);
+                }
+                continue;
+            }
+            AbstractFile file = updatedFiles.remove(name);
+            if (file == null) {
+                newFiles[nbFiles] = fileColumns.getFile(i);
+                newCachedFiles[nbFiles] = cachedFiles[i];
+            } else {
+                newFiles[nbFiles] = file;
+            }
+            newFileMarked[nbFiles++] = fileMarked[i];
+        }
+        for (AbstractFile file : updatedFiles.values()) {
+            newFiles[nbFiles++] = file;
+        }
+
+        this.fileColumns.discard();
+        this.fileColumns = new FileColumns(Arrays.copyOf(newFiles, nbFiles));
+        this.sortCriterion = -1;
+        this.cachedFiles = Arrays.copyOf(newCachedFiles, nbFiles);
+        this.fileMarked = Arrays.copyOf(newFileMarked, nbFiles);
+        this.fileArrayIndex = new int[nbFiles];
+        for (int i = 0; i < nbFiles; i++) {
+            fileArrayIndex[i] = i;
+        }
+
+        // The size of marked files may have changed
+        this.nbFilesMarked = 0;
+        this.markedTotalSize = 0;
+        for (int i = 0; i < nbFiles; i++) {
+            if (fileMarked[i]) {
+                nbFilesMarked++;
+                // Directories have a size of 0
+                long fileSize = fileColumns.getSize(i);
+                if (fileSize > 0) {
+                    markedTotalSize += fileSize;
+                }
+            }
+        }
+
+        sortRows();
+
+        initCellValuesCache();
+        fillCellCache();
+    }
+
+    /**
+     * Returns the CachedFile instance of the file at the given index of the file array, creating it if the file
+     * hasn't been accessed yet.
+     *
+     * @param index index of the file in the file array, not a row index
+     * @return the CachedFile instance of the file
+     */
+    protected AbstractFile getCachedFile(int index) {
+        AbstractFile file = cachedFiles[index];
+        if (file == null) {
+            file = createCachedFile(fileColumns.getFile(index));
+            cachedFiles[index] = file;
+        }
+        return file;
+    }
+
+    private static AbstractFile getProxiedFile(AbstractFile file) {
+        return file instanceof CachedFile ? ((CachedFile)file).getProxiedFile() : file;
+    }
+
+    /**
+     * Creates a CachedFile instance for the given child of the current folder, pre-fetching its attributes unless it
+     * is a local file.
+     */
+    private static AbstractFile createCachedFile(AbstractFile child) {
+        AbstractFile file = child instanceof CachedFile ? child : new CachedFile(child, true);
+        if (!(child instanceof LocalFile)) {
+            prefetchCachedFileAttributes(file);
+        }
+
+        return file;
+    }
+
     /**
      * Returns the date of the current folder, when it was set using {@link #setCurrentFolder(com.mucommander.commons.file.AbstractFile, com.mucommander.commons.file.AbstractFile[])}.
      * In other words, the returned date is a snapshot of the current folder's date which is never updated.
@@ -584,7 +742,7 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         // because if table has just been changed (rows have been removed),
         // JTable may have an old row count value and may try to repaint rows that are out of bounds.
         if (index >= 0 && index < fileArrayIndex.length) {
-            return cachedFiles[fileArrayIndex[index]];
+            return getCachedFile(fileArrayIndex[index]);
         }
         return null;
     }
@@ -601,7 +759,7 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
         // because if table has just been changed (rows have been removed),
         // JTable may have an old row count value and may try to repaint rows that are out of bounds.
         if (index >= 0 && index < fileArrayIndex.length) {
-            return cachedFiles[fileArrayIndex[index]];
+            return getCachedFile(fileArrayIndex[index]);
         }
         return null;
     }
@@ -740,16 +898,10 @@ public abstract class BaseFileTableModel extends AbstractTableModel {
             return;
         }
 
-        AbstractFile file = getCachedFileAt(index);
-
-        // Do not call getSize() on directories, it's unnecessary and the value is most likely not cached by CachedFile yet
-        long fileSize;
-
-        if (file.isDirectory()) {
-            markedDirectories.add(file);
-            fileSize = 0;
-        } else {
-            fileSize = file.getSize();
+        // Directories have a size of 0 in the file columns
+        long fileSize = fileColumns.getSize(fileIndex);
+        if (fileColumns.isDirectory(fileIndex)) {
+            markedDirectories.add(getCachedFileAt(index));
         }
 
         // Update :
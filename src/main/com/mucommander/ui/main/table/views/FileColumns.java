@@ -0,0 +1,575 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/trolcommander
+ * Copyright (C) 2014-2026 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table.views;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FilePermissions;
+import com.mucommander.commons.file.util.FileComparator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Attributes of the files of a folder, stored column by column in arrays rather than in an object per file, so that
+ * folders with a very large number of files can be sorted and displayed without wrapping every file.
+ *
+ * <p>Names are read when the columns are created. Sizes, dates and the directory flag are loaded in batches, either
+ * in the background after {@link #loadInBackground()} or when they are first needed. Permissions, owners and groups
+ * are loaded only when rows are sorted by them. {@link #prepareSortInBackground(int, Runnable)} lets rows be sorted
+ * by the attributes that have been loaded so far, and sorted again once the others are.</p>
+ */
+public class FileColumns {
+
+    /** Number of files whose attributes are loaded at once */
+    static final int BATCH_SIZE = 1000;
+
+    /** Loads the attributes of the current folders in the background, one folder after the other */
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "File attributes loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AbstractFile files[];
+    private final String names[];
+    private final long sizes[];
+    private final long dates[];
+    private final boolean directories[];
+
+    /** Whether the attributes of each batch have been loaded, guarded by the instance lock */
+    private final boolean loadedBatches[];
+
+    /** Loaded on demand, null until then. Compared as equal while they are null. */
+    private volatile int permissions[];
+    private volatile String owners[];
+    private volatile String groups[];
+
+    /**
+     * Collation keys of the names, built before the first sort: the case-folded characters of all names, one name
+     * after the other.
+     */
+    private char nameKeys[];
+
+    /**
+     * Describes the key of each name with {@link #KEY_INFO_SIZE} values, which are read together when names are
+     * compared: the position of the key in {@link #nameKeys}, its length, the position of the first digit of the
+     * name, -1 if it has none, and an identifier of the part of the name that precedes this digit, equal for names
+     * that have the same prefix.
+     */
+    private int keyInfo[];
+
+    private static final int KEY_INFO_SIZE = 4;
+    private static final int KEY_START = 0;
+    private static final int KEY_LENGTH = 1;
+    private static final int KEY_DIGIT_POSITION = 2;
+    private static final int KEY_PREFIX_ID = 3;
+
+    /** True once the folder is not displayed anymore, stops background loading */
+    private volatile boolean discarded;
+
+
+    /**
+     * Creates columns for the given files. Only the names are read.
+     *
+     * @param files the files of the folder
+     */
+    public FileColumns(AbstractFile files[]) {
+        this(files, null);
+    }
+
+    /**
+     * Creates columns for the files of the given columns followed by the given files, keeping the attributes that have
+     * already been loaded.
+     */
+    private FileColumns(AbstractFile newFiles[], FileColumns columns) {
+        int nbOldFiles = columns == null ? 0 : columns.size();
+        int nbFiles = nbOldFiles + newFiles.length;
+        this.files = new AbstractFile[nbFiles];
+        this.names = new String[nbFiles];
+        this.sizes = new long[nbFiles];
+        this.dates = new long[nbFiles];
+        this.directories = new boolean[nbFiles];
+        this.loadedBatches = new boolean[(nbFiles + BATCH_SIZE - 1) / BATCH_SIZE];
+
+        if (columns != null) {
+            synchronized (columns) {
+                System.arraycopy(columns.files, 0, files, 0, nbOldFiles);
+                System.arraycopy(columns.names, 0, names, 0, nbOldFiles);
+                System.arraycopy(columns.sizes, 0, sizes, 0, nbOldFiles);
+                System.arraycopy(columns.dates, 0, dates, 0, nbOldFiles);
+                System.arraycopy(columns.directories, 0, directories, 0, nbOldFiles);
+                // A partial last batch gets new files, it has to be loaded again
+                System.arraycopy(columns.loadedBatches, 0, loadedBatches, 0, nbOldFiles / BATCH_SIZE);
+            }
+        }
+        for (int i = 0; i < newFiles.length; i++) {
+            files[nbOldFiles + i] = newFiles[i];
+            names[nbOldFiles + i] = newFiles[i].getName();
+        }
+    }
+
+
+    /**
+     * Returns new columns for the files of these columns followed by the given files. These columns are discarded.
+     *
+     * @param newFiles the files to add
+     * @return the new columns
+     */
+    public FileColumns append(AbstractFile newFiles[]) {
+        discard();
+        return new FileColumns(newFiles, this);
+    }
+
+    /**
+     * Loads the attributes of all files in the background, one batch at a time, until they are loaded or the columns
+     * are discarded.
+     */
+    public void loadInBackground() {
+        LOADER.execute(() -> {
+            for (int batch = 0; batch < loadedBatches.length && !discarded; batch++) {
+                loadBatch(batch);
+            }
+        });
+    }
+
+    /**
+     * Stops loading attributes in the background, the folder is not displayed anymore.
+     */
+    public void discard() {
+        discarded = true;
+    }
+
+    public int size() {
+        return files.length;
+    }
+
+    public AbstractFile getFile(int index) {
+        return files[index];
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public boolean isDirectory(int index) {
+        ensureLoaded(index);
+        return directories[index];
+    }
+
+    /**
+     * Returns the size of the file at the given index, 0 for directories.
+     */
+    public long getSize(int index) {
+        ensureLoaded(index);
+        return sizes[index];
+    }
+
+    public long getDate(int index) {
+        ensureLoaded(index);
+        return dates[index];
+    }
+
+
+    /**
+     * Loads the attributes used by the given {@link FileComparator} criterion for all files, and builds the collation
+     * keys of the names, which are used by all criteria. Must be called before
+     * {@link #compare(int, int, int, boolean, boolean)}.
+     *
+     * @param criterion a FileComparator criterion
+     */
+    public void prepareSort(int criterion) {
+        for (int batch = 0; batch < loadedBatches.length; batch++) {
+            loadBatch(batch);
+        }
+        prepareSortKeys(criterion);
+    }
+
+    /**
+     * Builds the collation keys of the names and, unless they are already loaded, loads the attributes used by the
+     * given criterion in the background. Until they are loaded, {@link #compare(int, int, int, boolean, boolean)}
+     * compares the files by the attributes that have been loaded so far, the others being considered as equal, which
+     * doesn't require accessing the files from the calling thread.
+     *
+     * @param criterion a FileComparator criterion
+     * @param listener called from the loader thread once the attributes are loaded, unless the columns have been
+     * discarded in the meantime
+     * @return <code>true</code> if the attributes were already loaded, in which case the listener is not called
+     */
+    public boolean prepareSortInBackground(final int criterion, final Runnable listener) {
+        synchronized (this) {
+            if (nameKeys == null) {
+                buildNameKeys();
+            }
+            if (isSortPrepared(criterion)) {
+                return true;
+            }
+        }
+        LOADER.execute(() -> {
+            for (int batch = 0; batch < loadedBatches.length && !discarded; batch++) {
+                loadBatch(batch);
+            }
+            if (!discarded) {
+                prepareSortKeys(criterion);
+                listener.run();
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if all the attributes used by the given criterion have been loaded.
+     */
+    private synchronized boolean isSortPrepared(int criterion) {
+        for (boolean loaded : loadedBatches) {
+            if (!loaded) {
+                return false;
+            }
+        }
+        switch (criterion) {
+            case FileComparator.PERMISSIONS_CRITERION:
+                return permissions != null;
+            case FileComparator.OWNER_CRITERION:
+                return owners != null;
+            case FileComparator.GROUP_CRITERION:
+                return groups != null;
+            default:
+                return nameKeys != null;
+        }
+    }
+
+    /**
+     * Builds the collation keys of the names and loads the attributes used by the given criterion, if they are not
+     * available yet. Like batches, the attributes are loaded without holding the lock, and filled before they are
+     * assigned as they may be read by a thread that compares files.
+     */
+    private void prepareSortKeys(int criterion) {
+        synchronized (this) {
+            if (nameKeys == null) {
+                buildNameKeys();
+            }
+        }
+        int nbFiles = files.length;
+        if (criterion == FileComparator.PERMISSIONS_CRITERION && permissions == null) {
+            int loadedPermissions[] = new int[nbFiles];
+            for (int i = 0; i < nbFiles; i++) {
+                FilePermissions filePermissions = files[i].getPermissions();
+                loadedPermissions[i] = filePermissions == null ? 0 : filePermissions.getIntValue();
+            }
+            permissions = loadedPermissions;
+        } else if (criterion == FileComparator.OWNER_CRITERION && owners == null) {
+            String loadedOwners[] = new String[nbFiles];
+            for (int i = 0; i < nbFiles; i++) {
+                loadedOwners[i] = intern(files[i].getOwner());
+            }
+            owners = loadedOwners;
+        } else if (criterion == FileComparator.GROUP_CRITERION && groups == null) {
+            String loadedGroups[] = new String[nbFiles];
+            for (int i = 0; i < nbFiles; i++) {
+                loadedGroups[i] = intern(files[i].getGroup());
+            }
+            groups = loadedGroups;
+        }
+    }
+
+
+    /**
+     * Builds the collation keys of the names. A key holds the characters of the name as they are compared when the
+     * case is ignored, so that comparing two names doesn't convert their characters again.
+     */
+    private void buildNameKeys() {
+        int nbFiles = files.length;
+        int length = 0;
+        for (String name : names) {
+            length += name.length();
+        }
+        char keys[] = new char[length];
+        int info[] = new int[nbFiles * KEY_INFO_SIZE];
+        Map<String, Integer> prefixIds = new HashMap<>();
+        int offset = 0;
+        for (int i = 0; i < nbFiles; i++) {
+            String name = names[i];
+            int nameLength = name.length();
+            int digitPosition = -1;
+            for (int j = 0; j < nameLength; j++) {
+                char c = name.charAt(j);
+                if (c >= '0' && c <= '9') {
+                    if (digitPosition < 0) {
+                        digitPosition = j;
+                    }
+                } else {
+                    // Same as FileComparator: characters that are equal once converted to upper case then to lower case
+                    // are equal, the upper case conversion alone doesn't work for the Georgian alphabet
+                    c = Character.toLowerCase(Character.toUpperCase(c));
+                }
+                keys[offset + j] = c;
+            }
+            int k = i * KEY_INFO_SIZE;
+            info[k + KEY_START] = offset;
+            info[k + KEY_LENGTH] = nameLength;
+            info[k + KEY_DIGIT_POSITION] = digitPosition;
+            if (digitPosition >= 0) {
+                String prefix = name.substring(0, digitPosition);
+                Integer prefixId = prefixIds.get(prefix);
+                if (prefixId == null) {
+                    prefixId = prefixIds.size();
+                    prefixIds.put(prefix, prefixId);
+                }
+                info[k + KEY_PREFIX_ID] = prefixId;
+            }
+            offset += nameLength;
+        }
+        this.nameKeys = keys;
+        this.keyInfo = info;
+    }
+
+    /**
+     * Compares the names of two files ignoring the case, like
+     * {@link FileComparator#compareStrings(String, String, boolean)} does.
+     */
+    private int compareNames(int index1, int index2) {
+        final int info[] = keyInfo;
+        int k1 = index1 * KEY_INFO_SIZE;
+        int k2 = index2 * KEY_INFO_SIZE;
+        int digitPos1 = info[k1 + KEY_DIGIT_POSITION];
+        boolean samePrefix = digitPos1 >= 0 && digitPos1 == info[k2 + KEY_DIGIT_POSITION] && info[k1 + KEY_PREFIX_ID] == info[k2 + KEY_PREFIX_ID];
+        return compareKeys(info[k1 + KEY_START], info[k1 + KEY_LENGTH], info[k2 + KEY_START], info[k2 + KEY_LENGTH], samePrefix ? digitPos1 : -1);
+    }
+
+    /**
+     * Compares the extensions of two files ignoring the case, files without extension coming first, like
+     * {@link FileComparator} does.
+     */
+    private int compareExtensions(int index1, int index2) {
+        String name1 = names[index1];
+        String name2 = names[index2];
+        int from1 = getExtensionPosition(name1);
+        int from2 = getExtensionPosition(name2);
+        if (from1 < 0 || from2 < 0) {
+            return from1 < 0 ? (from2 < 0 ? 0 : -1) : 1;
+        }
+        int k1 = index1 * KEY_INFO_SIZE;
+        int k2 = index2 * KEY_INFO_SIZE;
+        int start1 = keyInfo[k1 + KEY_START] + from1;
+        int length1 = keyInfo[k1 + KEY_LENGTH] - from1;
+        int start2 = keyInfo[k2 + KEY_START] + from2;
+        int length2 = keyInfo[k2 + KEY_LENGTH] - from2;
+        int digitPos1 = getDigitPosition(start1, length1);
+        boolean samePrefix = digitPos1 >= 0 && digitPos1 == getDigitPosition(start2, length2) && name1.regionMatches(from1, name2, from2, digitPos1);
+        return compareKeys(start1, length1, start2, length2, samePrefix ? digitPos1 : -1);
+    }
+
+    /**
+     * Returns the position of the extension in the given name, -1 if it has none. See
+     * {@link AbstractFile#getExtension(String)}.
+     */
+    private static int getExtensionPosition(String name) {
+        int lastDotPos = name.lastIndexOf('.');
+        if (lastDotPos <= 0 || lastDotPos == name.length() - 1) {
+            return -1;
+        }
+        return lastDotPos + 1;
+    }
+
+    /**
+     * Returns the position of the first digit of the given part of the keys, relatively to its start, -1 if there is
+     * none.
+     */
+    private int getDigitPosition(int start, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = nameKeys[start + i];
+            if (c >= '0' && c <= '9') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares two parts of the keys, the way {@link FileComparator#compareStrings(String, String, boolean)} compares
+     * strings when the case is ignored.
+     *
+     * @param start1 position of the first part in the keys
+     * @param n1 length of the first part
+     * @param start2 position of the second part in the keys
+     * @param n2 length of the second part
+     * @param digitPos position of the first digit in both parts, relatively to their start, if they have the same
+     * prefix before it and numbers have to be compared by value, -1 otherwise
+     */
+    private int compareKeys(int start1, int n1, int start2, int n2, int digitPos) {
+        final char keys[] = nameKeys;
+
+        // Numbers preceded by the same prefix are ordered by value, e.g. 1 < 1a < 2 < 10
+        if (digitPos >= 0) {
+            int digits1 = start1 + digitPos;
+            int digits2 = start2 + digitPos;
+            int length1 = getDigitsLength(keys, digits1, start1 + n1);
+            int length2 = getDigitsLength(keys, digits2, start2 + n2);
+            if (length1 != length2) {
+                return length1 - length2;
+            }
+            for (int i = 0; i < length1; i++) {
+                char c1 = keys[digits1 + i];
+                char c2 = keys[digits2 + i];
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+        }
+
+        for (int i = 0, n = Math.min(n1, n2); i < n; i++) {
+            char c1 = keys[start1 + i];
+            char c2 = keys[start2 + i];
+            if (c1 != c2) {
+                return FileComparator.getCharacterValue(c1) - FileComparator.getCharacterValue(c2);
+            }
+        }
+        return n1 - n2;
+    }
+
+    private static int getDigitsLength(char keys[], int start, int end) {
+        int i = start;
+        while (i < end && keys[i] >= '0' && keys[i] <= '9') {
+            i++;
+        }
+        return i - start;
+    }
+
+
+    /**
+     * Compares two files the way {@link FileComparator} does, using the loaded attributes.
+     *
+     * @param index1 index of the first file
+     * @param index2 index of the second file
+     * @param criterion a FileComparator criterion, for which {@link #prepareSort(int)} or
+     * {@link #prepareSortInBackground(int, Runnable)} has been called
+     * @param ascending if true, ascending order will be used, descending order otherwise
+     * @param directoriesFirst specifies whether directories should precede files or be handled as regular files
+     * @return a negative integer, zero, or a positive integer as the first file is less than, equal to, or greater
+     * than the second
+     */
+    public int compare(int index1, int index2, int criterion, boolean ascending, boolean directoriesFirst) {
+        if (index1 == index2) {
+            return 0;
+        }
+        boolean is1Directory = directories[index1];
+        boolean is2Directory = directories[index2];
+        if (directoriesFirst && is1Directory != is2Directory) {
+            return is1Directory ? -1 : 1;
+        }
+
+        long diff;
+        switch (criterion) {
+            case FileComparator.SIZE_CRITERION:
+                long size1 = sizes[index1];
+                long size2 = sizes[index2];
+                // File size of -1 (unavailable) is considered as enormous
+                diff = (size1 == -1 ? Long.MAX_VALUE : size1) - (size2 == -1 ? Long.MAX_VALUE : size2);
+                break;
+            case FileComparator.DATE_CRITERION:
+                diff = dates[index1] - dates[index2];
+                break;
+            case FileComparator.PERMISSIONS_CRITERION:
+                int filePermissions[] = permissions;
+                diff = filePermissions == null ? 0 : filePermissions[index1] - filePermissions[index2];
+                break;
+            case FileComparator.EXTENSION_CRITERION:
+                diff = compareExtensions(index1, index2);
+                break;
+            case FileComparator.OWNER_CRITERION:
+                String fileOwners[] = owners;
+                diff = fileOwners == null ? 0 : FileComparator.compareStrings(fileOwners[index1], fileOwners[index2], true, true);
+                break;
+            case FileComparator.GROUP_CRITERION:
+                String fileGroups[] = groups;
+                diff = fileGroups == null ? 0 : FileComparator.compareStrings(fileGroups[index1], fileGroups[index2], true, true);
+                break;
+            default:
+                diff = compareNames(index1, index2);
+                if (diff == 0) {
+                    diff = FileComparator.compareStrings(names[index1], names[index2], false);
+                }
+        }
+        if (criterion != FileComparator.NAME_CRITERION && diff == 0) {
+            diff = compareNames(index1, index2);
+        }
+
+        int intValue;
+        if (diff > Integer.MAX_VALUE) {
+            intValue = Integer.MAX_VALUE;
+        } else if (diff < Integer.MIN_VALUE + 1) {
+            intValue = Integer.MIN_VALUE + 1;
+        } else {
+            intValue = (int)diff;
+        }
+        return ascending ? intValue : -intValue;
+    }
+
+
+    private void ensureLoaded(int index) {
+        loadBatch(index / BATCH_SIZE);
+    }
+
+    /**
+     * Loads the attributes of the given batch if they are not loaded yet. The files are accessed without holding the
+     * lock, so that a batch needed for display is not held up by the one being loaded in the background. Both
+     * threads may then load the same batch, the attributes of the first one to finish are kept.
+     */
+    private void loadBatch(int batch) {
+        synchronized (this) {
+            if (loadedBatches[batch]) {
+                return;
+            }
+        }
+        int start = batch * BATCH_SIZE;
+        int length = Math.min(files.length, start + BATCH_SIZE) - start;
+        boolean batchDirectories[] = new boolean[length];
+        long batchSizes[] = new long[length];
+        long batchDates[] = new long[length];
+        for (int i = 0; i < length; i++) {
+            AbstractFile file = files[start + i];
+            boolean directory = file.isDirectory();
+            batchDirectories[i] = directory;
+            // Directories are considered as having a size of 0, like FileComparator does
+            batchSizes[i] = directory ? 0 : file.getSize();
+            batchDates[i] = file.getDate();
+        }
+        synchronized (this) {
+            if (!loadedBatches[batch]) {
+                System.arraycopy(batchDirectories, 0, directories, start, length);
+                System.arraycopy(batchSizes, 0, sizes, start, length);
+                System.arraycopy(batchDates, 0, dates, start, length);
+                loadedBatches[batch] = true;
+            }
+        }
+    }
+
+    /**
+     * Owners and groups are shared by most files, only one instance of each is kept.
+     */
+    private static String intern(String s) {
+        return s == null ? null : s.intern();
+    }
+
+    @Override
+    public String toString() {
+        return "FileColumns" + Arrays.toString(names);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/trolcommander
+ * Copyright (C) 2014-2026 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table.views;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts the rows of a file table, i.e. indexes of files in {@link FileColumns}, with a merge sort. Large folders are
+ * sorted by several threads of the common fork/join pool. Comparisons use the attributes and collation keys of the
+ * columns, the only allocation is the temporary array of the merge sort.
+ */
+public class FileRowSorter {
+
+    /** Ranges shorter than this are sorted by insertion */
+    private static final int INSERTION_SORT_THRESHOLD = 7;
+
+    /** Ranges shorter than this are sorted by the current thread */
+    static final int PARALLEL_SORT_THRESHOLD = 8192;
+
+    private final FileColumns columns;
+    private final int criterion;
+    private final boolean ascending;
+    private final boolean directoriesFirst;
+
+    /**
+     * Creates a sorter for the files of the given columns. {@link FileColumns#prepareSort(int)} or
+     * {@link FileColumns#prepareSortInBackground(int, Runnable)} must have been called for the criterion.
+     *
+     * @param columns the files to sort
+     * @param criterion a {@link com.mucommander.commons.file.util.FileComparator} criterion
+     * @param ascending if true, ascending order will be used, descending order otherwise
+     * @param directoriesFirst specifies whether directories should precede files or be handled as regular files
+     */
+    public FileRowSorter(FileColumns columns, int criterion, boolean ascending, boolean directoriesFirst) {
+        this.columns = columns;
+        this.criterion = criterion;
+        this.ascending = ascending;
+        this.directoriesFirst = directoriesFirst;
+    }
+
+    public int compare(int index1, int index2) {
+        return columns.compare(index1, index2, criterion, ascending, directoriesFirst);
+    }
+
+
+    /**
+     * Sorts the given range of the index array. The sort is stable.
+     *
+     * @param indexes indexes of files in the columns
+     * @param from index of the first element to sort, inclusive
+     * @param to index of the last element to sort, exclusive
+     */
+    public void sort(int indexes[], int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int src[] = new int[to - from];
+        System.arraycopy(indexes, from, src, 0, to - from);
+        if (to - from < PARALLEL_SORT_THRESHOLD) {
+            mergeSort(src, indexes, from, to, -from);
+        } else {
+            ForkJoinPool.commonPool().invoke(new SortTask(src, indexes, from, to, -from));
+        }
+    }
+
+    /**
+     * Sorts <code>dest[low..high)</code>, using <code>src</code>, which holds the same elements starting at
+     * <code>low + off</code>, as the temporary array. See the legacy merge sort of {@link java.util.Arrays}.
+     */
+    private void mergeSort(int src[], int dest[], int low, int high, int off) {
+        int length = high - low;
+        if (length < INSERTION_SORT_THRESHOLD) {
+            for (int i = low; i < high; i++) {
+                for (int j = i; j > low && compare(dest[j - 1], dest[j]) > 0; j--) {
+                    int t = dest[j];
+                    dest[j] = dest[j - 1];
+                    dest[j - 1] = t;
+                }
+            }
+            return;
+        }
+        int destLow = low;
+        int destHigh = high;
+        low += off;
+        high += off;
+        int mid = (low + high) >>> 1;
+        mergeSort(dest, src, low, mid, -off);
+        mergeSort(dest, src, mid, high, -off);
+        merge(src, dest, low, mid, high, destLow, destHigh);
+    }
+
+    /**
+     * Merges the sorted runs <code>src[low..mid)</code> and <code>src[mid..high)</code> into
+     * <code>dest[destLow..destHigh)</code>.
+     */
+    private void merge(int src[], int dest[], int low, int mid, int high, int destLow, int destHigh) {
+        // The runs are already in order, e.g. for files that are listed sorted
+        if (compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, low, dest, destLow, high - low);
+            return;
+        }
+        for (int i = destLow, p = low, q = mid; i < destHigh; i++) {
+            if (q >= high || p < mid && compare(src[p], src[q]) <= 0) {
+                dest[i] = src[p++];
+            } else {
+                dest[i] = src[q++];
+            }
+        }
+    }
+
+
+    /**
+     * Reverses the order of sorted rows, which have been sorted with the same criterion and directory handling rule
+     * but in the other order. This takes linear time and no comparison: directories remain first if they precede
+     * files.
+     *
+     * @param columns the sorted files
+     * @param indexes indexes of files in the columns, sorted
+     * @param directoriesFirst whether directories precede files
+     */
+    public static void reverse(FileColumns columns, int indexes[], boolean directoriesFirst) {
+        int nbFiles = indexes.length;
+        int nbDirectories = 0;
+        if (directoriesFirst) {
+            while (nbDirectories < nbFiles && columns.isDirectory(indexes[nbDirectories])) {
+                nbDirectories++;
+            }
+        }
+        reverse(indexes, 0, nbDirectories);
+        reverse(indexes, nbDirectories, nbFiles);
+    }
+
+    private static void reverse(int indexes[], int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int t = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = t;
+        }
+    }
+
+
+    /**
+     * Sorts a range that is long enough to be split between threads, see {@link #mergeSort(int[], int[], int, int, int)}.
+     */
+    private class SortTask extends RecursiveAction {
+        private final int src[];
+        private final int dest[];
+        private final int low;
+        private final int high;
+        private final int off;
+
+        SortTask(int src[], int dest[], int low, int high, int off) {
+            this.src = src;
+            this.dest = dest;
+            this.low = low;
+            this.high = high;
+            this.off = off;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low < PARALLEL_SORT_THRESHOLD) {
+                mergeSort(src, dest, low, high, off);
+                return;
+            }
+            int srcLow = low + off;
+            int srcHigh = high + off;
+            int mid = (srcLow + srcHigh) >>> 1;
+            invokeAll(new SortTask(dest, src, srcLow, mid, -off), new SortTask(dest, src, mid, srcHigh, -off));
+            merge(src, dest, srcLow, mid, srcHigh, low, high);
+        }
+    }
+}
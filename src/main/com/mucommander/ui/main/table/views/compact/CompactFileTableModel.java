@@ -35,9 +35,6 @@ public class CompactFileTableModel extends BaseFileTableModel {
 
     private int offset;
 
-    /** Cell values cache */
-    protected String cellValuesCache[];
-
     public CompactFileTableModel(int columns, int visibleRows) {
         super();
         this.columns = columns;
@@ -75,35 +72,17 @@ public class CompactFileTableModel extends BaseFileTableModel {
 
     @Override
     public void fillCellCache() {
-        int len = cellValuesCache.length;
-        if (len == 0) {
-            return;
-        }
         // Special '..' file
         if (parent != null) {
-//            cellValuesCache[0] = "..";
             currentFolderDateSnapshot = currentFolder.getDate();
         }
-
-        for (int i = 0; i < len; i++) {
-            cellValuesCache[i] = null;
-        }
-//        int fileIndex = 0;
-//        final int indexOffset = parent == null ? 0 : 1;
-//        for (int i = indexOffset; i < len; i++) {
-//            int cellIndex = fileIndex + indexOffset;
-//            cellValuesCache[cellIndex] = null;
-//            fileIndex++;
-//        }
     }
 
     /**
-     * Init and fill cell cache to speed up table even more
+     * Names are read from the file columns, there is no cell cache
      */
     @Override
     protected void initCellValuesCache() {
-        //int files = parent == null ? getFileCount() : getFileCount() + 1;
-        this.cellValuesCache = new String[getFileCount()];
     }
 
     @Override
@@ -130,14 +109,8 @@ public class CompactFileTableModel extends BaseFileTableModel {
         if (fileIndex < 0 || fileIndex >= fileArrayIndex.length) {
             return null;
         }
-        int index = fileArrayIndex[fileIndex];
-        String result = cellValuesCache[index];
-        if (result == null) {
-            result = fillOneCellCache(parent != null ? fileIndex + 1 : fileIndex);
-            cellValuesCache[index] = result;
-        }
         // TODO preload icons for all visible files
-        return result;
+        return fileColumns.getName(fileArrayIndex[fileIndex]);
         //return fileIndex + ":" + offset + ":" + result;
     }
 
@@ -153,11 +126,6 @@ public class CompactFileTableModel extends BaseFileTableModel {
         return nameColumnEditable && (parent == null || row != 0 || column != 0 || offset != 0);
     }
 
-    private String fillOneCellCache(int fileIndex) {
-        AbstractFile file = getCachedFileAt(fileIndex);
-        return file.getName();
-    }
-
     public AbstractFile getFileAt(int row, int column) {
         int index = offset + row + column * visibleRows;
         return (index == 0 && hasParentFolder()) ? parent : getFileAt(index);
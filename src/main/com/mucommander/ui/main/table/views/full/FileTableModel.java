@@ -20,6 +20,8 @@ package com.mucommander.ui.main.table.views.full;
 
 import java.util.*;
 
+import com.mucommander.cache.FastLRUCache;
+import com.mucommander.cache.LRUCache;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.text.CustomDateFormat;
 import com.mucommander.text.SizeFormat;
@@ -34,8 +36,14 @@ import com.mucommander.ui.main.table.views.BaseFileTableModel;
  */
 public class FileTableModel extends BaseFileTableModel {
 
-    /** Cell values cache */
-    protected Object cellValuesCache[][];
+    /** Maximum number of rows whose cell values are cached, a few screens of rows */
+    private static final int MAX_CACHED_ROWS = 1024;
+
+    /** Cell values of the most recently displayed rows, by index in the cell cache (parent folder row being 0) */
+    protected final LRUCache<Integer, Object[]> cellValuesCache = new FastLRUCache<>(MAX_CACHED_ROWS);
+
+    /** Cell values of the parent folder row '..' */
+    protected final Object parentCellValues[] = new Object[Column.values().length-1];
 
 
     /**
@@ -43,7 +51,6 @@ public class FileTableModel extends BaseFileTableModel {
      */
     public FileTableModel() {
         super();
-        cellValuesCache = new Object[0][Column.values().length-1];
     }
 
 
@@ -59,22 +66,20 @@ public class FileTableModel extends BaseFileTableModel {
      */
     @Override
     protected void initCellValuesCache() {
-        this.cellValuesCache = new Object[getRowCount()][Column.values().length-1];
+        cellValuesCache.clearAll();
     }
 
 
     /**
-     * Retrieves all cell values and stores them in an array for fast access.
+     * Clears the cell values of files, which are retrieved again when their rows are displayed, and retrieves the
+     * cell values of the parent folder row.
      */
     @Override
     public synchronized void fillCellCache() {
-        int len = cellValuesCache.length;
-        if (len == 0) {
-            return;
-        }
+        cellValuesCache.clearAll();
         // Special '..' file
         if (parent != null) {
-            Object[] cell = cellValuesCache[0];
+            Object[] cell = parentCellValues;
             cell[Column.NAME.ordinal()-1] = "..";
             cell[Column.SIZE.ordinal()-1] = DIRECTORY_SIZE_STRING;
             currentFolderDateSnapshot = currentFolder.getDate();
@@ -85,24 +90,12 @@ public class FileTableModel extends BaseFileTableModel {
             cell[Column.OWNER.ordinal()-1] = "";
             cell[Column.GROUP.ordinal()-1] = "";
         }
-
-        int fileIndex = 0;
-        final int indexOffset = parent == null ? 0 : 1;
-        for (int i = indexOffset; i < len; i++) {
-            int cellIndex = fileIndex + indexOffset;
-            //int cellIndex = fileArrayIndex[fileIndex] + indexOffset;
-            //fillOneCellCache(cellIndex, cellIndex);
-            Object[] cell = cellValuesCache[cellIndex];
-            for (int ci = Column.NAME.ordinal()-1; ci <= Column.GROUP.ordinal()-1; ci++) {
-                cell[ci] = null;
-            }
-            fileIndex++;
-        }
     }
 
     private Object[] fillOneCellCache(int cellIndex, int fileIndex) {
         AbstractFile file = getCachedFileAt(fileIndex);
-        Object[] cell = cellValuesCache[cellIndex];
+        Object[] cell = new Object[Column.values().length-1];
+        cellValuesCache.add(cellIndex, cell);
         cell[Column.NAME.ordinal()-1] = file.getName();
 
         Object sizeValue;
@@ -181,22 +174,18 @@ public class FileTableModel extends BaseFileTableModel {
         columnIndex--;
         // Handle special '..' file
         if (rowIndex == 0 && parent != null) {
-            return cellValuesCache[0][columnIndex];
-//            Object result = cellValuesCache[0][columnIndex];
-//            if (result == null) {
-//                result = fillOneCellCache(0, 0)[columnIndex];
-//            }
-//            return result;
+            return parentCellValues[columnIndex];
         }
         int fileIndex = parent == null ? rowIndex : rowIndex-1;
         int index = fileArrayIndex[fileIndex];
         if (parent != null) {
             index++;
         }
-        Object result = cellValuesCache[index][columnIndex];
-        if (result == null) {
-            result = fillOneCellCache(index, parent != null ? fileIndex + 1 : fileIndex)[columnIndex];
+        Object cell[] = cellValuesCache.get(index);
+        if (cell == null) {
+            cell = fillOneCellCache(index, parent != null ? fileIndex + 1 : fileIndex);
         }
+        Object result = cell[columnIndex];
         // TODO preload icons for all visible files
 
         return result;
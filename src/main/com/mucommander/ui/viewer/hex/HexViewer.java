@@ -18,6 +18,9 @@
 package com.mucommander.ui.viewer.hex;
 
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.impl.ProxyFile;
+import com.mucommander.commons.file.impl.local.LocalFile;
 import com.mucommander.commons.runtime.OsFamily;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.helper.MenuToolkit;
@@ -26,7 +29,9 @@ import com.mucommander.ui.theme.Theme;
 import com.mucommander.ui.theme.ThemeManager;
 import com.mucommander.ui.viewer.FileViewer;
 import ru.trolsoft.hexeditor.data.AbstractByteBuffer;
+import ru.trolsoft.hexeditor.data.MappedFileByteBuffer;
 import ru.trolsoft.hexeditor.data.MuCommanderByteBuffer;
+import ru.trolsoft.hexeditor.data.RandomAccessByteBuffer;
 import ru.trolsoft.hexeditor.events.OnOffsetChangeListener;
 import ru.trolsoft.hexeditor.search.ByteBufferSearchUtils;
 import ru.trolsoft.hexeditor.ui.HexTable;
@@ -37,6 +42,7 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -104,7 +110,7 @@ public class HexViewer extends FileViewer {
     @Override
     protected void show(AbstractFile file) throws IOException {
         try {
-            byteBuffer = new MuCommanderByteBuffer(file);
+            byteBuffer = createByteBuffer(file);
             model = new ViewerHexTableModel(byteBuffer);
             model.load();
             hexTable = new HexTable(model);
@@ -187,6 +193,28 @@ public class HexViewer extends FileViewer {
     }
 
 
+    /**
+     * Local files are mapped in memory, and the blocks read from files that support random access are cached.
+     * Other files are read sequentially.
+     */
+    private static AbstractByteBuffer createByteBuffer(AbstractFile file) {
+        AbstractFile underlyingFile = file;
+        while (underlyingFile instanceof ProxyFile) {
+            underlyingFile = ((ProxyFile)underlyingFile).getProxiedFile();
+        }
+        if (underlyingFile instanceof LocalFile) {
+            return new MappedFileByteBuffer(new File(underlyingFile.getAbsolutePath()));
+        }
+        if (file.isFileOperationSupported(FileOperation.RANDOM_READ_FILE)) {
+            try {
+                return new RandomAccessByteBuffer(file.getRandomAccessInputStream(), file.getSize());
+            } catch (IOException e) {
+                // In that case the file is read sequentially
+            }
+        }
+        return new MuCommanderByteBuffer(file);
+    }
+
     private void findFirst() {
         if (dlgFind != null && dlgFind.isVisible()) {
             return;
@@ -18,6 +18,7 @@
 package ru.trolsoft.hexeditor.data;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Buffered file reader
@@ -98,13 +99,31 @@ public abstract class AbstractByteBuffer {
     }
 
 
+    /**
+     * Returns the loaded data that contains the given offset, so that it can be processed without calling
+     * {@link #getByte(long)} for each byte. The returned buffer must not be modified, its position is set at the
+     * given offset, and its first byte is at offset <code>fileOffset - position()</code> in the file.
+     *
+     * @param fileOffset an offset in the file
+     * @return a buffer whose position is at <code>fileOffset</code>
+     * @throws IOException
+     * @throws IndexOutOfBoundsException
+     */
+    public ByteBuffer getPage(long fileOffset) throws IOException {
+        getByte(fileOffset);
+        ByteBuffer page = ByteBuffer.wrap(buffer, 0, size);
+        page.position((int)(fileOffset - offset));
+        return page;
+    }
+
+
     protected long calcOffset(long fileOffset, boolean randomAccessStream) {
         if (randomAccessStream) {
             switch (cacheStrategy) {
                 case FORWARD:
                     return fileOffset;
                 case BACKWARD:
-                    return fileOffset - buffer.length;
+                    return fileOffset - buffer.length + 1;
                 case CENTER:
                     return fileOffset - buffer.length / 2;
             }
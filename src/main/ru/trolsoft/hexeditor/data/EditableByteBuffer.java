@@ -0,0 +1,425 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.hexeditor.data;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.io.RandomAccessOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Edits made on top of another buffer, which is never modified: the edited data is described by a piece table, a list
+ * of extents that are either ranges of the original data or ranges of the bytes that have been typed or inserted.
+ * Edits only change the list of extents, so that they are visible at once whatever the size of the file, and memory
+ * is proportional to the edits rather than to the file.
+ *
+ * <p>Saving writes only the changed ranges in place if the file has the same length and its original bytes haven't
+ * moved, and otherwise writes the whole edited data to a temporary file that replaces the original file.</p>
+ */
+public class EditableByteBuffer extends AbstractByteBuffer {
+
+    /**
+     * Size of the blocks that are written when the edited data is written as a whole
+     */
+    private static final int WRITE_BLOCK_SIZE = 64*1024;
+
+    /**
+     * An extent of the edited data
+     */
+    private static final class Piece {
+        /**
+         * true if the bytes are in #added, false if they are in the original data
+         */
+        final boolean added;
+        /**
+         * Offset of the bytes in the original data or in #added
+         */
+        final long source;
+        final long length;
+
+        Piece(boolean added, long source, long length) {
+            this.added = added;
+            this.source = source;
+            this.length = length;
+        }
+    }
+
+    private final AbstractByteBuffer original;
+
+    private final List<Piece> pieces = new ArrayList<>();
+
+    /**
+     * Offset of each piece in the edited data, followed by the size of the edited data
+     */
+    private long[] starts = new long[2];
+
+    /**
+     * Bytes that have been added by edits
+     */
+    private byte[] added = new byte[256];
+    private int addedLength;
+
+    private long originalSize;
+    private boolean modified;
+
+    public EditableByteBuffer(AbstractByteBuffer original) throws IOException {
+        super(0);
+        this.original = original;
+        this.originalSize = original.getFileSize();
+        this.capacity = original.getCapacity();
+        if (originalSize > 0) {
+            pieces.add(new Piece(false, 0, originalSize));
+        }
+        updateStarts();
+    }
+
+
+    /**
+     * Returns <code>true</code> if the data has been edited
+     *
+     * @return <code>true</code> if the data has been edited
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+
+    @Override
+    public long getFileSize() {
+        return starts[pieces.size()];
+    }
+
+
+    @Override
+    public byte getByte(long fileOffset) throws IOException {
+        int index = findPiece(fileOffset);
+        Piece piece = pieces.get(index);
+        long pieceOffset = fileOffset - starts[index];
+        if (piece.added) {
+            return added[(int)(piece.source + pieceOffset)];
+        }
+        return original.getByte(piece.source + pieceOffset);
+    }
+
+
+    @Override
+    public ByteBuffer getPage(long fileOffset) throws IOException {
+        int index = findPiece(fileOffset);
+        Piece piece = pieces.get(index);
+        long pieceOffset = fileOffset - starts[index];
+        if (piece.added) {
+            ByteBuffer page = ByteBuffer.wrap(added, (int)piece.source, (int)piece.length).slice();
+            page.position((int)pieceOffset);
+            return page;
+        }
+
+        // The part of the original page that belongs to the piece
+        ByteBuffer page = original.getPage(piece.source + pieceOffset);
+        int position = page.position();
+        int before = (int)Math.min(position, pieceOffset);
+        int after = (int)Math.min(page.limit() - position, piece.length - pieceOffset);
+        page = page.duplicate();
+        page.limit(position + after);
+        page.position(position - before);
+        page = page.slice();
+        page.position(before);
+        return page;
+    }
+
+
+    /**
+     * Replaces the bytes at the given offset with the given data. Bytes beyond the end of the data are appended.
+     *
+     * @param fileOffset offset of the first byte to replace
+     * @param data the new bytes
+     * @throws IndexOutOfBoundsException if the offset is beyond the end of the data
+     */
+    public void overwrite(long fileOffset, byte[] data) {
+        checkOffset(fileOffset);
+        long replaced = Math.min(data.length, getFileSize() - fileOffset);
+
+        // Bytes typed again are replaced in place, they belong to a single piece
+        if (replaced == data.length && replaced > 0) {
+            int index = findPiece(fileOffset);
+            Piece piece = pieces.get(index);
+            long pieceOffset = fileOffset - starts[index];
+            if (piece.added && pieceOffset + data.length <= piece.length) {
+                System.arraycopy(data, 0, added, (int)(piece.source + pieceOffset), data.length);
+                modified = true;
+                return;
+            }
+        }
+        replace(fileOffset, replaced, data);
+    }
+
+
+    /**
+     * Inserts the given data at the given offset.
+     *
+     * @param fileOffset offset of the first inserted byte
+     * @param data the bytes to insert
+     * @throws IndexOutOfBoundsException if the offset is beyond the end of the data
+     */
+    public void insert(long fileOffset, byte[] data) {
+        checkOffset(fileOffset);
+        replace(fileOffset, 0, data);
+    }
+
+
+    /**
+     * Deletes the given number of bytes at the given offset.
+     *
+     * @param fileOffset offset of the first deleted byte
+     * @param length number of bytes to delete
+     * @throws IndexOutOfBoundsException if the range is not within the data
+     */
+    public void delete(long fileOffset, long length) {
+        checkOffset(fileOffset);
+        if (length < 0 || fileOffset + length > getFileSize()) {
+            throw new IndexOutOfBoundsException("Position: " + fileOffset + ", length = " + length + ", file size = " + getFileSize());
+        }
+        replace(fileOffset, length, new byte[0]);
+    }
+
+
+    /**
+     * Returns <code>true</code> if the edits can be saved by writing only the changed ranges over the original file:
+     * the size hasn't changed and the original bytes that are kept are at their original offsets.
+     *
+     * @return <code>true</code> if the edits can be saved in place
+     */
+    public boolean canSaveInPlace() {
+        if (getFileSize() != originalSize) {
+            return false;
+        }
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (!piece.added && piece.source != starts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Writes the changed ranges at their offsets, over the original data.
+     *
+     * @param out a stream over the original data
+     * @throws IOException
+     * @see #canSaveInPlace()
+     */
+    public void writeChanges(RandomAccessOutputStream out) throws IOException {
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (piece.added) {
+                out.seek(starts[i]);
+                out.write(added, (int)piece.source, (int)piece.length);
+            }
+        }
+    }
+
+
+    /**
+     * Writes the whole edited data.
+     *
+     * @param out the stream to write to
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        CacheStrategy cacheStrategy = original.getCacheStrategy();
+        original.setCacheStrategy(CacheStrategy.FORWARD);
+        try {
+            byte[] block = new byte[WRITE_BLOCK_SIZE];
+            long size = getFileSize();
+            long pos = 0;
+            while (pos < size) {
+                ByteBuffer page = getPage(pos);
+                int n = Math.min(page.remaining(), block.length);
+                page.get(block, 0, n);
+                out.write(block, 0, n);
+                pos += n;
+            }
+        } finally {
+            original.setCacheStrategy(cacheStrategy);
+        }
+    }
+
+
+    /**
+     * Saves the edited data to the given file, which must be the file the original data was read from, and closes
+     * this buffer: the file must be opened again to be edited further.
+     *
+     * @param file the file to save
+     * @throws IOException
+     */
+    public void save(AbstractFile file) throws IOException {
+        if (canSaveInPlace() && file.isFileOperationSupported(FileOperation.RANDOM_WRITE_FILE)) {
+            RandomAccessOutputStream out = file.getRandomAccessOutputStream();
+            try {
+                writeChanges(out);
+            } finally {
+                out.close();
+            }
+            close();
+            return;
+        }
+
+        AbstractFile parent = file.getParent();
+        if (parent == null) {
+            throw new IOException("Cannot save " + file + ": no parent folder");
+        }
+        AbstractFile tempFile = parent.getChild(file.getName() + ".tmp");
+        for (int i = 1; tempFile.exists(); i++) {
+            tempFile = parent.getChild(file.getName() + "." + i + ".tmp");
+        }
+        OutputStream out = tempFile.getOutputStream();
+        try {
+            writeTo(out);
+            out.close();
+        } catch (IOException e) {
+            out.close();
+            tempFile.delete();
+            throw e;
+        }
+        // The original data must not be open anymore when it is replaced
+        close();
+        tempFile.moveTo(file);
+    }
+
+
+    @Override
+    public void setCacheStrategy(CacheStrategy cacheStrategy) {
+        super.setCacheStrategy(cacheStrategy);
+        original.setCacheStrategy(cacheStrategy);
+    }
+
+
+    /**
+     * Replaces <code>length</code> bytes at the given offset with the given data.
+     */
+    private void replace(long fileOffset, long length, byte[] data) {
+        int first = split(fileOffset);
+        int last = split(fileOffset + length);
+        pieces.subList(first, last).clear();
+
+        if (data.length > 0) {
+            ensureAddedCapacity(addedLength + data.length);
+            System.arraycopy(data, 0, added, addedLength, data.length);
+            // Consecutive bytes typed or inserted are kept in a single piece
+            Piece previous = first > 0 ? pieces.get(first - 1) : null;
+            if (previous != null && previous.added && previous.source + previous.length == addedLength) {
+                pieces.set(first - 1, new Piece(true, previous.source, previous.length + data.length));
+            } else {
+                pieces.add(first, new Piece(true, addedLength, data.length));
+            }
+            addedLength += data.length;
+        }
+
+        updateStarts();
+        modified = true;
+    }
+
+
+    /**
+     * Splits the piece containing the given offset so that a piece starts at the offset, and returns the index of
+     * that piece, or the number of pieces if the offset is the end of the data.
+     */
+    private int split(long fileOffset) {
+        if (fileOffset == getFileSize()) {
+            return pieces.size();
+        }
+        int index = findPiece(fileOffset);
+        long pieceOffset = fileOffset - starts[index];
+        if (pieceOffset == 0) {
+            return index;
+        }
+        Piece piece = pieces.get(index);
+        pieces.set(index, new Piece(piece.added, piece.source, pieceOffset));
+        pieces.add(index + 1, new Piece(piece.added, piece.source + pieceOffset, piece.length - pieceOffset));
+        updateStarts();
+        return index + 1;
+    }
+
+
+    /**
+     * Returns the index of the piece containing the given offset.
+     */
+    private int findPiece(long fileOffset) {
+        if (fileOffset < 0 || fileOffset >= getFileSize()) {
+            throw new IndexOutOfBoundsException("Position: " + fileOffset + ", file size = " + getFileSize());
+        }
+        int index = Arrays.binarySearch(starts, 0, pieces.size(), fileOffset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+
+    private void updateStarts() {
+        if (starts.length < pieces.size() + 1) {
+            starts = new long[Math.max(pieces.size() + 1, starts.length * 2)];
+        }
+        long start = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            starts[i] = start;
+            start += pieces.get(i).length;
+        }
+        starts[pieces.size()] = start;
+    }
+
+
+    private void ensureAddedCapacity(int minCapacity) {
+        if (minCapacity > added.length) {
+            added = Arrays.copyOf(added, Math.max(minCapacity, added.length * 2));
+        }
+    }
+
+
+    private void checkOffset(long fileOffset) {
+        if (fileOffset < 0 || fileOffset > getFileSize()) {
+            throw new IndexOutOfBoundsException("Position: " + fileOffset + ", file size = " + getFileSize());
+        }
+    }
+
+
+    @Override
+    protected void closeStream() throws IOException {
+        original.close();
+    }
+
+    @Override
+    protected long getStreamSize() throws IOException {
+        return getFileSize();
+    }
+
+    @Override
+    protected void loadBuffer() throws IOException {
+        // Bytes are read from the pieces, see getByte()
+    }
+
+    @Override
+    protected boolean supportRandomAccess() {
+        return original.supportRandomAccess();
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.hexeditor.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of local files that maps the pages of the file in memory, the operating system loading their data when it is
+ * first accessed. Pages that are evicted are unmapped when they are garbage collected.
+ */
+public class MappedFileByteBuffer extends PagedByteBuffer {
+
+    /**
+     * Size of the mapped pages
+     */
+    public static final int DEFAULT_PAGE_SIZE = 8*1024*1024;
+
+    /**
+     * Maximum number of pages that are kept mapped
+     */
+    public static final int DEFAULT_MAX_PAGES = 32;
+
+    private final File file;
+    private FileChannel channel;
+
+    public MappedFileByteBuffer(File file, int pageSize, int maxPages) {
+        super(pageSize, maxPages);
+        this.file = file;
+    }
+
+
+    public MappedFileByteBuffer(File file) {
+        this(file, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    private FileChannel getChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        return channel;
+    }
+
+
+    @Override
+    protected ByteBuffer loadPage(long pageOffset, int length) throws IOException {
+        return getChannel().map(FileChannel.MapMode.READ_ONLY, pageOffset, length);
+    }
+
+    @Override
+    protected void closeStream() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    @Override
+    protected long getStreamSize() throws IOException {
+        return getChannel().size();
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.hexeditor.data;
+
+import com.mucommander.cache.FastLRUCache;
+import com.mucommander.cache.LRUCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Buffered file reader that keeps the most recently used pages of the file, instead of a single window that is
+ * refilled whenever an offset outside of it is read. Pages are aligned on multiples of the page size, so that
+ * scrolling back and forth or searching never loads the same data twice while its page is cached.
+ * The {@link CacheStrategy cache strategy} does not apply.
+ */
+public abstract class PagedByteBuffer extends AbstractByteBuffer {
+
+    /**
+     * Pages that have been loaded, by page offset
+     */
+    private final LRUCache<Long, ByteBuffer> pages;
+
+    /**
+     * The page being read, null if none
+     */
+    private ByteBuffer currentPage;
+
+    /**
+     *
+     * @param pageSize size of the pages, in bytes
+     * @param maxPages maximum number of pages that are kept
+     */
+    public PagedByteBuffer(int pageSize, int maxPages) {
+        super(0);
+        this.capacity = pageSize;
+        this.pages = new FastLRUCache<>(maxPages);
+    }
+
+
+    @Override
+    public byte getByte(long fileOffset) throws IOException {
+        long index = fileOffset - offset;
+        if (currentPage == null || index < 0 || index >= size) {
+            selectPage(fileOffset);
+            index = fileOffset - offset;
+        }
+        return currentPage.get((int)index);
+    }
+
+
+    @Override
+    public ByteBuffer getPage(long fileOffset) throws IOException {
+        long index = fileOffset - offset;
+        if (currentPage == null || index < 0 || index >= size) {
+            selectPage(fileOffset);
+            index = fileOffset - offset;
+        }
+        ByteBuffer page = currentPage.duplicate();
+        page.position((int)index);
+        return page;
+    }
+
+
+    /**
+     * Makes the page containing the given offset the current page, loading it if it isn't cached.
+     */
+    private void selectPage(long fileOffset) throws IOException {
+        if (fileOffset < 0 || fileOffset >= getFileSize()) {
+            throw new IndexOutOfBoundsException("Position: " + fileOffset + ", file size = " + getFileSize());
+        }
+        long pageOffset = fileOffset - fileOffset % capacity;
+        ByteBuffer page = pages.get(pageOffset);
+        if (page == null) {
+            page = loadPage(pageOffset, (int)Math.min(capacity, getFileSize() - pageOffset));
+            pages.add(pageOffset, page);
+        }
+        currentPage = page;
+        offset = pageOffset;
+        size = page.limit();
+    }
+
+
+    @Override
+    protected void loadBuffer() throws IOException {
+        selectPage(offset);
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        pages.clearAll();
+        currentPage = null;
+        super.close();
+    }
+
+
+    /**
+     * Loads the page at the given offset
+     *
+     * @param pageOffset offset of the page in the file, a multiple of the page size
+     * @param length number of bytes of the page, less than the page size for the last page of the file
+     * @return a buffer of <code>length</code> bytes, whose position is 0
+     * @throws IOException
+     */
+    abstract protected ByteBuffer loadPage(long pageOffset, int length) throws IOException;
+
+    @Override
+    protected boolean supportRandomAccess() {
+        return true;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.hexeditor.data;
+
+import com.mucommander.commons.io.RandomAccessInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reader of files that support random access, e.g. remote files, that caches the blocks it has read so that going
+ * back to them doesn't require another request.
+ */
+public class RandomAccessByteBuffer extends PagedByteBuffer {
+
+    /**
+     * Size of the blocks read from the stream
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64*1024;
+
+    /**
+     * Maximum number of blocks that are cached
+     */
+    public static final int DEFAULT_MAX_BLOCKS = 64;
+
+    private final RandomAccessInputStream is;
+    private final long fileSize;
+
+    public RandomAccessByteBuffer(RandomAccessInputStream is, long fileSize, int blockSize, int maxBlocks) {
+        super(blockSize, maxBlocks);
+        this.is = is;
+        this.fileSize = fileSize;
+    }
+
+
+    public RandomAccessByteBuffer(RandomAccessInputStream is, long fileSize) {
+        this(is, fileSize, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS);
+    }
+
+
+    @Override
+    protected ByteBuffer loadPage(long pageOffset, int length) throws IOException {
+        byte[] block = new byte[length];
+        is.seek(pageOffset);
+        is.readFully(block);
+        return ByteBuffer.wrap(block);
+    }
+
+    @Override
+    protected void closeStream() throws IOException {
+        is.close();
+    }
+
+    @Override
+    protected long getStreamSize() throws IOException {
+        return fileSize >= 0 ? fileSize : is.getLength();
+    }
+
+}
@@ -18,8 +18,13 @@
 package ru.trolsoft.hexeditor.search;
 
 import ru.trolsoft.hexeditor.data.AbstractByteBuffer;
+import ru.trolsoft.utils.search.AbstractByteSearcher;
+import ru.trolsoft.utils.search.ByteSearcher;
+import ru.trolsoft.utils.search.BytesSearchPattern;
+import ru.trolsoft.utils.search.SearchUtils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Search in AbstractByteBuffer
@@ -28,6 +33,8 @@ public class ByteBufferSearchUtils {
 
     /**
      * Returns the offset within the ByteBuffer of the first occurrence of the specified data, starting at the specified offset.
+     * The data is read one block at a time from the pages of the buffer, consecutive blocks overlapping so that
+     * occurrences spanning two blocks are found.
      *
      * @param data buffer for search
      * @param pattern the data to search for
@@ -39,25 +46,25 @@ public class ByteBufferSearchUtils {
         if (fileSize <= 0 || pattern.length == 0) {
             return -1;
         }
-        int[] failure = computeFailure(pattern);
+        ByteSearcher searcher = SearchUtils.compile(new BytesSearchPattern(pattern));
+        byte[] block = new byte[Math.max(AbstractByteSearcher.BLOCK_SIZE, 2 * pattern.length)];
         AbstractByteBuffer.CacheStrategy cacheStrategy = data.getCacheStrategy();
         data.setCacheStrategy(AbstractByteBuffer.CacheStrategy.FORWARD);
-
-        int j = 0;
-        for (long i = fromOffset; i < fileSize; i++) {
-            while (j > 0 && pattern[j] != data.getByte(i)) {
-                j = failure[j - 1];
-            }
-            if (pattern[j] == data.getByte(i)) {
-                j++;
-            }
-            if (j == pattern.length) {
-                data.setCacheStrategy(cacheStrategy);
-                return i - pattern.length + 1;
+        try {
+            long pos = Math.max(0, fromOffset);
+            while (pos + pattern.length <= fileSize) {
+                int length = (int)Math.min(block.length, fileSize - pos);
+                readBytes(data, pos, block, length);
+                int index = searcher.indexOf(block, 0, length);
+                if (index >= 0) {
+                    return pos + index;
+                }
+                pos += length - pattern.length + 1;
             }
+            return -1;
+        } finally {
+            data.setCacheStrategy(cacheStrategy);
         }
-        data.setCacheStrategy(cacheStrategy);
-        return -1;
     }
 
     public static long indexOf(AbstractByteBuffer data, byte[][] patterns, long fromOffset) throws IOException {
@@ -95,33 +102,69 @@ public class ByteBufferSearchUtils {
     }
 
 
+    /**
+     * Returns the offset within the ByteBuffer of the last occurrence of the specified data that starts at or before
+     * the specified offset. The data is read one block at a time, from the end.
+     *
+     * @param data buffer for search
+     * @param pattern the data to search for
+     * @param fromOffset the offset from which to start the search backward
+     * @return the offset of the last occurrence of the specified data, or -1 if there is no such occurrence
+     */
     public static long indexOfBackward(AbstractByteBuffer data, byte[] pattern, long fromOffset) throws IOException {
-        byte[] patternInvert = new byte[pattern.length];
-        for (int i = 0; i < pattern.length; i++) {
-            patternInvert[i] = pattern[pattern.length-i-1];
+        long fileSize = data.getFileSize();
+        if (fileSize <= 0 || pattern.length == 0) {
+            return -1;
         }
-        int[] failure = computeFailure(patternInvert);
+        ByteSearcher searcher = SearchUtils.compile(new BytesSearchPattern(pattern));
+        byte[] block = new byte[Math.max(AbstractByteSearcher.BLOCK_SIZE, 2 * pattern.length)];
+        // Blocks are read forward, even though they are searched from the end
         AbstractByteBuffer.CacheStrategy cacheStrategy = data.getCacheStrategy();
-        data.setCacheStrategy(AbstractByteBuffer.CacheStrategy.BACKWARD);
-
-        int j = 0;
-        for (long i = fromOffset; i >= 0; i--) {
-            while (j > 0 && patternInvert[j] != data.getByte(i)) {
-                j = failure[j - 1];
-            }
-            if (pattern[j] == data.getByte(i)) {
-                j++;
-            }
-            if (j == pattern.length) {
-                data.setCacheStrategy(cacheStrategy);
-                return i - pattern.length + 1;
+        data.setCacheStrategy(AbstractByteBuffer.CacheStrategy.FORWARD);
+        try {
+            long end = Math.min(fromOffset + pattern.length, fileSize);
+            while (end >= pattern.length) {
+                long start = Math.max(0, end - block.length);
+                int length = (int)(end - start);
+                readBytes(data, start, block, length);
+                int index = lastIndexOf(searcher, block, length);
+                if (index >= 0) {
+                    return start + index;
+                }
+                if (start == 0) {
+                    break;
+                }
+                end = start + pattern.length - 1;
             }
+            return -1;
+        } finally {
+            data.setCacheStrategy(cacheStrategy);
         }
-        data.setCacheStrategy(cacheStrategy);
-        return -1;
     }
 
 
+    /**
+     * Copies <code>length</code> bytes at the given offset into <code>dest</code>, a page at a time.
+     */
+    private static void readBytes(AbstractByteBuffer data, long offset, byte[] dest, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            ByteBuffer page = data.getPage(offset + done);
+            int n = Math.min(length - done, page.remaining());
+            page.get(dest, done, n);
+            done += n;
+        }
+    }
+
+    private static int lastIndexOf(ByteSearcher searcher, byte[] block, int length) {
+        int result = -1;
+        int index;
+        while ((index = searcher.indexOf(block, result + 1, length)) >= 0) {
+            result = index;
+        }
+        return result;
+    }
+
 
     /**
      * Knuth-Morris-Pratt Algorithm for Pattern Matching
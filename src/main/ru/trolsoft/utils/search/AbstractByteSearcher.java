@@ -0,0 +1,97 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/soft/trolcommander
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Implements the stream and <code>ByteBuffer</code> searches of {@link ByteSearcher} on top of
+ * {@link #indexOf(byte[], int, int)}: data is searched one block at a time, the last
+ * <code>getMaxLength() - 1</code> bytes of a block being searched again with the next block so that matches that span
+ * two blocks are found.
+ */
+public abstract class AbstractByteSearcher implements ByteSearcher {
+
+    /** Size of the blocks streams are read in */
+    public final static int BLOCK_SIZE = 64 * 1024;
+
+    @Override
+    public int indexOf(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            int index = indexOf(buffer.array(), offset + buffer.position(), offset + buffer.limit());
+            return index < 0 ? -1 : index - offset;
+        }
+
+        // Direct buffer, copy the data one block at a time
+        ByteBuffer source = buffer.duplicate();
+        int overlap = Math.max(0, getMaxLength() - 1);
+        byte[] block = new byte[Math.max(BLOCK_SIZE, 2 * overlap)];
+        int blockStart = source.position();
+        int length = 0;
+        while (source.hasRemaining()) {
+            int n = Math.min(block.length - length, source.remaining());
+            source.get(block, length, n);
+            length += n;
+
+            int index = indexOf(block, 0, length);
+            if (index >= 0) {
+                return blockStart + index;
+            }
+
+            int kept = Math.min(overlap, length);
+            System.arraycopy(block, length - kept, block, 0, kept);
+            blockStart += length - kept;
+            length = kept;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public long indexOf(InputStream in) throws IOException {
+        int overlap = Math.max(0, getMaxLength() - 1);
+        byte[] block = new byte[Math.max(BLOCK_SIZE, 2 * overlap)];
+        long blockStart = 0;
+        int length = 0;
+        while (true) {
+            // Fill the block as much as possible before searching it
+            int n = in.read(block, length, block.length - length);
+            if (n < 0) {
+                // Search what remains of the stream
+                int index = indexOf(block, 0, length);
+                return index < 0 ? -1 : blockStart + index;
+            }
+            length += n;
+            if (length < block.length) {
+                continue;
+            }
+
+            int index = indexOf(block, 0, length);
+            if (index >= 0) {
+                return blockStart + index;
+            }
+
+            System.arraycopy(block, length - overlap, block, 0, overlap);
+            blockStart += length - overlap;
+            length = overlap;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/soft/trolcommander
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Searches several patterns at once with an Aho-Corasick automaton, reading each byte of the data once whatever the
+ * number of patterns.
+ *
+ * <p>Since pattern positions may accept several byte values, the automaton is built as a deterministic automaton
+ * whose states are the sets of pattern prefixes matched so far, which is the Aho-Corasick automaton when each
+ * position accepts a single value. States and transitions are created lazily, as they are needed by the data being
+ * searched: each transition is computed once and then looked up in a 256-entry table. The number of states is bounded
+ * by {@link #MAX_STATES}, beyond which transitions are computed without being memorized.</p>
+ */
+public class AhoCorasickSearcher extends AbstractByteSearcher {
+
+    /** Maximum number of states that are memorized */
+    public final static int MAX_STATES = 4096;
+
+    /** Byte classes of the patterns */
+    private final boolean[][][] patterns;
+
+    /** Length of the longest pattern */
+    private final int maxLength;
+
+    /** Pattern and position of each prefix, a prefix of pattern p of length k being identified by prefixIds[p] + k */
+    private final int[] prefixPatterns;
+    private final int[] prefixLengths;
+    private final int[] prefixIds;
+
+    /** States that have been created, guarded by their own lock */
+    private final Map<State, State> states = new HashMap<>();
+
+    /** The start state, in which no prefix has been matched */
+    private final State startState;
+
+
+    /**
+     * Creates a new searcher for the given patterns.
+     *
+     * @param patterns the patterns to search for
+     */
+    public AhoCorasickSearcher(SearchPattern... patterns) {
+        this.patterns = new boolean[patterns.length][][];
+        int maxLength = 0;
+        int nbPrefixes = 0;
+        this.prefixIds = new int[patterns.length];
+        for (int p = 0; p < patterns.length; p++) {
+            ByteClassPattern compiled = ByteClassPattern.compile(patterns[p]);
+            int length = compiled.length();
+            this.patterns[p] = new boolean[length][];
+            for (int i = 0; i < length; i++) {
+                this.patterns[p][i] = compiled.getByteClass(i);
+            }
+            maxLength = Math.max(maxLength, length);
+            prefixIds[p] = nbPrefixes;
+            nbPrefixes += length;
+        }
+        this.maxLength = maxLength;
+
+        this.prefixPatterns = new int[nbPrefixes];
+        this.prefixLengths = new int[nbPrefixes];
+        for (int p = 0; p < patterns.length; p++) {
+            for (int k = 0; k < this.patterns[p].length; k++) {
+                prefixPatterns[prefixIds[p] + k] = p;
+                prefixLengths[prefixIds[p] + k] = k;
+            }
+        }
+
+        this.startState = new State(new int[0], 0);
+        states.put(startState, startState);
+    }
+
+    @Override
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public int indexOf(byte[] data, int from, int to) {
+        if (maxLength == 0) {
+            return -1;
+        }
+
+        State state = startState;
+        for (int i = from; i < to; i++) {
+            int b = data[i] & 0xff;
+            State next = state.transitions[b];
+            if (next == null) {
+                next = getTransition(state, b);
+            }
+            state = next;
+
+            if (state.matchLength > 0) {
+                return i - state.matchLength + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Computes the state reached from the given state on the given byte, and memorizes the transition if the maximum
+     * number of states hasn't been reached.
+     */
+    private State getTransition(State state, int b) {
+        int[] prefixes = new int[state.prefixes.length + patterns.length];
+        int nbPrefixes = 0;
+        int matchLength = 0;
+
+        // Extend the prefixes matched so far, and start matching each pattern at this byte
+        for (int i = 0; i < state.prefixes.length + patterns.length; i++) {
+            int p, k;
+            if (i < state.prefixes.length) {
+                p = prefixPatterns[state.prefixes[i]];
+                k = prefixLengths[state.prefixes[i]];
+            } else {
+                p = i - state.prefixes.length;
+                k = 0;
+                if (patterns[p].length == 0) {
+                    continue;
+                }
+            }
+
+            if (patterns[p][k][b]) {
+                if (k + 1 == patterns[p].length) {
+                    matchLength = Math.max(matchLength, k + 1);
+                } else {
+                    prefixes[nbPrefixes++] = prefixIds[p] + k + 1;
+                }
+            }
+        }
+
+        prefixes = Arrays.copyOf(prefixes, nbPrefixes);
+        Arrays.sort(prefixes);
+        State next = new State(prefixes, matchLength);
+
+        synchronized (states) {
+            State existing = states.get(next);
+            if (existing != null) {
+                next = existing;
+            } else if (states.size() < MAX_STATES) {
+                states.put(next, next);
+            } else {
+                return next;
+            }
+            state.transitions[b] = next;
+        }
+
+        return next;
+    }
+
+
+    /**
+     * A state of the automaton: the set of pattern prefixes that are matched, and the length of the pattern whose
+     * match has been completed when entering this state, if any.
+     */
+    private static class State {
+
+        /** Identifiers of the prefixes matched in this state, sorted */
+        private final int[] prefixes;
+
+        /** Length of the longest pattern whose match is completed in this state, 0 if none */
+        private final int matchLength;
+
+        /** States reached on each byte value, null if not computed yet */
+        private final State[] transitions = new State[256];
+
+        private final int hashCode;
+
+        private State(int[] prefixes, int matchLength) {
+            this.prefixes = prefixes;
+            this.matchLength = matchLength;
+            this.hashCode = 31 * Arrays.hashCode(prefixes) + matchLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State state = (State)o;
+            return matchLength == state.matchLength && Arrays.equals(prefixes, state.prefixes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/soft/trolcommander
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+/**
+ * A search pattern compiled to a sequence of byte classes: the set of byte values accepted at each position of the
+ * pattern is computed once from {@link SearchPattern#checkByte(int, int)}, so that any pattern (case-sensitive,
+ * case-insensitive, hex) can be matched by table lookups on raw bytes.
+ */
+public class ByteClassPattern implements SearchPattern {
+
+    /** classes[i][b] is true if byte value b is accepted at position i */
+    private final boolean[][] classes;
+
+
+    private ByteClassPattern(boolean[][] classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * Compiles the given pattern. Returns the pattern itself if it is already compiled.
+     *
+     * @param pattern the pattern to compile
+     * @return the compiled pattern
+     */
+    public static ByteClassPattern compile(SearchPattern pattern) {
+        if (pattern instanceof ByteClassPattern) {
+            return (ByteClassPattern)pattern;
+        }
+
+        int length = pattern.length();
+        boolean[][] classes = new boolean[length][256];
+        for (int i = 0; i < length; i++) {
+            for (int b = 0; b < 256; b++) {
+                classes[i][b] = pattern.checkByte(i, b);
+            }
+        }
+
+        return new ByteClassPattern(classes);
+    }
+
+    /**
+     * Returns the byte values accepted at the given position, indexed by unsigned byte value. The returned array must
+     * not be modified.
+     *
+     * @param index position in the pattern
+     * @return the byte values accepted at the given position
+     */
+    boolean[] getByteClass(int index) {
+        return classes[index];
+    }
+
+    @Override
+    public int length() {
+        return classes.length;
+    }
+
+    @Override
+    public boolean checkByte(int index, int val) {
+        return classes[index][val & 0xff];
+    }
+
+    @Override
+    public boolean checkSelf(int index1, int index2) {
+        boolean[] class1 = classes[index1];
+        boolean[] class2 = classes[index2];
+        for (int b = 0; b < 256; b++) {
+            if (class1[b] && class2[b]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/soft/trolcommander
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Searches blocks of bytes for one or several compiled patterns. Instances are created with
+ * {@link SearchUtils#compile(SearchPattern...)} and are thread-safe.
+ */
+public interface ByteSearcher {
+
+    /**
+     * Returns the length of the longest pattern this searcher looks for.
+     *
+     * @return the length of the longest pattern
+     */
+    int getMaxLength();
+
+    /**
+     * Returns the offset of the first match in the given range of the array, <code>-1</code> if there is none.
+     * When several patterns are searched, the match that ends first is returned.
+     *
+     * @param data the array to search
+     * @param from offset of the first byte to search
+     * @param to offset after the last byte to search
+     * @return the offset of the first match in the array, <code>-1</code> if there is none
+     */
+    int indexOf(byte[] data, int from, int to);
+
+    /**
+     * Returns the index of the first match between the buffer's position and limit, <code>-1</code> if there is
+     * none. The buffer's position is not modified.
+     *
+     * @param buffer the buffer to search
+     * @return the index of the first match in the buffer, <code>-1</code> if there is none
+     */
+    int indexOf(ByteBuffer buffer);
+
+    /**
+     * Reads the given stream until a match is found or the end of the stream is reached, and returns the offset of
+     * the first match in the stream, <code>-1</code> if there is none. The stream is not closed.
+     *
+     * @param in the stream to search
+     * @return the offset of the first match in the stream, <code>-1</code> if there is none
+     * @throws IOException if an error occurred while reading the stream
+     */
+    long indexOf(InputStream in) throws IOException;
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/soft/trolcommander
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ru.trolsoft.utils.search;
+
+/**
+ * Searches a single pattern with the Boyer-Moore-Horspool algorithm: the pattern is compared from its last byte, and
+ * on mismatch is shifted by a distance looked up from the byte of the data aligned with the pattern's last position.
+ * Positions that accept several byte values (e.g. case-insensitive patterns) are supported, each accepted value
+ * getting the shift of the rightmost position that accepts it. On text, most bytes do not occur in the pattern and
+ * the search skips ahead by the pattern's length.
+ */
+public class HorspoolSearcher extends AbstractByteSearcher {
+
+    /** Byte classes of the pattern */
+    private final boolean[][] classes;
+
+    /** Distance to shift the pattern by, indexed by the unsigned value of the byte aligned with its last position */
+    private final int[] shifts = new int[256];
+
+
+    /**
+     * Creates a new searcher for the given pattern.
+     *
+     * @param pattern the pattern to search for
+     */
+    public HorspoolSearcher(SearchPattern pattern) {
+        ByteClassPattern compiled = ByteClassPattern.compile(pattern);
+        int length = compiled.length();
+        this.classes = new boolean[length][];
+        for (int i = 0; i < length; i++) {
+            classes[i] = compiled.getByteClass(i);
+        }
+
+        for (int b = 0; b < 256; b++) {
+            shifts[b] = length;
+        }
+        for (int i = 0; i < length - 1; i++) {
+            boolean[] byteClass = classes[i];
+            for (int b = 0; b < 256; b++) {
+                if (byteClass[b]) {
+                    shifts[b] = length - 1 - i;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getMaxLength() {
+        return classes.length;
+    }
+
+    @Override
+    public int indexOf(byte[] data, int from, int to) {
+        int length = classes.length;
+        if (length == 0) {
+            return -1;
+        }
+
+        boolean[] lastClass = classes[length - 1];
+        int last = length - 1;
+        for (int pos = from; pos <= to - length; ) {
+            int b = data[pos + last] & 0xff;
+            if (lastClass[b]) {
+                int i = last - 1;
+                while (i >= 0 && classes[i][data[pos + i] & 0xff]) {
+                    i--;
+                }
+                if (i < 0) {
+                    return pos;
+                }
+            }
+            pos += shifts[b];
+        }
+
+        return -1;
+    }
+}
@@ -18,6 +18,13 @@
 package ru.trolsoft.utils.search;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * @author Oleg Trifonov
  * Created on 16/11/14.
@@ -25,6 +32,78 @@ package ru.trolsoft.utils.search;
 public class SearchUtils {
 
 
+    /**
+     * Compiles the given patterns to a {@link ByteSearcher} that searches blocks of bytes: a single pattern is searched
+     * with {@link HorspoolSearcher}, several patterns at once with {@link AhoCorasickSearcher}.
+     *
+     * @param patterns the patterns to search for
+     * @return a searcher for the given patterns
+     */
+    public static ByteSearcher compile(SearchPattern... patterns) {
+        if (patterns.length == 1) {
+            return new HorspoolSearcher(patterns[0]);
+        }
+        return new AhoCorasickSearcher(patterns);
+    }
+
+    /**
+     * Compiles a searcher for the given text encoded in each of the given charsets, so that files can be searched
+     * without knowing their encoding. When the search is not case-sensitive and the lower and upper case forms of the
+     * text have different lengths in a charset, the original, lower and upper case forms are searched.
+     *
+     * @param text the text to search for
+     * @param caseSensitive <code>true</code> for a case-sensitive search
+     * @param charsets the charsets the text may be encoded in
+     * @return a searcher for the given text
+     * @throws UnsupportedEncodingException if one of the charsets is not supported
+     */
+    public static ByteSearcher compile(String text, boolean caseSensitive, String... charsets) throws UnsupportedEncodingException {
+        List<SearchPattern> patterns = new ArrayList<>();
+        List<byte[]> encodings = new ArrayList<>();
+        for (String charset : charsets) {
+            if (caseSensitive) {
+                addPattern(patterns, encodings, new StringCaseSensitiveSearchPattern(text, charset), text.getBytes(charset));
+            } else if (text.toLowerCase().getBytes(charset).length == text.toUpperCase().getBytes(charset).length) {
+                addPattern(patterns, encodings, new StringCaseInsensitiveSearchPattern(text, charset), text.toLowerCase().getBytes(charset));
+            } else {
+                for (String form : new String[] {text, text.toLowerCase(), text.toUpperCase()}) {
+                    addPattern(patterns, encodings, new StringCaseSensitiveSearchPattern(form, charset), form.getBytes(charset));
+                }
+            }
+        }
+
+        return compile(patterns.toArray(new SearchPattern[patterns.size()]));
+    }
+
+    /**
+     * Adds the given pattern unless a pattern with the same encoding has already been added, as is the case for
+     * charsets that encode the text the same way.
+     */
+    private static void addPattern(List<SearchPattern> patterns, List<byte[]> encodings, SearchPattern pattern, byte[] encoding) {
+        for (byte[] existing : encodings) {
+            if (Arrays.equals(existing, encoding)) {
+                return;
+            }
+        }
+        patterns.add(pattern);
+        encodings.add(encoding);
+    }
+
+    /**
+     * Returns the offset of the first occurrence of the given pattern in the stream, <code>-1</code> if there is none.
+     * The stream is read in blocks and searched with a {@link ByteSearcher}; callers that search several streams
+     * for the same pattern should {@link #compile(SearchPattern...) compile} it once instead.
+     *
+     * @param in the stream to search, not closed by this method
+     * @param pattern the pattern to search for
+     * @return the offset of the first occurrence of the pattern, <code>-1</code> if there is none
+     * @throws IOException if an error occurred while reading the stream
+     */
+    public static long indexOf(InputStream in, SearchPattern pattern) throws IOException {
+        return compile(pattern).indexOf(in);
+    }
+
+
     public static long indexOf(SearchSourceStream source, SearchPattern pattern) throws SearchException {
         if (!source.hasNext() || pattern.length() == 0) {
             return -1;
@@ -18,6 +18,7 @@
 
 package com.mucommander.commons.file;
 
+import com.mucommander.commons.file.filter.StartsWithFilenameFilter;
 import com.mucommander.commons.file.util.PathUtilsTest;
 import com.mucommander.commons.io.*;
 import com.mucommander.commons.io.security.MuProvider;
@@ -1132,6 +1133,84 @@ public abstract class AbstractFileTest {
         assert 1 == children.length;
         assert child.equals(children[0]);
         assert children[0].exists();
+
+        testIncrementalLs();
+    }
+
+    /**
+     * Tests {@link AbstractFile#ls(com.mucommander.commons.file.filter.FileFilter, FileListingHandler)} on
+     * {@link #tempFile}, which must be an existing directory. The directory is filled with more files than
+     * {@link FileListingBuffer#DEFAULT_CHUNK_SIZE}, so that implementations that list files incrementally report them
+     * in several chunks.
+     *
+     * @throws IOException should not happen
+     */
+    protected void testIncrementalLs() throws IOException {
+        // The directory already contains one file
+        final int nbFiles = 2*FileListingBuffer.DEFAULT_CHUNK_SIZE + 10;
+        for(int i=1; i<nbFiles; i++)
+            tempFile.getChild((i%2==0?"even":"odd")+i).mkfile();
+
+        final List<AbstractFile> listedFiles = new ArrayList<AbstractFile>();
+        final List<Integer> chunkSizes = new ArrayList<Integer>();
+        FileListingHandler handler = new FileListingHandler() {
+            public boolean filesListed(AbstractFile[] files) {
+                chunkSizes.add(files.length);
+                Collections.addAll(listedFiles, files);
+                return true;
+            }
+        };
+
+        // Assert that the files that are listed incrementally are the same as those returned by ls(), and that
+        // chunks are not empty nor larger than the default chunk size if there are several of them
+        tempFile.ls(null, handler);
+        assert new HashSet<AbstractFile>(Arrays.asList(tempFile.ls())).equals(new HashSet<AbstractFile>(listedFiles));
+        assert nbFiles == listedFiles.size();
+        for(int chunkSize : chunkSizes) {
+            assert chunkSize > 0;
+            assert chunkSizes.size() == 1 || chunkSize <= FileListingBuffer.DEFAULT_CHUNK_SIZE;
+        }
+        final List<Integer> unfilteredChunkSizes = new ArrayList<Integer>(chunkSizes);
+
+        // Assert that the filter is applied
+        listedFiles.clear();
+        tempFile.ls(new StartsWithFilenameFilter("even"), handler);
+        assert (nbFiles-1)/2 == listedFiles.size();
+        for(AbstractFile file : listedFiles)
+            assert file.getName().startsWith("even");
+
+        // Assert that the handler is not called anymore once it has cancelled the listing, and that the files that
+        // were not reported yet are not listed
+        final int nbCalls[] = new int[1];
+        final int nbListed[] = new int[1];
+        tempFile.ls(null, new FileListingHandler() {
+            public boolean filesListed(AbstractFile[] files) {
+                nbCalls[0]++;
+                nbListed[0] += files.length;
+                return false;
+            }
+        });
+        assert 1 == nbCalls[0];
+        assert unfilteredChunkSizes.get(0) == nbListed[0];
+
+        // Assert that the listing can be cancelled in the middle, if files are listed incrementally
+        nbCalls[0] = 0;
+        nbListed[0] = 0;
+        tempFile.ls(null, new FileListingHandler() {
+            public boolean filesListed(AbstractFile[] files) {
+                nbCalls[0]++;
+                nbListed[0] += files.length;
+                return nbCalls[0] < 2;
+            }
+        });
+        if(unfilteredChunkSizes.size() == 1) {
+            assert 1 == nbCalls[0];
+        }
+        else {
+            assert 2 == nbCalls[0];
+            assert unfilteredChunkSizes.get(0) + unfilteredChunkSizes.get(1) == nbListed[0];
+            assert nbListed[0] < nbFiles;
+        }
     }
 
     /**
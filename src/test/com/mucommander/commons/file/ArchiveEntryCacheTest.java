@@ -0,0 +1,241 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a TestNG test case for {@link ArchiveEntryCache}.
+ *
+ * @see ArchiveEntryCache
+ */
+public class ArchiveEntryCacheTest {
+
+    /** Number of entries of the test archive */
+    private final static int NB_ENTRIES = 1000;
+
+    /** The underlying file of the test archive */
+    private AbstractFile archiveFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        AbstractFile cacheFolder = FileFactory.getTemporaryFile(false);
+        cacheFolder.mkdir();
+        ArchiveEntryCache.setCacheFolder(cacheFolder);
+
+        archiveFile = FileFactory.getTemporaryFile(false);
+        OutputStream out = archiveFile.getOutputStream();
+        out.write(new byte[]{'t', 'e', 's', 't'});
+        out.close();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        AbstractFile cacheFolder = ArchiveEntryCache.getCacheFolder();
+        ArchiveEntryCache.clear();
+        ArchiveEntryCache.setCacheFolder(null);
+        ArchiveEntryCache.setMaxSize(ArchiveEntryCache.DEFAULT_MAX_SIZE);
+
+        cacheFolder.delete();
+        archiveFile.delete();
+    }
+
+    /**
+     * Asserts that the entries of an archive are read from the cache when the archive hasn't changed, with their
+     * attributes and format-specific information, and that they are read from the archive again once it has changed.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCachedEntries() throws IOException {
+        TestArchiveFile archive = new TestArchiveFile(archiveFile);
+        archive.createEntriesTree();
+        assert 1 == archive.nbListings;
+        assert 1 == ArchiveEntryCache.getCacheFolder().ls().length;
+
+        // A new instance on the unchanged archive does not list it, but gets the archive data that was cached
+        archive = new TestArchiveFile(archiveFile);
+        archive.createEntriesTree();
+        assert 0 == archive.nbListings;
+        assert NB_ENTRIES == archive.cachedArchiveData;
+
+        for(int i=0; i<NB_ENTRIES; i++) {
+            DefaultMutableTreeNode node = archive.getArchiveEntryTree().findEntryNode(getEntryPath(i));
+            assert node != null;
+
+            ArchiveEntry entry = (ArchiveEntry)node.getUserObject();
+            assert getEntryPath(i).equals(entry.getPath());
+            assert entry.isDirectory() == (i%10==0);
+            assert i == entry.getDate();
+            assert 2*i == entry.getSize();
+            assert entry.exists();
+            assert 0640 == entry.getPermissions().getIntValue();
+            assert "owner".equals(entry.getOwner());
+            assert entry.getGroup() == null;
+            assert Integer.valueOf(i).equals(entry.getEntryObject());
+        }
+
+        // The archive is listed again once it has changed
+        archiveFile.changeDate(archiveFile.getDate()-10000);
+        archive = new TestArchiveFile(archiveFile);
+        archive.createEntriesTree();
+        assert 1 == archive.nbListings;
+
+        archive = new TestArchiveFile(archiveFile);
+        archive.createEntriesTree();
+        assert 0 == archive.nbListings;
+    }
+
+    /**
+     * Asserts that cache files are deleted when the cache exceeds its maximum size.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testMaxSize() throws IOException {
+        ArchiveEntryCache.setMaxSize(1);
+
+        TestArchiveFile archive = new TestArchiveFile(archiveFile);
+        archive.createEntriesTree();
+        assert 0 == ArchiveEntryCache.getCacheFolder().ls().length;
+
+        archive = new TestArchiveFile(archiveFile);
+        archive.createEntriesTree();
+        assert 1 == archive.nbListings;
+    }
+
+    /**
+     * Asserts that a cache file whose number of entries is negative or larger than the file can hold is treated as a
+     * cache miss, rather than trusted to allocate the list of entries.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCorruptCacheFile() throws IOException {
+        for(int nbEntries : new int[]{-1, Integer.MAX_VALUE}) {
+            TestArchiveFile archive = new TestArchiveFile(archiveFile);
+            archive.createEntriesTree();
+
+            AbstractFile cacheFile = ArchiveEntryCache.getCacheFolder().ls()[0];
+            byte[] bytes = new byte[(int)cacheFile.getSize()];
+            DataInputStream din = new DataInputStream(cacheFile.getInputStream());
+            din.readFully(bytes);
+            din.close();
+
+            // Skip the header to find the offset of the number of entries
+            ByteArrayInputStream bin = new ByteArrayInputStream(bytes);
+            din = new DataInputStream(bin);
+            din.readInt();
+            din.readInt();
+            din.readUTF();
+            din.readLong();
+            din.readLong();
+            int offset = bytes.length - bin.available();
+
+            DataOutputStream dout = new DataOutputStream(cacheFile.getOutputStream());
+            dout.write(bytes, 0, offset);
+            dout.writeInt(nbEntries);
+            dout.write(bytes, offset+4, bytes.length-offset-4);
+            dout.close();
+
+            archive = new TestArchiveFile(archiveFile);
+            archive.createEntriesTree();
+            assert 1 == archive.nbListings;
+        }
+    }
+
+    private static String getEntryPath(int i) {
+        return "dir"+(i/100)+"/entry"+i+(i%10==0?"/":"");
+    }
+
+
+    /**
+     * A read-only archive with {@link #NB_ENTRIES} synthetic entries, whose entry objects are the entries' index.
+     */
+    private static class TestArchiveFile extends AbstractROArchiveFile {
+
+        /** Number of times the entries of this archive have been listed */
+        private int nbListings;
+
+        /** Archive data read from the cache, -1 if none has been read */
+        private int cachedArchiveData = -1;
+
+        private TestArchiveFile(AbstractFile file) {
+            super(file);
+        }
+
+        @Override
+        public ArchiveEntryIterator getEntryIterator() {
+            nbListings++;
+
+            List<ArchiveEntry> entries = new ArrayList<>(NB_ENTRIES);
+            for(int i=0; i<NB_ENTRIES; i++) {
+                ArchiveEntry entry = new ArchiveEntry(getEntryPath(i), i%10==0, i, 2*i, true);
+                entry.setPermissions(new SimpleFilePermissions(0640));
+                entry.setOwner("owner");
+                entry.setEntryObject(i);
+                entries.add(entry);
+            }
+
+            return new WrapperArchiveEntryIterator(entries.iterator());
+        }
+
+        @Override
+        public InputStream getEntryInputStream(ArchiveEntry entry, ArchiveEntryIterator entryIterator) throws IOException {
+            throw new IOException();
+        }
+
+        @Override
+        protected boolean isEntriesTreeCacheable() {
+            return true;
+        }
+
+        @Override
+        protected long getCachedEntryLocator(ArchiveEntry entry) {
+            return (Integer)entry.getEntryObject();
+        }
+
+        @Override
+        protected void restoreCachedEntry(ArchiveEntry entry, long locator) {
+            entry.setEntryObject((int)locator);
+        }
+
+        @Override
+        protected void writeCachedArchiveData(DataOutputStream out) throws IOException {
+            out.writeInt(NB_ENTRIES);
+        }
+
+        @Override
+        protected void readCachedArchiveData(DataInputStream in) throws IOException {
+            cachedArchiveData = in.readInt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time it takes to build an {@link ArchiveEntryTree} from synthetic listings of 10k, 100k and 1M
+ * entries, to look up all of their entries and to remove all the nodes of the tree. The listings have the shape of
+ * a source tree: directories of 100 files, 10 directories per level. Results are logged.
+ */
+public class ArchiveEntryTreeBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveEntryTreeBenchmark.class);
+
+    /** Numbers of entries of the listings */
+    private final static int NB_ENTRIES[] = {10000, 100000, 1000000};
+
+    /** Number of files per directory */
+    private final static int NB_FILES = 100;
+
+    /** Number of subdirectories per directory */
+    private final static int NB_DIRECTORIES = 10;
+
+    @Test
+    public void benchmark() {
+        // Warm up
+        run(createListing(NB_ENTRIES[0]), false);
+
+        for (int nbEntries : NB_ENTRIES) {
+            run(createListing(nbEntries), true);
+        }
+    }
+
+    private void run(List<ArchiveEntry> entries, boolean log) {
+        long start = System.nanoTime();
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        for (ArchiveEntry entry : entries) {
+            tree.addArchiveEntry(entry);
+        }
+        long buildTime = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        for (ArchiveEntry entry : entries) {
+            assert tree.findEntryNode(entry.getPath()) != null;
+        }
+        long lookupTime = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        removeAllChildren(tree);
+        long removeTime = (System.nanoTime() - start) / 1000000;
+
+        if (log) {
+            LOGGER.info("ArchiveEntryTree, " + entries.size() + " entries: built in " + buildTime + "ms, looked up in "
+                    + lookupTime + "ms, removed in " + removeTime + "ms");
+        }
+    }
+
+    /**
+     * Removes the children of the given node one by one, depth first.
+     */
+    private static void removeAllChildren(ArchiveEntryNode node) {
+        for (int i = node.getChildCount() - 1; i >= 0; i--) {
+            removeAllChildren((ArchiveEntryNode)node.getChildAt(i));
+            node.remove(i);
+        }
+    }
+
+    /**
+     * Returns a listing of the given number of entries, directories being listed before their files.
+     */
+    private static List<ArchiveEntry> createListing(int nbEntries) {
+        List<ArchiveEntry> entries = new ArrayList<>(nbEntries);
+        List<String> directories = new ArrayList<>();
+        directories.add("");
+        // Directories are created breadth first until the listing is complete
+        for (int d = 0; entries.size() < nbEntries; d++) {
+            String directory = directories.get(d);
+            for (int i = 0; i < NB_DIRECTORIES && entries.size() < nbEntries; i++) {
+                String path = directory + "dir" + i + "/";
+                entries.add(new ArchiveEntry(path, true, 0, 0, true));
+                directories.add(path);
+            }
+            for (int i = 0; i < NB_FILES && entries.size() < nbEntries; i++) {
+                entries.add(new ArchiveEntry(directory + "file" + i + ".java", false, 0, i, true));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import org.testng.annotations.Test;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * This class is a TestNG test case for {@link ArchiveEntryTree}.
+ *
+ * @see ArchiveEntryTree
+ */
+public class ArchiveEntryTreeTest {
+
+    /**
+     * Builds a tree from a synthetic listing of 100 directories of 1000 files each, with the parent directories of
+     * half of them not listed, and asserts that every entry can be found.
+     */
+    @Test
+    public void testLargeTree() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        for(int d=0; d<100; d++) {
+            if(d%2==0)
+                tree.addArchiveEntry(new ArchiveEntry("dir"+d+"/", true, 0, 0, true));
+
+            for(int f=0; f<1000; f++)
+                tree.addArchiveEntry(new ArchiveEntry("dir"+d+"/sub/file"+f, false, 0, f, true));
+        }
+
+        assert 100 == tree.getChildCount();
+        for(int d=0; d<100; d++) {
+            // Lookups are trailing slash insensitive
+            DefaultMutableTreeNode dirNode = tree.findEntryNode("dir"+d);
+            assert dirNode != null;
+            assert dirNode == tree.findEntryNode("dir"+d+"/");
+            assert ((ArchiveEntry)dirNode.getUserObject()).isDirectory();
+
+            DefaultMutableTreeNode subNode = tree.findEntryNode("dir"+d+"/sub/");
+            assert subNode.getParent() == dirNode;
+            assert 1000 == subNode.getChildCount();
+
+            for(int f=0; f<1000; f+=99) {
+                DefaultMutableTreeNode fileNode = tree.findEntryNode("dir"+d+"/sub/file"+f);
+                assert fileNode.getParent() == subNode;
+                assert f == ((ArchiveEntry)fileNode.getUserObject()).getSize();
+            }
+        }
+
+        assert null == tree.findEntryNode("dir100");
+        assert null == tree.findEntryNode("dir0/sub/file1000");
+        assert null == tree.findEntryNode("dir0/other/file0");
+    }
+
+    /**
+     * Asserts that directory entries listed after their children replace the nodes created for them, and that the
+     * index is kept up-to-date when nodes are removed.
+     */
+    @Test
+    public void testReplaceAndRemove() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        tree.addArchiveEntry(new ArchiveEntry("a/b/c", false, 0, 0, true));
+
+        ArchiveEntry dirEntry = new ArchiveEntry("a/b/", true, 1, 0, true);
+        tree.addArchiveEntry(dirEntry);
+        DefaultMutableTreeNode bNode = tree.findEntryNode("a/b");
+        assert dirEntry == bNode.getUserObject();
+        assert 1 == bNode.getChildCount();
+
+        // Duplicate entries: the first one is returned until it is removed
+        ArchiveEntry duplicateEntry = new ArchiveEntry("a/b/c", false, 0, 1, true);
+        tree.addArchiveEntry(duplicateEntry);
+        DefaultMutableTreeNode cNode = tree.findEntryNode("a/b/c");
+        assert 2 == bNode.getChildCount();
+        assert 0 == ((ArchiveEntry)cNode.getUserObject()).getSize();
+
+        bNode.remove(cNode);
+        assert duplicateEntry == tree.findEntryNode("a/b/c").getUserObject();
+
+        bNode.remove(tree.findEntryNode("a/b/c"));
+        assert null == tree.findEntryNode("a/b/c");
+        assert 0 == bNode.getChildCount();
+    }
+
+    /**
+     * Asserts that removing a child whose name is shared by another one leaves the indexed child in place, and that
+     * the index is emptied along with the children by <code>removeAllChildren</code>.
+     */
+    @Test
+    public void testRemoveDuplicatesAndAllChildren() {
+        ArchiveEntryTree tree = new ArchiveEntryTree();
+        ArchiveEntry entry = new ArchiveEntry("a/c", false, 0, 0, true);
+        tree.addArchiveEntry(entry);
+        tree.addArchiveEntry(new ArchiveEntry("a/c", false, 0, 1, true));
+        for(int f=0; f<1000; f++)
+            tree.addArchiveEntry(new ArchiveEntry("a/file"+f, false, 0, f, true));
+
+        // Remove the duplicate that is not indexed
+        DefaultMutableTreeNode aNode = tree.findEntryNode("a");
+        aNode.remove(1);
+        assert entry == tree.findEntryNode("a/c").getUserObject();
+        aNode.remove(0);
+        assert null == tree.findEntryNode("a/c");
+        assert 1000 == aNode.getChildCount();
+
+        aNode.removeAllChildren();
+        assert 0 == aNode.getChildCount();
+        assert null == tree.findEntryNode("a/file0");
+
+        tree.addArchiveEntry(new ArchiveEntry("a/file0", false, 0, 0, true));
+        assert aNode == tree.findEntryNode("a/file0").getParent();
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures the throughput of {@link FileFactory#getFile(String)} when it is called concurrently by 1, 4 and 16
+ * threads, which look up files in the {@link com.mucommander.commons.file.util.FilePool file pools}. Local files,
+ * entries of a local Zip archive and remote (HTTP) files are benchmarked separately. The files are hard-referenced
+ * for the duration of the benchmark, so that lookups after the first one are served by the pool. Results are logged.
+ *
+ * <p>The number of lookups performed by each thread can be set with the
+ * <code>mucommander.benchmark.getFileIterations</code> system property.</p>
+ */
+public class FileFactoryBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileFactoryBenchmark.class);
+
+    /** Number of lookups performed by each thread */
+    private final static int NB_ITERATIONS = Integer.getInteger("mucommander.benchmark.getFileIterations", 200000);
+
+    /** Numbers of threads the lookups are benchmarked with */
+    private final static int NB_THREADS[] = {1, 4, 16};
+
+    /** Number of distinct files looked up */
+    private final static int NB_FILES = 1000;
+
+    private AbstractFile folder;
+
+    private AbstractFile archive;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        folder = FileFactory.getTemporaryFile(getClass().getName(), true);
+        folder.mkdir();
+
+        archive = folder.getDirectChild("archive.zip");
+        try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(archive.getAbsolutePath()))) {
+            for (int i = 0; i < NB_FILES; i++) {
+                zout.putNextEntry(new ZipEntry("folder/entry" + i));
+                zout.write(i);
+                zout.closeEntry();
+            }
+        }
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        folder.deleteRecursively();
+    }
+
+    @Test
+    public void benchmarkLocalFiles() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < NB_FILES; i++) {
+            paths.add(folder.getAbsolutePath(true) + "file" + i);
+        }
+        benchmark("local", paths);
+    }
+
+    @Test
+    public void benchmarkArchiveEntries() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < NB_FILES; i++) {
+            paths.add(archive.getAbsolutePath(true) + "folder" + archive.getSeparator() + "entry" + i);
+        }
+        benchmark("archive entry", paths);
+    }
+
+    @Test
+    public void benchmarkRemoteFiles() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < NB_FILES; i++) {
+            // HTTP files are not resolved before they are accessed, no request is sent
+            paths.add("http://www.mucommander.com/benchmark/file" + i + ".bin");
+        }
+        benchmark("remote", paths);
+    }
+
+    /**
+     * Looks up the given paths with an increasing number of threads and logs the throughput.
+     */
+    private void benchmark(String description, List<String> paths) throws Exception {
+        // Create the files and keep them referenced so that they remain in the pool
+        List<AbstractFile> files = new ArrayList<>();
+        for (String path : paths) {
+            files.add(FileFactory.getFile(path, true));
+        }
+
+        // Warm up
+        run(paths, NB_THREADS[NB_THREADS.length - 1]);
+
+        for (int nbThreads : NB_THREADS) {
+            long time = run(paths, nbThreads);
+            long nbLookups = (long)nbThreads * NB_ITERATIONS;
+            LOGGER.info("FileFactory.getFile, " + description + " files, " + nbThreads + " thread(s): " + time + "ms, "
+                    + (nbLookups * 1000 / Math.max(time, 1)) + " lookups per second");
+        }
+
+        files.clear();
+    }
+
+    /**
+     * Has the given number of threads look up the given paths concurrently, and returns the time it took
+     * in milliseconds.
+     */
+    private long run(final List<String> paths, int nbThreads) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        Thread threads[] = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            final int offset = t * 31;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < NB_ITERATIONS; i++) {
+                            FileFactory.getFile(paths.get((offset + i) % paths.size()), true);
+                        }
+                    } catch (Exception e) {
+                        error.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long time = (System.nanoTime() - startTime) / 1000000;
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return time;
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A test case for {@link SinglePassEntryIterator}.
+ */
+public class SinglePassEntryIteratorTest {
+
+    /** Number of file entries in the test archive */
+    private final static int NB_ENTRIES = 10;
+
+    /**
+     * Asserts that the entries to read are read entirely and in order, that entries that are not to be read or that
+     * precede an entry already read have no stream, and that entries read partially or not at all are skipped.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void testRead() throws Exception {
+        List<ArchiveEntry> entries = createEntries();
+        List<ArchiveEntry> entriesToRead = new ArrayList<>();
+        for(int i=0; i<NB_ENTRIES; i+=2)
+            entriesToRead.add(new ArchiveEntry("dir/file"+i, false, 0, 0, true));
+        entriesToRead.add(new ArchiveEntry("dir/", true, 0, 0, true));
+
+        TestEntryIterator iterator = new TestEntryIterator(entries, entriesToRead);
+        List<ArchiveEntry> iterated = new ArrayList<>();
+        ArchiveEntry entry;
+        while((entry=iterator.nextEntry())!=null) {
+            iterated.add(entry);
+            int index = entry.isDirectory() ? -1 : (Integer)entry.getEntryObject();
+            InputStream in = iterator.getEntryInputStream(entry);
+
+            if(index==-1 || index%2==1) {
+                assert in == null;
+            }
+            else if(index%4==2) {
+                // Read partially, the rest of the entry must be skipped
+                assert in.read() == (iterator.getData(entry)[0] & 0xFF);
+            }
+            else if(index==4) {
+                // Not read at all
+            }
+            else {
+                assert Arrays.equals(iterator.getData(entry), readFully(in));
+                assert iterator.getEntryInputStream(entry) == null;
+            }
+        }
+        assert iterator.extractionDone.await(10, TimeUnit.SECONDS);
+        iterator.close();
+
+        assert iterated.equals(entries);
+        assert iterator.extractedEntries.size() == NB_ENTRIES/2;
+    }
+
+    /**
+     * Asserts that an error that interrupts the extraction is reported when reading the entry being extracted, and
+     * when reading the entries that follow it.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testExtractionError() throws IOException {
+        List<ArchiveEntry> entries = createEntries();
+        TestEntryIterator iterator = new TestEntryIterator(entries, entries);
+        iterator.failingEntry = entries.get(3);
+
+        ArchiveEntry entry;
+        int nbErrors = 0;
+        while((entry=iterator.nextEntry())!=null) {
+            InputStream in = iterator.getEntryInputStream(entry);
+            if(in==null)
+                continue;
+
+            try {
+                assert Arrays.equals(iterator.getData(entry), readFully(in));
+                assert (Integer)entry.getEntryObject() < 3;
+            }
+            catch(IOException e) {
+                nbErrors++;
+            }
+        }
+        iterator.close();
+
+        assert nbErrors == NB_ENTRIES-3;
+    }
+
+    /**
+     * Asserts that closing the iterator stops an extraction that is waiting for the data to be read.
+     *
+     * @throws Exception should not happen
+     */
+    @Test
+    public void testClose() throws Exception {
+        List<ArchiveEntry> entries = createEntries();
+        TestEntryIterator iterator = new TestEntryIterator(entries, entries);
+
+        ArchiveEntry entry = iterator.nextEntry();
+        InputStream in = iterator.getEntryInputStream(entry);
+        assert in.read() != -1;
+        iterator.close();
+
+        assert iterator.extractionDone.await(10, TimeUnit.SECONDS);
+        assert iterator.extractedEntries.size() < NB_ENTRIES;
+    }
+
+    /**
+     * Returns a directory followed by entries of various sizes, large enough for the extraction to block while the
+     * data has not been read.
+     */
+    private static List<ArchiveEntry> createEntries() {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        for(int i=0; i<NB_ENTRIES; i++) {
+            if(i==5)
+                entries.add(new ArchiveEntry("dir/", true, 0, 0, true));
+
+            int size = i==1 ? 0 : i*300*1000+7;
+            ArchiveEntry entry = new ArchiveEntry("dir/file"+i, false, 0, size, true);
+            entry.setEntryObject(i);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int nbRead;
+        while((nbRead=in.read(buffer))!=-1)
+            out.write(buffer, 0, nbRead);
+        in.close();
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Extracts entries whose data is generated from the entry's index, in pieces of various sizes.
+     */
+    private static class TestEntryIterator extends SinglePassEntryIterator {
+
+        private final List<ArchiveEntry> extractedEntries = new ArrayList<>();
+        private final CountDownLatch extractionDone = new CountDownLatch(1);
+        private volatile ArchiveEntry failingEntry;
+
+        private TestEntryIterator(List<ArchiveEntry> entries, List<ArchiveEntry> entriesToRead) {
+            super(entries, entriesToRead);
+        }
+
+        private byte[] getData(ArchiveEntry entry) {
+            byte[] data = new byte[(int)entry.getSize()];
+            new Random((Integer)entry.getEntryObject()).nextBytes(data);
+            return data;
+        }
+
+        @Override
+        protected void extractEntries(List<ArchiveEntry> entriesToRead) throws IOException {
+            try {
+                for(ArchiveEntry entry : entriesToRead) {
+                    OutputStream out = getEntryOutputStream(entry);
+                    byte[] data = getData(entry);
+                    for(int off=0; off<data.length; off+=12345) {
+                        if(entry==failingEntry && off>0)
+                            throw new IOException();
+                        out.write(data, off, Math.min(12345, data.length-off));
+                    }
+                    out.close();
+                    extractedEntries.add(entry);
+                }
+            }
+            finally {
+                extractionDone.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.http;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.io.ParallelRangeInputStream;
+import com.mucommander.commons.io.RandomAccessInputStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests the parallel <code>Range</code> reads of {@link HTTPFile} against {@link HTTPTestServer}.
+ */
+public class HTTPFileRangeTest {
+
+    private final static int BLOCK_SIZE = ParallelRangeInputStream.DEFAULT_BLOCK_SIZE;
+
+    /** Not a multiple of the block size, so that the last block is shorter */
+    private final static int LENGTH = BLOCK_SIZE * 10 + 1234;
+
+    private byte data[];
+    private HTTPTestServer server;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        data = new byte[LENGTH];
+        new Random(0).nextBytes(data);
+        server = new HTTPTestServer(data);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        server.close();
+    }
+
+    private AbstractFile getFile() throws IOException {
+        AbstractFile file = new HTTPFile(FileURL.getFileURL(server.getURL("file.bin")));
+        // Resolves the file, as a file transfer does before opening the file
+        assertEquals(file.getSize(), LENGTH);
+        return file;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte buffer[] = new byte[10000];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the file sequentially: several blocks must be requested at once.
+     */
+    @Test
+    public void testSequentialRead() throws IOException {
+        server.setDelay(100);
+        AbstractFile file = getFile();
+
+        long start = System.currentTimeMillis();
+        try (InputStream in = file.getInputStream()) {
+            assert in instanceof ParallelRangeInputStream;
+            assert Arrays.equals(readFully(in), data);
+        }
+
+        assert server.getMaxPendingRequests() > 1;
+        // One request after the other would take at least 11 * 100 ms
+        assert System.currentTimeMillis() - start < 11 * 100;
+    }
+
+    @Test
+    public void testReadFromOffset() throws IOException {
+        AbstractFile file = getFile();
+        int offset = BLOCK_SIZE * 3 + 17;
+        try (InputStream in = file.getInputStream(offset)) {
+            assert Arrays.equals(readFully(in), Arrays.copyOfRange(data, offset, LENGTH));
+        }
+    }
+
+    @Test
+    public void testRandomAccess() throws IOException {
+        AbstractFile file = getFile();
+        try (RandomAccessInputStream in = file.getRandomAccessInputStream()) {
+            assertEquals(in.getLength(), LENGTH);
+
+            // Random reads only request the blocks they need
+            Random random = new Random(1);
+            byte buffer[] = new byte[5000];
+            for (int i = 0; i < 20; i++) {
+                int offset = random.nextInt(LENGTH - buffer.length);
+                in.seek(offset);
+                in.readFully(buffer);
+                assertEquals(in.getOffset(), offset + buffer.length);
+                assert Arrays.equals(buffer, Arrays.copyOfRange(data, offset, offset + buffer.length));
+            }
+            assert server.getRequestCount() <= 1 + 20 * 2;
+
+            // Backwards within the current block, then across block boundaries
+            in.seek(BLOCK_SIZE - 10);
+            assertEquals(in.read(), data[BLOCK_SIZE - 10] & 0xFF);
+            in.seek(BLOCK_SIZE - 100);
+            in.readFully(buffer);
+            assert Arrays.equals(buffer, Arrays.copyOfRange(data, BLOCK_SIZE - 100, BLOCK_SIZE - 100 + buffer.length));
+
+            in.seek(LENGTH - 1);
+            assertEquals(in.read(), data[LENGTH - 1] & 0xFF);
+            assertEquals(in.read(), -1);
+        }
+    }
+
+    /**
+     * A server that ignores ranges must be read with a single request, and not be readable at an offset by blocks.
+     */
+    @Test
+    public void testRangesNotSupported() throws IOException {
+        server.setRangesEnabled(false);
+        AbstractFile file = getFile();
+        try (InputStream in = file.getInputStream()) {
+            assert !(in instanceof ParallelRangeInputStream);
+            assert Arrays.equals(readFully(in), data);
+        }
+
+        IOException notSupported = null;
+        try (RandomAccessInputStream in = file.getRandomAccessInputStream()) {
+            in.seek(BLOCK_SIZE * 2);
+            in.read();
+        } catch (IOException e) {
+            notSupported = e;
+        }
+        assert notSupported != null;
+    }
+}
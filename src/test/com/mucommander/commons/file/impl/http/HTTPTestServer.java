@@ -0,0 +1,141 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal HTTP server that serves a byte array under any path, to test {@link HTTPFile}. <code>Range</code> requests
+ * are honoured unless disabled, each request is answered after an optional delay, and the number of requests being
+ * handled at once is recorded.
+ */
+class HTTPTestServer implements Closeable {
+
+    private final static Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    private final byte data[];
+
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    private final AtomicInteger nbRequests = new AtomicInteger();
+    private volatile int maxPendingRequests;
+
+    private volatile long delay;
+    private volatile boolean rangesEnabled = true;
+
+    HTTPTestServer(byte data[]) throws IOException {
+        this.data = data;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns the URL of the served data, for the given file name.
+     */
+    String getURL(String filename) {
+        return "http://localhost:" + server.getAddress().getPort() + "/" + filename;
+    }
+
+    void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    void setRangesEnabled(boolean rangesEnabled) {
+        this.rangesEnabled = rangesEnabled;
+    }
+
+    int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    int getRequestCount() {
+        return nbRequests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        nbRequests.incrementAndGet();
+        int pending = pendingRequests.incrementAndGet();
+        synchronized (this) {
+            maxPendingRequests = Math.max(maxPendingRequests, pending);
+        }
+        try {
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            if (rangesEnabled) {
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            }
+
+            int start = 0;
+            int end = data.length - 1;
+            int status = 200;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (rangesEnabled && range != null) {
+                Matcher matcher = RANGE_PATTERN.matcher(range);
+                if (matcher.matches()) {
+                    start = Integer.parseInt(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, Integer.parseInt(matcher.group(2)));
+                    }
+                    status = 206;
+                    exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+                }
+            }
+
+            int length = Math.max(end - start + 1, 0);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Content-Length", Integer.toString(length));
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(data, start, length);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pendingRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
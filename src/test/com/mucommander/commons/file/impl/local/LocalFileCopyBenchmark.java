@@ -0,0 +1,122 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.local;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.io.ByteCounter;
+import com.mucommander.commons.io.CounterInputStream;
+import com.mucommander.commons.io.ThroughputLimitInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Measures the time {@link LocalFile#copyStream(InputStream, boolean, long)} takes to copy a large local file when the
+ * bytes are transferred from channel to channel, and when they are copied through a buffer as they were before. The
+ * source stream is wrapped in the same filter streams as in transfer jobs. Results are logged.
+ *
+ * <p>The size of the file can be set with the <code>mucommander.benchmark.copySize</code> system property, in
+ * megabytes. It is 1 GB by default.</p>
+ */
+public class LocalFileCopyBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalFileCopyBenchmark.class);
+
+    /** Size of the copied file, in bytes */
+    private final static long FILE_SIZE = Long.getLong("mucommander.benchmark.copySize", 1024) * 1024 * 1024;
+
+    /** Number of times each copy is performed, the first one warming up the file cache */
+    private final static int NB_RUNS = 3;
+
+    private AbstractFile sourceFile;
+    private AbstractFile destFile;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        sourceFile = FileFactory.getTemporaryFile(getClass().getName() + "-src", true);
+        destFile = FileFactory.getTemporaryFile(getClass().getName() + "-dest", true);
+
+        byte buffer[] = new byte[1024 * 1024];
+        new Random(0).nextBytes(buffer);
+        OutputStream out = sourceFile.getOutputStream();
+        try {
+            for (long written = 0; written < FILE_SIZE; written += buffer.length) {
+                out.write(buffer, 0, (int)Math.min(buffer.length, FILE_SIZE - written));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        sourceFile.delete();
+        if (destFile.exists()) {
+            destFile.delete();
+        }
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        for (int run = 0; run < NB_RUNS; run++) {
+            LOGGER.info("Channel copy of " + FILE_SIZE / (1024 * 1024) + "MB: " + copy(true) + "ms");
+            LOGGER.info("Buffered copy of " + FILE_SIZE / (1024 * 1024) + "MB: " + copy(false) + "ms");
+        }
+    }
+
+    /**
+     * Copies the source file to the destination file and returns the time it took, in milliseconds.
+     *
+     * @param channelTransfer <code>false</code> to hide the channel of the source stream, forcing a buffered copy
+     */
+    private long copy(boolean channelTransfer) throws IOException {
+        if (destFile.exists()) {
+            destFile.delete();
+        }
+
+        ByteCounter counter = new ByteCounter();
+        InputStream in = sourceFile.getInputStream();
+        if (!channelTransfer) {
+            in = new FilterInputStream(in) {};
+        }
+        in = new ThroughputLimitInputStream(new CounterInputStream(in, counter), -1);
+
+        long start = System.nanoTime();
+        try {
+            destFile.copyStream(in, false, FILE_SIZE);
+        } finally {
+            in.close();
+        }
+        long time = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(counter.getByteCount(), FILE_SIZE);
+        assertEquals(destFile.getSize(), FILE_SIZE);
+        return time;
+    }
+}
@@ -22,9 +22,14 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AbstractFileTest;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.io.ByteCounter;
+import com.mucommander.commons.io.CounterInputStream;
+import com.mucommander.commons.io.ThroughputLimitInputStream;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.NoSuchAlgorithmException;
 import java.util.regex.Matcher;
 
@@ -110,6 +115,64 @@ public class LocalFileTest extends AbstractFileTest {
         assert homeFolder.getChild("blah").equals(FileFactory.getFile("~").getChild("blah"));
     }
 
+    /**
+     * Asserts that {@link LocalFile#copyStream(InputStream, boolean, long)} copies the contents of a local file
+     * through a chain of filter streams, when the bytes are transferred from channel to channel, and that the bytes
+     * transferred are accounted for by the {@link CounterInputStream}.
+     *
+     * @throws IOException should not normally happen
+     * @throws NoSuchAlgorithmException should not happen
+     */
+    @Test
+    public void testCopyStreamChannelTransfer() throws IOException, NoSuchAlgorithmException {
+        AbstractFile sourceFile = deleteWhenFinished(getTemporaryFile());
+        createFile(sourceFile, 100000);
+        // The temporary file of the test is not created yet and may have the same path as the source file
+        AbstractFile destFile = deleteWhenFinished(getTemporaryFile());
+        assert !destFile.equals(sourceFile);
+
+        // Regular copy
+        ByteCounter counter = new ByteCounter();
+        InputStream in = new ThroughputLimitInputStream(new CounterInputStream(sourceFile.getInputStream(), counter), -1);
+        try {
+            destFile.copyStream(in, false, sourceFile.getSize());
+        }
+        finally {
+            in.close();
+        }
+
+        assertContentsEquals(sourceFile, destFile);
+        assert counter.getByteCount() == 100000;
+
+        // Resume a partial copy
+        destFile.delete();
+        in = sourceFile.getInputStream();
+        try {
+            byte b[] = new byte[30000];
+            int nbRead = 0;
+            while(nbRead<b.length)
+                nbRead += in.read(b, nbRead, b.length-nbRead);
+            OutputStream out = destFile.getOutputStream();
+            out.write(b);
+            out.close();
+        }
+        finally {
+            in.close();
+        }
+
+        counter.reset();
+        in = new CounterInputStream(sourceFile.getInputStream(30000), counter);
+        try {
+            destFile.copyStream(in, true, 70000);
+        }
+        finally {
+            in.close();
+        }
+
+        assertContentsEquals(sourceFile, destFile);
+        assert counter.getByteCount() == 70000;
+    }
+
     /**
      * Tests methods related to root drives (e.g. C:\).
      */
@@ -0,0 +1,195 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.s3;
+
+import org.jets3t.service.security.AWSCredentials;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * A test case for {@link MultipartUploadOutputStream} and {@link S3MultipartUpload}, run against {@link S3TestServer}.
+ */
+public class MultipartUploadOutputStreamTest {
+
+    private final static int PART_SIZE = 100000;
+    private final static int MAX_PENDING_PARTS = 3;
+
+    private final static String KEY = "folder/file name.bin";
+    private final static String PATH = "/bucket/folder/file%20name.bin";
+
+    private S3TestServer server;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        server = new S3TestServer();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        server.close();
+    }
+
+    private MultipartUploadOutputStream createStream() throws IOException {
+        S3MultipartUpload upload = new S3MultipartUpload(server.getEndpoint(),
+                new AWSCredentials(S3TestServer.ACCESS_KEY, S3TestServer.SECRET_KEY), "bucket", KEY);
+        return new MultipartUploadOutputStream(upload, PART_SIZE, MAX_PENDING_PARTS, 3, 10);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte bytes[] = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the given bytes in chunks of random sizes.
+     */
+    private static void write(MultipartUploadOutputStream out, byte data[]) throws IOException {
+        Random random = new Random(0);
+        int off = 0;
+        while (off < data.length) {
+            int n = Math.min(data.length - off, random.nextInt(PART_SIZE / 2));
+            if (n == 1) {
+                out.write(data[off]);
+            } else {
+                out.write(data, off, n);
+            }
+            off += n;
+        }
+    }
+
+    /**
+     * Objects smaller than a part are uploaded with a single PUT.
+     */
+    @Test
+    public void testSmallObject() throws IOException {
+        for (int length : new int[]{0, 1, PART_SIZE - 1}) {
+            byte data[] = randomBytes(length);
+            MultipartUploadOutputStream out = createStream();
+            write(out, data);
+            out.close();
+
+            assert Arrays.equals(server.getObject(PATH), data);
+        }
+        assertEquals(server.getMaxPendingParts(), 0);
+    }
+
+    @Test
+    public void testMultipartUpload() throws IOException {
+        server.setPartDelay(50);
+        for (int length : new int[]{PART_SIZE, PART_SIZE * 10, PART_SIZE * 10 + 123}) {
+            byte data[] = randomBytes(length);
+            MultipartUploadOutputStream out = createStream();
+            write(out, data);
+            out.close();
+
+            assert Arrays.equals(server.getObject(PATH), data);
+        }
+        assert server.getMaxPendingParts() > 1;
+        assert server.getMaxPendingParts() <= MAX_PENDING_PARTS + 1;
+        assertEquals(server.getUploadsInProgress(), 0);
+    }
+
+    /**
+     * Parts that fail once are sent again.
+     */
+    @Test
+    public void testRetry() throws IOException {
+        server.setPartFailures(2);
+        byte data[] = randomBytes(PART_SIZE * 5);
+        MultipartUploadOutputStream out = createStream();
+        write(out, data);
+        out.close();
+
+        assert Arrays.equals(server.getObject(PATH), data);
+    }
+
+    /**
+     * A part that keeps failing makes the upload fail and be aborted.
+     */
+    @Test
+    public void testFailure() throws IOException {
+        server.setPartFailures(Integer.MAX_VALUE);
+        byte data[] = randomBytes(PART_SIZE * 20);
+        MultipartUploadOutputStream out = createStream();
+        IOException failure = null;
+        try {
+            write(out, data);
+            out.close();
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        assert failure != null;
+        assert server.getObject(PATH) == null;
+        assertEquals(server.getAbortedCount(), 1);
+        assertEquals(server.getUploadsInProgress(), 0);
+        // The stream has been closed by the failure
+        out.close();
+    }
+
+    @Test
+    public void testAbort() throws IOException {
+        MultipartUploadOutputStream out = createStream();
+        write(out, randomBytes(PART_SIZE * 3 + 10));
+        out.abort();
+        out.close();
+
+        assert server.getObject(PATH) == null;
+        assertEquals(server.getAbortedCount(), 1);
+        assertEquals(server.getUploadsInProgress(), 0);
+    }
+
+    /**
+     * Interrupting a thread that waits for part buffers aborts the upload.
+     */
+    @Test
+    public void testInterrupt() throws Exception {
+        server.setPartDelay(1000);
+        MultipartUploadOutputStream out = createStream();
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                write(out, randomBytes(PART_SIZE * 20));
+                out.close();
+            } catch (IOException e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(300);
+        writer.interrupt();
+        writer.join(10000);
+
+        assert !writer.isAlive();
+        assert failure.get() instanceof InterruptedIOException;
+        assert server.getObject(PATH) == null;
+        assertEquals(server.getAbortedCount(), 1);
+        assertEquals(server.getUploadsInProgress(), 0);
+    }
+}
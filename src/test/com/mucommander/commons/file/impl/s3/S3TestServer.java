@@ -0,0 +1,239 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.s3;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jets3t.service.utils.ServiceUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal stand-in for S3 that stores objects in memory, to test {@link S3MultipartUpload} and
+ * {@link MultipartUploadOutputStream}. It supports plain PUT requests and the multipart upload requests, checks the
+ * signature of each request, and can be told to fail part uploads and to delay them.
+ */
+class S3TestServer implements Closeable {
+
+    final static String ACCESS_KEY = "access";
+    final static String SECRET_KEY = "secret";
+
+    private final static Pattern PART_PATTERN = Pattern.compile("<Part><PartNumber>(\\d+)</PartNumber><ETag>(.*?)</ETag></Part>");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    /** Objects that have been stored, by path */
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    /** Parts of the uploads in progress, by upload id then part number */
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger lastUploadId = new AtomicInteger();
+
+    private final AtomicInteger pendingParts = new AtomicInteger();
+    private volatile int maxPendingParts;
+    private final AtomicInteger nbAborted = new AtomicInteger();
+
+    /** Number of part uploads that will fail before the next ones succeed */
+    private final AtomicInteger partFailures = new AtomicInteger();
+    private volatile long partDelay;
+
+    S3TestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    byte[] getObject(String path) {
+        return objects.get(path);
+    }
+
+    int getUploadsInProgress() {
+        return uploads.size();
+    }
+
+    int getAbortedCount() {
+        return nbAborted.get();
+    }
+
+    int getMaxPendingParts() {
+        return maxPendingParts;
+    }
+
+    void setPartFailures(int partFailures) {
+        this.partFailures.set(partFailures);
+    }
+
+    void setPartDelay(long partDelay) {
+        this.partDelay = partDelay;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            Map<String, String> params = new HashMap<>();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    int eq = param.indexOf('=');
+                    params.put(eq == -1 ? param : param.substring(0, eq), eq == -1 ? "" : param.substring(eq + 1));
+                }
+            }
+            byte body[] = readBody(exchange.getRequestBody());
+
+            if (!checkSignature(exchange, method, path + (query == null ? "" : "?" + query))) {
+                send(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+            } else if (method.equals("PUT") && params.isEmpty()) {
+                objects.put(path, body);
+                send(exchange, 200, "");
+            } else if (method.equals("POST") && params.containsKey("uploads")) {
+                String uploadId = "upload" + lastUploadId.incrementAndGet();
+                uploads.put(uploadId, new ConcurrentHashMap<>());
+                send(exchange, 200, "<InitiateMultipartUploadResult><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            } else if (method.equals("PUT") && params.containsKey("partNumber")) {
+                uploadPart(exchange, params, body);
+            } else if (method.equals("POST") && params.containsKey("uploadId")) {
+                complete(exchange, path, params.get("uploadId"), new String(body, "UTF-8"));
+            } else if (method.equals("DELETE") && params.containsKey("uploadId")) {
+                uploads.remove(params.get("uploadId"));
+                nbAborted.incrementAndGet();
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                send(exchange, 400, "<Error><Code>InvalidRequest</Code></Error>");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void uploadPart(HttpExchange exchange, Map<String, String> params, byte body[]) throws IOException {
+        int pending = pendingParts.incrementAndGet();
+        synchronized (this) {
+            maxPendingParts = Math.max(maxPendingParts, pending);
+        }
+        try {
+            if (partDelay > 0) {
+                Thread.sleep(partDelay);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // The part is no longer pending once the client may get a response
+            pendingParts.decrementAndGet();
+        }
+
+        Map<Integer, byte[]> parts = uploads.get(params.get("uploadId"));
+        if (parts == null) {
+            send(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+        } else if (partFailures.getAndDecrement() > 0) {
+            send(exchange, 500, "<Error><Code>InternalError</Code></Error>");
+        } else {
+            parts.put(Integer.parseInt(params.get("partNumber")), body);
+            exchange.getResponseHeaders().set("ETag", getETag(body));
+            send(exchange, 200, "");
+        }
+    }
+
+    private void complete(HttpExchange exchange, String path, String uploadId, String body) throws IOException {
+        Map<Integer, byte[]> parts = uploads.remove(uploadId);
+        if (parts == null) {
+            send(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        Matcher matcher = PART_PATTERN.matcher(body);
+        int expectedPartNumber = 1;
+        while (matcher.find()) {
+            byte part[] = parts.get(Integer.parseInt(matcher.group(1)));
+            if (Integer.parseInt(matcher.group(1)) != expectedPartNumber++ || part == null || !getETag(part).equals(matcher.group(2))) {
+                // Like S3, errors that occur while assembling the parts are reported with a 200 response
+                send(exchange, 200, "<Error><Code>InvalidPart</Code></Error>");
+                return;
+            }
+            object.write(part);
+        }
+        objects.put(path, object.toByteArray());
+        send(exchange, 200, "<CompleteMultipartUploadResult></CompleteMultipartUploadResult>");
+    }
+
+    private static boolean checkSignature(HttpExchange exchange, String method, String resource) {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String canonicalString = method + "\n\n" + (contentType == null ? "" : contentType) + "\n"
+                + exchange.getRequestHeaders().getFirst("Date") + "\n" + resource;
+        try {
+            return ("AWS " + ACCESS_KEY + ":" + ServiceUtils.signWithHmacSha1(SECRET_KEY, canonicalString))
+                    .equals(exchange.getRequestHeaders().getFirst("Authorization"));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String getETag(byte data[]) throws IOException {
+        try {
+            return "\"" + ServiceUtils.toHex(ServiceUtils.computeMD5Hash(data)) + "\"";
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte buffer[] = new byte[65536];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte bytes[] = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.sftp;
+
+import com.sshtools.j2ssh.sftp.FileAttributes;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static com.mucommander.commons.file.impl.sftp.SFTPChannel.await;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link SFTPChannel}, run against {@link SFTPTestServer}.
+ */
+public class SFTPChannelTest {
+
+    private SFTPTestServer server;
+    private SFTPChannel channel;
+    private Path folder;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        server = new SFTPTestServer();
+        channel = server.connect();
+        folder = Files.createTempDirectory("sftp");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        channel.close();
+        server.close();
+        List<Path> paths = new ArrayList<>();
+        Files.walk(folder).forEach(paths::add);
+        Collections.reverse(paths);
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+
+    private String path(String name) {
+        return folder.resolve(name).toString();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte bytes[] = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Requests the attributes of many files at once: the server must receive the requests before it answers them.
+     */
+    @Test
+    public void testParallelStats() throws IOException {
+        int nbFiles = 40;
+        for (int i = 0; i < nbFiles; i++) {
+            Files.write(folder.resolve("file" + i), new byte[i]);
+        }
+        server.setDelay(20);
+
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<FileAttributes>> attributes = new ArrayList<>();
+        for (int i = 0; i < nbFiles; i++) {
+            attributes.add(channel.stat(path("file" + i)));
+        }
+        for (int i = 0; i < nbFiles; i++) {
+            FileAttributes fileAttributes = await(attributes.get(i));
+            assertEquals(fileAttributes.getSize().longValue(), i);
+            assertTrue(fileAttributes.isFile());
+        }
+
+        assertTrue(server.getMaxPendingRequests() > 1);
+        // One request after the other would take nbFiles * 20 ms
+        assertTrue(System.currentTimeMillis() - start < nbFiles * 20);
+    }
+
+    private void testWriteAndRead(int length) throws IOException {
+        byte data[] = randomBytes(length);
+        byte handle[] = await(channel.open(path("file"), SFTPChannel.OPEN_WRITE | SFTPChannel.OPEN_CREATE, new FileAttributes()));
+        try (OutputStream out = new SFTPChannel.WriteBehindOutputStream(channel, handle, 0)) {
+            Random random = new Random(0);
+            int off = 0;
+            while (off < length) {
+                int n = Math.min(length - off, random.nextInt(SFTPChannel.BLOCK_SIZE * 3));
+                if (n == 1) {
+                    out.write(data[off]);
+                } else {
+                    out.write(data, off, n);
+                }
+                off += n;
+            }
+        }
+        assertEquals(Files.readAllBytes(folder.resolve("file")), data);
+
+        handle = await(channel.open(path("file"), SFTPChannel.OPEN_READ, new FileAttributes()));
+        SFTPChannel.ReadAheadInputStream in = new SFTPChannel.ReadAheadInputStream(channel, handle, 0);
+        try {
+            byte read[] = readFully(in);
+            assertEquals(read, data);
+            assertEquals(in.read(), -1);
+
+            in.seek(length / 3);
+            assertEquals(in.getPosition(), length / 3);
+            read = readFully(in);
+            assertEquals(read, Arrays.copyOfRange(data, length / 3, length));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        List<Byte> bytes = new ArrayList<>();
+        byte buffer[] = new byte[5000];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                bytes.add(buffer[i]);
+            }
+        }
+        byte result[] = new byte[bytes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bytes.get(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        testWriteAndRead(0);
+        testWriteAndRead(SFTPChannel.BLOCK_SIZE);
+        testWriteAndRead(SFTPChannel.BLOCK_SIZE * SFTPChannel.MAX_PENDING_BLOCKS * 2 + 123);
+    }
+
+    /**
+     * Reads from a server that returns fewer bytes than requested.
+     */
+    @Test
+    public void testShortReads() throws IOException {
+        server.setMaxReadLength(10000);
+        testWriteAndRead(SFTPChannel.BLOCK_SIZE * 5 + 17);
+    }
+
+    @Test
+    public void testDirectories() throws IOException {
+        await(channel.makeDirectory(path("dir"), new FileAttributes()));
+        Set<String> expected = new HashSet<>(Arrays.asList(".", "..", "link"));
+        for (int i = 0; i < 20; i++) {
+            Files.createFile(folder.resolve("dir/file" + i));
+            expected.add("file" + i);
+        }
+        Files.createSymbolicLink(folder.resolve("dir/link"), folder.resolve("dir/file0"));
+
+        Set<String> listed = new HashSet<>();
+        byte handle[] = await(channel.openDirectory(path("dir")));
+        List<SFTPChannel.DirectoryEntry> entries;
+        while ((entries = await(channel.readDirectory(handle))) != null) {
+            for (SFTPChannel.DirectoryEntry entry : entries) {
+                boolean added = listed.add(entry.filename);
+                assertTrue(added, "Listed twice: " + entry.filename);
+                assertEquals(entry.attributes.isLink(), entry.filename.equals("link"));
+            }
+        }
+        await(channel.close(handle));
+        assertEquals(listed, expected);
+
+        assertEquals(await(channel.readLink(path("dir/link"))), path("dir/file0"));
+        FileAttributes linkAttributes = await(channel.lstat(path("dir/link")));
+        assertTrue(linkAttributes.isLink());
+        FileAttributes targetAttributes = await(channel.stat(path("dir/link")));
+        assertTrue(targetAttributes.isFile());
+
+        await(channel.rename(path("dir/file1"), path("dir/renamed")));
+        assertTrue(Files.exists(folder.resolve("dir/renamed")));
+        await(channel.removeFile(path("dir/renamed")));
+        assertFalse(Files.exists(folder.resolve("dir/renamed")));
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        FileNotFoundException notFound = null;
+        try {
+            await(channel.stat(path("missing")));
+        } catch (FileNotFoundException e) {
+            notFound = e;
+        }
+        assertNotNull(notFound);
+
+        Files.createDirectory(folder.resolve("dir"));
+        Files.createFile(folder.resolve("dir/file"));
+        IOException notEmpty = null;
+        try {
+            await(channel.removeDirectory(path("dir")));
+        } catch (IOException e) {
+            notEmpty = e;
+        }
+        assertNotNull(notEmpty);
+
+        // Requests that are pending when the connection is lost fail
+        server.setDelay(200);
+        CompletableFuture<FileAttributes> pending = channel.stat(path("dir"));
+        server.close();
+        IOException lost = null;
+        try {
+            await(pending);
+        } catch (IOException e) {
+            lost = e;
+        }
+        assertNotNull(lost);
+        assertFalse(channel.isOpen());
+    }
+
+    /**
+     * Messages whose length is too short to hold a request id, or longer than the maximum, are rejected before they
+     * are allocated.
+     */
+    @Test
+    public void testInvalidMessageLength() {
+        for (int length : new int[] {-1, 0, 4, SFTPChannel.MAX_MESSAGE_LENGTH + 1, Integer.MAX_VALUE}) {
+            byte version[] = {(byte)(length >>> 24), (byte)(length >>> 16), (byte)(length >>> 8), (byte)length, 2, 0, 0, 0, 3};
+            IOException invalid = null;
+            try {
+                new SFTPChannel(new ByteArrayInputStream(version), new ByteArrayOutputStream());
+            } catch (IOException e) {
+                invalid = e;
+            }
+            assertNotNull(invalid, "length=" + length);
+            assertTrue(invalid.getMessage().startsWith("Invalid SFTP message length"), invalid.getMessage());
+        }
+    }
+}
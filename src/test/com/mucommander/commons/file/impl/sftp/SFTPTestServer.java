@@ -0,0 +1,387 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.sftp;
+
+import com.sshtools.j2ssh.io.ByteArrayReader;
+import com.sshtools.j2ssh.io.ByteArrayWriter;
+import com.sshtools.j2ssh.io.UnsignedInteger32;
+import com.sshtools.j2ssh.io.UnsignedInteger64;
+import com.sshtools.j2ssh.sftp.FileAttributes;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal SFTP version 3 server that serves the local filesystem over a socket, without the SSH layer, to test
+ * {@link SFTPChannel}. Requests are handled by several threads after an optional delay, so that responses are sent in
+ * a different order than the requests, like a server is allowed to. Reads can be limited to a maximum length to
+ * simulate servers that return fewer bytes than requested.
+ */
+class SFTPTestServer implements Closeable {
+
+    /** Number of entries returned by a SSH_FXP_READDIR */
+    private final static int READDIR_BATCH_SIZE = 7;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final Map<String, Object> handles = new ConcurrentHashMap<>();
+    private final AtomicInteger lastHandle = new AtomicInteger();
+
+    /** Number of requests that have been received and not answered yet */
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    private volatile int maxPendingRequests;
+
+    private volatile long delay;
+    private volatile int maxReadLength = Integer.MAX_VALUE;
+
+    private Socket socket;
+    private OutputStream out;
+
+    SFTPTestServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptThread = new Thread(this::serve, "SFTP test server");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Connects a new channel to this server, which accepts a single connection.
+     */
+    SFTPChannel connect() throws IOException {
+        Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+        return new SFTPChannel(clientSocket.getInputStream(), clientSocket.getOutputStream());
+    }
+
+    /**
+     * Sets the time each request takes to be handled, in milliseconds.
+     */
+    void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    void setMaxReadLength(int maxReadLength) {
+        this.maxReadLength = maxReadLength;
+    }
+
+    /**
+     * Returns the maximum number of requests the server has received before answering them.
+     */
+    int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        serverSocket.close();
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private void serve() {
+        try {
+            socket = serverSocket.accept();
+            out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            byte init[] = new byte[in.readInt()];
+            in.readFully(init);
+            ByteArrayWriter version = new ByteArrayWriter();
+            version.write(2);       // SSH_FXP_VERSION
+            version.writeInt(3);
+            send(version);
+
+            while (true) {
+                byte message[] = new byte[in.readInt()];
+                in.readFully(message);
+                int pending = pendingRequests.incrementAndGet();
+                maxPendingRequests = Math.max(maxPendingRequests, pending);
+                executor.execute(() -> handle(message));
+            }
+        } catch (IOException e) {
+            // Client disconnected
+        }
+    }
+
+    private void send(ByteArrayWriter message) throws IOException {
+        synchronized (this) {
+            ByteArrayWriter packet = new ByteArrayWriter();
+            packet.writeInt(message.size());
+            packet.write(message.toByteArray());
+            out.write(packet.toByteArray());
+            out.flush();
+        }
+    }
+
+    private void handle(byte message[]) {
+        int type = message[0];
+        int id = (int)ByteArrayReader.readInt(message, 1);
+        ByteArrayReader request = new ByteArrayReader(message);
+        request.skip(5);
+        ByteArrayWriter response = new ByteArrayWriter();
+        try {
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+            try {
+                handle(type, id, request, response);
+            } catch (NoSuchFileException e) {
+                response = status(id, 2, e.getMessage());
+            } catch (IOException e) {
+                response = status(id, 4, e.toString());
+            }
+            pendingRequests.decrementAndGet();
+            send(response);
+        } catch (IOException | InterruptedException e) {
+            // Client disconnected or server closed
+        }
+    }
+
+    private static ByteArrayWriter status(int id, int code, String message) throws IOException {
+        ByteArrayWriter response = new ByteArrayWriter();
+        response.write(101);        // SSH_FXP_STATUS
+        response.writeInt(id);
+        response.writeInt(code);
+        response.writeString(message == null ? "" : message);
+        response.writeString("");
+        return response;
+    }
+
+    private String newHandle(Object value) {
+        String handle = Integer.toString(lastHandle.incrementAndGet());
+        handles.put(handle, value);
+        return handle;
+    }
+
+    private Object getHandle(ByteArrayReader request) throws IOException {
+        Object value = handles.get(new String(request.readBinaryString()));
+        if (value == null) {
+            throw new IOException("Invalid handle");
+        }
+        return value;
+    }
+
+    private static long readLong(ByteArrayReader request) throws IOException {
+        return (request.readInt() << 32) | request.readInt();
+    }
+
+    private void handle(int type, int id, ByteArrayReader request, ByteArrayWriter response) throws IOException {
+        switch (type) {
+            case 3: {       // SSH_FXP_OPEN
+                Path path = Paths.get(request.readString());
+                int flags = (int)request.readInt();
+                new FileAttributes(request);
+                Set<OpenOption> options = new HashSet<>();
+                if ((flags & SFTPChannel.OPEN_READ) != 0) options.add(StandardOpenOption.READ);
+                if ((flags & SFTPChannel.OPEN_WRITE) != 0) options.add(StandardOpenOption.WRITE);
+                if ((flags & SFTPChannel.OPEN_CREATE) != 0) options.add(StandardOpenOption.CREATE);
+                if ((flags & SFTPChannel.OPEN_TRUNCATE) != 0) options.add(StandardOpenOption.TRUNCATE_EXISTING);
+                sendHandle(id, newHandle(FileChannel.open(path, options)), response);
+                return;
+            }
+            case 4: {       // SSH_FXP_CLOSE
+                Object value = handles.remove(new String(request.readBinaryString()));
+                if (value instanceof Closeable) {
+                    ((Closeable)value).close();
+                }
+                sendOK(id, response);
+                return;
+            }
+            case 5: {       // SSH_FXP_READ
+                FileChannel channel = (FileChannel)getHandle(request);
+                long offset = readLong(request);
+                int length = (int)Math.min(request.readInt(), maxReadLength);
+                ByteBuffer data = ByteBuffer.allocate(length);
+                int n = channel.read(data, offset);
+                if (n <= 0) {
+                    response.write(status(id, 1, "EOF").toByteArray());
+                    return;
+                }
+                response.write(103);        // SSH_FXP_DATA
+                response.writeInt(id);
+                response.writeBinaryString(Arrays.copyOf(data.array(), n));
+                return;
+            }
+            case 6: {       // SSH_FXP_WRITE
+                FileChannel channel = (FileChannel)getHandle(request);
+                long offset = readLong(request);
+                ByteBuffer data = ByteBuffer.wrap(request.readBinaryString());
+                while (data.hasRemaining()) {
+                    offset += channel.write(data, offset);
+                }
+                sendOK(id, response);
+                return;
+            }
+            case 7:         // SSH_FXP_LSTAT
+            case 17: {      // SSH_FXP_STAT
+                Path path = Paths.get(request.readString());
+                sendAttributes(id, getAttributes(path, type == 7), response);
+                return;
+            }
+            case 9: {       // SSH_FXP_SETSTAT
+                Path path = Paths.get(request.readString());
+                FileAttributes attributes = new FileAttributes(request);
+                if (attributes.isFlagSet(4)) {     // SSH_FILEXFER_ATTR_PERMISSIONS
+                    Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+                    int bits = attributes.getPermissions().intValue();
+                    PosixFilePermission values[] = PosixFilePermission.values();
+                    for (int i = 0; i < values.length; i++) {
+                        if ((bits & (0400 >> i)) != 0) {
+                            permissions.add(values[i]);
+                        }
+                    }
+                    Files.setPosixFilePermissions(path, permissions);
+                }
+                if (attributes.isFlagSet(8)) {     // SSH_FILEXFER_ATTR_ACMODTIME
+                    Files.setLastModifiedTime(path, FileTime.from(attributes.getModifiedTime().longValue(), TimeUnit.SECONDS));
+                }
+                sendOK(id, response);
+                return;
+            }
+            case 11: {      // SSH_FXP_OPENDIR
+                Path path = Paths.get(request.readString());
+                List<Path> children = new ArrayList<>();
+                children.add(path.resolve("."));
+                children.add(path.resolve(".."));
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                    for (Path child : stream) {
+                        children.add(child);
+                    }
+                }
+                sendHandle(id, newHandle(children.iterator()), response);
+                return;
+            }
+            case 12: {      // SSH_FXP_READDIR
+                Iterator<?> children = (Iterator<?>)getHandle(request);
+                if (!children.hasNext()) {
+                    response.write(status(id, 1, "EOF").toByteArray());
+                    return;
+                }
+                ByteArrayWriter entries = new ByteArrayWriter();
+                int count = 0;
+                while (children.hasNext() && count < READDIR_BATCH_SIZE) {
+                    Path child = (Path)children.next();
+                    entries.writeString(child.getFileName().toString());
+                    entries.writeString(child.getFileName().toString());
+                    entries.write(getAttributes(child, true).toByteArray());
+                    count++;
+                }
+                response.write(104);        // SSH_FXP_NAME
+                response.writeInt(id);
+                response.writeInt(count);
+                response.write(entries.toByteArray());
+                return;
+            }
+            case 13:        // SSH_FXP_REMOVE
+            case 15: {      // SSH_FXP_RMDIR
+                Path path = Paths.get(request.readString());
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) != (type == 15)) {
+                    throw new IOException("Wrong file type");
+                }
+                Files.delete(path);
+                sendOK(id, response);
+                return;
+            }
+            case 14: {      // SSH_FXP_MKDIR
+                Files.createDirectory(Paths.get(request.readString()));
+                sendOK(id, response);
+                return;
+            }
+            case 18: {      // SSH_FXP_RENAME
+                Path source = Paths.get(request.readString());
+                Files.move(source, Paths.get(request.readString()));
+                sendOK(id, response);
+                return;
+            }
+            case 19: {      // SSH_FXP_READLINK
+                Path target = Files.readSymbolicLink(Paths.get(request.readString()));
+                response.write(104);        // SSH_FXP_NAME
+                response.writeInt(id);
+                response.writeInt(1);
+                response.writeString(target.toString());
+                response.writeString(target.toString());
+                response.write(new FileAttributes().toByteArray());
+                return;
+            }
+            default:
+                response.write(status(id, 8, "Unsupported").toByteArray());
+        }
+    }
+
+    private static FileAttributes getAttributes(Path path, boolean noFollowLinks) throws IOException {
+        PosixFileAttributes attributes = noFollowLinks
+                ? Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                : Files.readAttributes(path, PosixFileAttributes.class);
+        int permissions = 0;
+        PosixFilePermission values[] = PosixFilePermission.values();
+        for (int i = 0; i < values.length; i++) {
+            if (attributes.permissions().contains(values[i])) {
+                permissions |= 0400 >> i;
+            }
+        }
+        if (attributes.isDirectory()) {
+            permissions |= FileAttributes.S_IFDIR;
+        } else if (attributes.isSymbolicLink()) {
+            permissions |= FileAttributes.S_IFLNK;
+        } else {
+            permissions |= FileAttributes.S_IFREG;
+        }
+
+        FileAttributes result = new FileAttributes();
+        result.setSize(new UnsignedInteger64(BigInteger.valueOf(attributes.size())));
+        result.setUID(new UnsignedInteger32(1000));
+        result.setGID(new UnsignedInteger32(1000));
+        result.setPermissions(new UnsignedInteger32(permissions));
+        long time = attributes.lastModifiedTime().to(TimeUnit.SECONDS);
+        result.setTimes(new UnsignedInteger32(time), new UnsignedInteger32(time));
+        return result;
+    }
+
+    private static void sendOK(int id, ByteArrayWriter response) throws IOException {
+        response.write(status(id, 0, "OK").toByteArray());
+    }
+
+    private static void sendHandle(int id, String handle, ByteArrayWriter response) throws IOException {
+        response.write(102);        // SSH_FXP_HANDLE
+        response.writeInt(id);
+        response.writeBinaryString(handle.getBytes());
+    }
+
+    private static void sendAttributes(int id, FileAttributes attributes, ByteArrayWriter response) throws IOException {
+        response.write(105);        // SSH_FXP_ATTRS
+        response.writeInt(id);
+        response.write(attributes.toByteArray());
+    }
+}
@@ -0,0 +1,509 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.zip.provider;
+
+import com.mucommander.commons.file.DummyFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.io.RandomAccessInputStream;
+import com.mucommander.commons.io.RandomAccessOutputStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for the batch modifications and the defragmentation of {@link ZipFile}. The archives that are modified
+ * are read back with <code>java.util.zip</code>, both from the central directory and from the local headers, the
+ * latter failing if free space is left between entries.
+ */
+public class ZipFileTest {
+
+    /** Number of entries of the archive that is modified */
+    private final static int NB_ENTRIES = 20;
+
+    private File file;
+
+    /** Expected contents of the archive, in the order the entries are stored */
+    private Map<String, byte[]> expected;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = File.createTempFile("ZipFileTest", ".zip");
+
+        // java.util.zip writes a data descriptor after deflated entries
+        expected = new LinkedHashMap<>();
+        try (java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < NB_ENTRIES; i++) {
+                byte data[] = createData(i * 5000 + 1, i);
+                zos.putNextEntry(new java.util.zip.ZipEntry("entry" + i));
+                zos.write(data);
+                expected.put("entry" + i, data);
+            }
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Asserts that deleting and adding entries in a batch writes nothing until the batch is committed, and that
+     * committing it leaves a valid archive without free space.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testBatch() throws IOException {
+        long originalLength = file.length();
+        LocalFile localFile = new LocalFile(file);
+        ZipFile zipFile = new ZipFile(localFile);
+
+        zipFile.beginBatch();
+        assertTrue(zipFile.isBatchInProgress());
+
+        for (int i = 0; i < NB_ENTRIES; i += 2) {
+            zipFile.deleteEntry(zipFile.getEntry("entry" + i));
+            expected.remove("entry" + i);
+        }
+        // Deletions do not access the file
+        assertEquals(localFile.nbWriteOpens, 0);
+        assertEquals(file.length(), originalLength);
+
+        for (int i = 0; i < 3; i++) {
+            byte data[] = createData(i * 20000 + 1, -i);
+            ZipEntry entry = new ZipEntry("added" + i);
+            entry.setMethod(ZipConstants.DEFLATED);
+            OutputStream out = zipFile.addEntry(entry);
+            out.write(data);
+            out.close();
+            expected.put("added" + i, data);
+        }
+
+        zipFile.commitBatch();
+        assertFalse(zipFile.isBatchInProgress());
+        assertEquals(zipFile.getNbEntries(), expected.size());
+
+        assertArchive();
+        assertTrue(file.length() < originalLength);
+
+        // The archive is compact: defragmenting it writes nothing
+        long length = file.length();
+        int nbWriteOpens = localFile.nbWriteOpens;
+        zipFile.defragment();
+        assertEquals(localFile.nbWriteOpens, nbWriteOpens);
+        assertEquals(file.length(), length);
+    }
+
+    /**
+     * Asserts that committing a batch while the stream of an added entry is still open, as happens when a job is
+     * interrupted, applies the batch only once that stream is closed.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCommitWithOpenEntry() throws IOException {
+        ZipFile zipFile = new ZipFile(new LocalFile(file));
+
+        zipFile.beginBatch();
+        for (int i = 0; i < NB_ENTRIES; i += 3) {
+            zipFile.deleteEntry(zipFile.getEntry("entry" + i));
+            expected.remove("entry" + i);
+        }
+
+        byte data[] = createData(100000, 0);
+        ZipEntry entry = new ZipEntry("added");
+        entry.setMethod(ZipConstants.DEFLATED);
+        OutputStream out = zipFile.addEntry(entry);
+        out.write(data, 0, data.length / 2);
+
+        zipFile.commitBatch();
+        assertTrue(zipFile.isBatchInProgress());
+
+        out.write(data, data.length / 2, data.length - data.length / 2);
+        out.close();
+        expected.put("added", data);
+
+        assertFalse(zipFile.isBatchInProgress());
+        assertArchive();
+    }
+
+    /**
+     * Asserts that a batch committed while the stream of an added entry is open is applied when that stream is closed,
+     * even if the data of the entry cannot be finalized.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCommitWithFailingEntry() throws IOException {
+        LocalFile localFile = new LocalFile(file);
+        ZipFile zipFile = new ZipFile(localFile);
+
+        zipFile.beginBatch();
+        zipFile.deleteEntry(zipFile.getEntry("entry0"));
+
+        ZipEntry entry = new ZipEntry("added");
+        entry.setMethod(ZipConstants.DEFLATED);
+        OutputStream out = zipFile.addEntry(entry);
+        out.write(createData(1000, 0));
+        zipFile.commitBatch();
+        assertTrue(zipFile.isBatchInProgress());
+
+        // Finalizing the entry seeks to its local file header
+        localFile.failNextSeek = true;
+        IOException closeException = null;
+        try {
+            out.close();
+        } catch (IOException e) {
+            closeException = e;
+        }
+        assertNotNull(closeException);
+        assertFalse(localFile.failNextSeek);
+
+        // The central directory has been written without the deleted entry
+        assertFalse(zipFile.isBatchInProgress());
+        try (java.util.zip.ZipFile zip = new java.util.zip.ZipFile(file)) {
+            assertNull(zip.getEntry("entry0"));
+            assertNotNull(zip.getEntry("entry1"));
+        }
+    }
+
+    /**
+     * Asserts that a batch without modifications leaves the archive untouched.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testEmptyBatch() throws IOException {
+        LocalFile localFile = new LocalFile(file);
+        ZipFile zipFile = new ZipFile(localFile);
+
+        zipFile.beginBatch();
+        zipFile.commitBatch();
+
+        assertEquals(localFile.nbWriteOpens, 0);
+        assertArchive();
+    }
+
+    /**
+     * Asserts that defragmenting reclaims the space left by entries deleted outside a batch, and that an archive that
+     * has just been defragmented is not accessed anymore.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testDefragment() throws IOException {
+        LocalFile localFile = new LocalFile(file);
+        ZipFile zipFile = new ZipFile(localFile);
+
+        for (int i : new int[]{15, 3, 4}) {
+            zipFile.deleteEntry(zipFile.getEntry("entry" + i));
+            expected.remove("entry" + i);
+        }
+        long length = file.length();
+
+        zipFile.defragment();
+        assertArchive();
+        assertTrue(file.length() < length);
+
+        length = file.length();
+        int nbWriteOpens = localFile.nbWriteOpens;
+        zipFile.defragment();
+        assertEquals(localFile.nbWriteOpens, nbWriteOpens);
+        assertEquals(file.length(), length);
+
+        // A newly opened archive may be fragmented, but is left untouched if it is not
+        new ZipFile(localFile).defragment();
+        assertEquals(file.length(), length);
+        assertArchive();
+    }
+
+    /**
+     * Asserts that defragmenting an archive whose entries are followed by data descriptors with 8-byte sizes, as
+     * written by {@link ZipOutputStream} for entries whose size is not known, moves the whole data descriptors.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testDefragmentZip64DataDescriptors() throws IOException {
+        expected.clear();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < NB_ENTRIES; i++) {
+                byte data[] = createData(i * 1000 + 1, i);
+                zos.putNextEntry(new ZipEntry("entry" + i));
+                zos.write(data);
+                expected.put("entry" + i, data);
+            }
+        }
+
+        ZipFile zipFile = new ZipFile(new LocalFile(file));
+        for (int i = 0; i < NB_ENTRIES; i += 4) {
+            zipFile.deleteEntry(zipFile.getEntry("entry" + i));
+            expected.remove("entry" + i);
+        }
+        zipFile.defragment();
+
+        // java.util.zip.ZipInputStream expects 8-byte sizes only for entries larger than 4 GB
+        assertCentralDirectory();
+
+        // The entries follow each other: each one is made of its header with a ZIP64 extra field, its data and its
+        // 24-byte data descriptor
+        long entriesLength = 0;
+        try (java.util.zip.ZipFile jZipFile = new java.util.zip.ZipFile(file)) {
+            for (String name : expected.keySet()) {
+                entriesLength += 30 + name.length() + 20 + jZipFile.getEntry(name).getCompressedSize() + 24;
+            }
+        }
+        assertEquals(getCentralDirectoryOffset(), entriesLength);
+    }
+
+
+    /**
+     * Asserts that the archive contains the expected entries, both in the central directory and in the local
+     * headers that follow each other from the start of the file.
+     */
+    private void assertArchive() throws IOException {
+        assertCentralDirectory();
+
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
+            for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                assertEquals(zis.getNextEntry().getName(), entry.getKey());
+                assertTrue(Arrays.equals(readFully(zis), entry.getValue()), entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Asserts that the central directory of the archive lists the expected entries.
+     */
+    private void assertCentralDirectory() throws IOException {
+        try (java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(file)) {
+            assertEquals(zipFile.size(), expected.size());
+            for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                try (InputStream in = zipFile.getInputStream(zipFile.getEntry(entry.getKey()))) {
+                    assertTrue(Arrays.equals(readFully(in), entry.getValue()), entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the offset of the central directory, read from the end of central directory record of an archive
+     * without comment.
+     */
+    private long getCentralDirectoryOffset() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - 22 + 16);
+            long offset = 0;
+            for (int i = 0; i < 4; i++) {
+                offset |= (long)raf.read() << (8 * i);
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Returns data that compresses reasonably well: random words separated by spaces.
+     */
+    private static byte[] createData(int length, long seed) {
+        Random random = new Random(seed);
+        byte data[] = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = random.nextInt(6) == 0 ? (byte)' ' : (byte)('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte buffer[] = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * A file backed by a local file with random read and write access, that counts the number of times it is opened
+     * for writing.
+     */
+    private static class LocalFile extends DummyFile {
+        private final File file;
+        private int nbWriteOpens;
+        /** If true, the next seek of a RandomAccessOutputStream fails */
+        private boolean failNextSeek;
+
+        private LocalFile(File file) throws IOException {
+            super(FileURL.getFileURL(file.getAbsolutePath()));
+            this.file = file;
+        }
+
+        @Override
+        public boolean exists() {
+            return file.exists();
+        }
+
+        @Override
+        public long getSize() {
+            return file.length();
+        }
+
+        @Override
+        public RandomAccessInputStream getRandomAccessInputStream() {
+            return new RandomFileInputStream(open(file, "r"));
+        }
+
+        @Override
+        public RandomAccessOutputStream getRandomAccessOutputStream() {
+            nbWriteOpens++;
+            return new RandomFileOutputStream(open(file, "rw")) {
+                @Override
+                public void seek(long offset) throws IOException {
+                    if (failNextSeek) {
+                        failNextSeek = false;
+                        throw new IOException("seek failed");
+                    }
+                    super.seek(offset);
+                }
+            };
+        }
+
+        private static RandomAccessFile open(File file, String mode) {
+            try {
+                return new RandomAccessFile(file, mode);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * A RandomAccessInputStream over a local file.
+     */
+    private static class RandomFileInputStream extends RandomAccessInputStream {
+        private final RandomAccessFile raf;
+
+        private RandomFileInputStream(RandomAccessFile raf) {
+            this.raf = raf;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return raf.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return raf.read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+
+        @Override
+        public long getOffset() throws IOException {
+            return raf.getFilePointer();
+        }
+
+        @Override
+        public long getLength() throws IOException {
+            return raf.length();
+        }
+
+        @Override
+        public void seek(long offset) throws IOException {
+            raf.seek(offset);
+        }
+    }
+
+    /**
+     * A RandomAccessOutputStream over a local file.
+     */
+    private static class RandomFileOutputStream extends RandomAccessOutputStream {
+        private final RandomAccessFile raf;
+
+        private RandomFileOutputStream(RandomAccessFile raf) {
+            this.raf = raf;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            raf.write(b);
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            raf.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            raf.write(b, off, len);
+        }
+
+        @Override
+        public void setLength(long newLength) throws IOException {
+            raf.setLength(newLength);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+
+        @Override
+        public long getOffset() throws IOException {
+            return raf.getFilePointer();
+        }
+
+        @Override
+        public long getLength() throws IOException {
+            return raf.length();
+        }
+
+        @Override
+        public void seek(long offset) throws IOException {
+            raf.seek(offset);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.zip.provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Measures the time {@link ZipOutputStream} takes to compress 16 MB of generated data with 1, 4 and 8 threads.
+ * Results are logged.
+ */
+public class ZipOutputStreamBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZipOutputStreamBenchmark.class);
+
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = File.createTempFile("ZipOutputStreamBenchmark", ".zip");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        byte data[] = ZipOutputStreamTest.createData(4 * 1024 * 1024, 0);
+        for (int nbThreads : new int[]{1, 4, 8}) {
+            long start = System.nanoTime();
+            ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            zos.setCompressionThreads(nbThreads);
+            for (int i = 0; i < 4; i++) {
+                zos.putNextEntry(new ZipEntry("entry" + i));
+                zos.write(data);
+            }
+            zos.close();
+            long time = (System.nanoTime() - start) / 1000000;
+            LOGGER.info("ZipOutputStream, " + nbThreads + " thread(s): " + time + "ms, " + file.length() + " bytes");
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.impl.zip.provider;
+
+import com.mucommander.commons.io.RandomAccessOutputStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link ZipOutputStream} and {@link ParallelDeflatedOutputStream}. The archives that are created are
+ * read back with <code>java.util.zip</code>.
+ */
+public class ZipOutputStreamTest {
+
+    private final static int CHUNK_SIZE = ParallelDeflatedOutputStream.DEFAULT_CHUNK_SIZE;
+
+    /** Sizes of the entries that are written, around chunk boundaries */
+    private final static int SIZES[] = {0, 1, 1000, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, CHUNK_SIZE * 10 + 123};
+
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = File.createTempFile("ZipOutputStreamTest", ".zip");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Returns data that compresses reasonably well: random words separated by spaces.
+     */
+    static byte[] createData(int length, long seed) {
+        Random random = new Random(seed);
+        byte data[] = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = random.nextInt(6) == 0 ? (byte)' ' : (byte)('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static byte[] inflate(byte compressed[], int length) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed);
+        byte data[] = new byte[length];
+        int off = 0;
+        while (!inflater.finished()) {
+            int n = inflater.inflate(data, off, data.length - off);
+            if (n == 0 && (inflater.needsInput() || off == data.length)) {
+                break;
+            }
+            off += n;
+        }
+        assertTrue(inflater.finished());
+        assertEquals(off, length);
+        inflater.end();
+        return data;
+    }
+
+    @Test
+    public void testParallelDeflate() throws IOException, DataFormatException {
+        for (int nbThreads : new int[]{1, 2, 8}) {
+            for (int size : SIZES) {
+                byte data[] = createData(size, size);
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                ParallelDeflatedOutputStream out = new ParallelDeflatedOutputStream(compressed, ZipConstants.DEFAULT_DEFLATER_COMPRESSION, nbThreads);
+                // Write in pieces that do not match chunk boundaries
+                for (int off = 0; off < size; off += 7777) {
+                    out.write(data, off, Math.min(7777, size - off));
+                }
+                out.close();
+
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                assertEquals(out.getCrc(), crc.getValue());
+                assertEquals(out.getTotalIn(), size);
+                assertEquals(out.getTotalOut(), compressed.size());
+                assertTrue(Arrays.equals(inflate(compressed.toByteArray(), size), data));
+            }
+        }
+    }
+
+    /**
+     * Writes entries of various sizes with the given number of threads, to a regular stream (entries have a data
+     * descriptor) or to a random access stream, and reads them back with <code>java.util.zip</code>.
+     */
+    private void testArchive(int nbThreads, boolean randomAccess) throws IOException {
+        OutputStream fileOut = randomAccess ? new RandomFileOutputStream(file) : new FileOutputStream(file);
+        ZipOutputStream zos = new ZipOutputStream(fileOut);
+        zos.setCompressionThreads(nbThreads);
+        for (int size : SIZES) {
+            ZipEntry entry = new ZipEntry("folder/entry" + size);
+            entry.setSize(size);
+            zos.putNextEntry(entry);
+            zos.write(createData(size, size));
+        }
+        zos.putNextEntry(new ZipEntry("folder/"));
+        zos.close();
+
+        // Central directory
+        java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(file);
+        try {
+            Enumeration<? extends java.util.zip.ZipEntry> entries = zipFile.entries();
+            for (int size : SIZES) {
+                java.util.zip.ZipEntry entry = entries.nextElement();
+                assertEquals(entry.getName(), "folder/entry" + size);
+                assertEquals(entry.getSize(), size);
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    assertTrue(Arrays.equals(readFully(in), createData(size, size)));
+                }
+            }
+            assertTrue(entries.nextElement().isDirectory());
+        } finally {
+            zipFile.close();
+        }
+
+        // Local headers
+        try (ZipInputStream zis = new ZipInputStream(new java.io.FileInputStream(file))) {
+            for (int size : SIZES) {
+                assertEquals(zis.getNextEntry().getName(), "folder/entry" + size);
+                assertTrue(Arrays.equals(readFully(zis), createData(size, size)));
+            }
+        }
+    }
+
+    @Test
+    public void testArchive() throws IOException {
+        for (int nbThreads : new int[]{1, 4}) {
+            testArchive(nbThreads, false);
+            testArchive(nbThreads, true);
+        }
+    }
+
+    /**
+     * More than 65535 entries require the ZIP64 end of central directory record.
+     */
+    @Test
+    public void testZip64EntryCount() throws IOException {
+        int nbEntries = ZipConstants.MAX_ZIP32_ENTRIES + 10;
+        ZipOutputStream zos = new ZipOutputStream(new java.io.BufferedOutputStream(new FileOutputStream(file)));
+        for (int i = 0; i < nbEntries; i++) {
+            zos.putNextEntry(new ZipEntry("entry" + i));
+            zos.write(i & 0xFF);
+        }
+        zos.close();
+
+        java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(file);
+        try {
+            assertEquals(zipFile.size(), nbEntries);
+            java.util.zip.ZipEntry entry = zipFile.getEntry("entry" + (nbEntries - 1));
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                assertEquals(in.read(), (nbEntries - 1) & 0xFF);
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Entries followed by a data descriptor whose size is not known, or may exceed 4 GB, have a ZIP64 extra field
+     * with zeroed sizes in their local file header, and a data descriptor with 8-byte sizes.
+     */
+    @Test
+    public void testZip64DataDescriptor() throws IOException {
+        ZipBuffer zipBuffer = new ZipBuffer();
+        for (long size : new long[]{-1, ZipConstants.MAX_ZIP32_SIZE + 1, 5L * 1024 * 1024 * 1024}) {
+            ZipEntry entry = new ZipEntry("entry");
+            if (size != -1) {
+                entry.setSize(size);
+            }
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            long length = ZipOutputStream.writeLocalFileHeader(entry, header, "UTF-8", true, zipBuffer);
+            byte bytes[] = header.toByteArray();
+
+            assertEquals(length, 30 + 5 + 20);
+            assertEquals(bytes.length, length);
+            assertEquals(getShort(bytes, 4), ZipConstants.ZIP64_VERSION);       // version needed to extract
+            assertTrue((getShort(bytes, 6) & 8) != 0);                          // data descriptor flag
+            assertEquals(getLong(bytes, 14, 4), 0);                             // CRC
+            assertEquals(getLong(bytes, 18, 4), ZipConstants.MAX_ZIP32_SIZE);   // compressed size
+            assertEquals(getLong(bytes, 22, 4), ZipConstants.MAX_ZIP32_SIZE);   // size
+            assertEquals(getShort(bytes, 28), 20);                              // extra field length
+            assertEquals(getShort(bytes, 35), ZipConstants.ZIP64_EXTRA_ID);
+            assertEquals(getShort(bytes, 37), 16);
+            assertEquals(getLong(bytes, 39, 8), 0);
+            assertEquals(getLong(bytes, 47, 8), 0);
+        }
+
+        // Small entries whose size is known do not need ZIP64 extensions
+        ZipEntry entry = new ZipEntry("entry");
+        entry.setSize(1000);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        assertEquals(ZipOutputStream.writeLocalFileHeader(entry, header, "UTF-8", true, zipBuffer), 30 + 5);
+        assertEquals(getShort(header.toByteArray(), 28), 0);
+
+        // The data descriptor that follows an entry whose size is not known has 8-byte sizes
+        byte data[] = createData(1000, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(out);
+        entry = new ZipEntry("entry");
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.close();
+
+        byte bytes[] = out.toByteArray();
+        int ddOffset = (int)(30 + 5 + 20 + entry.getCompressedSize());
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        assertEquals(getLong(bytes, ddOffset, 4), 0x08074b50L);                 // data descriptor signature
+        assertEquals(getLong(bytes, ddOffset + 4, 4), crc.getValue());
+        assertEquals(getLong(bytes, ddOffset + 8, 8), entry.getCompressedSize());
+        assertEquals(getLong(bytes, ddOffset + 16, 8), data.length);
+        assertEquals(getLong(bytes, ddOffset + 24, 4), 0x02014b50L);            // central file header signature
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte buffer[] = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static int getShort(byte bytes[], int offset) {
+        return (int)getLong(bytes, offset, 2);
+    }
+
+    /**
+     * Returns the little-endian value of the given length located at the given offset.
+     */
+    private static long getLong(byte bytes[], int offset, int length) {
+        long value = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * A RandomAccessOutputStream over a local file.
+     */
+    private static class RandomFileOutputStream extends RandomAccessOutputStream {
+        private final RandomAccessFile raf;
+
+        private RandomFileOutputStream(File file) throws IOException {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            raf.write(b);
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            raf.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            raf.write(b, off, len);
+        }
+
+        @Override
+        public void setLength(long newLength) throws IOException {
+            raf.setLength(newLength);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+
+        @Override
+        public long getOffset() throws IOException {
+            return raf.getFilePointer();
+        }
+
+        @Override
+        public long getLength() throws IOException {
+            return raf.length();
+        }
+
+        @Override
+        public void seek(long offset) throws IOException {
+            raf.seek(offset);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.util;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.DummyFile;
+import com.mucommander.commons.file.FileURL;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+/**
+ * This class is a TestNG test case for {@link com.mucommander.commons.file.util.FilePool}.
+ *
+ * @see com.mucommander.commons.file.util.FilePool
+ */
+public class FilePoolTest {
+
+    private static AbstractFile createFile(String path) throws IOException {
+        return new DummyFile(FileURL.getFileURL(path));
+    }
+
+    /**
+     * Tests the basic pool operations and asserts that hits and misses are accounted for.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testPutAndGet() throws IOException {
+        FilePool pool = new FilePool();
+        AbstractFile file1 = createFile("/file1");
+        AbstractFile file2 = createFile("/file2");
+
+        assert null == pool.get(file1.getURL());
+        assert 0 == pool.getHitCount();
+        assert 1 == pool.getMissCount();
+
+        assert null == pool.put(file1.getURL(), file1);
+        assert file1 == pool.get(file1.getURL());
+        assert pool.containsKey(file1.getURL());
+        assert pool.containsValue(file1);
+        assert !pool.containsValue(file2);
+        assert 1 == pool.size();
+        assert 1 == pool.getHitCount();
+
+        // Replace the mapping
+        assert file1 == pool.put(file1.getURL(), file2);
+        assert file2 == pool.get(file1.getURL());
+        assert 1 == pool.size();
+        assert 2 == pool.getHitCount();
+        assert 1 == pool.getMissCount();
+
+        pool.clear();
+        assert 0 == pool.size();
+        assert !pool.containsKey(file1.getURL());
+        assert 0 == pool.getCollectedCount();
+    }
+
+    /**
+     * Asserts that files that are in use are never removed from the pool, however many there are, so that a file
+     * remains the only instance for its key.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testNoEviction() throws IOException {
+        FilePool pool = new FilePool();
+        AbstractFile files[] = new AbstractFile[20000];
+        for(int i=0; i<files.length; i++) {
+            files[i] = createFile("/file"+i);
+            pool.put(files[i].getURL(), files[i]);
+        }
+
+        assert files.length == pool.size();
+        for(AbstractFile file : files)
+            assert file == pool.get(file.getURL());
+        assert 0 == pool.getCollectedCount();
+    }
+
+    /**
+     * Asserts that the mappings whose file has been garbage collected are removed from the pool.
+     *
+     * @throws IOException should not happen
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testCollectedFiles() throws IOException, InterruptedException {
+        FilePool pool = new FilePool();
+        AbstractFile file = createFile("/file");
+        pool.put(file.getURL(), file);
+        for(int i=0; i<10; i++) {
+            AbstractFile garbage = createFile("/garbage"+i);
+            pool.put(garbage.getURL(), garbage);
+        }
+
+        // Garbage collection is not guaranteed to happen, try a few times
+        for(int i=0; i<50 && pool.size()>1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assert 1 == pool.size();
+        assert 10 == pool.getCollectedCount();
+        assert file == pool.get(file.getURL());
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.file.util;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.test.Assumes;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A test case for the {@link FolderWatcher} class.
+ */
+public class FolderWatcherTest {
+
+    /** Temporary folder used by the current test */
+    private AbstractFile folder;
+    /** Watch used by the current test */
+    private FolderWatcher.Watch watch;
+    /** Records the changes reported for the current test */
+    private ChangeTracker changeTracker;
+
+    /** Number of milliseconds to wait for a change before timing out */
+    private final static int TIMEOUT = 5000;
+
+
+    /**
+     * Creates a temporary folder and starts watching it.
+     *
+     * @throws IOException should not normally happen
+     */
+    @BeforeMethod
+    protected void setUp() throws IOException {
+        Assumes.assumeThat("Folder watching is available", FolderWatcher.isAvailable());
+
+        folder = FileFactory.getTemporaryFile(getClass().getName(), true);
+        folder.mkdir();
+
+        changeTracker = new ChangeTracker();
+        watch = FolderWatcher.watch(folder, changeTracker);
+        assert watch != null;
+    }
+
+    /**
+     * Stops watching the temporary folder and deletes it.
+     *
+     * @throws IOException should not normally happen
+     */
+    @AfterMethod
+    protected void tearDown() throws IOException {
+        if (watch != null) {
+            watch.cancel();
+        }
+        if (folder != null && folder.exists()) {
+            folder.deleteRecursively();
+        }
+    }
+
+    /**
+     * Validates that the creation, modification and deletion of files are reported with the files' names.
+     *
+     * @throws IOException should not normally happen
+     */
+    @Test
+    public void testChangedNames() throws IOException {
+        AbstractFile file = folder.getDirectChild("file");
+        file.mkfile();
+        assert hasChanged("file");
+        changeTracker.reset();
+
+        file.changeDate(file.getDate() - 2000);
+        assert hasChanged("file");
+        changeTracker.reset();
+
+        file.delete();
+        assert hasChanged("file");
+    }
+
+    /**
+     * Validates that a burst of changes is reported in a single notification.
+     *
+     * @throws IOException should not normally happen
+     */
+    @Test
+    public void testCoalescedChanges() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            folder.getDirectChild("file" + i).mkfile();
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assert hasChanged("file" + i);
+        }
+        assert changeTracker.getNbNotifications() <= 2;
+    }
+
+    /**
+     * Validates that no change is reported once the watch has been cancelled.
+     *
+     * @throws IOException should not normally happen
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testCancel() throws IOException, InterruptedException {
+        watch.cancel();
+        watch = null;
+
+        folder.getDirectChild("file").mkfile();
+        Thread.sleep(FolderWatcher.MAX_COALESCE_DELAY * 2);
+        assert changeTracker.getNbNotifications() == 0;
+    }
+
+    /**
+     * Validates that regular files cannot be watched.
+     *
+     * @throws IOException should not normally happen
+     */
+    @Test
+    public void testRegularFile() throws IOException {
+        AbstractFile file = folder.getDirectChild("file");
+        file.mkfile();
+
+        assert FolderWatcher.watch(file, changeTracker) == null;
+    }
+
+
+    /////////////////////////////////
+    // Support methods and classes //
+    /////////////////////////////////
+
+    /**
+     * Returns <code>true</code> if a change to the file with the specified name has been reported, waiting up to
+     * {@link #TIMEOUT} milliseconds for it.
+     *
+     * @param name name of the file to test against
+     * @return true if a change to the file with the specified name has been reported
+     */
+    private boolean hasChanged(String name) {
+        long timeout = System.currentTimeMillis() + TIMEOUT;
+        try {
+            synchronized(changeTracker) {
+                long waitTime;
+                while (!changeTracker.hasChanged(name) && (waitTime = timeout - System.currentTimeMillis()) > 0) {
+                    changeTracker.wait(waitTime);
+                }
+
+                return changeTracker.hasChanged(name);
+            }
+        }
+        catch(InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * This {@link FolderWatchListener} keeps track of the names of the files that have been reported as changed.
+     */
+    private static class ChangeTracker implements FolderWatchListener {
+
+        /** Names of the files that have been reported as changed */
+        private final Set<String> changedNames = new HashSet<>();
+
+        /** True if changes have been reported without names */
+        private boolean allChanged;
+
+        /** Number of notifications received */
+        private int nbNotifications;
+
+        private synchronized boolean hasChanged(String name) {
+            return allChanged || changedNames.contains(name);
+        }
+
+        private synchronized int getNbNotifications() {
+            return nbNotifications;
+        }
+
+        private synchronized void reset() {
+            changedNames.clear();
+            allChanged = false;
+        }
+
+        ////////////////////////////////////////
+        // FolderWatchListener implementation //
+        ////////////////////////////////////////
+
+        public synchronized void folderChanged(AbstractFile folder, Set<String> names) {
+            if (names == null) {
+                allChanged = true;
+            } else {
+                changedNames.addAll(names);
+            }
+            nbNotifications++;
+
+            notifyAll();    // Notify hasChanged(String) that a change has been reported
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the throughput of {@link BufferPool} when buffers are retrieved and released concurrently by 1, 4 and 16
+ * threads, the way transfer jobs and archive readers use it. Results are logged.
+ *
+ * <p>The number of get/release cycles performed by each thread can be set with the
+ * <code>mucommander.benchmark.bufferPoolIterations</code> system property.</p>
+ */
+public class BufferPoolBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BufferPoolBenchmark.class);
+
+    /** Number of get/release cycles performed by each thread */
+    private final static int NB_ITERATIONS = Integer.getInteger("mucommander.benchmark.bufferPoolIterations", 1000000);
+
+    /** Numbers of threads the pool is benchmarked with */
+    private final static int NB_THREADS[] = {1, 4, 16};
+
+    @AfterClass
+    public void tearDown() {
+        BufferPool.releaseAll();
+    }
+
+    @Test
+    public void benchmark() throws InterruptedException {
+        // Warm up
+        run(NB_THREADS[NB_THREADS.length - 1]);
+
+        for (int nbThreads : NB_THREADS) {
+            BufferPool.releaseAll();
+            BufferPool.resetCounters();
+
+            long time = run(nbThreads);
+            long nbCycles = (long)nbThreads * NB_ITERATIONS;
+            LOGGER.info("BufferPool, " + nbThreads + " thread(s): " + time + "ms, "
+                    + (nbCycles * 1000 / Math.max(time, 1)) + " get/release per second, "
+                    + BufferPool.getMissCount() + " misses");
+        }
+    }
+
+    /**
+     * Has the given number of threads retrieve and release buffers concurrently, and returns the time it took
+     * in milliseconds.
+     */
+    private long run(int nbThreads) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread threads[] = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < NB_ITERATIONS; i++) {
+                        // A default size buffer and a smaller one, as used by stream copies and archive readers
+                        byte buffer1[] = BufferPool.getByteArray();
+                        byte buffer2[] = BufferPool.getByteArray(8192);
+                        BufferPool.releaseByteArray(buffer2);
+                        BufferPool.releaseByteArray(buffer1);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+}
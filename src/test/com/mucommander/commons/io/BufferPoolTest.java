@@ -22,6 +22,8 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.concurrent.CountDownLatch;
+
 /**
  * This class is a TestNG test case for {@link BufferPool}.
  *
@@ -195,6 +197,111 @@ public class BufferPoolTest {
         BufferPool.setMaxPoolSize(BufferPool.INITIAL_POOL_LIMIT);
     }
 
+    /**
+     * Tests <code>BufferPool</code> when used concurrently by 1, 4 and 16 threads, and asserts that the pool size
+     * limit is honoured and that the hit/miss counters account for all the buffers that were requested.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        for(int nbThreads : new int[]{1, 4, 16})
+            testConcurrentAccess(nbThreads, 10000);
+    }
+
+    private void testConcurrentAccess(int nbThreads, final int nbIterations) throws InterruptedException {
+        BufferPool.releaseAll();
+        BufferPool.resetCounters();
+        BufferPool.setMaxPoolSize(TEST_MAX_POOL_SIZE);
+
+        final boolean[] sizeExceeded = new boolean[1];
+        Thread[] threads = new Thread[nbThreads];
+        for(int t=0; t<nbThreads; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for(int i=0; i<nbIterations; i++) {
+                        byte[] buffer1 = BufferPool.getByteArray(TEST_BUFFER_SIZE_1);
+                        char[] buffer2 = BufferPool.getCharArray(TEST_BUFFER_SIZE_2);
+                        BufferPool.releaseByteArray(buffer1);
+                        BufferPool.releaseCharArray(buffer2);
+
+                        if(BufferPool.getPoolSize()>TEST_MAX_POOL_SIZE)
+                            sizeExceeded[0] = true;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for(Thread thread : threads)
+            thread.join();
+
+        assert !sizeExceeded[0];
+        Assert.assertEquals(BufferPool.getHitCount()+BufferPool.getMissCount(), 2L*nbThreads*nbIterations);
+        assert BufferPool.getAllocatedBytes() >= BufferPool.getMissCount()*TEST_BUFFER_SIZE_1;
+        assert BufferPool.getAllocatedBytes() <= BufferPool.getMissCount()*2*TEST_BUFFER_SIZE_2;
+
+        // The threads have died, assert that the buffers they cached are handed to other threads
+        assert BufferPool.getBufferCount(new BufferPool.ByteArrayFactory()) > 0;
+        long hitCount = BufferPool.getHitCount();
+        BufferPool.getByteArray(TEST_BUFFER_SIZE_1);
+        assert hitCount+1 == BufferPool.getHitCount();
+
+        BufferPool.setMaxPoolSize(BufferPool.INITIAL_POOL_LIMIT);
+        BufferPool.releaseAll();
+    }
+
+    /**
+     * Asserts that the buffers a live thread keeps for itself are handed to other threads once it has called
+     * {@link BufferPool#releaseThreadCache()}.
+     *
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void testReleaseThreadCache() throws InterruptedException {
+        BufferPool.releaseAll();
+
+        final CountDownLatch cached = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    BufferPool.releaseByteArray(BufferPool.getByteArray(TEST_BUFFER_SIZE_1));
+                    cached.countDown();
+                    release.await();
+                    BufferPool.releaseThreadCache();
+                    released.countDown();
+                    // Stay alive until the buffer has been looked up
+                    finish.await();
+                }
+                catch(InterruptedException e) {
+                    // Finish
+                }
+            }
+        };
+        thread.start();
+
+        // The buffer is kept by the other thread
+        cached.await();
+        long hitCount = BufferPool.getHitCount();
+        byte[] buffer = BufferPool.getByteArray(TEST_BUFFER_SIZE_1);
+        Assert.assertEquals(BufferPool.getHitCount(), hitCount);
+
+        // The buffer is now available to all threads
+        release.countDown();
+        released.await();
+        assert buffer != BufferPool.getByteArray(TEST_BUFFER_SIZE_1);
+        Assert.assertEquals(BufferPool.getHitCount(), hitCount+1);
+
+        finish.countDown();
+        thread.join();
+        BufferPool.releaseAll();
+    }
+
     /**
      * Asserts that the given buffer's size matches the specified one.
      *
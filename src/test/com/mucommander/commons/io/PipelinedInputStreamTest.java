@@ -0,0 +1,154 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A test case for {@link com.mucommander.commons.io.PipelinedInputStream}.
+ *
+ * @see com.mucommander.commons.io.PipelinedInputStream
+ */
+public class PipelinedInputStreamTest {
+
+    private final static int TEST_BUFFER_SIZE = 1000;
+
+    private final static byte[] TEST_BYTES = new byte[10*TEST_BUFFER_SIZE+123];
+
+    static {
+        new Random(0).nextBytes(TEST_BYTES);
+    }
+
+    /**
+     * Asserts that the bytes read from a <code>PipelinedInputStream</code> are those of the underlying stream, in the
+     * same order.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testRead() throws IOException {
+        PipelinedInputStream pin = new PipelinedInputStream(new ByteArrayInputStream(TEST_BYTES), TEST_BUFFER_SIZE, 3);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+
+        // Mix single byte and chunked reads
+        assert (TEST_BYTES[0] & 0xFF) == pin.read();
+        bout.write(TEST_BYTES[0]);
+
+        byte b[] = new byte[777];
+        int nbRead;
+        while((nbRead=pin.read(b, 0, b.length))!=-1)
+            bout.write(b, 0, nbRead);
+
+        assert -1 == pin.read();
+        pin.close();
+
+        assert Arrays.equals(TEST_BYTES, bout.toByteArray());
+    }
+
+    /**
+     * Asserts that an error thrown by the underlying stream is rethrown once the bytes read before the error have
+     * been consumed, and that {@link StreamUtils#copyStream(InputStream, OutputStream, int, long)} reports it as a
+     * {@link FileTransferException#READING_SOURCE} error.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testReadError() throws IOException {
+        PipelinedInputStream pin = new PipelinedInputStream(new FailingInputStream(TEST_BUFFER_SIZE), TEST_BUFFER_SIZE, 2);
+        byte b[] = new byte[TEST_BUFFER_SIZE];
+        assert TEST_BUFFER_SIZE == StreamUtils.readUpTo(pin, b);
+
+        boolean exceptionThrown = false;
+        try { pin.read(); }
+        catch(IOException e) { exceptionThrown = true; }
+
+        assert exceptionThrown;
+        pin.close();
+
+        FileTransferException transferException = null;
+        pin = new PipelinedInputStream(new FailingInputStream(TEST_BUFFER_SIZE), TEST_BUFFER_SIZE, 2);
+        try { StreamUtils.copyStream(pin, new ByteArrayOutputStream(), TEST_BUFFER_SIZE, Long.MAX_VALUE); }
+        catch(FileTransferException e) { transferException = e; }
+        finally { pin.close(); }
+
+        assert transferException != null;
+        assert FileTransferException.READING_SOURCE == transferException.getReason();
+    }
+
+    /**
+     * Asserts that {@link StreamUtils#copyStream(InputStream, OutputStream, int, long)} copies the contents of a
+     * <code>PipelinedInputStream</code> as transfer jobs do, and that write errors are reported as
+     * {@link FileTransferException#WRITING_DESTINATION} errors.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCopyStream() throws IOException {
+        PipelinedInputStream pin = new PipelinedInputStream(new ByteArrayInputStream(TEST_BYTES), TEST_BUFFER_SIZE, 3);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+
+        assert TEST_BYTES.length == StreamUtils.copyStream(pin, bout, TEST_BUFFER_SIZE, Long.MAX_VALUE);
+        assert Arrays.equals(TEST_BYTES, bout.toByteArray());
+        pin.close();
+
+        FileTransferException transferException = null;
+        pin = new PipelinedInputStream(new ByteArrayInputStream(TEST_BYTES), TEST_BUFFER_SIZE, 3);
+        try {
+            StreamUtils.copyStream(pin, new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException();
+                }
+            }, TEST_BUFFER_SIZE, Long.MAX_VALUE);
+        }
+        catch(FileTransferException e) { transferException = e; }
+        finally { pin.close(); }
+
+        assert transferException != null;
+        assert FileTransferException.WRITING_DESTINATION == transferException.getReason();
+    }
+
+    /**
+     * An <code>InputStream</code> that returns a number of zeros and then throws an <code>IOException</code>.
+     */
+    private static class FailingInputStream extends InputStream {
+        private int remaining;
+
+        private FailingInputStream(int length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(remaining==0)
+                throw new IOException();
+
+            remaining--;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A test case for {@link com.mucommander.commons.io.PipelinedOutputStream}.
+ *
+ * @see com.mucommander.commons.io.PipelinedOutputStream
+ */
+public class PipelinedOutputStreamTest {
+
+    private final static int TEST_BUFFER_SIZE = 1000;
+
+    private final static byte[] TEST_BYTES = new byte[10*TEST_BUFFER_SIZE+123];
+
+    static {
+        new Random(0).nextBytes(TEST_BYTES);
+    }
+
+    /**
+     * Asserts that the bytes written to a <code>PipelinedOutputStream</code> are written to the underlying stream in
+     * the same order, that {@link PipelinedOutputStream#flush()} waits for them to be written and that
+     * {@link PipelinedOutputStream#close()} closes the underlying stream.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testWrite() throws IOException {
+        ClosingOutputStream bout = new ClosingOutputStream();
+        PipelinedOutputStream pout = new PipelinedOutputStream(bout, TEST_BUFFER_SIZE, 3);
+
+        // Mix single byte and chunked writes
+        pout.write(TEST_BYTES[0]);
+        int off = 1;
+        while(off<TEST_BYTES.length) {
+            int len = Math.min(777, TEST_BYTES.length-off);
+            pout.write(TEST_BYTES, off, len);
+            off += len;
+
+            if(off==778) {
+                pout.flush();
+                assert bout.size() == off;
+            }
+        }
+
+        pout.close();
+
+        assert bout.closed;
+        assert Arrays.equals(TEST_BYTES, bout.toByteArray());
+    }
+
+    /**
+     * Asserts that an error thrown by the underlying stream is rethrown by a subsequent write or by
+     * {@link PipelinedOutputStream#close()}, and that writes do not block after an error.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testWriteError() throws IOException {
+        PipelinedOutputStream pout = new PipelinedOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException();
+            }
+        }, TEST_BUFFER_SIZE, 2);
+
+        boolean exceptionThrown = false;
+        try {
+            for(int i=0; i<100; i++)
+                pout.write(TEST_BYTES);
+        }
+        catch(IOException e) { exceptionThrown = true; }
+
+        assert exceptionThrown;
+
+        exceptionThrown = false;
+        try { pout.close(); }
+        catch(IOException e) { exceptionThrown = true; }
+
+        assert exceptionThrown;
+    }
+
+    /**
+     * A <code>ByteArrayOutputStream</code> that remembers it was closed.
+     */
+    private static class ClosingOutputStream extends ByteArrayOutputStream {
+        private volatile boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
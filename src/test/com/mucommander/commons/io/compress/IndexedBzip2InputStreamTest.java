@@ -0,0 +1,89 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import com.mucommander.commons.io.StreamUtils;
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A test case for {@link IndexedBzip2InputStream}.
+ *
+ * @see IndexedBzip2InputStream
+ */
+public class IndexedBzip2InputStreamTest {
+
+    /**
+     * Records seek points while decompressing a stream made of many blocks, and asserts that decompression can be
+     * resumed at each of them.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testSeekPoints() throws IOException {
+        Random random = new Random(0);
+        byte[] data = new byte[3*1024*1024+5];
+        for(int i=0; i<data.length; i++)
+            data[i] = (byte)("abcdefghij klm\n".charAt(random.nextInt(15)));
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        bout.write('B');
+        bout.write('Z');
+        // Blocks of 100KB
+        OutputStream out = new CBZip2OutputStream(bout, 1);
+        out.write(data);
+        out.close();
+        byte[] compressed = bout.toByteArray();
+
+        assert Arrays.equals(data, readFully(new IndexedBzip2InputStream(new ByteArrayInputStream(compressed))));
+
+        SeekIndex index = new SeekIndex(100*1024);
+        assert Arrays.equals(data, readFully(new IndexedBzip2InputStream(new ByteArrayInputStream(compressed), index)));
+        assert index.size() >= 5;
+
+        long lastOffset = -1;
+        for(long offset=0; offset<data.length; offset+=data.length/20) {
+            SeekPoint point = index.getSeekPoint(offset);
+            if(point==null)
+                continue;
+
+            assert point.getUncompressedOffset() >= lastOffset;
+            lastOffset = point.getUncompressedOffset();
+
+            InputStream in = new IndexedBzip2InputStream(new ByteArrayInputStream(compressed, (int)point.getCompressedOffset(), compressed.length), point);
+            assert Arrays.equals(Arrays.copyOfRange(data, (int)point.getUncompressedOffset(), data.length), readFully(in));
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        StreamUtils.copyStream(in, bout);
+        in.close();
+
+        return bout.toByteArray();
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import com.mucommander.commons.io.ByteCounter;
+import com.mucommander.commons.io.CounterInputStream;
+import com.mucommander.commons.io.StreamUtils;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A test case for {@link IndexedGzipInputStream} and {@link SeekIndex}.
+ *
+ * @see IndexedGzipInputStream
+ */
+public class IndexedGzipInputStreamTest {
+
+    /**
+     * Asserts that data compressed with all the kinds of deflate blocks, in one or several GZIP members, is
+     * decompressed properly.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testDecompress() throws IOException {
+        byte[] data = createTestData(3*1024*1024+17, 0);
+
+        for(int level : new int[]{Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION})
+            assertDecompressed(data, gzip(data, level));
+
+        assertDecompressed(new byte[0], gzip(new byte[0], Deflater.DEFAULT_COMPRESSION));
+
+        // Concatenated members, followed by trailing garbage that must be ignored
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        bout.write(gzip(Arrays.copyOfRange(data, 0, 1000000), Deflater.BEST_SPEED));
+        bout.write(gzip(Arrays.copyOfRange(data, 1000000, data.length), Deflater.NO_COMPRESSION));
+        bout.write(0);
+        assertDecompressed(data, bout.toByteArray());
+    }
+
+    /**
+     * Asserts that corrupt and truncated streams are reported as errors.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testCorruptStream() throws IOException {
+        byte[] data = createTestData(200000, 1);
+        byte[] compressed = gzip(data, Deflater.DEFAULT_COMPRESSION);
+
+        // Not in the GZIP format
+        assert readFails(Arrays.copyOfRange(compressed, 2, compressed.length));
+
+        // Wrong CRC
+        byte[] corrupt = compressed.clone();
+        corrupt[corrupt.length-6] ^= 1;
+        assert readFails(corrupt);
+
+        // Truncated stream
+        assert readFails(Arrays.copyOf(compressed, compressed.length/2));
+        assert readFails(Arrays.copyOf(compressed, compressed.length-4));
+    }
+
+    /**
+     * Records seek points while decompressing a stream, and asserts that decompression can be resumed at each of them,
+     * including after the index has been written and read back.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testSeekPoints() throws IOException {
+        byte[] data = createTestData(8*1024*1024, 2);
+        for(int level : new int[]{Deflater.NO_COMPRESSION, Deflater.DEFAULT_COMPRESSION}) {
+            byte[] compressed = gzip(data, level);
+
+            SeekIndex index = new SeekIndex(64*1024);
+            InputStream in = new IndexedGzipInputStream(new ByteArrayInputStream(compressed), index);
+            assert Arrays.equals(data, readFully(in));
+            assert index.size() >= compressed.length/(64*1024)/2;
+
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            index.write(new DataOutputStream(bout));
+            SeekIndex readIndex = SeekIndex.read(new DataInputStream(new ByteArrayInputStream(bout.toByteArray())));
+            assert index.size() == readIndex.size();
+
+            for(SeekIndex seekIndex : new SeekIndex[]{index, readIndex}) {
+                long lastOffset = -1;
+                for(long offset=0; offset<data.length; offset+=data.length/50) {
+                    SeekPoint point = seekIndex.getSeekPoint(offset);
+                    if(point==null)
+                        continue;
+
+                    assert point.getUncompressedOffset() <= offset;
+                    assert point.getUncompressedOffset() >= lastOffset;
+                    lastOffset = point.getUncompressedOffset();
+
+                    in = new IndexedGzipInputStream(new ByteArrayInputStream(compressed, (int)point.getCompressedOffset(), compressed.length), point);
+                    byte[] resumed = readFully(in);
+                    assert Arrays.equals(Arrays.copyOfRange(data, (int)point.getUncompressedOffset(), data.length), resumed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compresses a synthetic stream larger than 2GB on the fly, records seek points while decompressing it, and asserts
+     * that bytes close to its end can be read by decompressing only a small part of the compressed data.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testLargeStream() throws IOException {
+        final long length = 5L*512*1024*1024+12345;
+        final int span = 256*1024;
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(bout, 65536) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        byte[] chunk = new byte[65536];
+        for(long offset=0; offset<length; offset+=chunk.length) {
+            int chunkLength = (int)Math.min(chunk.length, length-offset);
+            fillLargeStreamChunk(chunk, offset, chunkLength);
+            out.write(chunk, 0, chunkLength);
+        }
+        out.close();
+        byte[] compressed = bout.toByteArray();
+
+        SeekIndex index = new SeekIndex(span);
+        InputStream in = new IndexedGzipInputStream(new ByteArrayInputStream(compressed), index);
+        long total = 0;
+        int nbRead;
+        while((nbRead=in.read(chunk))!=-1)
+            total += nbRead;
+        assert length == total;
+        assert index.size() > 0;
+
+        long offset = length-1000000;
+        SeekPoint point = index.getSeekPoint(offset);
+        assert point != null;
+        assert point.getUncompressedOffset() > Integer.MAX_VALUE;
+
+        ByteCounter compressedBytes = new ByteCounter();
+        in = new IndexedGzipInputStream(new CounterInputStream(new ByteArrayInputStream(compressed, (int)point.getCompressedOffset(), compressed.length), compressedBytes), point);
+        StreamUtils.skipFully(in, offset-point.getUncompressedOffset());
+
+        byte[] expected = new byte[(int)(length-offset)];
+        fillLargeStreamChunk(expected, offset, expected.length);
+        assert Arrays.equals(expected, readFully(in));
+
+        // Only the compressed bytes that follow the seek point have been read
+        assert compressedBytes.getByteCount() <= 3*span+65536;
+    }
+
+    /**
+     * Fills the given buffer with the bytes of the synthetic large stream located at the given offset: mostly zeros,
+     * with the offset of every 4096-byte boundary written in it.
+     */
+    private static void fillLargeStreamChunk(byte[] b, long offset, int length) {
+        Arrays.fill(b, 0, length, (byte)0);
+        for(int i=0; i<length; i++) {
+            long position = offset+i;
+            if((position & 4095)<8)
+                b[i] = (byte)((position & ~4095L) >>> (8*(position & 7)));
+        }
+    }
+
+    /**
+     * Returns test data made of text-like, random and repeated sections, so that all kinds of deflate blocks are used.
+     */
+    private static byte[] createTestData(int length, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[length];
+        int pos = 0;
+        while(pos<length) {
+            int sectionLength = Math.min(length-pos, 1000+random.nextInt(100000));
+            switch(random.nextInt(3)) {
+                case 0:
+                    for(int i=0; i<sectionLength; i++)
+                        data[pos+i] = (byte)("abcdefghij klm\n".charAt(random.nextInt(15)));
+                    break;
+                case 1:
+                    byte[] randomBytes = new byte[sectionLength];
+                    random.nextBytes(randomBytes);
+                    System.arraycopy(randomBytes, 0, data, pos, sectionLength);
+                    break;
+                default:
+                    for(int i=0; i<sectionLength; i++)
+                        data[pos+i] = (byte)(i%251);
+            }
+            pos += sectionLength;
+        }
+
+        return data;
+    }
+
+    private static byte[] gzip(byte[] data, final int level) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream(bout) {
+            {
+                def.setLevel(level);
+            }
+        };
+        out.write(data);
+        out.close();
+
+        return bout.toByteArray();
+    }
+
+    private static void assertDecompressed(byte[] data, byte[] compressed) throws IOException {
+        assert Arrays.equals(data, readFully(new IndexedGzipInputStream(new ByteArrayInputStream(compressed))));
+
+        // Read the stream in small chunks and single bytes
+        InputStream in = new IndexedGzipInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        byte[] b = new byte[7];
+        int nbRead;
+        while((nbRead=in.read(b, 0, 1+bout.size()%b.length))!=-1) {
+            bout.write(b, 0, nbRead);
+            int i = in.read();
+            if(i==-1)
+                break;
+            bout.write(i);
+        }
+        in.close();
+        assert Arrays.equals(data, bout.toByteArray());
+    }
+
+    private static boolean readFails(byte[] compressed) {
+        try {
+            readFully(new IndexedGzipInputStream(new ByteArrayInputStream(compressed)));
+            return false;
+        }
+        catch(IOException e) {
+            return true;
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        StreamUtils.copyStream(in, bout);
+        in.close();
+
+        return bout.toByteArray();
+    }
+}
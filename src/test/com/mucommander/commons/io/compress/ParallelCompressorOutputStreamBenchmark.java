@@ -0,0 +1,50 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Measures the time {@link ParallelGzipOutputStream} and {@link ParallelBzip2OutputStream} take to compress 8 MB of
+ * generated data with 1, 4 and 8 threads. Results are logged.
+ */
+public class ParallelCompressorOutputStreamBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelCompressorOutputStreamBenchmark.class);
+
+    @Test
+    public void benchmark() throws IOException {
+        byte[] data = ParallelCompressorOutputStreamTest.createTestData(8*1024*1024, 0);
+        for(int nbThreads : new int[]{1, 4, 8}) {
+            long start = System.nanoTime();
+            int gzipLength = ParallelCompressorOutputStreamTest.compress(new ParallelGzipOutputStream(new ByteArrayOutputStream()), nbThreads, data).length;
+            long gzipTime = (System.nanoTime()-start)/1000000;
+
+            start = System.nanoTime();
+            int bzip2Length = ParallelCompressorOutputStreamTest.compress(new ParallelBzip2OutputStream(new ByteArrayOutputStream()), nbThreads, data).length;
+            long bzip2Time = (System.nanoTime()-start)/1000000;
+
+            LOGGER.info(nbThreads+" thread(s): gzip "+gzipTime+"ms, "+gzipLength+" bytes, bzip2 "+bzip2Time+"ms, "+bzip2Length+" bytes");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.commons.io.compress;
+
+import org.testng.annotations.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A test case for {@link ParallelGzipOutputStream}, {@link ParallelBzip2OutputStream} and
+ * {@link MultiMemberGzipInputStream}.
+ */
+public class ParallelCompressorOutputStreamTest {
+
+    /** Block size used by the tests, small enough for the data to be made of many blocks */
+    private final static int BLOCK_SIZE = 64*1024;
+
+    /** Sizes of the data that is compressed, around block boundaries */
+    private final static int[] SIZES = {0, 1, 1000, BLOCK_SIZE-1, BLOCK_SIZE, BLOCK_SIZE+1, BLOCK_SIZE*10+123};
+
+    /**
+     * Asserts that GZIP data compressed with one or several threads is decompressed properly, including from a stream
+     * that reports no available bytes.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testGzip() throws IOException {
+        for(int nbThreads : new int[]{1, 2, 8}) {
+            for(int size : SIZES) {
+                byte[] data = createTestData(size, size);
+                byte[] compressed = compress(new ParallelGzipOutputStream(new ByteArrayOutputStream(), BLOCK_SIZE), nbThreads, data);
+
+                assert Arrays.equals(data, readFully(new MultiMemberGzipInputStream(new NoAvailableInputStream(compressed))));
+                assert Arrays.equals(data, readFully(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+                assert Arrays.equals(data, readFully(new IndexedGzipInputStream(new ByteArrayInputStream(compressed))));
+            }
+        }
+    }
+
+    /**
+     * Asserts that <code>GZIPInputStream</code> truncates concatenated members when the underlying stream reports no
+     * available bytes, and that {@link MultiMemberGzipInputStream} does not.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testMultiMemberGzip() throws IOException {
+        byte[] data = createTestData(BLOCK_SIZE*3, 0);
+        byte[] compressed = compress(new ParallelGzipOutputStream(new ByteArrayOutputStream(), BLOCK_SIZE), 2, data);
+
+        assert readFully(new GZIPInputStream(new NoAvailableInputStream(compressed))).length < data.length;
+        assert Arrays.equals(data, readFully(new MultiMemberGzipInputStream(new NoAvailableInputStream(compressed))));
+    }
+
+    /**
+     * Asserts that BZip2 data compressed with one or several threads is decompressed properly.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testBzip2() throws IOException {
+        for(int nbThreads : new int[]{1, 2, 8}) {
+            for(int size : SIZES) {
+                byte[] data = createTestData(size, size);
+                byte[] compressed = compress(new ParallelBzip2OutputStream(new ByteArrayOutputStream(), BLOCK_SIZE), nbThreads, data);
+
+                assert compressed[0]=='B' && compressed[1]=='Z';
+                assert Arrays.equals(data, readFully(new IndexedBzip2InputStream(new BufferedInputStream(new ByteArrayInputStream(compressed)))));
+            }
+        }
+    }
+
+    /**
+     * Asserts that the number of threads cannot be changed once data has been written.
+     *
+     * @throws IOException should not happen
+     */
+    @Test
+    public void testSetThreads() throws IOException {
+        ParallelGzipOutputStream out = new ParallelGzipOutputStream(new ByteArrayOutputStream());
+        assert out.getThreads() == 1;
+        out.setThreads(4);
+        assert out.getThreads() == 4;
+        out.write(1);
+        out.setThreads(2);
+        assert out.getThreads() == 4;
+        out.close();
+    }
+
+
+    /**
+     * Writes the given data to the given stream with the given number of threads, in pieces that do not match block
+     * boundaries, and returns the compressed data.
+     */
+    static byte[] compress(ParallelCompressorOutputStream out, int nbThreads, byte[] data) throws IOException {
+        out.setThreads(nbThreads);
+        for(int off=0; off<data.length; off+=7777)
+            out.write(data, off, Math.min(7777, data.length-off));
+        out.close();
+
+        return ((ByteArrayOutputStream)out.out).toByteArray();
+    }
+
+    /**
+     * Returns data that compresses reasonably well: random words separated by spaces.
+     */
+    static byte[] createTestData(int length, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[length];
+        for(int i=0; i<length; i++)
+            data[i] = random.nextInt(6)==0 ? (byte)' ' : (byte)('a'+random.nextInt(8));
+        return data;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int nbRead;
+        while((nbRead=in.read(buffer))!=-1)
+            out.write(buffer, 0, nbRead);
+        in.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * A stream that returns few bytes at a time and reports no available bytes, like most network streams.
+     */
+    private static class NoAvailableInputStream extends FilterInputStream {
+
+        private NoAvailableInputStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 100));
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.utils;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Measures the time {@link ParallelFileSearch} takes to search the contents of a generated tree of folders with an
+ * increasing number of threads, up to the number of processors. Results are logged.
+ *
+ * <p>The shape of the tree can be set with the following system properties. By default, the tree has 781 folders
+ * and 15620 files of 8 KB:
+ * <ul>
+ *  <li><code>mucommander.benchmark.searchFolders</code>: number of subfolders per folder, 5 by default</li>
+ *  <li><code>mucommander.benchmark.searchDepth</code>: depth of the tree, 4 by default</li>
+ *  <li><code>mucommander.benchmark.searchFiles</code>: number of files per folder, 20 by default</li>
+ *  <li><code>mucommander.benchmark.searchFileSize</code>: size of the files in bytes, 8192 by default</li>
+ * </ul>
+ * </p>
+ */
+public class ParallelFileSearchBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelFileSearchBenchmark.class);
+
+    /** Number of subfolders per folder */
+    private final static int NB_FOLDERS = Integer.getInteger("mucommander.benchmark.searchFolders", 5);
+    /** Depth of the generated tree */
+    private final static int DEPTH = Integer.getInteger("mucommander.benchmark.searchDepth", 4);
+    /** Number of files per folder */
+    private final static int NB_FILES = Integer.getInteger("mucommander.benchmark.searchFiles", 20);
+    /** Size of the files, the marker being the last byte of the files that match */
+    private final static int FILE_SIZE = Integer.getInteger("mucommander.benchmark.searchFileSize", ParallelFileSearchTest.FILE_SIZE);
+
+    private AbstractFile root;
+
+    /** Number of files in the tree */
+    private int nbFiles;
+
+    /** Number of files that contain the marker */
+    private int nbMatches;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        root = FileFactory.getTemporaryFile(getClass().getName(), true);
+        root.mkdir();
+        createTree(root, DEPTH);
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        root.deleteRecursively();
+    }
+
+    /**
+     * Searches the generated tree with an increasing number of threads. All searches must find the same files.
+     */
+    @Test
+    public void benchmark() {
+        int maxParallelism = Runtime.getRuntime().availableProcessors();
+        LOGGER.info("Searching " + nbFiles + " files of " + FILE_SIZE + " bytes");
+        for (int parallelism = 1; parallelism <= maxParallelism; parallelism *= 2) {
+            final AtomicInteger found = new AtomicInteger();
+            ParallelFileSearch search = new ParallelFileSearch(new ParallelFileSearchTest.ContentFilter(), new ParallelFileSearch.Listener() {
+                public void fileVisited(AbstractFile file) {}
+
+                public void fileFound(AbstractFile file) {
+                    found.incrementAndGet();
+                }
+            }, parallelism);
+
+        long start = System.nanoTime();
+            search.search(root);
+            long time = (System.nanoTime() - start) / 1000000;
+            LOGGER.info("ParallelFileSearch, {} thread(s): {}ms", parallelism, time);
+
+            assertEquals(found.get(), nbMatches);
+        }
+    }
+
+
+    private void createTree(AbstractFile folder, int depth) throws IOException {
+        for (int i = 0; i < NB_FILES; i++) {
+            boolean match = i % 5 == 0;
+            nbFiles++;
+            AbstractFile file = folder.getDirectChild("file" + i + (match ? ".match" : ".txt"));
+            byte bytes[] = new byte[FILE_SIZE];
+            Arrays.fill(bytes, (byte)'a');
+            if (match) {
+                bytes[bytes.length - 1] = ParallelFileSearchTest.MARKER;
+                nbMatches++;
+            }
+            OutputStream out = file.getOutputStream();
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+        }
+
+        if (depth == 0) {
+            return;
+        }
+        for (int i = 0; i < NB_FOLDERS; i++) {
+            AbstractFile subfolder = folder.getDirectChild("folder" + i);
+            subfolder.mkdir();
+            createTree(subfolder, depth - 1);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.utils;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.filter.AbstractFileFilter;
+import com.mucommander.commons.file.filter.FileFilter;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link ParallelFileSearch}. The search is run on a generated tree of folders, files whose name ends
+ * with <code>.match</code> containing a marker that the filter looks for.
+ */
+public class ParallelFileSearchTest {
+
+    /** Number of subfolders per folder */
+    private final static int NB_FOLDERS = 4;
+    /** Depth of the generated tree */
+    private final static int DEPTH = 3;
+    /** Number of files per folder */
+    private final static int NB_FILES = 20;
+    /** Size of generated files */
+    final static int FILE_SIZE = 8192;
+
+    final static byte MARKER = '#';
+
+    private AbstractFile root;
+
+    /** Files that contain the marker, not including hidden ones */
+    private final Set<AbstractFile> visibleMatches = new HashSet<>();
+    /** Files that contain the marker, including hidden ones */
+    private final Set<AbstractFile> allMatches = new HashSet<>();
+    /** Files in the root folder that contain the marker */
+    private final Set<AbstractFile> rootMatches = new HashSet<>();
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        root = FileFactory.getTemporaryFile(getClass().getName(), true);
+        root.mkdir();
+        createTree(root, DEPTH, false);
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        root.deleteRecursively();
+    }
+
+    @Test
+    public void testSearch() {
+        assertEquals(search(root, 4, true, false), visibleMatches);
+    }
+
+    @Test
+    public void testSearchHidden() {
+        assertEquals(search(root, 4, false, true), rootMatches);
+        assertEquals(search(root, 4, true, true), allMatches);
+    }
+
+    @Test
+    public void testSingleThread() {
+        assertEquals(search(root, 1, true, false), visibleMatches);
+    }
+
+    @Test
+    public void testCancel() {
+        final Set<AbstractFile> found = Collections.synchronizedSet(new HashSet<AbstractFile>());
+        final ParallelFileSearch[] search = new ParallelFileSearch[1];
+        search[0] = new ParallelFileSearch(new ContentFilter(), new ParallelFileSearch.Listener() {
+            public void fileVisited(AbstractFile file) {}
+
+            public void fileFound(AbstractFile file) {
+                found.add(file);
+                search[0].cancel();
+            }
+        }, 2);
+        search[0].search(root);
+
+        assertTrue(search[0].isCancelled());
+        // Files that were being examined when the search was cancelled may still be reported
+        assertTrue(found.size() <= search[0].getParallelism());
+    }
+
+    private Set<AbstractFile> search(AbstractFile folder, int parallelism, boolean searchSubfolders, boolean includeHidden) {
+        final Set<AbstractFile> found = Collections.synchronizedSet(new HashSet<AbstractFile>());
+        ParallelFileSearch search = new ParallelFileSearch(new ContentFilter(), new ParallelFileSearch.Listener() {
+            public void fileVisited(AbstractFile file) {}
+
+            public void fileFound(AbstractFile file) {
+                assertTrue(found.add(file), "reported twice: " + file);
+            }
+        }, parallelism);
+        search.setSearchSubfolders(searchSubfolders);
+        search.setIgnoreHidden(!includeHidden);
+        search.search(folder);
+
+        return new HashSet<>(found);
+    }
+
+    private void createTree(AbstractFile folder, int depth, boolean hidden) throws IOException {
+        for (int i = 0; i < NB_FILES; i++) {
+            boolean match = i % 5 == 0;
+            AbstractFile file = folder.getDirectChild("file" + i + (match ? ".match" : ".txt"));
+            byte bytes[] = new byte[FILE_SIZE];
+            Arrays.fill(bytes, (byte)'a');
+            if (match) {
+                bytes[FILE_SIZE - 1] = MARKER;
+            }
+            OutputStream out = file.getOutputStream();
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+
+            if (match) {
+                allMatches.add(file);
+                if (!hidden) {
+                    visibleMatches.add(file);
+                }
+                if (depth == DEPTH) {
+                    rootMatches.add(file);
+                }
+            }
+        }
+
+        if (depth == 0) {
+            return;
+        }
+        for (int i = 0; i < NB_FOLDERS; i++) {
+            // The last subfolder is hidden
+            boolean hiddenFolder = i == NB_FOLDERS - 1;
+            AbstractFile subfolder = folder.getDirectChild((hiddenFolder ? "." : "") + "folder" + i);
+            subfolder.mkdir();
+            createTree(subfolder, depth - 1, hidden || hiddenFolder);
+        }
+    }
+
+    /**
+     * Matches files whose name ends with <code>.match</code> and that contain the marker.
+     */
+    static class ContentFilter extends AbstractFileFilter {
+        public boolean accept(AbstractFile file) {
+            if (file.isDirectory() || !file.getName().endsWith(".match")) {
+                return false;
+            }
+
+            try {
+                InputStream in = file.getInputStream();
+                try {
+                    byte bytes[] = new byte[FILE_SIZE];
+                    int nbRead;
+                    while ((nbRead = in.read(bytes)) != -1) {
+                        for (int i = 0; i < nbRead; i++) {
+                            if (bytes[i] == MARKER) {
+                                return true;
+                            }
+                        }
+                    }
+                    return false;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.utils;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.DummyFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.util.FileSet;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link ScanDirectoryThread}: the totals it computes, and the folder listings it shares with the job
+ * that walks the same files.
+ */
+public class ScanDirectoryThreadTest {
+
+    /** Number of subfolders per folder */
+    private final static int NB_FOLDERS = 3;
+    /** Depth of the generated tree */
+    private final static int DEPTH = 3;
+    /** Number of files per folder */
+    private final static int NB_FILES = 5;
+    /** Size of generated files */
+    private final static int FILE_SIZE = 100;
+
+    private TreeFile root;
+
+    private long expectedFilesCount;
+    private long expectedTotalBytes;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        root = new TreeFile("/tree", true);
+        createTree(root, DEPTH);
+    }
+
+    @Test
+    public void testTotals() throws InterruptedException {
+        ScanDirectoryThread scan = new ScanDirectoryThread(new FileSet(root, root));
+        scan.start();
+        scan.join();
+
+        assertTrue(scan.isCompleted());
+        assertEquals(scan.getFilesCount(), expectedFilesCount);
+        assertEquals(scan.getTotalBytes(), expectedTotalBytes);
+        assertEquals(scan.getEstimatedFilesCount(), expectedFilesCount);
+        assertEquals(scan.getEstimatedTotalBytes(), expectedTotalBytes);
+    }
+
+    /**
+     * Walks the tree the way jobs do while it is being scanned: each folder must be listed only once.
+     */
+    @Test
+    public void testSharedListings() throws IOException, InterruptedException {
+        Map<String, AtomicInteger> listCounts = TreeFile.resetListCounts();
+        ScanDirectoryThread scan = new ScanDirectoryThread(new FileSet(root, root));
+        scan.start();
+
+        long walkedFilesCount = walk(root, scan);
+        scan.join();
+
+        assertEquals(walkedFilesCount, expectedFilesCount);
+        assertEquals(scan.getEstimatedFilesCount(), expectedFilesCount);
+        assertEquals(listCounts.size(), (int)(expectedFilesCount - countFiles()));
+        for (Map.Entry<String, AtomicInteger> entry : listCounts.entrySet()) {
+            assertEquals(entry.getValue().get(), 1, "listed more than once: " + entry.getKey());
+        }
+        assertEquals(scan.getNbPendingListings(), 0);
+    }
+
+    /**
+     * Walks the tree the way jobs do once it has been scanned: the job must use the listings of the scan, and no
+     * listing must be kept once it has been used.
+     */
+    @Test
+    public void testSharedListingsAfterScan() throws IOException, InterruptedException {
+        Map<String, AtomicInteger> listCounts = TreeFile.resetListCounts();
+        ScanDirectoryThread scan = new ScanDirectoryThread(new FileSet(root, root));
+        scan.start();
+        scan.join();
+
+        int nbFolders = (int)(expectedFilesCount - countFiles());
+        assertEquals(scan.getNbPendingListings(), nbFolders);
+
+        assertEquals(walk(root, scan), expectedFilesCount);
+        assertEquals(listCounts.size(), nbFolders);
+        for (Map.Entry<String, AtomicInteger> entry : listCounts.entrySet()) {
+            assertEquals(entry.getValue().get(), 1, "listed more than once: " + entry.getKey());
+        }
+        assertEquals(scan.getNbPendingListings(), 0);
+    }
+
+    /**
+     * The scan doesn't keep more listings than the maximum: the job lists the other folders itself.
+     */
+    @Test
+    public void testMaxPendingListings() throws IOException, InterruptedException {
+        Map<String, AtomicInteger> listCounts = TreeFile.resetListCounts();
+        int maxPendingListings = 10;
+        ScanDirectoryThread scan = new ScanDirectoryThread(new FileSet(root, root), true, true, maxPendingListings);
+        scan.start();
+        scan.join();
+
+        assertEquals(scan.getFilesCount(), expectedFilesCount);
+        assertEquals(scan.getNbPendingListings(), maxPendingListings);
+
+        assertEquals(walk(root, scan), expectedFilesCount);
+        int nbFolders = (int)(expectedFilesCount - countFiles());
+        int nbListings = 0;
+        for (AtomicInteger count : listCounts.values()) {
+            nbListings += count.get();
+        }
+        // Folders whose listing hasn't been kept are listed by both the scan and the job
+        assertEquals(nbListings, nbFolders + nbFolders - maxPendingListings);
+        assertEquals(scan.getNbPendingListings(), 0);
+    }
+
+    /**
+     * Once the scan is interrupted, the job lists folders itself.
+     */
+    @Test
+    public void testInterrupted() throws IOException, InterruptedException {
+        Map<String, AtomicInteger> listCounts = TreeFile.resetListCounts();
+        ScanDirectoryThread scan = new ScanDirectoryThread(new FileSet(root, root));
+        scan.interrupt();
+        scan.start();
+        scan.join();
+
+        assertEquals(walk(root, scan), expectedFilesCount);
+        for (AtomicInteger count : listCounts.values()) {
+            assertEquals(count.get(), 1);
+        }
+    }
+
+    /**
+     * The estimated number of files is -1 until something has been scanned.
+     */
+    @Test
+    public void testNoEstimate() {
+        ScanDirectoryThread scan = new ScanDirectoryThread(new FileSet(root, root));
+        assertEquals(scan.getEstimatedFilesCount(), -1);
+        assertEquals(scan.getEstimatedTotalBytes(), -1);
+    }
+
+
+    private long walk(AbstractFile file, ScanDirectoryThread scan) throws IOException {
+        long count = 1;
+        if (file.isDirectory() && !file.isSymlink()) {
+            for (AbstractFile child : scan.ls(file)) {
+                count += walk(child, scan);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of regular files in the generated tree.
+     */
+    private long countFiles() {
+        return expectedTotalBytes / FILE_SIZE;
+    }
+
+    private void createTree(TreeFile folder, int depth) throws IOException {
+        expectedFilesCount++;
+        for (int i = 0; i < NB_FILES; i++) {
+            folder.children.add(new TreeFile(folder.getAbsolutePath(true) + "file" + i, false));
+            expectedFilesCount++;
+            expectedTotalBytes += FILE_SIZE;
+        }
+        if (depth > 0) {
+            for (int i = 0; i < NB_FOLDERS; i++) {
+                TreeFile subfolder = new TreeFile(folder.getAbsolutePath(true) + "folder" + i, true);
+                folder.children.add(subfolder);
+                createTree(subfolder, depth - 1);
+            }
+        }
+    }
+
+
+    /**
+     * A file of an in-memory tree, that counts the number of times each folder is listed.
+     */
+    private static class TreeFile extends DummyFile {
+        private final boolean directory;
+        private final List<TreeFile> children = new ArrayList<>();
+        private static Map<String, AtomicInteger> listCounts = new ConcurrentHashMap<>();
+
+        TreeFile(String path, boolean directory) throws MalformedURLException {
+            super(FileURL.getFileURL(path));
+            this.directory = directory;
+        }
+
+        static Map<String, AtomicInteger> resetListCounts() {
+            listCounts = new ConcurrentHashMap<>();
+            return listCounts;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        @Override
+        public long getSize() {
+            return directory ? -1 : FILE_SIZE;
+        }
+
+        @Override
+        public AbstractFile[] ls() {
+            listCounts.computeIfAbsent(getAbsolutePath(), path -> new AtomicInteger()).incrementAndGet();
+            // Listing a folder takes time
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return children.toArray(new AbstractFile[children.size()]);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link TransferThreadPool}.
+ */
+public class TransferThreadPoolTest {
+
+    /**
+     * Asserts that all the scheduled tasks are carried out before {@link TransferThreadPool#waitForCompletion()}
+     * returns.
+     */
+    @Test(timeOut = 10000)
+    public void testWaitForCompletion() {
+        TransferThreadPool pool = new TransferThreadPool(2, "test");
+        AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(pool.execute(count::incrementAndGet));
+        }
+
+        pool.waitForCompletion();
+        assertEquals(count.get(), 20);
+        assertEquals(pool.getPendingTasks(), 0);
+        pool.shutdown();
+    }
+
+    /**
+     * Asserts that tasks scheduled after the pool has been shut down are rejected without blocking the thread that
+     * waits for completion, nor the threads that schedule further tasks.
+     */
+    @Test(timeOut = 10000)
+    public void testExecuteAfterShutdown() throws InterruptedException {
+        TransferThreadPool pool = new TransferThreadPool(1, "test");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(pool.execute(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                // Finish
+            }
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        pool.shutdown();
+        // More tasks than the pool has slots, which are released by rejected tasks
+        for (int i = 0; i < 10; i++) {
+            assertFalse(pool.execute(() -> {}));
+        }
+        assertEquals(pool.getPendingTasks(), 1);
+
+        release.countDown();
+        pool.waitForCompletion();
+        assertEquals(pool.getPendingTasks(), 0);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2026 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.search;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.DummyFile;
+import com.mucommander.commons.file.FileURL;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link SearchIndexer}, on an in-memory index of a tree of files that cannot be watched for changes,
+ * like remote files.
+ */
+public class SearchIndexerTest {
+
+    private SearchIndexer indexer;
+
+    private TreeFile root;
+
+    /** Number of times each folder has been listed */
+    private Map<String, Integer> listCounts;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        indexer = new SearchIndexer(new RAMDirectory());
+        indexer.setCpuBudget(100);
+
+        listCounts = new HashMap<>();
+        root = new TreeFile(null, "tree", true);
+        for (int i = 0; i < 3; i++) {
+            TreeFile folder = root.add("folder" + i, true);
+            for (int j = 0; j < 3; j++) {
+                folder.add("file" + i + j, false);
+            }
+        }
+    }
+
+    /**
+     * Asserts that all the files of a folder are indexed, and can be found by name.
+     */
+    @Test
+    public void testUpdate() throws Exception {
+        assertFalse(indexer.isIndexed(root.getAbsolutePath()));
+        waitFor(indexer.update(root));
+
+        assertTrue(indexer.isIndexed(root.getAbsolutePath()));
+        assertTrue(indexer.isIndexed(root.child("folder1").getAbsolutePath()));
+        assertEquals(find("file12"), Collections.singletonList(root.child("folder1").child("file12").getAbsolutePath()));
+        assertEquals(find("missing"), Collections.emptyList());
+    }
+
+    /**
+     * Asserts that folders that are not watched are listed again when a folder that contains them is updated, so that
+     * the files added and deleted since they were indexed are found.
+     */
+    @Test
+    public void testUpdateUnwatched() throws Exception {
+        waitFor(indexer.update(root));
+        assertEquals(listCounts.get(root.child("folder1").getAbsolutePath()).intValue(), 1);
+
+        TreeFile folder1 = root.child("folder1");
+        folder1.add("added", false);
+        folder1.remove("file10");
+        TreeFile folder3 = root.add("folder3", true);
+        folder3.add("file30", false);
+
+        // The subfolder is updated, not the folder that was indexed
+        waitFor(indexer.update(folder1));
+        assertEquals(listCounts.get(folder1.getAbsolutePath()).intValue(), 2);
+        assertEquals(listCounts.get(root.child("folder0").getAbsolutePath()).intValue(), 1);
+        assertEquals(find("added"), Collections.singletonList(folder1.child("added").getAbsolutePath()));
+        assertEquals(find("file10"), Collections.emptyList());
+        assertEquals(find("file30"), Collections.emptyList());
+
+        waitFor(indexer.update(root));
+        assertEquals(find("file30"), Collections.singletonList(folder3.child("file30").getAbsolutePath()));
+        assertEquals(find("file11").size(), 1);
+    }
+
+    /**
+     * Asserts that the documents of a deleted folder, and of the files it contained, are removed from the index.
+     */
+    @Test
+    public void testDeletedFolder() throws Exception {
+        waitFor(indexer.update(root));
+
+        root.remove("folder2");
+        waitFor(indexer.update(root));
+
+        assertEquals(find("folder2"), Collections.emptyList());
+        assertEquals(find("file21"), Collections.emptyList());
+        assertEquals(find("file01").size(), 1);
+    }
+
+
+    private List<String> find(String name) throws IOException {
+        return indexer.search(new TermQuery(new Term(SearchFields.FILE_NAME, name)), 10);
+    }
+
+    private static void waitFor(Future<?> future) throws InterruptedException, ExecutionException, TimeoutException {
+        future.get(10, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * A file of an in-memory tree, that counts the number of times each folder is listed.
+     */
+    private class TreeFile extends DummyFile {
+        private final TreeFile parent;
+        private final boolean directory;
+        private final List<TreeFile> children = new ArrayList<>();
+
+        TreeFile(TreeFile parent, String name, boolean directory) throws MalformedURLException {
+            super(FileURL.getFileURL((parent == null ? "/" : parent.getAbsolutePath(true)) + name));
+            this.parent = parent;
+            this.directory = directory;
+        }
+
+        TreeFile add(String name, boolean directory) throws MalformedURLException {
+            TreeFile child = new TreeFile(this, name, directory);
+            children.add(child);
+            return child;
+        }
+
+        void remove(String name) {
+            children.remove(child(name));
+        }
+
+        TreeFile child(String name) {
+            for (TreeFile child : children) {
+                if (child.getName().equals(name)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public AbstractFile getParent() {
+            return parent;
+        }
+
+        @Override
+        public boolean exists() {
+            return parent == null || parent.children.contains(this) && parent.exists();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        @Override
+        public long getSize() {
+            return directory ? -1 : 100;
+        }
+
+        @Override
+        public AbstractFile[] ls() {
+            listCounts.merge(getAbsolutePath(), 1, Integer::sum);
+            return children.toArray(new AbstractFile[children.size()]);
+        }
+    }
+}
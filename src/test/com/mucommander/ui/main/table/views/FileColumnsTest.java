@@ -0,0 +1,223 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/trolcommander
+ * Copyright (C) 2014-2026 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table.views;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.impl.TestFile;
+import com.mucommander.commons.file.util.FileComparator;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link FileColumns}.
+ */
+public class FileColumnsTest {
+
+    private static final int CRITERIA[] = {
+            FileComparator.NAME_CRITERION, FileComparator.SIZE_CRITERION, FileComparator.DATE_CRITERION,
+            FileComparator.EXTENSION_CRITERION
+    };
+
+    private AbstractFile files[];
+
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+        files = new AbstractFile[] {
+                new TestFile(folder + "C.e3", false, 200, 3, null),
+                new TestFile(folder + "D.e2", true, 0, 4, null),
+                new TestFile(folder + "A", false, 500, 1, null),
+                new TestFile(folder + "B.e9.e1", true, 0, 2, null),
+                new TestFile(folder + "a", false, -1, 1, null),
+                new TestFile(folder + "E.e2", false, 200, 4, null)
+        };
+    }
+
+    /**
+     * Sorts the indexes of the files with the given columns
+     */
+    private AbstractFile[] sort(FileColumns columns, int criterion, boolean ascending, boolean foldersFirst) {
+        columns.prepareSort(criterion);
+        Integer indexes[] = new Integer[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, (i1, i2) -> columns.compare(i1, i2, criterion, ascending, foldersFirst));
+        AbstractFile sorted[] = new AbstractFile[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            sorted[i] = columns.getFile(indexes[i]);
+        }
+        return sorted;
+    }
+
+    private void assertSameOrder(FileColumns columns) {
+        for (int criterion : CRITERIA) {
+            for (boolean ascending : new boolean[] {true, false}) {
+                for (boolean foldersFirst : new boolean[] {true, false}) {
+                    AbstractFile expected[] = files.clone();
+                    Arrays.sort(expected, new FileComparator(criterion, ascending, foldersFirst));
+                    assertEquals(sort(columns, criterion, ascending, foldersFirst), expected,
+                            "criterion=" + criterion + " ascending=" + ascending + " foldersFirst=" + foldersFirst);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompare() {
+        assertSameOrder(new FileColumns(files));
+    }
+
+    @Test
+    public void testAppend() {
+        FileColumns columns = new FileColumns(Arrays.copyOf(files, 2));
+        assertEquals(columns.getSize(0), 200);
+        columns = columns.append(Arrays.copyOfRange(files, 2, files.length));
+        assertEquals(columns.size(), files.length);
+        assertSameOrder(columns);
+    }
+
+    /**
+     * Compares the collation keys with {@link FileComparator#compareStrings(String, String, boolean)} for every pair of
+     * names, which include numbers, case variants and letters whose case conversion is special.
+     */
+    @Test
+    public void testCompareNames() throws Exception {
+        String chars = "aAbB01289._- \u00e9\u00c9\u00df\u0130\u0131iI\u10a0\u2d00";
+        Random random = new Random(0);
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+        AbstractFile files[] = new AbstractFile[300];
+        for (int i = 0; i < files.length; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int j = random.nextInt(6) + 1; j > 0; j--) {
+                name.append(chars.charAt(random.nextInt(chars.length())));
+            }
+            files[i] = new TestFile(folder + name.toString(), false, i % 3, i % 5, null);
+        }
+        FileColumns columns = new FileColumns(files);
+        for (int criterion : CRITERIA) {
+            columns.prepareSort(criterion);
+            FileComparator comparator = new FileComparator(criterion, true, false);
+            for (int i = 0; i < files.length; i++) {
+                for (int j = 0; j < files.length; j++) {
+                    assertEquals(Integer.signum(columns.compare(i, j, criterion, true, false)),
+                            Integer.signum(comparator.compare(files[i], files[j])),
+                            files[i].getName() + " / " + files[j].getName() + ", criterion=" + criterion);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAttributes() {
+        FileColumns columns = new FileColumns(files);
+        assertEquals(columns.getName(3), "B.e9.e1");
+        assert columns.isDirectory(3);
+        assert !columns.isDirectory(4);
+        // Directories have a size of 0
+        assertEquals(columns.getSize(1), 0);
+        assertEquals(columns.getSize(4), -1);
+        assertEquals(columns.getDate(1), 4);
+    }
+
+    /**
+     * Asserts that the attributes of a batch can be read while another batch is being loaded in the background.
+     */
+    @Test(timeOut = 10000)
+    public void testLoadWhileLoadingInBackground() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+        AbstractFile files[] = new AbstractFile[FileColumns.BATCH_SIZE + 1];
+        files[0] = new TestFile(folder + "slow", false, 100, 1, null) {
+            @Override
+            public long getDate() {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Return the date
+                }
+                return super.getDate();
+            }
+        };
+        for (int i = 1; i < files.length; i++) {
+            files[i] = new TestFile(folder + "file" + i, false, i, 2, null);
+        }
+
+        FileColumns columns = new FileColumns(files);
+        columns.loadInBackground();
+        loading.await();
+
+        assertEquals(columns.getSize(FileColumns.BATCH_SIZE), FileColumns.BATCH_SIZE);
+        release.countDown();
+        assertEquals(columns.getDate(0), 1);
+    }
+
+    /**
+     * Asserts that files can be compared while the attributes they are sorted by are loaded in the background, by
+     * name until they are loaded, and that the listener is called once they are, unless the columns are discarded.
+     */
+    @Test(timeOut = 10000)
+    public void testPrepareSortInBackground() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+        AbstractFile files[] = {
+                new TestFile(folder + "a", false, 300, 1, null) {
+                    @Override
+                    public long getDate() {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            // Return the date
+                        }
+                        return super.getDate();
+                    }
+                },
+                new TestFile(folder + "b", false, 100, 1, null)
+        };
+
+        // A discarded folder doesn't notify the listener, its task is run before the other one
+        FileColumns discardedColumns = new FileColumns(files.clone());
+        discardedColumns.discard();
+        CountDownLatch discardedLoaded = new CountDownLatch(1);
+        assertFalse(discardedColumns.prepareSortInBackground(FileComparator.SIZE_CRITERION, discardedLoaded::countDown));
+
+        FileColumns columns = new FileColumns(files);
+        CountDownLatch loaded = new CountDownLatch(1);
+        assertFalse(columns.prepareSortInBackground(FileComparator.SIZE_CRITERION, loaded::countDown));
+        assertTrue(columns.compare(0, 1, FileComparator.SIZE_CRITERION, true, true) < 0);
+
+        release.countDown();
+        loaded.await();
+        assertEquals(discardedLoaded.getCount(), 1);
+        assertTrue(columns.compare(0, 1, FileComparator.SIZE_CRITERION, true, true) > 0);
+        assertTrue(columns.prepareSortInBackground(FileComparator.SIZE_CRITERION, () -> {
+            throw new AssertionError("The attributes are already loaded");
+        }));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/trolcommander
+ * Copyright (C) 2014-2026 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table.views;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.impl.TestFile;
+import com.mucommander.commons.file.util.FileComparator;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * A test case for {@link FileRowSorter}.
+ */
+public class FileRowSorterTest {
+
+    /**
+     * Creates files named like photos, with distinct names and random attributes
+     */
+    static AbstractFile[] createFiles(int nbFiles) throws Exception {
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+        Random random = new Random(nbFiles);
+        AbstractFile files[] = new AbstractFile[nbFiles];
+        for (int i = 0; i < nbFiles; i++) {
+            String name = (random.nextBoolean() ? "IMG_" : "img_") + random.nextInt(nbFiles) + "_" + i + (random.nextBoolean() ? ".jpg" : ".PNG");
+            files[i] = new TestFile(folder + name, random.nextInt(10) == 0, random.nextInt(1000), random.nextInt(1000), null);
+        }
+        return files;
+    }
+
+    private static int[] identity(int length) {
+        int indexes[] = new int[length];
+        for (int i = 0; i < length; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    private void assertSorted(FileColumns columns, int indexes[], int criterion, boolean ascending, boolean directoriesFirst) {
+        int sorted[] = indexes.clone();
+        Arrays.sort(sorted);
+        assert Arrays.equals(sorted, identity(indexes.length)) : "not a permutation";
+
+        FileComparator comparator = new FileComparator(criterion, ascending, directoriesFirst);
+        for (int i = 1; i < indexes.length; i++) {
+            assert comparator.compare(columns.getFile(indexes[i - 1]), columns.getFile(indexes[i])) <= 0 : "row " + i;
+        }
+    }
+
+    private void testSort(int nbFiles) throws Exception {
+        FileColumns columns = new FileColumns(createFiles(nbFiles));
+        for (int criterion : new int[] {FileComparator.NAME_CRITERION, FileComparator.SIZE_CRITERION, FileComparator.EXTENSION_CRITERION}) {
+            for (boolean directoriesFirst : new boolean[] {true, false}) {
+                columns.prepareSort(criterion);
+                int indexes[] = identity(nbFiles);
+                new FileRowSorter(columns, criterion, true, directoriesFirst).sort(indexes, 0, nbFiles);
+                assertSorted(columns, indexes, criterion, true, directoriesFirst);
+
+                FileRowSorter.reverse(columns, indexes, directoriesFirst);
+                assertSorted(columns, indexes, criterion, false, directoriesFirst);
+            }
+        }
+    }
+
+    @Test
+    public void testSortSmall() throws Exception {
+        testSort(FileRowSorter.PARALLEL_SORT_THRESHOLD / 4);
+    }
+
+    @Test
+    public void testSortParallel() throws Exception {
+        testSort(FileRowSorter.PARALLEL_SORT_THRESHOLD * 4 + 17);
+    }
+
+    @Test
+    public void testSortRange() throws Exception {
+        int nbFiles = 1000;
+        FileColumns columns = new FileColumns(createFiles(nbFiles));
+        columns.prepareSort(FileComparator.NAME_CRITERION);
+        int indexes[] = identity(nbFiles);
+        new FileRowSorter(columns, FileComparator.NAME_CRITERION, true, true).sort(indexes, 100, 900);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(indexes[i], i);
+            assertEquals(indexes[nbFiles - 1 - i], nbFiles - 1 - i);
+        }
+        FileComparator comparator = new FileComparator(FileComparator.NAME_CRITERION, true, true);
+        for (int i = 101; i < 900; i++) {
+            assert comparator.compare(columns.getFile(indexes[i - 1]), columns.getFile(indexes[i])) <= 0;
+        }
+    }
+}
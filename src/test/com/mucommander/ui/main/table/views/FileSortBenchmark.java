@@ -0,0 +1,114 @@
+/*
+ * This file is part of trolCommander, http://www.trolsoft.ru/trolcommander
+ * Copyright (C) 2014-2026 Oleg Trifonov
+ *
+ * trolCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * trolCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mucommander.ui.main.table.views;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.impl.TestFile;
+import com.mucommander.commons.file.util.FileComparator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the time it takes to sort files by name with {@link FileComparator}, as the file table used to, and with
+ * {@link FileColumns} collation keys and {@link FileRowSorter}, for 10k, 100k and 1M generated names. Results
+ * are logged.
+ */
+public class FileSortBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSortBenchmark.class);
+
+    /** Number of times each sort is run, the fastest run is reported */
+    private final static int RUNS = 5;
+
+    private final static String WORDS[] = {"report", "IMG_", "Photo ", "backup-", "data", "Untitled", "track ", "2015-"};
+    private final static String EXTENSIONS[] = {".txt", ".jpg", ".JPG", ".mp3", ".tar.gz", "", ".java"};
+
+    @Test
+    public void benchmark10K() throws Exception {
+        benchmark(10000);
+    }
+
+    @Test
+    public void benchmark100K() throws Exception {
+        benchmark(100000);
+    }
+
+    @Test
+    public void benchmark1M() throws Exception {
+        benchmark(1000000);
+    }
+
+    /**
+     * Generates names made of a word, a number and an extension, with random case, like those of large folders.
+     */
+    private static AbstractFile[] createFiles(int nbFiles) throws Exception {
+        AbstractFile folder = FileFactory.getTemporaryFolder();
+        Random random = new Random(0);
+        AbstractFile files[] = new AbstractFile[nbFiles];
+        for (int i = 0; i < nbFiles; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (random.nextBoolean()) {
+                word = word.toUpperCase();
+            }
+            String name = word + random.nextInt(nbFiles) + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+            files[i] = new TestFile(folder + name, random.nextInt(20) == 0, random.nextInt(1 << 20), i, null);
+        }
+        return files;
+    }
+
+    private void benchmark(int nbFiles) throws Exception {
+        AbstractFile files[] = createFiles(nbFiles);
+
+        long comparatorTime = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            AbstractFile sorted[] = files.clone();
+            long start = System.nanoTime();
+            Arrays.sort(sorted, new FileComparator(FileComparator.NAME_CRITERION, true, true));
+            comparatorTime = Math.min(comparatorTime, System.nanoTime() - start);
+        }
+
+        long keysTime = Long.MAX_VALUE;
+        long sortTime = Long.MAX_VALUE;
+        long reverseTime = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            FileColumns columns = new FileColumns(files);
+            int indexes[] = new int[nbFiles];
+            for (int i = 0; i < nbFiles; i++) {
+                indexes[i] = i;
+            }
+            long start = System.nanoTime();
+            columns.prepareSort(FileComparator.NAME_CRITERION);
+            keysTime = Math.min(keysTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            new FileRowSorter(columns, FileComparator.NAME_CRITERION, true, true).sort(indexes, 0, nbFiles);
+            sortTime = Math.min(sortTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            FileRowSorter.reverse(columns, indexes, true);
+            reverseTime = Math.min(reverseTime, System.nanoTime() - start);
+        }
+
+        LOGGER.info(String.format("%d files: FileComparator %.1f ms, attributes and collation keys %.1f ms + sort %.1f ms, reverse order %.1f ms",
+                nbFiles, comparatorTime / 1e6, keysTime / 1e6, sortTime / 1e6, reverseTime / 1e6));
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.trolsoft.hexeditor.data;
+
+import com.mucommander.commons.io.RandomAccessOutputStream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A test case for {@link EditableByteBuffer}, whose edits are checked against the same edits made on an array.
+ */
+public class EditableByteBufferTest {
+
+    private final static int PAGE_SIZE = 100;
+
+    private File file;
+    private byte[] data;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        data = new byte[1000];
+        new Random(0).nextBytes(data);
+        file = File.createTempFile("editable", ".bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRandomEdits() throws IOException {
+        EditableByteBuffer buffer = new EditableByteBuffer(new MappedFileByteBuffer(file, PAGE_SIZE, 2));
+        byte[] expected = data.clone();
+        Random random = new Random(1);
+        try {
+            assertFalse(buffer.isModified());
+            for (int i = 0; i < 300; i++) {
+                int offset = random.nextInt(expected.length + 1);
+                byte[] bytes = new byte[random.nextInt(20)];
+                random.nextBytes(bytes);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        buffer.overwrite(offset, bytes);
+                        expected = overwrite(expected, offset, bytes);
+                        break;
+                    case 1:
+                        buffer.insert(offset, bytes);
+                        expected = replace(expected, offset, 0, bytes);
+                        break;
+                    default:
+                        int length = Math.min(random.nextInt(30), expected.length - offset);
+                        buffer.delete(offset, length);
+                        expected = replace(expected, offset, length, new byte[0]);
+                }
+                assertContents(buffer, expected);
+            }
+            assertTrue(buffer.isModified());
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void testSaveInPlace() throws IOException {
+        EditableByteBuffer buffer = new EditableByteBuffer(new MappedFileByteBuffer(file, PAGE_SIZE, 2));
+        byte[] expected = data.clone();
+        // Typed bytes, overwritten again, and a range across pages
+        for (int i = 0; i < 10; i++) {
+            buffer.overwrite(10 + i, new byte[] {(byte)i});
+            expected[10 + i] = (byte)i;
+        }
+        buffer.overwrite(12, new byte[] {42});
+        expected[12] = 42;
+        buffer.overwrite(195, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        System.arraycopy(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, 0, expected, 195, 10);
+        assertTrue(buffer.canSaveInPlace());
+
+        try (FileOutputStreamAdapter out = new FileOutputStreamAdapter(file)) {
+            buffer.writeChanges(out);
+        } finally {
+            buffer.close();
+        }
+        assertTrue(Arrays.equals(Files.readAllBytes(file.toPath()), expected));
+    }
+
+    @Test
+    public void testMovedBytes() throws IOException {
+        EditableByteBuffer buffer = new EditableByteBuffer(new MappedFileByteBuffer(file, PAGE_SIZE, 2));
+        try {
+            // Same size, but the original bytes have moved
+            buffer.insert(0, new byte[] {1});
+            buffer.delete(500, 1);
+            assertEquals(buffer.getFileSize(), data.length);
+            assertFalse(buffer.canSaveInPlace());
+
+            byte[] expected = replace(replace(data, 0, 0, new byte[] {1}), 500, 1, new byte[0]);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            buffer.writeTo(out);
+            assertTrue(Arrays.equals(out.toByteArray(), expected));
+        } finally {
+            buffer.close();
+        }
+    }
+
+    private static void assertContents(EditableByteBuffer buffer, byte[] expected) throws IOException {
+        assertEquals(buffer.getFileSize(), expected.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(buffer.getByte(i), expected[i], "offset " + i);
+        }
+        for (int i = 0; i < expected.length; i += 37) {
+            ByteBuffer page = buffer.getPage(i);
+            long pageStart = i - page.position();
+            for (int j = 0; j < page.limit(); j++) {
+                assertEquals(page.get(j), expected[(int)(pageStart + j)], "page at " + i);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertTrue(Arrays.equals(out.toByteArray(), expected));
+    }
+
+    private static byte[] overwrite(byte[] array, int offset, byte[] bytes) {
+        return replace(array, offset, Math.min(bytes.length, array.length - offset), bytes);
+    }
+
+    private static byte[] replace(byte[] array, int offset, int length, byte[] bytes) {
+        byte[] result = new byte[array.length - length + bytes.length];
+        System.arraycopy(array, 0, result, 0, offset);
+        System.arraycopy(bytes, 0, result, offset, bytes.length);
+        System.arraycopy(array, offset + length, result, offset + bytes.length, array.length - offset - length);
+        return result;
+    }
+
+    /**
+     * A RandomAccessOutputStream over a local file.
+     */
+    private static class FileOutputStreamAdapter extends RandomAccessOutputStream {
+        private final RandomAccessFile raf;
+
+        private FileOutputStreamAdapter(File file) throws IOException {
+            raf = new RandomAccessFile(file, "rw");
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            raf.write(b);
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            raf.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            raf.write(b, off, len);
+        }
+
+        @Override
+        public void setLength(long newLength) throws IOException {
+            raf.setLength(newLength);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+
+        @Override
+        public long getOffset() throws IOException {
+            return raf.getFilePointer();
+        }
+
+        @Override
+        public long getLength() throws IOException {
+            return raf.length();
+        }
+
+        @Override
+        public void seek(long offset) throws IOException {
+            raf.seek(offset);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.trolsoft.hexeditor.data;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+/**
+ * A test case for {@link PagedByteBuffer}, through {@link MappedFileByteBuffer}.
+ */
+public class PagedByteBufferTest {
+
+    private final static int PAGE_SIZE = 1000;
+
+    private File file;
+    private byte[] data;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        data = new byte[10 * PAGE_SIZE + 123];
+        new Random(0).nextBytes(data);
+        file = File.createTempFile("paged", ".bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testGetByte() throws IOException {
+        MappedFileByteBuffer buffer = new MappedFileByteBuffer(file, PAGE_SIZE, 3);
+        try {
+            assertEquals(buffer.getFileSize(), data.length);
+            // Back and forth, so that pages are evicted and loaded again
+            Random random = new Random(1);
+            for (int i = 0; i < 10000; i++) {
+                int offset = random.nextInt(data.length);
+                assertEquals(buffer.getByte(offset), data[offset], "offset " + offset);
+            }
+            for (int offset = data.length - 1; offset >= 0; offset--) {
+                assertEquals(buffer.getByte(offset), data[offset]);
+            }
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void testGetPage() throws IOException {
+        MappedFileByteBuffer buffer = new MappedFileByteBuffer(file, PAGE_SIZE, 3);
+        try {
+            ByteBuffer page = buffer.getPage(2500);
+            assertEquals(page.position(), 500);
+            assertEquals(page.limit(), PAGE_SIZE);
+            assertEquals(page.get(), data[2500]);
+
+            // Last page is shorter
+            page = buffer.getPage(data.length - 1);
+            assertEquals(page.position(), 122);
+            assertEquals(page.limit(), 123);
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void testOutOfBounds() throws IOException {
+        MappedFileByteBuffer buffer = new MappedFileByteBuffer(file, PAGE_SIZE, 3);
+        try {
+            buffer.getByte(data.length);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        } finally {
+            buffer.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.trolsoft.hexeditor.search;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import ru.trolsoft.hexeditor.data.AbstractByteBuffer;
+import ru.trolsoft.hexeditor.data.FileByteBuffer;
+import ru.trolsoft.hexeditor.data.MappedFileByteBuffer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * A test case for {@link ByteBufferSearchUtils}, which is checked against a naive search on buffers whose pages or
+ * windows are smaller than the searched data.
+ */
+public class ByteBufferSearchUtilsTest {
+
+    private File file;
+    private byte[] data;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        // Few distinct values, so that the patterns occur often, across pages too
+        Random random = new Random(0);
+        data = new byte[200000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)random.nextInt(4);
+        }
+        file = File.createTempFile("search", ".bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        check(new MappedFileByteBuffer(file, 1000, 4));
+    }
+
+    @Test
+    public void testWindow() throws IOException {
+        check(new FileByteBuffer(file.getAbsolutePath(), "r", 1000));
+    }
+
+    private void check(AbstractByteBuffer buffer) throws IOException {
+        Random random = new Random(1);
+        try {
+            for (int i = 0; i < 200; i++) {
+                byte[] pattern = new byte[1 + random.nextInt(10)];
+                System.arraycopy(data, random.nextInt(data.length - pattern.length), pattern, 0, pattern.length);
+                long from = random.nextInt(data.length);
+
+                assertEquals(ByteBufferSearchUtils.indexOf(buffer, pattern, from), naiveIndexOf(pattern, from));
+                assertEquals(ByteBufferSearchUtils.indexOfBackward(buffer, pattern, from), naiveIndexOfBackward(pattern, from));
+            }
+            byte[] pattern = {data[data.length - 2], data[data.length - 1]};
+            assertEquals(ByteBufferSearchUtils.indexOf(buffer, pattern, data.length - 2), data.length - 2);
+            assertEquals(ByteBufferSearchUtils.indexOfBackward(buffer, pattern, data.length), naiveIndexOfBackward(pattern, data.length));
+            assertEquals(ByteBufferSearchUtils.indexOfBackward(buffer, pattern, -1), -1);
+        } finally {
+            buffer.close();
+        }
+    }
+
+    private long naiveIndexOf(byte[] pattern, long from) {
+        for (int i = (int)from; i + pattern.length <= data.length; i++) {
+            if (matches(i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long naiveIndexOfBackward(byte[] pattern, long from) {
+        for (int i = (int)Math.min(from, data.length - pattern.length); i >= 0; i--) {
+            if (matches(i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int offset, byte[] pattern) {
+        for (int j = 0; j < pattern.length; j++) {
+            if (data[offset + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
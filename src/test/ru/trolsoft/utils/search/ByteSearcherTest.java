@@ -0,0 +1,183 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.trolsoft.utils.search;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * A test case for {@link HorspoolSearcher} and {@link AhoCorasickSearcher}, which are checked against a naive search
+ * on random data.
+ */
+public class ByteSearcherTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testHorspool() {
+        for (int i = 0; i < 500; i++) {
+            byte[] data = randomBytes(random.nextInt(300), 3);
+            byte[] pattern = randomBytes(1 + random.nextInt(5), 3);
+            ByteSearcher searcher = new HorspoolSearcher(new BytesSearchPattern(pattern));
+
+            assertEquals(searcher.indexOf(data, 0, data.length), naiveIndexOf(data, pattern));
+        }
+    }
+
+    @Test
+    public void testRange() {
+        byte[] data = "abcabcabc".getBytes();
+        ByteSearcher searcher = new HorspoolSearcher(new BytesSearchPattern("abc".getBytes()));
+
+        assertEquals(searcher.indexOf(data, 1, data.length), 3);
+        assertEquals(searcher.indexOf(data, 1, 5), -1);
+        assertEquals(searcher.indexOf(data, 1, 6), 3);
+    }
+
+    @Test
+    public void testCaseInsensitive() throws IOException {
+        ByteSearcher searcher = new HorspoolSearcher(new StringCaseInsensitiveSearchPattern("Hello", "UTF-8"));
+        byte[] data = "say hELLo world".getBytes("UTF-8");
+
+        assertEquals(searcher.indexOf(data, 0, data.length), 4);
+        assertEquals(searcher.indexOf(new ByteArrayInputStream("no match".getBytes("UTF-8"))), -1);
+    }
+
+    @Test
+    public void testAhoCorasick() {
+        for (int i = 0; i < 500; i++) {
+            byte[] data = randomBytes(random.nextInt(300), 3);
+            byte[][] patterns = new byte[1 + random.nextInt(4)][];
+            SearchPattern[] searchPatterns = new SearchPattern[patterns.length];
+            for (int p = 0; p < patterns.length; p++) {
+                patterns[p] = randomBytes(1 + random.nextInt(6), 3);
+                searchPatterns[p] = new BytesSearchPattern(patterns[p]);
+            }
+            ByteSearcher searcher = new AhoCorasickSearcher(searchPatterns);
+
+            assertEquals(searcher.indexOf(data, 0, data.length), naiveIndexOfFirstEnd(data, patterns));
+        }
+    }
+
+    @Test
+    public void testMultiEncoding() throws IOException {
+        ByteSearcher searcher = SearchUtils.compile("Привет", false, "UTF-8", "windows-1251", "UTF-16LE");
+
+        for (String charset : new String[] {"UTF-8", "windows-1251", "UTF-16LE"}) {
+            byte[] data = ("-- ПРИВЕТ --").getBytes(charset);
+            assertEquals(searcher.indexOf(data, 0, data.length), "-- ".getBytes(charset).length, charset);
+        }
+        byte[] data = "-- Пока --".getBytes("UTF-8");
+        assertEquals(searcher.indexOf(data, 0, data.length), -1);
+    }
+
+    /**
+     * Validates that matches spanning two blocks are found when searching streams and direct buffers, and that
+     * their offsets are correct.
+     */
+    @Test
+    public void testBlocks() throws IOException {
+        byte[] pattern = "0123456789".getBytes();
+        int size = 3 * AbstractByteSearcher.BLOCK_SIZE;
+        for (int offset : new int[] {0, AbstractByteSearcher.BLOCK_SIZE - 5, AbstractByteSearcher.BLOCK_SIZE, 2 * AbstractByteSearcher.BLOCK_SIZE - 1, size - pattern.length}) {
+            byte[] data = new byte[size];
+            System.arraycopy(pattern, 0, data, offset, pattern.length);
+
+            for (ByteSearcher searcher : new ByteSearcher[] {
+                    new HorspoolSearcher(new BytesSearchPattern(pattern)),
+                    new AhoCorasickSearcher(new BytesSearchPattern(pattern), new BytesSearchPattern("abc".getBytes()))}) {
+                assertEquals(searcher.indexOf(new SlowInputStream(new ByteArrayInputStream(data))), offset);
+
+                ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+                buffer.put(data);
+                buffer.flip();
+                assertEquals(searcher.indexOf(buffer), offset);
+                assertEquals(searcher.indexOf(ByteBuffer.wrap(data)), offset);
+            }
+        }
+    }
+
+
+    private byte[] randomBytes(int length, int range) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte)('a' + random.nextInt(range));
+        }
+        return bytes;
+    }
+
+    private static int naiveIndexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (matches(data, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the start of the longest match that ends first.
+     */
+    private static int naiveIndexOfFirstEnd(byte[] data, byte[][] patterns) {
+        for (int end = 1; end <= data.length; end++) {
+            int start = -1;
+            for (byte[] pattern : patterns) {
+                int patternStart = end - pattern.length;
+                if (patternStart >= 0 && matches(data, patternStart, pattern) && (start < 0 || patternStart < start)) {
+                    start = patternStart;
+                }
+            }
+            if (start >= 0) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] data, int offset, byte[] pattern) {
+        for (int j = 0; j < pattern.length; j++) {
+            if (data[offset + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns fewer bytes than requested, as network streams do.
+     */
+    private static class SlowInputStream extends FilterInputStream {
+        private SlowInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1000));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2013-2026 Oleg Trifonov
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ru.trolsoft.utils.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Compares the throughput of the byte-at-a-time search of {@link SearchUtils#indexOf(SearchSourceStream, SearchPattern)}
+ * with the block searchers of {@link SearchUtils#compile(SearchPattern...)}, on generated text of 1 KB and 1 MB, and
+ * 1 GB when the <code>search.benchmark.large</code> system property is set to <code>true</code>. The pattern is placed
+ * at the end of the text, so that the whole text is read. Results are logged.
+ */
+public class SearchBenchmark {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchBenchmark.class);
+
+    private final static int KB = 1024;
+    private final static int MB = 1024 * KB;
+    private final static long GB = 1024L * MB;
+
+    /** Number of times small inputs are searched, to get measurable times */
+    private final static int MIN_TOTAL_SIZE = 64 * MB;
+
+    private final static String TEXT = "the quick brown fox jumps over the lazy dog 0123456789\n";
+
+    private final static String PATTERN = "Pattern Found";
+
+    @Test
+    public void benchmark1KB() throws Exception {
+        benchmark(KB);
+    }
+
+    @Test
+    public void benchmark1MB() throws Exception {
+        benchmark(MB);
+    }
+
+    @Test
+    public void benchmark1GB() throws Exception {
+        if (Boolean.getBoolean("search.benchmark.large")) {
+            benchmark(GB);
+        }
+    }
+
+    private void benchmark(long size) throws Exception {
+        SearchPattern caseSensitive = new StringCaseSensitiveSearchPattern(PATTERN, "UTF-8");
+        SearchPattern caseInsensitive = new StringCaseInsensitiveSearchPattern(PATTERN, "UTF-8");
+
+        run("KMP, case-sensitive", size, caseSensitive, null);
+        run("Horspool, case-sensitive", size, caseSensitive, SearchUtils.compile(caseSensitive));
+        run("KMP, case-insensitive", size, caseInsensitive, null);
+        run("Horspool, case-insensitive", size, caseInsensitive, SearchUtils.compile(caseInsensitive));
+        run("Aho-Corasick, 3 encodings", size, caseInsensitive, SearchUtils.compile(PATTERN, false, "UTF-8", "UTF-16LE", "UTF-16BE"));
+    }
+
+    /**
+     * Searches the generated text with the given searcher, or with the byte-at-a-time search if it is null.
+     */
+    private void run(String name, long size, SearchPattern pattern, ByteSearcher searcher) throws IOException, SearchException {
+        int iterations = (int)Math.max(1, MIN_TOTAL_SIZE / size);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            InputStream in = new TextInputStream(size);
+            if (searcher == null) {
+                assertTrue(SearchUtils.indexOf(new InputStreamSource(in), pattern) >= 0, name);
+            } else {
+                assertEquals(searcher.indexOf(in), size - PATTERN.length(), name);
+            }
+        }
+        long time = System.nanoTime() - start;
+
+        double mbPerSecond = (double)size * iterations / MB / (time / 1e9);
+        LOGGER.info(String.format("%s, %s: %.1f MB/s", name, size >= GB ? size / GB + " GB" : size >= MB ? size / MB + " MB" : size / KB + " KB", mbPerSecond));
+    }
+
+    /**
+     * Generates text of the given size ending with the pattern, without holding it in memory.
+     */
+    private static class TextInputStream extends InputStream {
+        private final static byte[] PATTERN_BYTES = PATTERN.getBytes();
+
+        /** Text the stream is made of, repeated */
+        private final static byte[] CHUNK = new byte[TEXT.length() * 1024];
+        static {
+            byte[] text = TEXT.getBytes();
+            Random random = new Random(0);
+            for (int i = 0; i < CHUNK.length; i++) {
+                byte c = text[i % text.length];
+                // Vary the case of the text a little
+                CHUNK[i] = random.nextInt(16) == 0 ? (byte)Character.toUpperCase(c) : c;
+            }
+        }
+
+        private final long size;
+        private long position;
+
+        private TextInputStream(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            long patternStart = size - PATTERN_BYTES.length;
+            int n;
+            if (position >= patternStart) {
+                n = (int)Math.min(len, size - position);
+                System.arraycopy(PATTERN_BYTES, (int)(position - patternStart), b, off, n);
+            } else {
+                int chunkOffset = (int)(position % CHUNK.length);
+                n = (int)Math.min(Math.min(len, CHUNK.length - chunkOffset), patternStart - position);
+                System.arraycopy(CHUNK, chunkOffset, b, off, n);
+            }
+            position += n;
+            return n;
+        }
+    }
+}